@@ -0,0 +1,275 @@
+package com.healthrecords.config;
+
+import com.healthrecords.repository.IdempotencyKeyRepository;
+import com.healthrecords.repository.IdempotencyKeyRepository.StoredResponse;
+import com.healthrecords.service.IdempotencyKeyStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Makes the appointment creation endpoints safe to retry. A POST sent with an
+ * {@code Idempotency-Key} header is executed once per caller and key; repeating it returns the
+ * stored response of the first request, marked with {@code Idempotent-Replayed: true}, without
+ * running the handler again, whichever replica receives it.
+ *
+ * While the first request is still running, a repeat gets 409. Reusing a key for another endpoint,
+ * or with another request body, gets 422. Responses with a 5xx status are not stored, so those
+ * requests can be retried.
+ *
+ * The stored response keeps its status, content type, body and headers such as {@code Location}.
+ *
+ * Registered as a regular servlet filter, which runs after the security filter chain, so keys are
+ * scoped to the authenticated user. The default paths are the authenticated booking endpoints;
+ * an anonymous caller has no identity to scope a key to, so a request without one (e.g. on
+ * {@code /api/appointments/simple}, which also accepts anonymous callers) is passed through as if
+ * it had no key.
+ */
+@Component
+@RequiredArgsConstructor
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    // Set from the stored fields, or per response by the server, rather than replayed
+    private static final Set<String> UNSTORED_HEADERS = Set.of(HttpHeaders.CONTENT_TYPE.toLowerCase(),
+            HttpHeaders.CONTENT_LENGTH.toLowerCase(), HttpHeaders.TRANSFER_ENCODING.toLowerCase(),
+            HttpHeaders.DATE.toLowerCase(), HttpHeaders.CONNECTION.toLowerCase(), HttpHeaders.SET_COOKIE.toLowerCase(),
+            REPLAYED_HEADER.toLowerCase());
+
+    private final IdempotencyKeyStore idempotencyKeyStore;
+
+    @Value("${idempotency.paths:/api/appointments,/api/appointments/simple,/api/appointments/series}")
+    private String pathsProperty;
+
+    private Set<String> paths;
+
+    @PostConstruct
+    void init() {
+        paths = new HashSet<>();
+        for (String path : pathsProperty.split(",")) {
+            if (!path.isBlank()) {
+                paths.add(path.trim());
+            }
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod())
+                || request.getHeader(IDEMPOTENCY_KEY_HEADER) == null
+                || !paths.contains(request.getRequestURI());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String key = request.getHeader(IDEMPOTENCY_KEY_HEADER).trim();
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            writeError(response, HttpStatus.BAD_REQUEST,
+                    IDEMPOTENCY_KEY_HEADER + " must be between 1 and " + MAX_KEY_LENGTH + " characters");
+            return;
+        }
+
+        String scope = currentScope();
+        if (scope == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        // The body is read here for the fingerprint and replayed to the handler
+        CachedBodyRequest cachedRequest = new CachedBodyRequest(request);
+        String fingerprint = request.getMethod() + " " + request.getRequestURI() + " " + sha256(cachedRequest.body);
+
+        StoredResponse recent = idempotencyKeyStore.findRecent(scope, key);
+        if (recent != null) {
+            replay(recent, fingerprint, response);
+            return;
+        }
+
+        if (!idempotencyKeyStore.start(scope, key, fingerprint)) {
+            StoredResponse stored = idempotencyKeyStore.find(scope, key).orElse(null);
+            if (stored != null && stored.isCompleted()) {
+                replay(stored, fingerprint, response);
+            } else {
+                writeError(response, HttpStatus.CONFLICT,
+                        "A request with this " + IDEMPOTENCY_KEY_HEADER + " is still being processed");
+            }
+            return;
+        }
+
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        boolean completed = false;
+        try {
+            chain.doFilter(cachedRequest, wrapper);
+            if (wrapper.getStatus() < 500) {
+                idempotencyKeyStore.complete(scope, key, new StoredResponse(IdempotencyKeyRepository.COMPLETED,
+                        fingerprint, wrapper.getStatus(), wrapper.getContentType(), storedHeaders(wrapper),
+                        wrapper.getContentAsByteArray()));
+                completed = true;
+            }
+        } finally {
+            if (!completed) {
+                idempotencyKeyStore.release(scope, key);
+            }
+            wrapper.copyBodyToResponse();
+        }
+    }
+
+    private void replay(StoredResponse stored, String fingerprint, HttpServletResponse response) throws IOException {
+        if (!stored.getFingerprint().equals(fingerprint)) {
+            writeError(response, HttpStatus.UNPROCESSABLE_ENTITY,
+                    IDEMPOTENCY_KEY_HEADER + " was already used for a different request");
+            return;
+        }
+
+        response.setStatus(stored.getStatusCode());
+        if (stored.getHeaders() != null) {
+            // Replaces what the filters before this one set, e.g. the security headers
+            stored.getHeaders().forEach((name, values) -> {
+                response.setHeader(name, values.get(0));
+                values.subList(1, values.size()).forEach(value -> response.addHeader(name, value));
+            });
+        }
+        response.setHeader(REPLAYED_HEADER, "true");
+        if (stored.getContentType() != null) {
+            response.setContentType(stored.getContentType());
+        }
+        if (stored.getBody() != null) {
+            response.setContentLength(stored.getBody().length);
+            response.getOutputStream().write(stored.getBody());
+        }
+    }
+
+    /**
+     * The response headers worth replaying, such as Location
+     */
+    private static HttpHeaders storedHeaders(HttpServletResponse response) {
+        HttpHeaders headers = new HttpHeaders();
+        for (String name : response.getHeaderNames()) {
+            if (!UNSTORED_HEADERS.contains(name.toLowerCase())) {
+                headers.addAll(name, List.copyOf(response.getHeaders(name)));
+            }
+        }
+        return headers;
+    }
+
+    /**
+     * The authenticated user's name, or null for anonymous callers
+     */
+    private static String currentScope() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return authentication.getName();
+    }
+
+    private static String sha256(byte[] body) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static void writeError(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"message\":\"" + message + "\",\"status\":" + status.value() + "}");
+    }
+
+    /**
+     * Request whose body has been read up front and can be read again by the handler
+     */
+    private static class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request) throws IOException {
+            super(request);
+            this.body = request.getInputStream().readAllBytes();
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                // The whole body is already in memory, so it is available, and read, right away
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    try {
+                        if (!isFinished()) {
+                            listener.onDataAvailable();
+                        }
+                        if (isFinished()) {
+                            listener.onAllDataRead();
+                        }
+                    } catch (IOException e) {
+                        listener.onError(e);
+                    }
+                }
+
+                @Override
+                public int read() {
+                    return input.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return input.read(buffer, offset, length);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8;
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.healthrecords.config;
 
 import com.healthrecords.security.JwtAuthenticationFilter;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -28,6 +29,7 @@ public class SecurityConfig {
             .cors(cors -> cors.configure(http))
             .csrf(csrf -> csrf.disable())
             .authorizeHttpRequests(auth -> auth
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll() // Completion of an already authorized SSE stream
                 .requestMatchers("/api/auth/**").permitAll()
                 .requestMatchers("/api/public/**").permitAll() // All public endpoints are accessible without authentication
                 .requestMatchers("/api/appointments/simple").permitAll() // Allow access to the simple appointment creation endpoint
@@ -27,7 +27,8 @@ public class WebConfig {
                             "https://health-records-app.netlify.app"
                         )
                         .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
-                        .allowedHeaders("Authorization", "Content-Type", "X-Requested-With")
+                        .allowedHeaders("Authorization", "Content-Type", "X-Requested-With", "Idempotency-Key")
+                        .exposedHeaders("Idempotent-Replayed")
                         .allowCredentials(true)
                         .maxAge(3600);
 
@@ -1,20 +1,36 @@
 package com.healthrecords.controller;
 
+import com.healthrecords.dto.AppointmentDetail;
 import com.healthrecords.dto.AppointmentRequest;
+import com.healthrecords.dto.AppointmentSeriesRequest;
+import com.healthrecords.dto.AppointmentSeriesResponse;
+import com.healthrecords.dto.AppointmentSeriesUpdateRequest;
+import com.healthrecords.dto.AppointmentSummary;
+import com.healthrecords.dto.BulkAppointmentRequest;
+import com.healthrecords.dto.BulkAppointmentResult;
+import com.healthrecords.dto.CursorPage;
+import com.healthrecords.dto.DoctorCalendarResponse;
 import com.healthrecords.dto.SimpleAppointmentRequest;
+import com.healthrecords.exception.SlotUnavailableException;
 import com.healthrecords.model.Appointment;
 import com.healthrecords.model.User;
 import com.healthrecords.model.UserRole;
 import com.healthrecords.repository.DirectAppointmentRepository;
+import com.healthrecords.security.CurrentUserContext;
 import com.healthrecords.service.AppointmentService;
+import com.healthrecords.service.DoctorCalendarService;
 import com.healthrecords.service.UserService;
 import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.util.List;
 import java.util.Map;
 
@@ -23,28 +39,78 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class AppointmentController {
 
+    private static final Logger log = LoggerFactory.getLogger(AppointmentController.class);
+
     private final AppointmentService appointmentService;
     private final UserService userService;
     private final DirectAppointmentRepository directAppointmentRepository;
+    private final CurrentUserContext currentUserContext;
+    private final DoctorCalendarService doctorCalendarService;
 
+    /**
+     * The first appointments only, up to appointments.list.max-size; use /page to list all of them
+     */
+    @Deprecated
     @GetMapping
     @PreAuthorize("hasRole('ROLE_ADMIN')")
-    public ResponseEntity<List<Appointment>> getAllAppointments() {
-        return ResponseEntity.ok(appointmentService.getAllAppointments());
+    public ResponseEntity<List<AppointmentDetail>> getAllAppointments() {
+        return ResponseEntity.ok()
+                .header("Deprecation", "true")
+                .header("Link", "</api/appointments/page>; rel=\"successor-version\"")
+                .body(appointmentService.getAllAppointments());
     }
 
     @GetMapping("/date-range")
     @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_DOCTOR', 'ROLE_PATIENT')")
-    public ResponseEntity<List<Appointment>> getAppointmentsByDateRange(
+    public ResponseEntity<List<AppointmentDetail>> getAppointmentsByDateRange(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end) {
         return ResponseEntity.ok(appointmentService.getAppointmentsByDateRange(start, end));
     }
 
+    /**
+     * Keyset-paginated listings ordered by appointment date/time, then id.
+     * Pass the returned nextCursor as the cursor parameter to get the next page.
+     */
+    @GetMapping("/page")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<CursorPage<AppointmentSummary>> getAllAppointmentsPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(appointmentService.getAllAppointmentsPage(cursor, size));
+    }
+
+    @GetMapping("/date-range/page")
+    @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_DOCTOR', 'ROLE_PATIENT')")
+    public ResponseEntity<CursorPage<AppointmentSummary>> getAppointmentsByDateRangePage(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(appointmentService.getAppointmentsByDateRangePage(start, end, cursor, size));
+    }
+
+    @GetMapping("/my-appointments/page")
+    @PreAuthorize("hasAnyRole('ROLE_DOCTOR', 'ROLE_PATIENT')")
+    public ResponseEntity<CursorPage<AppointmentSummary>> getMyAppointmentsPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(appointmentService.getMyAppointmentsPage(cursor, size));
+    }
+
+    @GetMapping("/doctor/{doctorId}/page")
+    @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_DOCTOR')")
+    public ResponseEntity<CursorPage<AppointmentSummary>> getAppointmentsForDoctorPage(
+            @PathVariable Long doctorId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(appointmentService.getDoctorAppointmentsPage(doctorId, cursor, size));
+    }
+
     @GetMapping("/{id}")
     @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_DOCTOR', 'ROLE_PATIENT')")
-    public ResponseEntity<Appointment> getAppointmentById(@PathVariable Long id) {
-        return ResponseEntity.ok(appointmentService.getAppointmentById(id));
+    public ResponseEntity<AppointmentDetail> getAppointmentById(@PathVariable Long id) {
+        return ResponseEntity.ok(appointmentService.getAppointmentDetail(id));
     }
 
     @PostMapping
@@ -71,7 +137,7 @@ public class AppointmentController {
             }
 
             // Get current authenticated user
-            User currentUser = userService.getUserByEmail(auth.getName());
+            User currentUser = currentUserContext.getCurrentUser();
             System.out.println("Current user: " + currentUser.getEmail() + " with role: " + currentUser.getRole());
 
             System.out.println("Appointment request received: " + appointmentRequest);
@@ -160,6 +226,18 @@ public class AppointmentController {
                 .createdAt(LocalDateTime.now())
                 .updatedAt(LocalDateTime.now())
                 .build());
+        } catch (SlotUnavailableException e) {
+            // Handle double bookings
+            System.out.println("Slot unavailable in createAppointment: " + e.getMessage());
+
+            return ResponseEntity.status(409).body(Appointment.builder()
+                .title("ERROR: " + e.getMessage())
+                .status(Appointment.AppointmentStatus.CANCELLED)
+                .appointmentDateTime(LocalDateTime.now())
+                .isVideoConsultation(false)
+                .createdAt(LocalDateTime.now())
+                .updatedAt(LocalDateTime.now())
+                .build());
         } catch (RuntimeException e) {
             // Handle runtime errors
             System.out.println("Runtime error in createAppointment: " + e.getMessage());
@@ -208,13 +286,13 @@ public class AppointmentController {
 
     @GetMapping("/my-appointments")
     @PreAuthorize("hasAnyRole('ROLE_DOCTOR', 'ROLE_PATIENT')")
-    public ResponseEntity<List<Appointment>> getMyAppointments() {
+    public ResponseEntity<List<AppointmentDetail>> getMyAppointments() {
         System.out.println("AppointmentController: Getting my appointments");
-        List<Appointment> appointments = appointmentService.getMyAppointments();
+        List<AppointmentDetail> appointments = appointmentService.getMyAppointments();
         System.out.println("AppointmentController: Found " + appointments.size() + " appointments");
 
         // Debug: Print appointment details
-        for (Appointment appointment : appointments) {
+        for (AppointmentDetail appointment : appointments) {
             System.out.println("Appointment ID: " + appointment.getId() +
                               ", Status: " + appointment.getStatus() +
                               ", Doctor: " + appointment.getDoctor().getEmail() +
@@ -226,7 +304,7 @@ public class AppointmentController {
 
     @GetMapping("/my-upcoming-appointments")
     @PreAuthorize("hasAnyRole('ROLE_DOCTOR', 'ROLE_PATIENT')")
-    public ResponseEntity<List<Appointment>> getMyUpcomingAppointments() {
+    public ResponseEntity<List<AppointmentDetail>> getMyUpcomingAppointments() {
         System.out.println("AppointmentController: Getting my upcoming appointments");
 
         // Get authentication details
@@ -243,11 +321,11 @@ public class AppointmentController {
         }
 
         try {
-            List<Appointment> appointments = appointmentService.getMyUpcomingAppointments();
+            List<AppointmentDetail> appointments = appointmentService.getMyUpcomingAppointments();
             System.out.println("AppointmentController: Found " + appointments.size() + " upcoming appointments");
 
             // Debug: Print appointment details
-            for (Appointment appointment : appointments) {
+            for (AppointmentDetail appointment : appointments) {
                 System.out.println("Appointment ID: " + appointment.getId() +
                                   ", Status: " + appointment.getStatus() +
                                   ", Doctor ID: " + (appointment.getDoctor() != null ? appointment.getDoctor().getId() : "null") +
@@ -266,7 +344,7 @@ public class AppointmentController {
 
     @PutMapping("/{id}/confirm")
     @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_DOCTOR')")
-    public ResponseEntity<Appointment> confirmAppointment(@PathVariable Long id) {
+    public ResponseEntity<AppointmentDetail> confirmAppointment(@PathVariable Long id) {
         System.out.println("AppointmentController: Confirming appointment with ID: " + id);
 
         // Get authentication details
@@ -283,7 +361,7 @@ public class AppointmentController {
         }
 
         try {
-            Appointment confirmedAppointment = appointmentService.confirmAppointment(id);
+            AppointmentDetail confirmedAppointment = appointmentService.confirmAppointment(id);
             System.out.println("AppointmentController: Appointment confirmed successfully with status: " + confirmedAppointment.getStatus());
             return ResponseEntity.ok(confirmedAppointment);
         } catch (Exception e) {
@@ -295,7 +373,7 @@ public class AppointmentController {
 
     @PutMapping("/{id}/reject")
     @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_DOCTOR')")
-    public ResponseEntity<Appointment> rejectAppointment(
+    public ResponseEntity<AppointmentDetail> rejectAppointment(
             @PathVariable Long id,
             @RequestBody Map<String, String> payload) {
         System.out.println("AppointmentController: Rejecting appointment with ID: " + id);
@@ -317,7 +395,7 @@ public class AppointmentController {
         System.out.println("Rejection reason: " + reason);
 
         try {
-            Appointment rejectedAppointment = appointmentService.rejectAppointment(id, reason);
+            AppointmentDetail rejectedAppointment = appointmentService.rejectAppointment(id, reason);
             System.out.println("AppointmentController: Appointment rejected successfully with status: " + rejectedAppointment.getStatus());
             return ResponseEntity.ok(rejectedAppointment);
         } catch (Exception e) {
@@ -328,30 +406,64 @@ public class AppointmentController {
     }
 
     /**
-     * Get appointments for a doctor using direct SQL query
-     * This endpoint is for debugging purposes
+     * Confirm, reject or reschedule several appointments at once; returns one outcome per action
+     */
+    @PostMapping("/bulk")
+    @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_DOCTOR')")
+    public ResponseEntity<List<BulkAppointmentResult>> applyBulkActions(@RequestBody BulkAppointmentRequest request) {
+        System.out.println("AppointmentController: Applying bulk appointment actions");
+        return ResponseEntity.ok(appointmentService.applyBulkActions(request.getActions()));
+    }
+
+    /**
+     * Create a recurring series of appointments
+     */
+    @PostMapping("/series")
+    @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_DOCTOR', 'ROLE_PATIENT')")
+    public ResponseEntity<AppointmentSeriesResponse> createAppointmentSeries(@RequestBody AppointmentSeriesRequest request) {
+        System.out.println("AppointmentController: Creating appointment series");
+        return ResponseEntity.ok(appointmentService.createAppointmentSeries(request));
+    }
+
+    /**
+     * Change an occurrence of a series together with every later one
+     */
+    @PutMapping("/{id}/series/following")
+    @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_DOCTOR')")
+    public ResponseEntity<AppointmentSeriesResponse> updateSeriesFrom(@PathVariable Long id,
+                                                                      @RequestBody AppointmentSeriesUpdateRequest request) {
+        System.out.println("AppointmentController: Updating series from appointment ID: " + id);
+        return ResponseEntity.ok(appointmentService.updateSeriesFrom(id, request));
+    }
+
+    @PutMapping("/{id}/cancel")
+    @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_DOCTOR', 'ROLE_PATIENT')")
+    public ResponseEntity<AppointmentDetail> cancelAppointment(@PathVariable Long id) {
+        System.out.println("AppointmentController: Cancelling appointment with ID: " + id);
+
+        try {
+            AppointmentDetail cancelledAppointment = appointmentService.cancelAppointment(id);
+            System.out.println("AppointmentController: Appointment cancelled successfully with status: " + cancelledAppointment.getStatus());
+            return ResponseEntity.ok(cancelledAppointment);
+        } catch (Exception e) {
+            System.out.println("AppointmentController: Error cancelling appointment: " + e.getMessage());
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Get appointments for a doctor using a single direct SQL query
      */
     @GetMapping("/doctor/{doctorId}")
     @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_DOCTOR')")
-    public ResponseEntity<List<Appointment>> getAppointmentsForDoctor(@PathVariable Long doctorId) {
+    public ResponseEntity<List<AppointmentDetail>> getAppointmentsForDoctor(@PathVariable Long doctorId) {
         System.out.println("AppointmentController: Getting appointments for doctor ID: " + doctorId);
 
         try {
-            List<Appointment> appointments = directAppointmentRepository.getAppointmentsForDoctor(doctorId);
+            List<AppointmentDetail> appointments = directAppointmentRepository.getAppointmentsForDoctor(doctorId);
             System.out.println("AppointmentController: Found " + appointments.size() + " appointments for doctor ID: " + doctorId);
 
-            // Debug: Print appointment details
-            for (Appointment appointment : appointments) {
-                if (appointment != null) {
-                    System.out.println("Appointment ID: " + appointment.getId() +
-                                      ", Status: " + appointment.getStatus() +
-                                      ", Doctor ID: " + (appointment.getDoctor() != null ? appointment.getDoctor().getId() : "null") +
-                                      ", Patient ID: " + (appointment.getPatient() != null ? appointment.getPatient().getId() : "null"));
-                } else {
-                    System.out.println("Found null appointment");
-                }
-            }
-
             return ResponseEntity.ok(appointments);
         } catch (Exception e) {
             System.out.println("Error getting appointments for doctor: " + e.getMessage());
@@ -360,6 +472,56 @@ public class AppointmentController {
         }
     }
 
+    /**
+     * Number of appointments per day and status of a doctor for a month
+     */
+    @GetMapping("/doctor/{doctorId}/calendar")
+    @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_DOCTOR')")
+    public ResponseEntity<DoctorCalendarResponse> getDoctorCalendar(
+            @PathVariable Long doctorId,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM") YearMonth month) {
+        return ResponseEntity.ok(appointmentService.getDoctorCalendar(doctorId, month));
+    }
+
+    /**
+     * Recount the calendar counters of all doctors for a date range, e.g. after writes that bypassed them
+     */
+    @PostMapping("/calendar/rebuild")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<Map<String, Object>> rebuildCalendar(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        log.info("Rebuilding calendar counters from {} to {}", from, to);
+        int rows = doctorCalendarService.rebuild(from, to);
+        return ResponseEntity.ok(Map.of("from", from, "to", to, "rows", rows));
+    }
+
+    /**
+     * Free appointment slots of a doctor on the given day
+     */
+    @GetMapping("/doctor/{doctorId}/free-slots")
+    @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_DOCTOR', 'ROLE_PATIENT')")
+    public ResponseEntity<List<LocalDateTime>> getFreeSlots(
+            @PathVariable Long doctorId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        return ResponseEntity.ok(appointmentService.getFreeSlots(doctorId, date));
+    }
+
+    /**
+     * Check whether a doctor can take an appointment at the given time
+     */
+    @GetMapping("/doctor/{doctorId}/availability")
+    @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_DOCTOR', 'ROLE_PATIENT')")
+    public ResponseEntity<Map<String, Object>> checkAvailability(
+            @PathVariable Long doctorId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dateTime) {
+        return ResponseEntity.ok(Map.of(
+            "doctorId", doctorId,
+            "dateTime", dateTime,
+            "available", appointmentService.isSlotAvailable(doctorId, dateTime)
+        ));
+    }
+
     /**
      * A simplified endpoint for creating appointments
      * This endpoint uses a simpler approach to avoid database errors
@@ -377,7 +539,7 @@ public class AppointmentController {
 
             User currentUser = null;
             if (auth != null && auth.isAuthenticated() && !auth.getName().equals("anonymousUser")) {
-                currentUser = userService.getUserByEmail(auth.getName());
+                currentUser = currentUserContext.getCurrentUser();
                 System.out.println("Current user: " + currentUser.getEmail() + " with role: " + currentUser.getRole());
             } else {
                 System.out.println("No authenticated user found, treating as patient");
@@ -406,6 +568,13 @@ public class AppointmentController {
             System.out.println("Simple appointment created successfully with ID: " + appointment.getId());
 
             return ResponseEntity.ok(appointment);
+        } catch (SlotUnavailableException e) {
+            System.out.println("Slot unavailable for simple appointment: " + e.getMessage());
+
+            return ResponseEntity.status(409).body(Map.of(
+                "error", e.getMessage(),
+                "status", "error"
+            ));
         } catch (Exception e) {
             System.out.println("Error creating simple appointment: " + e.getMessage());
             e.printStackTrace();
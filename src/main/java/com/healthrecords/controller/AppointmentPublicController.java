@@ -1,6 +1,7 @@
 package com.healthrecords.controller;
 
 import com.healthrecords.dto.SimpleAppointmentRequest;
+import com.healthrecords.exception.SlotUnavailableException;
 import com.healthrecords.model.Appointment;
 import com.healthrecords.model.User;
 import com.healthrecords.service.AppointmentService;
@@ -104,6 +105,13 @@ public class AppointmentPublicController {
             System.out.println("Open appointment created successfully with ID: " + appointment.getId());
             
             return ResponseEntity.ok(appointment);
+        } catch (SlotUnavailableException e) {
+            System.out.println("Slot unavailable for open appointment: " + e.getMessage());
+            
+            return ResponseEntity.status(409).body(Map.of(
+                "error", e.getMessage(),
+                "status", "error"
+            ));
         } catch (Exception e) {
             System.out.println("Error creating open appointment: " + e.getMessage());
             e.printStackTrace();
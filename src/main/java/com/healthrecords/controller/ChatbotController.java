@@ -7,6 +7,7 @@ import com.healthrecords.model.User;
 import com.healthrecords.service.ChatbotService;
 import com.healthrecords.service.UserService;
 import com.healthrecords.config.ChatbotConfig;
+import com.healthrecords.security.CurrentUserContext;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -29,6 +30,9 @@ public class ChatbotController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private CurrentUserContext currentUserContext;
+
     @Autowired
     private ChatbotConfig chatbotConfig;
 
@@ -42,7 +46,7 @@ public class ChatbotController {
         String userEmail = auth.getName();
 
         // Get user ID from email
-        User user = userService.getUserByEmail(userEmail);
+        User user = currentUserContext.getCurrentUser();
         Long userId = user.getId();
 
         System.out.println("Creating chat session for user: " + userEmail + " with ID: " + userId);
@@ -61,7 +65,7 @@ public class ChatbotController {
         String userEmail = auth.getName();
 
         // Get user ID from email
-        User user = userService.getUserByEmail(userEmail);
+        User user = currentUserContext.getCurrentUser();
         Long userId = user.getId();
 
         System.out.println("Getting chat sessions for user: " + userEmail + " with ID: " + userId);
@@ -1,6 +1,7 @@
 package com.healthrecords.controller;
 
 import com.healthrecords.dto.DirectAppointmentRequest;
+import com.healthrecords.exception.SlotUnavailableException;
 import com.healthrecords.model.Appointment;
 import com.healthrecords.service.DirectAppointmentService;
 import lombok.RequiredArgsConstructor;
@@ -127,6 +128,13 @@ public class DirectAppointmentController {
             response.put("status", savedAppointment.getStatus().toString());
 
             return ResponseEntity.ok(response);
+        } catch (SlotUnavailableException e) {
+            System.out.println("Slot unavailable for appointment: " + e.getMessage());
+
+            return ResponseEntity.status(409).body(Map.of(
+                "error", e.getMessage(),
+                "status", "error"
+            ));
         } catch (Exception e) {
             System.out.println("Error creating appointment: " + e.getMessage());
             e.printStackTrace();
@@ -1,11 +1,12 @@
 package com.healthrecords.controller;
 
 import com.healthrecords.dto.SimpleAppointmentRequest;
+import com.healthrecords.exception.SlotUnavailableException;
 import com.healthrecords.model.Appointment;
 import com.healthrecords.model.User;
 import com.healthrecords.model.UserRole;
-import com.healthrecords.repository.AppointmentRepository;
 import com.healthrecords.repository.UserRepository;
+import com.healthrecords.service.DirectAppointmentService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -24,11 +25,11 @@ import java.util.Map;
 public class DirectController {
 
     private final UserRepository userRepository;
-    private final AppointmentRepository appointmentRepository;
+    private final DirectAppointmentService directAppointmentService;
 
-    public DirectController(UserRepository userRepository, AppointmentRepository appointmentRepository) {
+    public DirectController(UserRepository userRepository, DirectAppointmentService directAppointmentService) {
         this.userRepository = userRepository;
-        this.appointmentRepository = appointmentRepository;
+        this.directAppointmentService = directAppointmentService;
     }
 
     /**
@@ -117,12 +118,19 @@ public class DirectController {
                 .updatedAt(now)
                 .build();
 
-            // Save appointment directly
+            // Save appointment directly, in one transaction with the slot check
             System.out.println("Saving direct appointment to database");
-            Appointment savedAppointment = appointmentRepository.save(appointment);
+            Appointment savedAppointment = directAppointmentService.insertAppointment(appointment);
             System.out.println("Direct appointment saved with ID: " + savedAppointment.getId());
 
             return ResponseEntity.ok(savedAppointment);
+        } catch (SlotUnavailableException e) {
+            System.out.println("Slot unavailable for direct appointment: " + e.getMessage());
+
+            return ResponseEntity.status(409).body(Map.of(
+                "error", e.getMessage(),
+                "status", "error"
+            ));
         } catch (Exception e) {
             System.out.println("Error creating direct appointment: " + e.getMessage());
             e.printStackTrace();
@@ -4,7 +4,6 @@ import com.healthrecords.model.Appointment;
 import com.healthrecords.model.Notification;
 import com.healthrecords.model.User;
 import com.healthrecords.repository.AppointmentRepository;
-import com.healthrecords.repository.NotificationRepository;
 import com.healthrecords.service.NotificationService;
 import com.healthrecords.service.UserService;
 import org.springframework.http.ResponseEntity;
@@ -26,16 +25,13 @@ public class NoSecurityController {
     private final UserService userService;
     private final AppointmentRepository appointmentRepository;
     private final NotificationService notificationService;
-    private final NotificationRepository notificationRepository;
 
     public NoSecurityController(UserService userService,
                                AppointmentRepository appointmentRepository,
-                               NotificationService notificationService,
-                               NotificationRepository notificationRepository) {
+                               NotificationService notificationService) {
         this.userService = userService;
         this.appointmentRepository = appointmentRepository;
         this.notificationService = notificationService;
-        this.notificationRepository = notificationRepository;
     }
 
     /**
@@ -117,7 +113,7 @@ public class NoSecurityController {
                 .build();
 
             // Save notification
-            Notification savedNotification = notificationRepository.save(notification);
+            Notification savedNotification = notificationService.createNotification(notification);
             System.out.println("Test notification created with ID: " + savedNotification.getId());
 
             // Return success response
@@ -1,11 +1,19 @@
 package com.healthrecords.controller;
 
+import com.healthrecords.dto.ArchivedNotification;
+import com.healthrecords.dto.CursorPage;
+import com.healthrecords.dto.EmailChannelStats;
+import com.healthrecords.dto.MarkNotificationsReadRequest;
+import com.healthrecords.dto.NotificationDigestSettings;
+import com.healthrecords.dto.NotificationFeedPage;
 import com.healthrecords.model.Notification;
 import com.healthrecords.service.NotificationService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 import java.util.Map;
@@ -32,18 +40,64 @@ public class NotificationController {
     @GetMapping("/count-unread")
     @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_DOCTOR', 'ROLE_PATIENT')")
     public ResponseEntity<Map<String, Long>> countUnreadNotifications() {
-        // Log the request for debugging
-        System.out.println("Received request to count unread notifications");
-
-        try {
-            Long count = notificationService.countUnreadNotifications();
-            System.out.println("Unread notification count: " + count);
-            return ResponseEntity.ok(Map.of("count", count));
-        } catch (Exception e) {
-            System.out.println("Error counting unread notifications: " + e.getMessage());
-            e.printStackTrace();
-            throw e;
-        }
+        // Polled by every open tab, so nothing is logged here; see notifications.diagnostics.sample-rate
+        return ResponseEntity.ok(Map.of("count", notificationService.countUnreadNotifications()));
+    }
+
+    /**
+     * Server-sent events carrying the unread count. Authenticated like every other endpoint, through
+     * the Authorization header, which the browser's native EventSource cannot send; browser clients
+     * read the stream with fetch (e.g. @microsoft/fetch-event-source), which can.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_DOCTOR', 'ROLE_PATIENT')")
+    public SseEmitter streamNotifications() {
+        return notificationService.openStream();
+    }
+
+    /**
+     * Keyset-paginated feed ordered by creation time, then id, optionally filtered by type and read state.
+     * Pass the returned nextCursor as cursor for older notifications, and sinceCursor as since for newer ones.
+     */
+    @GetMapping("/feed")
+    @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_DOCTOR', 'ROLE_PATIENT')")
+    public ResponseEntity<NotificationFeedPage> getFeed(
+            @RequestParam(required = false) Notification.NotificationType type,
+            @RequestParam(required = false) Boolean read,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) String since,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(notificationService.getFeed(type, read, cursor, since, size));
+    }
+
+    /**
+     * Read notifications older than notifications.archive.retention-days, newest first.
+     * Pass the returned nextCursor as the cursor parameter to get the next page.
+     */
+    @GetMapping("/archive")
+    @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_DOCTOR', 'ROLE_PATIENT')")
+    public ResponseEntity<CursorPage<ArchivedNotification>> getArchivedNotifications(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(notificationService.getArchivedNotifications(cursor, size));
+    }
+
+    @GetMapping("/digest")
+    @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_DOCTOR', 'ROLE_PATIENT')")
+    public ResponseEntity<NotificationDigestSettings> getDigestSettings() {
+        return ResponseEntity.ok(notificationService.getDigestSettings());
+    }
+
+    @PutMapping("/digest")
+    @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_DOCTOR', 'ROLE_PATIENT')")
+    public ResponseEntity<NotificationDigestSettings> updateDigestSettings(@RequestBody NotificationDigestSettings settings) {
+        return ResponseEntity.ok(notificationService.updateDigestSettings(settings.getWindowMinutes()));
+    }
+
+    @GetMapping("/email/stats")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<EmailChannelStats> getEmailStats() {
+        return ResponseEntity.ok(notificationService.getEmailStats());
     }
 
     @GetMapping("/{id}")
@@ -58,6 +112,12 @@ public class NotificationController {
         return ResponseEntity.ok(notificationService.markAsRead(id));
     }
 
+    @PutMapping("/mark-read")
+    @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_DOCTOR', 'ROLE_PATIENT')")
+    public ResponseEntity<Map<String, Integer>> markAsRead(@RequestBody MarkNotificationsReadRequest request) {
+        return ResponseEntity.ok(Map.of("updated", notificationService.markAsRead(request.getIds())));
+    }
+
     @PutMapping("/mark-all-read")
     @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_DOCTOR', 'ROLE_PATIENT')")
     public ResponseEntity<Void> markAllAsRead() {
@@ -2,15 +2,13 @@ package com.healthrecords.controller;
 
 import com.healthrecords.model.Appointment;
 import com.healthrecords.model.User;
+import com.healthrecords.security.CurrentUserContext;
 import com.healthrecords.service.PaymentService;
-import com.healthrecords.service.UserService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 import java.math.BigDecimal;
 import java.util.List;
@@ -27,7 +25,7 @@ public class PaymentController {
     private PaymentService paymentService;
     
     @Autowired
-    private UserService userService;
+    private CurrentUserContext currentUserContext;
     
     @PostMapping("/process")
     @PreAuthorize("hasRole('ROLE_PATIENT')")
@@ -36,9 +34,7 @@ public class PaymentController {
             log.info("Processing payment request for appointment: {}", request.getAppointmentId());
             
             // Get current user from authentication context
-            Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-            String userEmail = auth.getName();
-            User currentUser = userService.getUserByEmail(userEmail);
+            User currentUser = currentUserContext.getCurrentUser();
             Long userId = currentUser.getId();
             
             Appointment appointment = paymentService.processPayment(
@@ -70,9 +66,7 @@ public class PaymentController {
     @PreAuthorize("hasRole('ROLE_PATIENT')")
     public ResponseEntity<?> getPaymentHistory() {
         try {
-            Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-            String userEmail = auth.getName();
-            User currentUser = userService.getUserByEmail(userEmail);
+            User currentUser = currentUserContext.getCurrentUser();
             Long userId = currentUser.getId();
             
             List<Appointment> paidAppointments = paymentService.getPaidAppointments(userId);
@@ -91,9 +85,7 @@ public class PaymentController {
     @PreAuthorize("hasAnyRole('ROLE_PATIENT', 'ROLE_DOCTOR', 'ROLE_ADMIN')")
     public ResponseEntity<?> refundPayment(@PathVariable Long appointmentId) {
         try {
-            Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-            String userEmail = auth.getName();
-            User currentUser = userService.getUserByEmail(userEmail);
+            User currentUser = currentUserContext.getCurrentUser();
             Long userId = currentUser.getId();
             
             Appointment appointment = paymentService.refundPayment(appointmentId, userId);
@@ -0,0 +1,54 @@
+package com.healthrecords.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in an appointment listing ordered by (appointmentDateTime, id).
+ *
+ * Clients receive it as an opaque URL-safe token of the form
+ * base64url("v1|&lt;ISO date-time&gt;|&lt;id&gt;") and pass it back unchanged to get the next page.
+ */
+@Data
+@AllArgsConstructor
+public class AppointmentCursor {
+
+    private static final String VERSION = "v1";
+
+    /**
+     * Position before every appointment, used for the first page
+     */
+    public static final AppointmentCursor START = new AppointmentCursor(LocalDateTime.of(1970, 1, 1, 0, 0), 0L);
+
+    private LocalDateTime appointmentDateTime;
+    private Long id;
+
+    public String encode() {
+        String raw = VERSION + "|" + appointmentDateTime + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a token produced by {@link #encode()}, or return {@link #START} when there is none.
+     */
+    public static AppointmentCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return START;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|");
+            if (parts.length != 3 || !VERSION.equals(parts[0])) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new AppointmentCursor(LocalDateTime.parse(parts[1]), Long.parseLong(parts[2]));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
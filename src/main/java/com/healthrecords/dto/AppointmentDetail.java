@@ -0,0 +1,72 @@
+package com.healthrecords.dto;
+
+import com.healthrecords.model.Appointment;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * All appointment columns plus the doctor's and patient's name and email,
+ * selected with a JPQL constructor expression instead of loading the entity graph.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AppointmentDetail {
+    private Long id;
+    private LocalDateTime appointmentDateTime;
+    private String title;
+    private String description;
+    private Appointment.AppointmentStatus status;
+    private String notes;
+    private Boolean isVideoConsultation;
+    private String meetingLink;
+    private BigDecimal paymentAmount;
+    private Appointment.PaymentStatus paymentStatus;
+    private String paymentMethod;
+    private LocalDateTime paymentDate;
+    private String paymentReference;
+    private String paymentNotes;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    // Set for occurrences of a recurring series
+    private Long seriesId;
+    // Send back with updates so edits based on a stale copy are rejected
+    private Long version;
+    private UserSummary doctor;
+    private UserSummary patient;
+
+    public AppointmentDetail(Long id, LocalDateTime appointmentDateTime, String title, String description,
+                             Appointment.AppointmentStatus status, String notes, Boolean isVideoConsultation,
+                             String meetingLink, BigDecimal paymentAmount, Appointment.PaymentStatus paymentStatus,
+                             String paymentMethod, LocalDateTime paymentDate, String paymentReference,
+                             String paymentNotes, LocalDateTime createdAt, LocalDateTime updatedAt, Long seriesId,
+                             Long version,
+                             Long doctorId, String doctorFirstName, String doctorLastName, String doctorEmail,
+                             String doctorSpecialization,
+                             Long patientId, String patientFirstName, String patientLastName, String patientEmail) {
+        this.id = id;
+        this.appointmentDateTime = appointmentDateTime;
+        this.title = title;
+        this.description = description;
+        this.status = status;
+        this.notes = notes;
+        this.isVideoConsultation = isVideoConsultation;
+        this.meetingLink = meetingLink;
+        this.paymentAmount = paymentAmount;
+        this.paymentStatus = paymentStatus;
+        this.paymentMethod = paymentMethod;
+        this.paymentDate = paymentDate;
+        this.paymentReference = paymentReference;
+        this.paymentNotes = paymentNotes;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.seriesId = seriesId;
+        this.version = version;
+        this.doctor = new UserSummary(doctorId, doctorFirstName, doctorLastName, doctorEmail, doctorSpecialization);
+        this.patient = new UserSummary(patientId, patientFirstName, patientLastName, patientEmail, null);
+    }
+}
@@ -0,0 +1,32 @@
+package com.healthrecords.dto;
+
+import com.healthrecords.model.AppointmentSeries;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A recurring appointment: the first occurrence, how it repeats and when it stops
+ * (a number of occurrences or an end date/time)
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class AppointmentSeriesRequest {
+    private Long doctorId;
+    // Ignored for patients, who always book for themselves
+    private Long patientId;
+    private LocalDateTime firstAppointmentDateTime;
+    private AppointmentSeries.Frequency frequency;
+    private Integer occurrences;
+    private LocalDateTime until;
+    private String title;
+    private String description;
+    private Boolean isVideoConsultation;
+    private String meetingLink;
+    private String notes;
+}
@@ -0,0 +1,22 @@
+package com.healthrecords.dto;
+
+import com.healthrecords.model.AppointmentSeries;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * A series with the occurrences that were created or changed, in date order
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class AppointmentSeriesResponse {
+    private Long seriesId;
+    private AppointmentSeries.Frequency frequency;
+    private List<AppointmentSummary> appointments;
+}
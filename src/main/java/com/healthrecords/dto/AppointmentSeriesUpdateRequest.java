@@ -0,0 +1,25 @@
+package com.healthrecords.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Changes to one occurrence of a series and every later one. Fields left null are kept;
+ * a new date/time moves the later occurrences by the same amount.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class AppointmentSeriesUpdateRequest {
+    private LocalDateTime appointmentDateTime;
+    private String title;
+    private String description;
+    private String notes;
+    private Boolean isVideoConsultation;
+    private String meetingLink;
+}
@@ -0,0 +1,50 @@
+package com.healthrecords.dto;
+
+import com.healthrecords.model.Appointment;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Appointment row for listings, selected with a JPQL constructor expression
+ * so neither the entity nor the full doctor and patient rows are loaded.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AppointmentSummary {
+    private Long id;
+    private LocalDateTime appointmentDateTime;
+    private String title;
+    private Appointment.AppointmentStatus status;
+    private Boolean isVideoConsultation;
+    private Appointment.PaymentStatus paymentStatus;
+    private UserSummary doctor;
+    private UserSummary patient;
+
+    public AppointmentSummary(Long id, LocalDateTime appointmentDateTime, String title,
+                              Appointment.AppointmentStatus status, Boolean isVideoConsultation,
+                              Appointment.PaymentStatus paymentStatus,
+                              Long doctorId, String doctorFirstName, String doctorLastName, String doctorSpecialization,
+                              Long patientId, String patientFirstName, String patientLastName) {
+        this.id = id;
+        this.appointmentDateTime = appointmentDateTime;
+        this.title = title;
+        this.status = status;
+        this.isVideoConsultation = isVideoConsultation;
+        this.paymentStatus = paymentStatus;
+        this.doctor = UserSummary.builder()
+                .id(doctorId)
+                .firstName(doctorFirstName)
+                .lastName(doctorLastName)
+                .specialization(doctorSpecialization)
+                .build();
+        this.patient = UserSummary.builder()
+                .id(patientId)
+                .firstName(patientFirstName)
+                .lastName(patientLastName)
+                .build();
+    }
+}
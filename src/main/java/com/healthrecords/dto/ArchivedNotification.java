@@ -0,0 +1,28 @@
+package com.healthrecords.dto;
+
+import com.healthrecords.model.Notification;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A read notification moved to {@code notifications_archive}
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ArchivedNotification {
+    private Long id;
+    private String title;
+    private String message;
+    private Notification.NotificationType type;
+    private Long relatedAppointmentId;
+    private Integer digestCount;
+    private String relatedAppointmentIds;
+    private LocalDateTime createdAt;
+    private LocalDateTime archivedAt;
+}
@@ -0,0 +1,30 @@
+package com.healthrecords.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One status change in a bulk appointment request
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkAppointmentAction {
+    private Long appointmentId;
+    private Type action;
+    // Only for REJECT
+    private String reason;
+    // Only for RESCHEDULE
+    private LocalDateTime appointmentDateTime;
+
+    public enum Type {
+        CONFIRM,
+        REJECT,
+        RESCHEDULE
+    }
+}
@@ -0,0 +1,19 @@
+package com.healthrecords.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Several appointment status changes applied in one transaction
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkAppointmentRequest {
+    private List<BulkAppointmentAction> actions;
+}
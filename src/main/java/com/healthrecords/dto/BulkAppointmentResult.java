@@ -0,0 +1,26 @@
+package com.healthrecords.dto;
+
+import com.healthrecords.model.Appointment;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Outcome of one action of a bulk appointment request, in the order the actions were sent
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkAppointmentResult {
+    private Long appointmentId;
+    private BulkAppointmentAction.Type action;
+    private boolean success;
+    // Status and date/time after the action, or the current ones if it failed
+    private Appointment.AppointmentStatus status;
+    private LocalDateTime appointmentDateTime;
+    private String message;
+}
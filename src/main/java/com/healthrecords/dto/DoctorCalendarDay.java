@@ -0,0 +1,23 @@
+package com.healthrecords.dto;
+
+import com.healthrecords.model.Appointment;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Number of appointments a doctor has on one day, in total and per status
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class DoctorCalendarDay {
+    private LocalDate date;
+    private int total;
+    private Map<Appointment.AppointmentStatus, Integer> counts;
+}
@@ -0,0 +1,24 @@
+package com.healthrecords.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * A doctor's appointment counts from {@code from} (inclusive) to {@code to} (exclusive),
+ * in date order; days without appointments are left out
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class DoctorCalendarResponse {
+    private Long doctorId;
+    private LocalDate from;
+    private LocalDate to;
+    private List<DoctorCalendarDay> days;
+}
@@ -0,0 +1,27 @@
+package com.healthrecords.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Counters of the notification email channel since startup, plus its current queue depth
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class EmailChannelStats {
+    private boolean enabled;
+    private int queueDepth;
+    private int queueCapacity;
+    private int inFlight;
+    private int awaitingRetry;
+    private long enqueued;
+    private long sent;
+    private long failedAttempts;
+    private long deadLettered;
+    // Over the last stats interval
+    private double sentPerMinute;
+}
@@ -0,0 +1,19 @@
+package com.healthrecords.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Notifications of the current user to mark as read in one request
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class MarkNotificationsReadRequest {
+    private List<Long> ids;
+}
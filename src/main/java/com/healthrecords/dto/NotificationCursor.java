@@ -0,0 +1,60 @@
+package com.healthrecords.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in a notification listing ordered newest first by (createdAt, id). The since token
+ * of the feed uses the same format for a position by (updatedAt, id).
+ *
+ * Clients receive it as an opaque URL-safe token of the form
+ * base64url("n1|&lt;ISO date-time&gt;|&lt;id&gt;") and pass it back unchanged to get the next page.
+ */
+@Data
+@AllArgsConstructor
+public class NotificationCursor {
+
+    private static final String VERSION = "n1";
+
+    /**
+     * Position after every notification, used for the first page
+     */
+    public static final NotificationCursor START = new NotificationCursor(LocalDateTime.of(9999, 12, 31, 0, 0), Long.MAX_VALUE);
+
+    /**
+     * Position before every notification, the since position of an empty feed
+     */
+    public static final NotificationCursor BEGINNING = new NotificationCursor(LocalDateTime.of(1970, 1, 1, 0, 0), 0L);
+
+    private LocalDateTime createdAt;
+    private Long id;
+
+    public String encode() {
+        String raw = VERSION + "|" + createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a token produced by {@link #encode()}, or return {@link #START} when there is none.
+     */
+    public static NotificationCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return START;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|");
+            if (parts.length != 3 || !VERSION.equals(parts[0])) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new NotificationCursor(LocalDateTime.parse(parts[1]), Long.parseLong(parts[2]));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.healthrecords.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A user's notification digest window. In requests, null goes back to the default window
+ * and 0 stops merging notifications.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class NotificationDigestSettings {
+    private Integer windowMinutes;
+    // Whether the window is the user's own rather than the default
+    private boolean custom;
+}
@@ -0,0 +1,28 @@
+package com.healthrecords.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of the notification feed.
+ *
+ * Without a {@code since} token the items are newest first and {@code nextCursor} continues
+ * with older ones. With one, the items are those created or extended (digests) after it,
+ * oldest change first. Either way, {@code sinceCursor} marks the latest change seen so far;
+ * pass it as {@code since} to fetch only what changed after it.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotificationFeedPage {
+    private List<NotificationSummary> items;
+    private String nextCursor;
+    private String sinceCursor;
+    private boolean hasMore;
+    private int size;
+}
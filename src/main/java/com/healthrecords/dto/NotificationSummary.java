@@ -0,0 +1,30 @@
+package com.healthrecords.dto;
+
+import com.healthrecords.model.Notification;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A notification as listed in the feed, without its user and appointment entities
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class NotificationSummary {
+    private Long id;
+    private String title;
+    private String message;
+    private Notification.NotificationType type;
+    private Boolean isRead;
+    private Long relatedAppointmentId;
+    private Integer digestCount;
+    private String relatedAppointmentIds;
+    private LocalDateTime createdAt;
+    // Changes when a digest is extended; the since position of the feed
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,24 @@
+package com.healthrecords.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The few user columns shown next to an appointment. Fields a projection does not select stay null
+ * and are left out of the JSON.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UserSummary {
+    private Long id;
+    private String firstName;
+    private String lastName;
+    private String email;
+    private String specialization;
+}
@@ -0,0 +1,12 @@
+package com.healthrecords.exception;
+
+/**
+ * Thrown when an appointment is not in the status a transition requires,
+ * typically because a concurrent request changed it first.
+ */
+public class AppointmentStateConflictException extends RuntimeException {
+
+    public AppointmentStateConflictException(String message) {
+        super(message);
+    }
+}
@@ -1,6 +1,7 @@
 package com.healthrecords.exception;
 
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -32,6 +33,25 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(body, HttpStatus.BAD_REQUEST);
     }
     
+    @ExceptionHandler(SlotUnavailableException.class)
+    public ResponseEntity<Object> handleSlotUnavailableException(SlotUnavailableException ex, WebRequest request) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("message", ex.getMessage());
+        body.put("status", HttpStatus.CONFLICT.value());
+        
+        return new ResponseEntity<>(body, HttpStatus.CONFLICT);
+    }
+    
+    @ExceptionHandler({AppointmentStateConflictException.class, OptimisticLockingFailureException.class})
+    public ResponseEntity<Object> handleConflictException(RuntimeException ex, WebRequest request) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("message", ex instanceof OptimisticLockingFailureException ?
+                "The record was modified by another request. Please reload and try again." : ex.getMessage());
+        body.put("status", HttpStatus.CONFLICT.value());
+        
+        return new ResponseEntity<>(body, HttpStatus.CONFLICT);
+    }
+    
     @ExceptionHandler(DataIntegrityViolationException.class)
     public ResponseEntity<Object> handleDataIntegrityViolationException(DataIntegrityViolationException ex, WebRequest request) {
         Map<String, Object> body = new HashMap<>();
@@ -0,0 +1,11 @@
+package com.healthrecords.exception;
+
+/**
+ * Thrown when an appointment would overlap another booking of the same doctor.
+ */
+public class SlotUnavailableException extends RuntimeException {
+
+    public SlotUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -72,12 +72,20 @@ public class Appointment {
     @Column(name = "payment_notes", columnDefinition = "TEXT")
     private String paymentNotes;
 
+    // Set for occurrences of a recurring series
+    @Column(name = "series_id")
+    private Long seriesId;
+
     @CreatedDate
     private LocalDateTime createdAt;
 
     @LastModifiedDate
     private LocalDateTime updatedAt;
 
+    // Optimistic lock for full updates; status transitions bump it in their UPDATE statements
+    @Version
+    private Long version;
+
     public enum AppointmentStatus {
         // These values must match the database schema
         PENDING,    // Was REQUESTED
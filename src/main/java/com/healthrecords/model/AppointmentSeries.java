@@ -0,0 +1,86 @@
+package com.healthrecords.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recurrence rule of a series of appointments: a first occurrence repeated at a fixed frequency,
+ * either a number of times or until a date. The occurrences themselves are regular appointments
+ * pointing back to the series.
+ */
+@Data
+@Entity
+@Table(name = "appointment_series")
+@EntityListeners(AuditingEntityListener.class)
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AppointmentSeries {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "patient_id", nullable = false)
+    private User patient;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "doctor_id", nullable = false)
+    private User doctor;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Frequency frequency;
+
+    @Column(nullable = false)
+    private LocalDateTime firstAppointmentDateTime;
+
+    // Either a number of occurrences or an end date/time (inclusive)
+    private Integer occurrences;
+
+    @Column(name = "until_date_time")
+    private LocalDateTime until;
+
+    @CreatedDate
+    private LocalDateTime createdAt;
+
+    /**
+     * Start times of the occurrences, at most {@code limit} of them. Occurrences are computed from the
+     * first one, so monthly series on the 31st fall on the last day of shorter months without drifting.
+     */
+    public List<LocalDateTime> expand(int limit) {
+        List<LocalDateTime> starts = new ArrayList<>();
+        for (int i = 0; starts.size() < limit; i++) {
+            LocalDateTime start = frequency.occurrence(firstAppointmentDateTime, i);
+            if ((occurrences != null && i >= occurrences) || (until != null && start.isAfter(until))) {
+                break;
+            }
+            starts.add(start);
+        }
+        return starts;
+    }
+
+    public enum Frequency {
+        WEEKLY,
+        BIWEEKLY,
+        MONTHLY;
+
+        LocalDateTime occurrence(LocalDateTime first, int index) {
+            return switch (this) {
+                case WEEKLY -> first.plusWeeks(index);
+                case BIWEEKLY -> first.plusWeeks(2L * index);
+                case MONTHLY -> first.plusMonths(index);
+            };
+        }
+    }
+}
@@ -6,6 +6,8 @@ import com.fasterxml.jackson.annotation.ObjectIdGenerators;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
@@ -46,12 +48,17 @@ public class MedicalRecord {
     @Column(columnDefinition = "TEXT")
     private String notes;
 
+    // Children hash through their medicalRecord, so the sets must stay out of equals/hashCode
     @OneToMany(mappedBy = "medicalRecord", cascade = CascadeType.ALL)
     @JsonManagedReference
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
     private Set<Prescription> prescriptions = new HashSet<>();
 
     @OneToMany(mappedBy = "medicalRecord", cascade = CascadeType.ALL)
     @JsonManagedReference
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
     private Set<LabReport> labReports = new HashSet<>();
 
     @CreatedDate
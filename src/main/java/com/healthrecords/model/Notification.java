@@ -6,6 +6,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import java.time.LocalDateTime;
@@ -23,8 +24,9 @@ public class Notification {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     
+    // No foreign keys: MySQL does not allow them on the partitioned notifications table
     @ManyToOne
-    @JoinColumn(name = "user_id", nullable = false)
+    @JoinColumn(name = "user_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private User user;
     
     @Column(nullable = false, length = 100)
@@ -41,12 +43,28 @@ public class Notification {
     private Boolean isRead;
     
     @ManyToOne
-    @JoinColumn(name = "related_entity_id")
+    @JoinColumn(name = "related_entity_id", foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private Appointment relatedAppointment;
     
+    // Number of same-type notifications merged into this one, see NotificationCoalescer
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer digestCount = 1;
+    
+    // Comma-separated ids of the merged notifications' appointments, at most notifications.digest.max-ids
+    @Column(length = 2000)
+    private String relatedAppointmentIds;
+    
+    // Partitioning column, part of the primary key in the database
     @CreatedDate
+    @Column(nullable = false)
     private LocalDateTime createdAt;
     
+    // Moved when a digest is extended; the incremental feed is keyed on it
+    @LastModifiedDate
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+    
     public enum NotificationType {
         APPOINTMENT_REQUESTED,
         APPOINTMENT_CONFIRMED,
@@ -64,6 +64,12 @@ public class User implements UserDetails {
     private String address;
     private String specialization; // For doctors only
 
+    // Bumped whenever issued tokens must stop working (password, role or email change)
+    @Column(nullable = false)
+    @Builder.Default
+    @JsonIgnore
+    private Integer tokenVersion = 0;
+
     @CreatedDate
     private LocalDateTime createdAt;
 
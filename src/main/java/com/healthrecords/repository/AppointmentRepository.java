@@ -1,13 +1,20 @@
 package com.healthrecords.repository;
 
+import com.healthrecords.dto.AppointmentDetail;
+import com.healthrecords.dto.AppointmentSummary;
 import com.healthrecords.model.Appointment;
 import com.healthrecords.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface AppointmentRepository extends JpaRepository<Appointment, Long> {
@@ -39,6 +46,119 @@ public interface AppointmentRepository extends JpaRepository<Appointment, Long>
     @Query("SELECT COUNT(a) FROM Appointment a WHERE a.doctor = ?1 AND a.appointmentDateTime BETWEEN ?2 AND ?3")
     Long countAppointmentsByDoctorAndDateRange(User doctor, LocalDateTime start, LocalDateTime end);
     
+    // Schedule index queries: only the columns needed to know which slots are taken
+    @Query("SELECT a.id AS id, a.appointmentDateTime AS appointmentDateTime FROM Appointment a " +
+           "WHERE a.doctor.id = ?1 AND a.appointmentDateTime >= ?2 AND a.appointmentDateTime < ?3 AND a.status <> ?4")
+    List<BookedSlotView> findBookedSlots(Long doctorId, LocalDateTime start, LocalDateTime end, Appointment.AppointmentStatus excludedStatus);
+    
+    // Projections: only the columns each endpoint returns, without hydrating the entity graph
+    String SUMMARY_SELECT = "SELECT new com.healthrecords.dto.AppointmentSummary(a.id, a.appointmentDateTime, a.title, " +
+            "a.status, a.isVideoConsultation, a.paymentStatus, d.id, d.firstName, d.lastName, d.specialization, " +
+            "p.id, p.firstName, p.lastName) FROM Appointment a JOIN a.doctor d JOIN a.patient p ";
+    
+    String DETAIL_SELECT = "SELECT new com.healthrecords.dto.AppointmentDetail(a.id, a.appointmentDateTime, a.title, " +
+            "a.description, a.status, a.notes, a.isVideoConsultation, a.meetingLink, a.paymentAmount, a.paymentStatus, " +
+            "a.paymentMethod, a.paymentDate, a.paymentReference, a.paymentNotes, a.createdAt, a.updatedAt, a.seriesId, " +
+            "a.version, d.id, d.firstName, d.lastName, d.email, d.specialization, p.id, p.firstName, p.lastName, p.email) " +
+            "FROM Appointment a JOIN a.doctor d JOIN a.patient p ";
+    
+    String AFTER_CURSOR = "(a.appointmentDateTime > :cursorDateTime OR (a.appointmentDateTime = :cursorDateTime AND a.id > :cursorId)) ";
+    
+    String KEYSET_ORDER = "ORDER BY a.appointmentDateTime, a.id";
+    
+    @Query(DETAIL_SELECT + "WHERE a.id = ?1")
+    Optional<AppointmentDetail> findDetailById(Long id);
+    
+    @Query(DETAIL_SELECT + "WHERE a.id IN ?1")
+    List<AppointmentDetail> findDetailsByIds(Collection<Long> ids);
+    
+    // Reminder windows: appointments in a status starting within [start, end)
+    @Query(DETAIL_SELECT + "WHERE a.status = ?3 AND a.appointmentDateTime >= ?1 AND a.appointmentDateTime < ?2 " + KEYSET_ORDER)
+    List<AppointmentDetail> findDetailsStartingBetween(LocalDateTime start, LocalDateTime end, Appointment.AppointmentStatus status);
+    
+    // Occurrences of a series from a date/time onwards
+    @Query("SELECT a.id AS id, a.appointmentDateTime AS appointmentDateTime, a.status AS status FROM Appointment a " +
+           "WHERE a.seriesId = ?1 AND a.appointmentDateTime >= ?2 AND a.status IN ?3 ORDER BY a.appointmentDateTime")
+    List<SeriesSlotView> findSeriesSlotsFrom(Long seriesId, LocalDateTime from, Collection<Appointment.AppointmentStatus> statuses);
+    
+    @Query(SUMMARY_SELECT + "WHERE a.seriesId = ?1 AND a.appointmentDateTime >= ?2 " + KEYSET_ORDER)
+    List<AppointmentSummary> findSeriesSummariesFrom(Long seriesId, LocalDateTime from);
+    
+    // The first rows in keyset order; pageable only bounds the result
+    @Query(DETAIL_SELECT + KEYSET_ORDER)
+    List<AppointmentDetail> findAllDetails(Pageable pageable);
+    
+    @Query(DETAIL_SELECT + "WHERE d.id = ?1 " + KEYSET_ORDER)
+    List<AppointmentDetail> findDetailsByDoctor(Long doctorId);
+    
+    @Query(DETAIL_SELECT + "WHERE p.id = ?1 " + KEYSET_ORDER)
+    List<AppointmentDetail> findDetailsByPatient(Long patientId);
+    
+    @Query(DETAIL_SELECT + "WHERE a.appointmentDateTime BETWEEN ?1 AND ?2 " + KEYSET_ORDER)
+    List<AppointmentDetail> findDetailsByDateRange(LocalDateTime start, LocalDateTime end);
+    
+    @Query(DETAIL_SELECT + "WHERE d.id = ?1 AND a.appointmentDateTime BETWEEN ?2 AND ?3 " + KEYSET_ORDER)
+    List<AppointmentDetail> findDetailsByDoctorAndDateRange(Long doctorId, LocalDateTime start, LocalDateTime end);
+    
+    @Query(DETAIL_SELECT + "WHERE p.id = ?1 AND a.appointmentDateTime BETWEEN ?2 AND ?3 " + KEYSET_ORDER)
+    List<AppointmentDetail> findDetailsByPatientAndDateRange(Long patientId, LocalDateTime start, LocalDateTime end);
+    
+    // Keyset pages ordered by (appointmentDateTime, id): rows strictly after the cursor, limited by the Pageable
+    @Query(SUMMARY_SELECT + "WHERE " + AFTER_CURSOR + KEYSET_ORDER)
+    List<AppointmentSummary> findPageAfter(@Param("cursorDateTime") LocalDateTime cursorDateTime,
+                                           @Param("cursorId") Long cursorId, Pageable pageable);
+    
+    @Query(SUMMARY_SELECT + "WHERE d.id = :doctorId AND " + AFTER_CURSOR + KEYSET_ORDER)
+    List<AppointmentSummary> findPageByDoctorAfter(@Param("doctorId") Long doctorId,
+                                                   @Param("cursorDateTime") LocalDateTime cursorDateTime,
+                                                   @Param("cursorId") Long cursorId, Pageable pageable);
+    
+    @Query(SUMMARY_SELECT + "WHERE p.id = :patientId AND " + AFTER_CURSOR + KEYSET_ORDER)
+    List<AppointmentSummary> findPageByPatientAfter(@Param("patientId") Long patientId,
+                                                    @Param("cursorDateTime") LocalDateTime cursorDateTime,
+                                                    @Param("cursorId") Long cursorId, Pageable pageable);
+    
+    @Query(SUMMARY_SELECT + "WHERE a.appointmentDateTime BETWEEN :start AND :end AND " + AFTER_CURSOR + KEYSET_ORDER)
+    List<AppointmentSummary> findPageByDateRangeAfter(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end,
+                                                      @Param("cursorDateTime") LocalDateTime cursorDateTime,
+                                                      @Param("cursorId") Long cursorId, Pageable pageable);
+    
+    @Query(SUMMARY_SELECT + "WHERE d.id = :doctorId AND a.appointmentDateTime BETWEEN :start AND :end AND " + AFTER_CURSOR + KEYSET_ORDER)
+    List<AppointmentSummary> findPageByDoctorAndDateRangeAfter(@Param("doctorId") Long doctorId,
+                                                               @Param("start") LocalDateTime start, @Param("end") LocalDateTime end,
+                                                               @Param("cursorDateTime") LocalDateTime cursorDateTime,
+                                                               @Param("cursorId") Long cursorId, Pageable pageable);
+    
+    @Query(SUMMARY_SELECT + "WHERE p.id = :patientId AND a.appointmentDateTime BETWEEN :start AND :end AND " + AFTER_CURSOR + KEYSET_ORDER)
+    List<AppointmentSummary> findPageByPatientAndDateRangeAfter(@Param("patientId") Long patientId,
+                                                                @Param("start") LocalDateTime start, @Param("end") LocalDateTime end,
+                                                                @Param("cursorDateTime") LocalDateTime cursorDateTime,
+                                                                @Param("cursorId") Long cursorId, Pageable pageable);
+    
+    // Conditional status transitions: a single UPDATE that only applies while the appointment is still in
+    // one of the expected statuses and, when given, belongs to the doctor or patient. Returns the affected rows.
+    @Modifying
+    @Query("UPDATE Appointment a SET a.status = :newStatus, a.updatedAt = :now, a.version = a.version + 1 " +
+           "WHERE a.id = :id AND a.status IN :expectedStatuses " +
+           "AND (:doctorId IS NULL OR a.doctor.id = :doctorId) AND (:patientId IS NULL OR a.patient.id = :patientId)")
+    int transitionStatus(@Param("id") Long id,
+                         @Param("expectedStatuses") Collection<Appointment.AppointmentStatus> expectedStatuses,
+                         @Param("newStatus") Appointment.AppointmentStatus newStatus,
+                         @Param("doctorId") Long doctorId, @Param("patientId") Long patientId,
+                         @Param("now") LocalDateTime now);
+    
+    @Modifying
+    @Query("UPDATE Appointment a SET a.status = :newStatus, " +
+           "a.notes = CASE WHEN a.notes IS NULL THEN :note ELSE CONCAT(a.notes, :separator, :note) END, " +
+           "a.updatedAt = :now, a.version = a.version + 1 " +
+           "WHERE a.id = :id AND a.status = :expectedStatus " +
+           "AND (:doctorId IS NULL OR a.doctor.id = :doctorId)")
+    int transitionStatusWithNote(@Param("id") Long id,
+                                 @Param("expectedStatus") Appointment.AppointmentStatus expectedStatus,
+                                 @Param("newStatus") Appointment.AppointmentStatus newStatus,
+                                 @Param("doctorId") Long doctorId, @Param("note") String note,
+                                 @Param("separator") String separator, @Param("now") LocalDateTime now);
+    
     // Override the default findAll to eagerly load relationships
     @Query("SELECT a FROM Appointment a JOIN FETCH a.patient JOIN FETCH a.doctor")
     List<Appointment> findAll();
@@ -50,4 +170,13 @@ public interface AppointmentRepository extends JpaRepository<Appointment, Long>
     // Payment-related queries
     @Query("SELECT a FROM Appointment a JOIN FETCH a.patient JOIN FETCH a.doctor WHERE a.patient.id = ?1 AND a.paymentStatus = ?2")
     List<Appointment> findByPatientIdAndPaymentStatus(Long patientId, Appointment.PaymentStatus paymentStatus);
+    
+    interface BookedSlotView {
+        Long getId();
+        LocalDateTime getAppointmentDateTime();
+    }
+    
+    interface SeriesSlotView extends BookedSlotView {
+        Appointment.AppointmentStatus getStatus();
+    }
 }
@@ -0,0 +1,18 @@
+package com.healthrecords.repository;
+
+import com.healthrecords.model.AppointmentSeries;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface AppointmentSeriesRepository extends JpaRepository<AppointmentSeries, Long> {
+
+    // Moves the series' start when its first appointment was moved; no-op when it starts earlier
+    @Modifying
+    @Query("UPDATE AppointmentSeries s SET s.firstAppointmentDateTime = ?3 WHERE s.id = ?1 AND s.firstAppointmentDateTime = ?2")
+    int moveFirstAppointment(Long id, LocalDateTime from, LocalDateTime to);
+}
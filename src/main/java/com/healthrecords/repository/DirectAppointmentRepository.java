@@ -1,68 +1,159 @@
 package com.healthrecords.repository;
 
+import com.healthrecords.dto.AppointmentDetail;
 import com.healthrecords.model.Appointment;
 import com.healthrecords.model.User;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.sql.Types;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
- * Repository for direct appointment creation using JDBC
+ * Repository for direct appointment reads and creation using JDBC
  * This bypasses JPA and Hibernate to avoid any potential enum conversion issues
  */
 @Repository
 public class DirectAppointmentRepository {
 
+    private static final String DOCTOR_APPOINTMENTS_SQL =
+            "SELECT a.id, a.appointment_date_time, a.title, a.description, a.status, a.notes, " +
+            "a.is_video_consultation, a.meeting_link, a.payment_amount, a.payment_status, a.payment_method, " +
+            "a.payment_date, a.payment_reference, a.payment_notes, a.created_at, a.updated_at, a.series_id, " +
+            "a.version, d.id AS doctor_id, d.first_name AS doctor_first_name, d.last_name AS doctor_last_name, " +
+            "d.email AS doctor_email, d.specialization AS doctor_specialization, " +
+            "p.id AS patient_id, p.first_name AS patient_first_name, p.last_name AS patient_last_name, " +
+            "p.email AS patient_email " +
+            "FROM appointments a " +
+            "JOIN users d ON d.id = a.doctor_id " +
+            "JOIN users p ON p.id = a.patient_id " +
+            "WHERE a.doctor_id = ? " +
+            "ORDER BY a.appointment_date_time, a.id";
+
+    private static final String INSERT_APPOINTMENT_SQL =
+            "INSERT INTO appointments (title, description, appointment_date_time, doctor_id, patient_id, " +
+            "is_video_consultation, meeting_link, notes, status, payment_status, created_at, updated_at, series_id, version) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0)";
+
+    // Conditional transition: only applies while the status is still one of the two expected ones.
+    // A null date/time keeps the current one; CONCAT_WS skips a null note and NULLIF keeps empty notes null.
+    private static final String TRANSITION_STATUS_SQL =
+            "UPDATE appointments SET status = ?, " +
+            "appointment_date_time = COALESCE(?, appointment_date_time), " +
+            "notes = NULLIF(CONCAT_WS(?, notes, ?), ''), " +
+            "updated_at = ?, version = version + 1 " +
+            "WHERE id = ? AND status IN (?, ?)";
+
+    // "This and following": null values keep the current column, the date/time moves by a number of minutes
+    private static final String UPDATE_SERIES_FROM_SQL =
+            "UPDATE appointments SET title = COALESCE(?, title), description = COALESCE(?, description), " +
+            "notes = COALESCE(?, notes), is_video_consultation = COALESCE(?, is_video_consultation), " +
+            "meeting_link = COALESCE(?, meeting_link), " +
+            "appointment_date_time = TIMESTAMPADD(MINUTE, ?, appointment_date_time), " +
+            "updated_at = ?, version = version + 1 " +
+            "WHERE series_id = ? AND appointment_date_time >= ? AND status IN (?, ?)";
+
+    // Bookings of a doctor are serialized on the doctor's row until the transaction ends
+    private static final String LOCK_DOCTOR_SQL = "SELECT id FROM users WHERE id = ? FOR UPDATE";
+
+    // A locking read returns the latest committed rows, not the transaction's snapshot
+    private static final String BOOKED_SLOTS_FOR_SHARE_SQL =
+            "SELECT id, appointment_date_time FROM appointments " +
+            "WHERE doctor_id = ? AND appointment_date_time > ? AND appointment_date_time < ? AND status <> ? " +
+            "FOR SHARE";
+
+    private static final String NOTES_SEPARATOR = "\n\n";
+
+    private static final RowMapper<AppointmentDetail> APPOINTMENT_DETAIL_MAPPER = (rs, rowNum) -> new AppointmentDetail(
+            rs.getLong("id"),
+            toLocalDateTime(rs.getTimestamp("appointment_date_time")),
+            rs.getString("title"),
+            rs.getString("description"),
+            toEnum(Appointment.AppointmentStatus.class, rs.getString("status")),
+            rs.getString("notes"),
+            rs.getObject("is_video_consultation", Boolean.class),
+            rs.getString("meeting_link"),
+            rs.getBigDecimal("payment_amount"),
+            toEnum(Appointment.PaymentStatus.class, rs.getString("payment_status")),
+            rs.getString("payment_method"),
+            toLocalDateTime(rs.getTimestamp("payment_date")),
+            rs.getString("payment_reference"),
+            rs.getString("payment_notes"),
+            toLocalDateTime(rs.getTimestamp("created_at")),
+            toLocalDateTime(rs.getTimestamp("updated_at")),
+            rs.getObject("series_id", Long.class),
+            rs.getObject("version", Long.class),
+            rs.getLong("doctor_id"),
+            rs.getString("doctor_first_name"),
+            rs.getString("doctor_last_name"),
+            rs.getString("doctor_email"),
+            rs.getString("doctor_specialization"),
+            rs.getLong("patient_id"),
+            rs.getString("patient_first_name"),
+            rs.getString("patient_last_name"),
+            rs.getString("patient_email"));
+
     private final JdbcTemplate jdbcTemplate;
-    private final AppointmentRepository appointmentRepository;
+
+    // Rows per round trip for large reads; Connector/J only applies it with useCursorFetch=true
+    @Value("${appointments.jdbc.fetch-size:500}")
+    private int fetchSize = 500;
 
     @Autowired
-    public DirectAppointmentRepository(JdbcTemplate jdbcTemplate, AppointmentRepository appointmentRepository) {
+    public DirectAppointmentRepository(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
-        this.appointmentRepository = appointmentRepository;
     }
 
     /**
      * Get all appointments for a specific doctor using direct SQL
-     * This bypasses JPA and Hibernate to avoid any potential issues
+     * One query joins the doctor and patient columns and maps every row in a single pass
      */
-    public List<Appointment> getAppointmentsForDoctor(Long doctorId) {
-        String sql = "SELECT * FROM appointments WHERE doctor_id = ?";
-
+    public List<AppointmentDetail> getAppointmentsForDoctor(Long doctorId) {
         System.out.println("DirectAppointmentRepository: Getting appointments for doctor ID: " + doctorId);
 
-        List<Appointment> appointments = jdbcTemplate.query(sql, new Object[]{doctorId}, (rs, rowNum) -> {
-            // Map the result set to an Appointment object
-            Long id = rs.getLong("id");
-            return appointmentRepository.findById(id).orElse(null);
-        });
+        List<AppointmentDetail> appointments = jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(DOCTOR_APPOINTMENTS_SQL,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            statement.setLong(1, doctorId);
+            return statement;
+        }, APPOINTMENT_DETAIL_MAPPER);
 
         System.out.println("DirectAppointmentRepository: Found " + appointments.size() + " appointments for doctor ID: " + doctorId);
 
         return appointments;
     }
 
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+
+    private static <E extends Enum<E>> E toEnum(Class<E> type, String value) {
+        return value != null ? Enum.valueOf(type, value) : null;
+    }
+
     /**
-     * Save an appointment directly to the database using JDBC
+     * Save a new appointment with PENDING status directly to the database using JDBC
      * This bypasses JPA and Hibernate to avoid any potential enum conversion issues
      */
     public Appointment saveAppointmentDirectly(Appointment appointment) {
-        // First save the appointment using JPA to get an ID
-        Appointment savedAppointment = appointmentRepository.save(appointment);
-
-        // Then update the status directly using JDBC to ensure the correct enum value is used
-        String sql = "UPDATE appointments SET status = ? WHERE id = ?";
-        jdbcTemplate.update(sql, "PENDING", savedAppointment.getId());
-
-        // Reload the appointment to get the updated status
-        return appointmentRepository.findById(savedAppointment.getId()).orElse(savedAppointment);
+        appointment.setStatus(Appointment.AppointmentStatus.PENDING);
+        return insertAppointment(appointment);
     }
 
     /**
@@ -73,37 +164,214 @@ public class DirectAppointmentRepository {
             String title,
             String description,
             LocalDateTime appointmentDateTime,
-            Long doctorId,
-            Long patientId,
+            User doctor,
+            User patient,
             Boolean isVideoConsultation,
             String meetingLink,
             String notes) {
 
         LocalDateTime now = LocalDateTime.now();
+        return insertAppointment(Appointment.builder()
+                .title(title)
+                .description(description)
+                .appointmentDateTime(appointmentDateTime)
+                .doctor(doctor)
+                .patient(patient)
+                .isVideoConsultation(isVideoConsultation)
+                .meetingLink(meetingLink)
+                .notes(notes)
+                .status(Appointment.AppointmentStatus.PENDING)
+                .createdAt(now)
+                .updatedAt(now)
+                .build());
+    }
+
+    /**
+     * Insert a new appointment in a single round trip and return it populated with its generated id.
+     * The doctor and patient must already be loaded; the returned appointment is not managed by JPA.
+     */
+    public Appointment insertAppointment(Appointment appointment) {
+        applyInsertDefaults(appointment);
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(INSERT_APPOINTMENT_SQL, new String[]{"id"});
+            bindInsert(statement, appointment);
+            return statement;
+        }, keyHolder);
+
+        appointment.setId(keyHolder.getKey().longValue());
+        // Without a version JPA would treat the returned appointment as unsaved when other entities reference it
+        appointment.setVersion(0L);
+        return appointment;
+    }
+
+    /**
+     * Insert several appointments as one JDBC batch and populate them with their generated ids, in order.
+     * Same preconditions as {@link #insertAppointment}.
+     */
+    public List<Appointment> insertAppointments(List<Appointment> appointments) {
+        if (appointments.isEmpty()) {
+            return appointments;
+        }
+        appointments.forEach(DirectAppointmentRepository::applyInsertDefaults);
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(INSERT_APPOINTMENT_SQL, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement statement, int i) throws SQLException {
+                        bindInsert(statement, appointments.get(i));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return appointments.size();
+                    }
+                }, keyHolder);
+
+        // The key column is named differently by each driver, so take the single value of every row
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < appointments.size(); i++) {
+            appointments.get(i).setId(((Number) keys.get(i).values().iterator().next()).longValue());
+            appointments.get(i).setVersion(0L);
+        }
+        return appointments;
+    }
+
+    private static void applyInsertDefaults(Appointment appointment) {
+        LocalDateTime now = LocalDateTime.now();
+        if (appointment.getCreatedAt() == null) {
+            appointment.setCreatedAt(now);
+        }
+        if (appointment.getUpdatedAt() == null) {
+            appointment.setUpdatedAt(now);
+        }
+        if (appointment.getIsVideoConsultation() == null) {
+            appointment.setIsVideoConsultation(false);
+        }
+        if (appointment.getPaymentStatus() == null) {
+            // Same as the column default
+            appointment.setPaymentStatus(Appointment.PaymentStatus.UNPAID);
+        }
+    }
+
+    private static void bindInsert(PreparedStatement statement, Appointment appointment) throws SQLException {
+        statement.setString(1, appointment.getTitle());
+        statement.setString(2, appointment.getDescription());
+        statement.setTimestamp(3, Timestamp.valueOf(appointment.getAppointmentDateTime()));
+        statement.setLong(4, appointment.getDoctor().getId());
+        statement.setLong(5, appointment.getPatient().getId());
+        statement.setBoolean(6, appointment.getIsVideoConsultation());
+        statement.setString(7, appointment.getMeetingLink());
+        statement.setString(8, appointment.getNotes());
+        // Use the string values directly to avoid enum conversion issues
+        statement.setString(9, appointment.getStatus().name());
+        statement.setString(10, appointment.getPaymentStatus().name());
+        statement.setTimestamp(11, Timestamp.valueOf(appointment.getCreatedAt()));
+        statement.setTimestamp(12, Timestamp.valueOf(appointment.getUpdatedAt()));
+        if (appointment.getSeriesId() != null) {
+            statement.setLong(13, appointment.getSeriesId());
+        } else {
+            statement.setNull(13, Types.BIGINT);
+        }
+    }
+
+    /**
+     * Lock the doctor's row until the surrounding transaction ends, so bookings of the same doctor
+     * made by concurrent transactions, on any instance, check and insert one after the other.
+     * Outside of a transaction the lock is released as soon as the statement completes.
+     */
+    public void lockDoctorSchedule(Long doctorId) {
+        jdbcTemplate.queryForList(LOCK_DOCTOR_SQL, Long.class, doctorId);
+    }
+
+    /**
+     * Slots of the doctor's appointments that are not cancelled and start strictly between {@code after}
+     * and {@code before}, read with a shared lock so rows committed since the transaction began are seen.
+     * Meant to be called after {@link #lockDoctorSchedule}.
+     */
+    public List<BookedSlot> findBookedSlotsForShare(Long doctorId, LocalDateTime after, LocalDateTime before) {
+        return jdbcTemplate.query(BOOKED_SLOTS_FOR_SHARE_SQL, (rs, rowNum) -> new BookedSlot(
+                        rs.getLong("id"), toLocalDateTime(rs.getTimestamp("appointment_date_time"))),
+                doctorId, Timestamp.valueOf(after), Timestamp.valueOf(before), Appointment.AppointmentStatus.CANCELLED.name());
+    }
 
-        // Insert the appointment directly using JDBC
-        String sql = "INSERT INTO appointments (title, description, appointment_date_time, doctor_id, patient_id, " +
-                "is_video_consultation, meeting_link, notes, status, created_at, updated_at) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-
-        jdbcTemplate.update(sql,
-                title,
-                description,
-                Timestamp.valueOf(appointmentDateTime),
-                doctorId,
-                patientId,
-                isVideoConsultation,
-                meetingLink,
-                notes,
-                "PENDING", // Use the string value directly to avoid enum conversion issues
-                Timestamp.valueOf(now),
-                Timestamp.valueOf(now));
-
-        // Get the last inserted ID
-        Long id = jdbcTemplate.queryForObject("SELECT LAST_INSERT_ID()", Long.class);
-
-        // Return the appointment
-        return appointmentRepository.findById(id).orElseThrow(() ->
-                new RuntimeException("Failed to retrieve newly created appointment with ID: " + id));
+    /**
+     * Update the pending and approved occurrences of a series starting at or after {@code from} in one statement.
+     * Null fields are left unchanged; every occurrence moves by {@code shiftMinutes}. Returns the affected rows.
+     */
+    public int updateSeriesFrom(Long seriesId, LocalDateTime from, String title, String description, String notes,
+                                Boolean isVideoConsultation, String meetingLink, long shiftMinutes) {
+        return jdbcTemplate.update(UPDATE_SERIES_FROM_SQL, statement -> {
+            statement.setString(1, title);
+            statement.setString(2, description);
+            statement.setString(3, notes);
+            if (isVideoConsultation != null) {
+                statement.setBoolean(4, isVideoConsultation);
+            } else {
+                statement.setNull(4, Types.BOOLEAN);
+            }
+            statement.setString(5, meetingLink);
+            statement.setLong(6, shiftMinutes);
+            statement.setTimestamp(7, Timestamp.valueOf(LocalDateTime.now()));
+            statement.setLong(8, seriesId);
+            statement.setTimestamp(9, Timestamp.valueOf(from));
+            statement.setString(10, Appointment.AppointmentStatus.PENDING.name());
+            statement.setString(11, Appointment.AppointmentStatus.APPROVED.name());
+        });
+    }
+
+    /**
+     * Apply conditional status transitions as one JDBC batch.
+     * Returns the affected rows per transition, in order: 0 means the appointment was no longer
+     * in an expected status; {@link java.sql.Statement#SUCCESS_NO_INFO} means the driver did not report a count.
+     */
+    public int[] batchTransitionStatus(List<StatusTransition> transitions, LocalDateTime now) {
+        if (transitions.isEmpty()) {
+            return new int[0];
+        }
+
+        int[][] counts = jdbcTemplate.batchUpdate(TRANSITION_STATUS_SQL, transitions, transitions.size(), (statement, transition) -> {
+            List<Appointment.AppointmentStatus> expected = List.copyOf(transition.getExpectedStatuses());
+            statement.setString(1, transition.getNewStatus().name());
+            if (transition.getAppointmentDateTime() != null) {
+                statement.setTimestamp(2, Timestamp.valueOf(transition.getAppointmentDateTime()));
+            } else {
+                statement.setNull(2, Types.TIMESTAMP);
+            }
+            statement.setString(3, NOTES_SEPARATOR);
+            statement.setString(4, transition.getNote());
+            statement.setTimestamp(5, Timestamp.valueOf(now));
+            statement.setLong(6, transition.getAppointmentId());
+            // Two placeholders; a single expected status is bound twice
+            statement.setString(7, expected.get(0).name());
+            statement.setString(8, expected.get(expected.size() - 1).name());
+        });
+        return counts[0];
+    }
+
+    /**
+     * A status change for {@link #batchTransitionStatus}, optionally moving the appointment and appending a note
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class StatusTransition {
+        private final Long appointmentId;
+        // One or two statuses
+        private final Collection<Appointment.AppointmentStatus> expectedStatuses;
+        private final Appointment.AppointmentStatus newStatus;
+        private final LocalDateTime appointmentDateTime;
+        private final String note;
+    }
+
+    /**
+     * The slot held by an appointment, as returned by {@link #findBookedSlotsForShare}
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class BookedSlot {
+        private final Long id;
+        private final LocalDateTime appointmentDateTime;
     }
 }
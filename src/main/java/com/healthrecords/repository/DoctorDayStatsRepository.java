@@ -0,0 +1,120 @@
+package com.healthrecords.repository;
+
+import com.healthrecords.model.Appointment;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Appointment counts per doctor, day and status in {@code doctor_day_stats}
+ * Reads and increments go by the (doctor_id, stat_date, status) primary key
+ */
+@Repository
+public class DoctorDayStatsRepository {
+
+    private static final String INCREMENT_SQL =
+            "INSERT INTO doctor_day_stats (doctor_id, stat_date, status, appointment_count) VALUES (?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE appointment_count = appointment_count + ?";
+
+    private static final String FIND_SQL =
+            "SELECT stat_date, status, appointment_count FROM doctor_day_stats " +
+            "WHERE doctor_id = ? AND stat_date >= ? AND stat_date < ? AND appointment_count > 0 " +
+            "ORDER BY stat_date, status";
+
+    private static final String DELETE_RANGE_SQL =
+            "DELETE FROM doctor_day_stats WHERE stat_date >= ? AND stat_date < ?";
+
+    private static final String REBUILD_RANGE_SQL =
+            "INSERT INTO doctor_day_stats (doctor_id, stat_date, status, appointment_count) " +
+            "SELECT doctor_id, CAST(appointment_date_time AS DATE), status, COUNT(*) FROM appointments " +
+            "WHERE appointment_date_time >= ? AND appointment_date_time < ? AND doctor_id IS NOT NULL AND status IS NOT NULL " +
+            "GROUP BY doctor_id, CAST(appointment_date_time AS DATE), status";
+
+    // Same key order in every transaction, so concurrent batches cannot deadlock on each other's rows
+    private static final Comparator<Change> KEY_ORDER = Comparator.comparing(Change::getDoctorId)
+            .thenComparing(Change::getDate)
+            .thenComparing(change -> change.getStatus().name());
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public DoctorDayStatsRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Add each change to its counter, creating missing counters, as one batch
+     */
+    public void applyChanges(List<Change> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        List<Change> ordered = new ArrayList<>(changes);
+        ordered.sort(KEY_ORDER);
+        jdbcTemplate.batchUpdate(INCREMENT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Change change = ordered.get(i);
+                ps.setLong(1, change.getDoctorId());
+                ps.setDate(2, Date.valueOf(change.getDate()));
+                ps.setString(3, change.getStatus().name());
+                ps.setInt(4, change.getDelta());
+                ps.setInt(5, change.getDelta());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return ordered.size();
+            }
+        });
+    }
+
+    /**
+     * Non-zero counters of a doctor from {@code from} (inclusive) to {@code to} (exclusive), by day
+     */
+    public List<DayCount> findByDoctor(Long doctorId, LocalDate from, LocalDate to) {
+        return jdbcTemplate.query(FIND_SQL, (rs, rowNum) -> new DayCount(
+                        rs.getDate("stat_date").toLocalDate(),
+                        Appointment.AppointmentStatus.valueOf(rs.getString("status")),
+                        rs.getInt("appointment_count")),
+                doctorId, Date.valueOf(from), Date.valueOf(to));
+    }
+
+    /**
+     * Recount every doctor's days from {@code from} (inclusive) to {@code to} (exclusive) from the appointments.
+     * Both statements have to run in one transaction.
+     */
+    public int rebuild(LocalDate from, LocalDate to) {
+        jdbcTemplate.update(DELETE_RANGE_SQL, Date.valueOf(from), Date.valueOf(to));
+        return jdbcTemplate.update(REBUILD_RANGE_SQL,
+                Timestamp.valueOf(from.atStartOfDay()), Timestamp.valueOf(to.atStartOfDay()));
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Change {
+        private final Long doctorId;
+        private final LocalDate date;
+        private final Appointment.AppointmentStatus status;
+        private final int delta;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class DayCount {
+        private final LocalDate date;
+        private final Appointment.AppointmentStatus status;
+        private final int count;
+    }
+}
@@ -0,0 +1,89 @@
+package com.healthrecords.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Notification emails given up on, in {@code email_dead_letters}
+ */
+@Repository
+public class EmailDeadLetterRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO email_dead_letters (user_id, recipient, subject, body, attempts, last_error, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public EmailDeadLetterRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Insert all dead letters as one batch
+     */
+    public void insertAll(List<DeadLetter> deadLetters, LocalDateTime now) {
+        if (deadLetters.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> rows = new ArrayList<>();
+        for (DeadLetter deadLetter : deadLetters) {
+            String error = deadLetter.getLastError();
+            rows.add(new Object[]{deadLetter.getUserId(), deadLetter.getRecipient(), deadLetter.getSubject(),
+                    deadLetter.getBody(), deadLetter.getAttempts(),
+                    error != null && error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error,
+                    Timestamp.valueOf(now)});
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+    }
+
+    public static class DeadLetter {
+        private final Long userId;
+        private final String recipient;
+        private final String subject;
+        private final String body;
+        private final int attempts;
+        private final String lastError;
+
+        public DeadLetter(Long userId, String recipient, String subject, String body, int attempts, String lastError) {
+            this.userId = userId;
+            this.recipient = recipient;
+            this.subject = subject;
+            this.body = body;
+            this.attempts = attempts;
+            this.lastError = lastError;
+        }
+
+        public Long getUserId() {
+            return userId;
+        }
+
+        public String getRecipient() {
+            return recipient;
+        }
+
+        public String getSubject() {
+            return subject;
+        }
+
+        public String getBody() {
+            return body;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+
+        public String getLastError() {
+            return lastError;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.healthrecords.repository;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Stored responses of requests made with an Idempotency-Key, unique per scope (the caller) and key
+ */
+@Repository
+public class IdempotencyKeyRepository {
+
+    public static final String IN_PROGRESS = "IN_PROGRESS";
+    public static final String COMPLETED = "COMPLETED";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO idempotency_keys (scope, idempotency_key, request_fingerprint, state, created_at, expires_at) " +
+            "VALUES (?, ?, ?, '" + IN_PROGRESS + "', ?, ?)";
+
+    // Reuse a key whose request was abandoned mid-flight or whose stored response has expired
+    private static final String TAKE_OVER_SQL =
+            "UPDATE idempotency_keys SET request_fingerprint = ?, state = '" + IN_PROGRESS + "', status_code = NULL, " +
+            "content_type = NULL, response_headers = NULL, response_body = NULL, created_at = ?, expires_at = ? " +
+            "WHERE scope = ? AND idempotency_key = ? " +
+            "AND ((state = '" + IN_PROGRESS + "' AND created_at < ?) OR expires_at < ?)";
+
+    private static final String FIND_SQL =
+            "SELECT state, request_fingerprint, status_code, content_type, response_headers, response_body FROM idempotency_keys " +
+            "WHERE scope = ? AND idempotency_key = ? AND expires_at >= ?";
+
+    private static final String COMPLETE_SQL =
+            "UPDATE idempotency_keys SET state = '" + COMPLETED + "', status_code = ?, content_type = ?, response_headers = ?, " +
+            "response_body = ? " +
+            "WHERE scope = ? AND idempotency_key = ?";
+
+    private static final String RELEASE_SQL =
+            "DELETE FROM idempotency_keys WHERE scope = ? AND idempotency_key = ? AND state = '" + IN_PROGRESS + "'";
+
+    private static final String PURGE_SQL = "DELETE FROM idempotency_keys WHERE expires_at < ?";
+
+    private static final RowMapper<StoredResponse> STORED_RESPONSE_MAPPER = (rs, rowNum) -> new StoredResponse(
+            rs.getString("state"),
+            rs.getString("request_fingerprint"),
+            rs.getInt("status_code"),
+            rs.getString("content_type"),
+            decodeHeaders(rs.getString("response_headers")),
+            rs.getBytes("response_body"));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public IdempotencyKeyRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Record that a request with this key is being processed. Returns false if the key is already
+     * taken by a completed request or one still in progress since {@code staleBefore} or later.
+     * Must not run inside a transaction, a failed insert is expected when the key exists.
+     */
+    public boolean start(String scope, String key, String fingerprint, LocalDateTime now,
+                         LocalDateTime expiresAt, LocalDateTime staleBefore) {
+        try {
+            return jdbcTemplate.update(INSERT_SQL, scope, key, fingerprint, Timestamp.valueOf(now), Timestamp.valueOf(expiresAt)) > 0;
+        } catch (DuplicateKeyException e) {
+            return jdbcTemplate.update(TAKE_OVER_SQL, fingerprint, Timestamp.valueOf(now), Timestamp.valueOf(expiresAt),
+                    scope, key, Timestamp.valueOf(staleBefore), Timestamp.valueOf(now)) > 0;
+        }
+    }
+
+    public Optional<StoredResponse> find(String scope, String key, LocalDateTime now) {
+        List<StoredResponse> found = jdbcTemplate.query(FIND_SQL, STORED_RESPONSE_MAPPER, scope, key, Timestamp.valueOf(now));
+        return found.stream().findFirst();
+    }
+
+    public void complete(String scope, String key, StoredResponse response) {
+        jdbcTemplate.update(COMPLETE_SQL, response.getStatusCode(), response.getContentType(),
+                encodeHeaders(response.getHeaders()), response.getBody(), scope, key);
+    }
+
+    /**
+     * Forget a request that did not complete, so the key can be retried
+     */
+    public void release(String scope, String key) {
+        jdbcTemplate.update(RELEASE_SQL, scope, key);
+    }
+
+    public int purgeExpired(LocalDateTime now) {
+        return jdbcTemplate.update(PURGE_SQL, Timestamp.valueOf(now));
+    }
+
+    // One "Name: value" line per header value; header values cannot contain line breaks
+    private static String encodeHeaders(HttpHeaders headers) {
+        if (headers == null || headers.isEmpty()) {
+            return null;
+        }
+        StringBuilder encoded = new StringBuilder();
+        headers.forEach((name, values) -> values.forEach(value ->
+                encoded.append(name).append(": ").append(value).append('\n')));
+        return encoded.toString();
+    }
+
+    private static HttpHeaders decodeHeaders(String encoded) {
+        HttpHeaders headers = new HttpHeaders();
+        if (encoded != null) {
+            for (String line : encoded.split("\n")) {
+                int colon = line.indexOf(": ");
+                if (colon > 0) {
+                    headers.add(line.substring(0, colon), line.substring(colon + 2));
+                }
+            }
+        }
+        return headers;
+    }
+
+    /**
+     * The response recorded for a key, or only its state while the request is in progress
+     */
+    public static class StoredResponse {
+        private final String state;
+        private final String fingerprint;
+        private final int statusCode;
+        private final String contentType;
+        private final HttpHeaders headers;
+        private final byte[] body;
+
+        public StoredResponse(String state, String fingerprint, int statusCode, String contentType, HttpHeaders headers,
+                              byte[] body) {
+            this.state = state;
+            this.fingerprint = fingerprint;
+            this.statusCode = statusCode;
+            this.contentType = contentType;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        public boolean isCompleted() {
+            return COMPLETED.equals(state);
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+    }
+}
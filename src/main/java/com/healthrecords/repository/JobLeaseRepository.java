@@ -0,0 +1,69 @@
+package com.healthrecords.repository;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Leases on the daily runs of scheduled jobs, so that only one replica runs each job per day
+ * Every statement goes by the (job_name, run_date) primary key
+ */
+@Repository
+public class JobLeaseRepository {
+
+    // Renew our own lease or take over an expired one, as long as the run is not done
+    private static final String CLAIM_SQL =
+            "UPDATE job_leases SET owner = ?, lease_until = ? " +
+            "WHERE job_name = ? AND run_date = ? AND completed_at IS NULL AND (owner = ? OR lease_until < ?)";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO job_leases (job_name, run_date, owner, lease_until) VALUES (?, ?, ?, ?)";
+
+    private static final String COMPLETE_SQL =
+            "UPDATE job_leases SET completed_at = ? WHERE job_name = ? AND run_date = ? AND owner = ?";
+
+    private static final String PURGE_SQL =
+            "DELETE FROM job_leases WHERE job_name = ? AND run_date < ? AND completed_at IS NOT NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public JobLeaseRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Claim or renew the lease on a job's run until the given time. Returns false if another
+     * replica holds a live lease or the run has already been completed.
+     * Must not run inside a transaction, a failed insert is expected when the row exists.
+     */
+    public boolean claim(String job, LocalDate runDate, String owner, LocalDateTime leaseUntil, LocalDateTime now) {
+        int updated = jdbcTemplate.update(CLAIM_SQL, owner, Timestamp.valueOf(leaseUntil),
+                job, Date.valueOf(runDate), owner, Timestamp.valueOf(now));
+        if (updated > 0) {
+            return true;
+        }
+
+        try {
+            return jdbcTemplate.update(INSERT_SQL, job, Date.valueOf(runDate), owner, Timestamp.valueOf(leaseUntil)) > 0;
+        } catch (DuplicateKeyException e) {
+            // Held by another replica, or completed
+            return false;
+        }
+    }
+
+    public void complete(String job, LocalDate runDate, String owner, LocalDateTime now) {
+        jdbcTemplate.update(COMPLETE_SQL, Timestamp.valueOf(now), job, Date.valueOf(runDate), owner);
+    }
+
+    /**
+     * Delete the completed runs of a job before the given day
+     */
+    public int purgeCompletedBefore(String job, LocalDate before) {
+        return jdbcTemplate.update(PURGE_SQL, job, Date.valueOf(before));
+    }
+}
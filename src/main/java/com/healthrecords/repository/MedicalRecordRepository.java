@@ -2,13 +2,40 @@ package com.healthrecords.repository;
 
 import com.healthrecords.model.MedicalRecord;
 import com.healthrecords.model.User;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface MedicalRecordRepository extends JpaRepository<MedicalRecord, Long> {
     List<MedicalRecord> findByPatient(User patient);
     List<MedicalRecord> findByDoctor(User doctor);
+    
+    // Records with their patient and doctor in one query; the collections are fetched separately
+    // below, since joining both into one query would multiply prescriptions by lab reports
+    @EntityGraph(attributePaths = {"patient", "doctor"})
+    @Query("SELECT m FROM MedicalRecord m ORDER BY m.id")
+    List<MedicalRecord> findAllWithUsers();
+    
+    @EntityGraph(attributePaths = {"patient", "doctor"})
+    @Query("SELECT m FROM MedicalRecord m WHERE m.id = ?1")
+    Optional<MedicalRecord> findWithUsersById(Long id);
+    
+    /**
+     * Initialize the prescriptions of the records already loaded in the persistence context
+     */
+    @Query("SELECT DISTINCT m FROM MedicalRecord m LEFT JOIN FETCH m.prescriptions WHERE m.id IN ?1")
+    List<MedicalRecord> fetchPrescriptions(Collection<Long> ids);
+    
+    /**
+     * Initialize the lab reports, with their own patient and doctor, of the records already loaded in the persistence context
+     */
+    @Query("SELECT DISTINCT m FROM MedicalRecord m LEFT JOIN FETCH m.labReports l LEFT JOIN FETCH l.patient " +
+           "LEFT JOIN FETCH l.doctor WHERE m.id IN ?1")
+    List<MedicalRecord> fetchLabReports(Collection<Long> ids);
 }
@@ -0,0 +1,93 @@
+package com.healthrecords.repository;
+
+import com.healthrecords.dto.ArchivedNotification;
+import com.healthrecords.model.Notification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Moves old read notifications to {@code notifications_archive} and reads them back
+ */
+@Repository
+public class NotificationArchiveRepository {
+
+    private static final String COLUMNS =
+            "id, user_id, title, message, type, related_entity_id, digest_count, related_appointment_ids, created_at";
+
+    // Rows locked by a user's transaction are left for the next run rather than waited for
+    private static final String FIND_ARCHIVABLE_SQL =
+            "SELECT id FROM notifications WHERE is_read = TRUE AND created_at < ? " +
+            "ORDER BY created_at, id LIMIT ? FOR UPDATE SKIP LOCKED";
+
+    private static final String COPY_SQL =
+            "INSERT INTO notifications_archive (" + COLUMNS + ", archived_at) " +
+            "SELECT " + COLUMNS + ", ? FROM notifications WHERE id IN (%s) AND is_read = TRUE";
+
+    private static final String DELETE_SQL =
+            "DELETE FROM notifications WHERE id IN (%s) AND is_read = TRUE";
+
+    private static final String FIND_PAGE_SQL =
+            "SELECT " + COLUMNS + ", archived_at FROM notifications_archive " +
+            "WHERE user_id = ? AND (created_at < ? OR (created_at = ? AND id < ?)) " +
+            "ORDER BY created_at DESC, id DESC LIMIT ?";
+
+    private static final RowMapper<ArchivedNotification> ROW_MAPPER = (rs, rowNum) -> {
+        long relatedAppointmentId = rs.getLong("related_entity_id");
+        return ArchivedNotification.builder()
+                .id(rs.getLong("id"))
+                .title(rs.getString("title"))
+                .message(rs.getString("message"))
+                .type(Notification.NotificationType.valueOf(rs.getString("type")))
+                .relatedAppointmentId(rs.wasNull() ? null : relatedAppointmentId)
+                .digestCount(rs.getInt("digest_count"))
+                .relatedAppointmentIds(rs.getString("related_appointment_ids"))
+                .createdAt(rs.getTimestamp("created_at").toLocalDateTime())
+                .archivedAt(rs.getTimestamp("archived_at").toLocalDateTime())
+                .build();
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public NotificationArchiveRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Lock up to limit read notifications created before the cutoff, oldest first
+     */
+    public List<Long> lockArchivable(LocalDateTime cutoff, int limit) {
+        return jdbcTemplate.queryForList(FIND_ARCHIVABLE_SQL, Long.class, Timestamp.valueOf(cutoff), limit);
+    }
+
+    /**
+     * Copy the notifications to the archive and delete them, returning how many moved.
+     * Must run in the transaction that locked them.
+     */
+    public int moveToArchive(List<Long> ids, LocalDateTime now) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        List<Object> copyArgs = new ArrayList<>();
+        copyArgs.add(Timestamp.valueOf(now));
+        copyArgs.addAll(ids);
+        jdbcTemplate.update(String.format(COPY_SQL, placeholders), copyArgs.toArray());
+        return jdbcTemplate.update(String.format(DELETE_SQL, placeholders), ids.toArray());
+    }
+
+    /**
+     * Up to limit of the user's archived notifications that come after the given position, newest first
+     */
+    public List<ArchivedNotification> findPageByUserBefore(Long userId, LocalDateTime createdAt, Long id, int limit) {
+        Timestamp before = Timestamp.valueOf(createdAt);
+        return jdbcTemplate.query(FIND_PAGE_SQL, ROW_MAPPER, userId, before, before, id, limit);
+    }
+}
@@ -0,0 +1,72 @@
+package com.healthrecords.repository;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unread notification count per user in {@code notification_counters}
+ * Reads and increments go by the user_id primary key
+ */
+@Repository
+public class NotificationCounterRepository {
+
+    private static final String INCREMENT_SQL =
+            "INSERT INTO notification_counters (user_id, unread_count) VALUES (?, ?) " +
+            "ON DUPLICATE KEY UPDATE unread_count = unread_count + ?";
+
+    private static final String FIND_SQL =
+            "SELECT unread_count FROM notification_counters WHERE user_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public NotificationCounterRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Add each delta to its user's counter, creating missing counters, as one batch.
+     * Users are updated in id order so concurrent batches cannot deadlock on each other's rows.
+     */
+    public void applyDeltas(Map<Long, Integer> deltas) {
+        List<Map.Entry<Long, Integer>> ordered = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : deltas.entrySet()) {
+            if (entry.getValue() != 0) {
+                ordered.add(entry);
+            }
+        }
+        if (ordered.isEmpty()) {
+            return;
+        }
+
+        ordered.sort(Map.Entry.comparingByKey());
+        jdbcTemplate.batchUpdate(INCREMENT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Map.Entry<Long, Integer> entry = ordered.get(i);
+                ps.setLong(1, entry.getKey());
+                ps.setInt(2, entry.getValue());
+                ps.setInt(3, entry.getValue());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return ordered.size();
+            }
+        });
+    }
+
+    /**
+     * The user's unread count, 0 for users that never had a notification
+     */
+    public long findUnreadCount(Long userId) {
+        List<Long> counts = jdbcTemplate.queryForList(FIND_SQL, Long.class, userId);
+        return counts.isEmpty() ? 0L : counts.get(0);
+    }
+}
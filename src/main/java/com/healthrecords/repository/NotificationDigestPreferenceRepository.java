@@ -0,0 +1,72 @@
+package com.healthrecords.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-user notification digest windows in {@code notification_digest_preferences}
+ * Users without a row use notifications.digest.window-minutes
+ */
+@Repository
+public class NotificationDigestPreferenceRepository {
+
+    private static final String FIND_SQL =
+            "SELECT window_minutes FROM notification_digest_preferences WHERE user_id = ?";
+
+    private static final String FIND_ALL_SQL =
+            "SELECT user_id, window_minutes FROM notification_digest_preferences WHERE user_id IN (%s)";
+
+    private static final String SAVE_SQL =
+            "INSERT INTO notification_digest_preferences (user_id, window_minutes, updated_at) VALUES (?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE window_minutes = ?, updated_at = ?";
+
+    private static final String DELETE_SQL =
+            "DELETE FROM notification_digest_preferences WHERE user_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public NotificationDigestPreferenceRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * The user's own digest window, null when they use the default
+     */
+    public Integer findWindowMinutes(Long userId) {
+        List<Integer> windows = jdbcTemplate.queryForList(FIND_SQL, Integer.class, userId);
+        return windows.isEmpty() ? null : windows.get(0);
+    }
+
+    /**
+     * The digest windows of those of the given users that set one, by user id
+     */
+    public Map<Long, Integer> findWindowMinutes(Collection<Long> userIds) {
+        Map<Long, Integer> windows = new HashMap<>();
+        if (userIds.isEmpty()) {
+            return windows;
+        }
+
+        String sql = String.format(FIND_ALL_SQL, String.join(", ", Collections.nCopies(userIds.size(), "?")));
+        jdbcTemplate.query(sql, rs -> {
+            windows.put(rs.getLong("user_id"), rs.getInt("window_minutes"));
+        }, userIds.toArray());
+        return windows;
+    }
+
+    public void save(Long userId, int windowMinutes, LocalDateTime now) {
+        Timestamp updatedAt = Timestamp.valueOf(now);
+        jdbcTemplate.update(SAVE_SQL, userId, windowMinutes, updatedAt, windowMinutes, updatedAt);
+    }
+
+    public void delete(Long userId) {
+        jdbcTemplate.update(DELETE_SQL, userId);
+    }
+}
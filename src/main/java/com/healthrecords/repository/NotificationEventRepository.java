@@ -0,0 +1,89 @@
+package com.healthrecords.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Users whose notifications changed, in {@code notification_events}
+ * Replicas read the table forward by id and purge it by age
+ */
+@Repository
+public class NotificationEventRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO notification_events (user_id, origin, created_at) VALUES (?, ?, ?)";
+
+    private static final String FIND_AFTER_SQL =
+            "SELECT id, user_id, origin FROM notification_events WHERE id > ? ORDER BY id LIMIT ?";
+
+    private static final String LATEST_ID_SQL =
+            "SELECT COALESCE(MAX(id), 0) FROM notification_events";
+
+    private static final String PURGE_SQL =
+            "DELETE FROM notification_events WHERE created_at < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public NotificationEventRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Append one event per user as one batch
+     */
+    public void append(Collection<Long> userIds, String origin, LocalDateTime now) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> rows = new ArrayList<>();
+        for (Long userId : userIds) {
+            rows.add(new Object[]{userId, origin, Timestamp.valueOf(now)});
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+    }
+
+    public List<Event> findAfter(long lastId, int limit) {
+        return jdbcTemplate.query(FIND_AFTER_SQL, (rs, rowNum) ->
+                new Event(rs.getLong("id"), rs.getLong("user_id"), rs.getString("origin")), lastId, limit);
+    }
+
+    public long findLatestId() {
+        Long latest = jdbcTemplate.queryForObject(LATEST_ID_SQL, Long.class);
+        return latest != null ? latest : 0L;
+    }
+
+    public int purgeBefore(LocalDateTime before) {
+        return jdbcTemplate.update(PURGE_SQL, Timestamp.valueOf(before));
+    }
+
+    public static class Event {
+        private final long id;
+        private final Long userId;
+        private final String origin;
+
+        public Event(long id, Long userId, String origin) {
+            this.id = id;
+            this.userId = userId;
+            this.origin = origin;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public Long getUserId() {
+            return userId;
+        }
+
+        public String getOrigin() {
+            return origin;
+        }
+    }
+}
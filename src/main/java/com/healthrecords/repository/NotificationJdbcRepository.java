@@ -0,0 +1,62 @@
+package com.healthrecords.repository;
+
+import com.healthrecords.model.Notification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repository for inserting notifications in JDBC batches
+ * With rewriteBatchedStatements on the MySQL URL a batch is sent as one multi-row INSERT
+ */
+@Repository
+public class NotificationJdbcRepository {
+
+    private static final String INSERT_NOTIFICATION_SQL =
+            "INSERT INTO notifications (user_id, title, message, type, is_read, related_entity_id, created_at, " +
+            "updated_at, digest_count, related_appointment_ids) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public NotificationJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Insert all notifications as one batch. The user and the related appointment only need their ids;
+     * generated ids are not read back, and the notifications are not managed by JPA.
+     */
+    public void insertAll(List<Notification> notifications) {
+        if (notifications.isEmpty()) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.batchUpdate(INSERT_NOTIFICATION_SQL, notifications, notifications.size(), (statement, notification) -> {
+            if (notification.getCreatedAt() == null) {
+                notification.setCreatedAt(now);
+            }
+            if (notification.getUpdatedAt() == null) {
+                notification.setUpdatedAt(notification.getCreatedAt());
+            }
+            statement.setLong(1, notification.getUser().getId());
+            statement.setString(2, notification.getTitle());
+            statement.setString(3, notification.getMessage());
+            statement.setString(4, notification.getType().name());
+            statement.setBoolean(5, Boolean.TRUE.equals(notification.getIsRead()));
+            if (notification.getRelatedAppointment() != null) {
+                statement.setLong(6, notification.getRelatedAppointment().getId());
+            } else {
+                statement.setNull(6, Types.BIGINT);
+            }
+            statement.setTimestamp(7, Timestamp.valueOf(notification.getCreatedAt()));
+            statement.setTimestamp(8, Timestamp.valueOf(notification.getUpdatedAt()));
+            statement.setInt(9, notification.getDigestCount() != null ? notification.getDigestCount() : 1);
+            statement.setString(10, notification.getRelatedAppointmentIds());
+        });
+    }
+}
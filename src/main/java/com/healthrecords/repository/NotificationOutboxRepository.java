@@ -0,0 +1,164 @@
+package com.healthrecords.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pending appointment notifications in {@code notification_outbox}
+ *
+ * Entries are claimed with FOR UPDATE SKIP LOCKED, so replicas dispatching at the same time
+ * take disjoint batches; claims only hold while the claiming transaction is open.
+ */
+@Repository
+public class NotificationOutboxRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO notification_outbox (event_type, appointment_id, detail, attempts, created_at, next_attempt_at) " +
+            "VALUES (?, ?, ?, 0, ?, ?)";
+
+    private static final String CLAIM_DUE_SQL =
+            "SELECT id, event_type, appointment_id, detail, attempts, created_at FROM notification_outbox " +
+            "WHERE next_attempt_at <= ? ORDER BY next_attempt_at, id LIMIT ? FOR UPDATE SKIP LOCKED";
+
+    private static final String CLAIM_BY_ID_SQL =
+            "SELECT id, event_type, appointment_id, detail, attempts, created_at FROM notification_outbox " +
+            "WHERE id = ? AND next_attempt_at <= ? FOR UPDATE SKIP LOCKED";
+
+    private static final String DELETE_SQL =
+            "DELETE FROM notification_outbox WHERE id = ?";
+
+    private static final String RECORD_FAILURE_SQL =
+            "UPDATE notification_outbox SET attempts = ?, next_attempt_at = ?, failed_at = ?, last_error = ? WHERE id = ?";
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private static final RowMapper<Entry> ENTRY_MAPPER = (rs, rowNum) -> new Entry(
+            rs.getLong("id"),
+            EventType.valueOf(rs.getString("event_type")),
+            rs.getLong("appointment_id"),
+            rs.getString("detail"),
+            rs.getInt("attempts"),
+            rs.getTimestamp("created_at").toLocalDateTime());
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public NotificationOutboxRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Append entries as one batch, due immediately
+     */
+    public void append(List<Entry> entries, LocalDateTime now) {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> rows = new ArrayList<>();
+        for (Entry entry : entries) {
+            rows.add(new Object[]{entry.getType().name(), entry.getAppointmentId(), entry.getDetail(),
+                    Timestamp.valueOf(now), Timestamp.valueOf(now)});
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+    }
+
+    /**
+     * Lock up to limit due entries, oldest first, skipping those locked by other dispatchers.
+     * Must run inside a transaction.
+     */
+    public List<Entry> claimDue(LocalDateTime now, int limit) {
+        return jdbcTemplate.query(CLAIM_DUE_SQL, ENTRY_MAPPER, Timestamp.valueOf(now), limit);
+    }
+
+    /**
+     * Lock one entry if it is still due and not locked by another dispatcher
+     */
+    public List<Entry> claimById(Long id, LocalDateTime now) {
+        return jdbcTemplate.query(CLAIM_BY_ID_SQL, ENTRY_MAPPER, id, Timestamp.valueOf(now));
+    }
+
+    public void deleteAll(List<Entry> entries) {
+        List<Object[]> ids = new ArrayList<>();
+        for (Entry entry : entries) {
+            ids.add(new Object[]{entry.getId()});
+        }
+        jdbcTemplate.batchUpdate(DELETE_SQL, ids);
+    }
+
+    /**
+     * Count a failed attempt and schedule the next one, or give up on the entry when nextAttemptAt is null
+     */
+    public void recordFailure(Entry entry, LocalDateTime nextAttemptAt, LocalDateTime now, String error) {
+        String lastError = error != null && error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+        jdbcTemplate.update(RECORD_FAILURE_SQL, entry.getAttempts() + 1,
+                nextAttemptAt != null ? Timestamp.valueOf(nextAttemptAt) : null,
+                nextAttemptAt == null ? Timestamp.valueOf(now) : null,
+                lastError, entry.getId());
+    }
+
+    public enum EventType {
+        APPOINTMENT_REQUESTED,
+        APPOINTMENT_CONFIRMED,
+        APPOINTMENT_REJECTED,
+        APPOINTMENT_RESCHEDULED,
+        // Cancelled by the patient, the doctor is told
+        APPOINTMENT_CANCELLED_BY_PATIENT,
+        // Cancelled by the doctor or an admin, the patient is told
+        APPOINTMENT_CANCELLED
+    }
+
+    public static class Entry {
+        private final Long id;
+        private final EventType type;
+        private final Long appointmentId;
+        private final String detail;
+        private final int attempts;
+        private final LocalDateTime createdAt;
+
+        public Entry(EventType type, Long appointmentId, String detail) {
+            this(null, type, appointmentId, detail, 0, null);
+        }
+
+        public Entry(Long id, EventType type, Long appointmentId, String detail, int attempts, LocalDateTime createdAt) {
+            this.id = id;
+            this.type = type;
+            this.appointmentId = appointmentId;
+            this.detail = detail;
+            this.attempts = attempts;
+            this.createdAt = createdAt;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public EventType getType() {
+            return type;
+        }
+
+        public Long getAppointmentId() {
+            return appointmentId;
+        }
+
+        /**
+         * The rejection reason, for rejections
+         */
+        public String getDetail() {
+            return detail;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+
+        public LocalDateTime getCreatedAt() {
+            return createdAt;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.healthrecords.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Monthly partitions of the notifications table, named p&lt;yyyyMM&gt; and followed by a catch-all p_future
+ */
+@Repository
+public class NotificationPartitionRepository {
+
+    public static final String FUTURE_PARTITION = "p_future";
+
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("'p'yyyyMM");
+
+    private static final String FIND_NAMES_SQL =
+            "SELECT partition_name FROM information_schema.partitions " +
+            "WHERE table_schema = DATABASE() AND table_name = 'notifications' AND partition_name IS NOT NULL " +
+            "ORDER BY partition_ordinal_position";
+
+    private static final String SPLIT_FUTURE_SQL =
+            "ALTER TABLE notifications REORGANIZE PARTITION " + FUTURE_PARTITION + " INTO (%s, " +
+            "PARTITION " + FUTURE_PARTITION + " VALUES LESS THAN (MAXVALUE))";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public NotificationPartitionRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Partition names in order, empty when the table is not partitioned
+     */
+    public List<String> findPartitionNames() {
+        return jdbcTemplate.queryForList(FIND_NAMES_SQL, String.class);
+    }
+
+    /**
+     * Split monthly partitions off p_future. Cheap as long as p_future holds no rows,
+     * i.e. the months are added before they start.
+     */
+    public void addMonths(List<YearMonth> months) {
+        if (months.isEmpty()) {
+            return;
+        }
+
+        String partitions = months.stream()
+                .map(month -> "PARTITION " + partitionName(month) +
+                        " VALUES LESS THAN ('" + month.plusMonths(1).atDay(1) + "')")
+                .collect(Collectors.joining(", "));
+        jdbcTemplate.execute(String.format(SPLIT_FUTURE_SQL, partitions));
+    }
+
+    public static String partitionName(YearMonth month) {
+        return month.format(NAME_FORMAT);
+    }
+}
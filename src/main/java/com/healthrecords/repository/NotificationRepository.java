@@ -1,21 +1,37 @@
 package com.healthrecords.repository;
 
+import com.healthrecords.dto.NotificationSummary;
 import com.healthrecords.model.Appointment;
 import com.healthrecords.model.Notification;
 import com.healthrecords.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface NotificationRepository extends JpaRepository<Notification, Long> {
     
+    String FEED_SELECT = "SELECT new com.healthrecords.dto.NotificationSummary(n.id, n.title, n.message, n.type, " +
+            "n.isRead, n.relatedAppointment.id, n.digestCount, n.relatedAppointmentIds, n.createdAt, n.updatedAt) FROM Notification n ";
+    
+    // Optional filters; a null parameter is folded away by MySQL, which then picks the index for the filters given
+    String FEED_FILTERS = "WHERE n.user.id = :userId AND (:type IS NULL OR n.type = :type) " +
+            "AND (:isRead IS NULL OR n.isRead = :isRead) ";
+    
+    
     List<Notification> findByUser(User user);
     
     List<Notification> findByUserAndIsRead(User user, Boolean isRead);
     
+    List<Notification> findByUserAndIsReadOrderByCreatedAtDesc(User user, Boolean isRead, Pageable pageable);
+    
     List<Notification> findByRelatedAppointment(Appointment appointment);
     
     @Query("SELECT n FROM Notification n WHERE n.user = ?1 ORDER BY n.createdAt DESC")
@@ -23,4 +39,110 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
     
     @Query("SELECT COUNT(n) FROM Notification n WHERE n.user = ?1 AND n.isRead = false")
     Long countUnreadNotifications(User user);
+    
+    /**
+     * Mark one notification read, returning 0 if it already was
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Notification n SET n.isRead = true WHERE n.id = ?1 AND n.isRead = false")
+    int markReadIfUnread(Long id);
+    
+    /**
+     * Mark all of a user's unread notifications read, returning how many were
+     */
+    @Modifying
+    @Query("UPDATE Notification n SET n.isRead = true WHERE n.user.id = ?1 AND n.isRead = false")
+    int markAllReadByUserId(Long userId);
+    
+    /**
+     * Mark the given notifications read, ignoring ids that belong to other users or are already read
+     */
+    @Modifying
+    @Query("UPDATE Notification n SET n.isRead = true WHERE n.user.id = ?1 AND n.id IN ?2 AND n.isRead = false")
+    int markReadByUserIdAndIds(Long userId, Collection<Long> ids);
+    
+    @Query("SELECT DISTINCT n.user.id FROM Notification n WHERE n.relatedAppointment.id = ?1 AND n.isRead = false")
+    List<Long> findUnreadRecipientIdsByAppointmentId(Long appointmentId);
+    
+    @Modifying
+    @Query("DELETE FROM Notification n WHERE n.relatedAppointment.id = ?1 AND n.user.id = ?2 AND n.isRead = false")
+    int deleteUnreadByAppointmentIdAndUserId(Long appointmentId, Long userId);
+    
+    @Modifying
+    @Query("DELETE FROM Notification n WHERE n.relatedAppointment.id = ?1")
+    int deleteByAppointmentId(Long appointmentId);
+    
+    // Keyset pages older than the cursor by (createdAt, id), newest first
+    @Query(FEED_SELECT + FEED_FILTERS +
+           "AND (n.createdAt < :createdAt OR (n.createdAt = :createdAt AND n.id < :id)) ORDER BY n.createdAt DESC, n.id DESC")
+    List<NotificationSummary> findFeedBefore(@Param("userId") Long userId,
+                                             @Param("type") Notification.NotificationType type,
+                                             @Param("isRead") Boolean isRead,
+                                             @Param("createdAt") LocalDateTime createdAt,
+                                             @Param("id") Long id, Pageable pageable);
+    
+    // Notifications inserted or extended after the since position, by (updatedAt, id), oldest change first
+    @Query(FEED_SELECT + FEED_FILTERS +
+           "AND (n.updatedAt > :updatedAt OR (n.updatedAt = :updatedAt AND n.id > :id)) ORDER BY n.updatedAt, n.id")
+    List<NotificationSummary> findFeedAfter(@Param("userId") Long userId,
+                                            @Param("type") Notification.NotificationType type,
+                                            @Param("isRead") Boolean isRead,
+                                            @Param("updatedAt") LocalDateTime updatedAt,
+                                            @Param("id") Long id, Pageable pageable);
+    
+    /**
+     * Unread notifications of the given users and types created since the given time, candidates for
+     * merging further notifications into
+     */
+    @Query("SELECT n.id AS id, n.user.id AS userId, n.type AS type, n.digestCount AS digestCount, " +
+           "n.relatedAppointmentIds AS relatedAppointmentIds, n.createdAt AS createdAt FROM Notification n " +
+           "WHERE n.user.id IN ?1 AND n.isRead = false AND n.createdAt >= ?3 AND n.type IN ?2")
+    List<DigestView> findOpenDigests(Collection<Long> userIds, Collection<Notification.NotificationType> types,
+                                     LocalDateTime since);
+    
+    /**
+     * Merge more notifications into a digest, returning 0 if it was read or extended by someone else meanwhile
+     */
+    @Modifying
+    @Query("UPDATE Notification n SET n.digestCount = ?3, n.relatedAppointmentIds = ?4, n.message = ?5, n.updatedAt = ?6 " +
+           "WHERE n.id = ?1 AND n.digestCount = ?2 AND n.isRead = false")
+    int extendDigest(Long id, int expectedCount, int digestCount, String relatedAppointmentIds, String message,
+                     LocalDateTime updatedAt);
+    
+    /**
+     * Digests of the given users that point at the appointment or hold it in their id list;
+     * idPattern is {@code %,<id>,%}, matched against the list with commas around it
+     */
+    @Query("SELECT n.id AS id, n.digestCount AS digestCount, n.relatedAppointmentIds AS relatedAppointmentIds, " +
+           "n.relatedAppointment.id AS relatedAppointmentId, n.title AS title, n.message AS message FROM Notification n " +
+           "WHERE n.user.id IN ?1 AND n.digestCount > 1 " +
+           "AND (n.relatedAppointment.id = ?2 OR CONCAT(',', n.relatedAppointmentIds, ',') LIKE ?3)")
+    List<DigestContentView> findDigestsWithAppointment(Collection<Long> userIds, Long appointmentId, String idPattern);
+    
+    /**
+     * Take appointments out of a digest, returning 0 if it was extended or shrunk by someone else meanwhile
+     */
+    @Modifying
+    @Query("UPDATE Notification n SET n.digestCount = ?3, n.relatedAppointmentIds = ?4, n.relatedAppointment = ?5, " +
+           "n.message = ?6, n.updatedAt = ?7 WHERE n.id = ?1 AND n.digestCount = ?2")
+    int shrinkDigest(Long id, int expectedCount, int digestCount, String relatedAppointmentIds,
+                     Appointment relatedAppointment, String message, LocalDateTime updatedAt);
+    
+    interface DigestView {
+        Long getId();
+        Long getUserId();
+        Notification.NotificationType getType();
+        Integer getDigestCount();
+        String getRelatedAppointmentIds();
+        LocalDateTime getCreatedAt();
+    }
+    
+    interface DigestContentView {
+        Long getId();
+        Integer getDigestCount();
+        String getRelatedAppointmentIds();
+        Long getRelatedAppointmentId();
+        String getTitle();
+        String getMessage();
+    }
 }
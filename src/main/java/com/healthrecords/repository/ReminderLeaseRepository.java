@@ -0,0 +1,86 @@
+package com.healthrecords.repository;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Leases on reminder time buckets, so that only one replica fires the reminders of each bucket
+ * Every statement goes by the bucket's primary key
+ */
+@Repository
+public class ReminderLeaseRepository {
+
+    // Renew our own lease or take over an expired one, as long as the bucket is not done
+    private static final String CLAIM_SQL =
+            "UPDATE reminder_bucket_leases SET owner = ?, lease_until = ? " +
+            "WHERE bucket_start = ? AND completed_at IS NULL AND (owner = ? OR lease_until < ?)";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO reminder_bucket_leases (bucket_start, owner, lease_until) VALUES (?, ?, ?)";
+
+    private static final String FIRED_UNTIL_SQL =
+            "SELECT fired_until FROM reminder_bucket_leases WHERE bucket_start = ?";
+
+    private static final String MARK_FIRED_SQL =
+            "UPDATE reminder_bucket_leases SET fired_until = ? WHERE bucket_start = ? AND owner = ?";
+
+    private static final String COMPLETE_SQL =
+            "UPDATE reminder_bucket_leases SET completed_at = ? WHERE bucket_start = ? AND owner = ?";
+
+    private static final String PURGE_SQL =
+            "DELETE FROM reminder_bucket_leases WHERE bucket_start < ? AND completed_at IS NOT NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ReminderLeaseRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Claim or renew the lease on a bucket until the given time. Returns false if another
+     * replica holds a live lease or the bucket has already been completed.
+     * Must not run inside a transaction, a failed insert is expected when the row exists.
+     */
+    public boolean claim(LocalDateTime bucketStart, String owner, LocalDateTime leaseUntil, LocalDateTime now) {
+        int updated = jdbcTemplate.update(CLAIM_SQL, owner, Timestamp.valueOf(leaseUntil),
+                Timestamp.valueOf(bucketStart), owner, Timestamp.valueOf(now));
+        if (updated > 0) {
+            return true;
+        }
+
+        try {
+            return jdbcTemplate.update(INSERT_SQL, Timestamp.valueOf(bucketStart), owner, Timestamp.valueOf(leaseUntil)) > 0;
+        } catch (DuplicateKeyException e) {
+            // Held by another replica, or completed
+            return false;
+        }
+    }
+
+    /**
+     * Fire time of the last reminder sent for the bucket, by whichever replica held it, or null
+     */
+    public LocalDateTime findFiredUntil(LocalDateTime bucketStart) {
+        List<Timestamp> firedUntil = jdbcTemplate.queryForList(FIRED_UNTIL_SQL, Timestamp.class, Timestamp.valueOf(bucketStart));
+        return firedUntil.isEmpty() || firedUntil.get(0) == null ? null : firedUntil.get(0).toLocalDateTime();
+    }
+
+    public void markFired(LocalDateTime bucketStart, String owner, LocalDateTime firedUntil) {
+        jdbcTemplate.update(MARK_FIRED_SQL, Timestamp.valueOf(firedUntil), Timestamp.valueOf(bucketStart), owner);
+    }
+
+    public void complete(LocalDateTime bucketStart, String owner, LocalDateTime now) {
+        jdbcTemplate.update(COMPLETE_SQL, Timestamp.valueOf(now), Timestamp.valueOf(bucketStart), owner);
+    }
+
+    /**
+     * Delete completed buckets older than the given time
+     */
+    public int purgeCompletedBefore(LocalDateTime before) {
+        return jdbcTemplate.update(PURGE_SQL, Timestamp.valueOf(before));
+    }
+}
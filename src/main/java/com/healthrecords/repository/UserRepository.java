@@ -3,8 +3,10 @@ package com.healthrecords.repository;
 import com.healthrecords.model.User;
 import com.healthrecords.model.UserRole;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,4 +15,23 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
     boolean existsByEmail(String email);
     List<User> findByRole(UserRole role);
+
+    @Query("SELECT u.id AS id, u.tokenVersion AS tokenVersion FROM User u")
+    List<TokenVersionView> findAllTokenVersions();
+
+    @Query("SELECT u.tokenVersion FROM User u WHERE u.id = ?1")
+    Optional<Integer> findTokenVersionById(Long id);
+
+    @Query("SELECT u.id AS id, u.email AS email FROM User u WHERE u.id IN ?1")
+    List<EmailView> findEmailsByIdIn(Collection<Long> ids);
+
+    interface TokenVersionView {
+        Long getId();
+        Integer getTokenVersion();
+    }
+
+    interface EmailView {
+        Long getId();
+        String getEmail();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,66 @@
+package com.healthrecords.security;
+
+import com.healthrecords.model.User;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.Optional;
+
+/**
+ * Resolves the authenticated {@link User} once per request and shares it with every
+ * service and controller that asks for it during that request.
+ *
+ * Outside of a web request (background jobs) the user is resolved on every call,
+ * still going through the {@link UserProjectionCache}.
+ */
+@Component
+@RequiredArgsConstructor
+public class CurrentUserContext {
+
+    private static final String REQUEST_ATTRIBUTE = CurrentUserContext.class.getName() + ".user";
+
+    private final UserProjectionCache userProjectionCache;
+
+    /**
+     * Get the current authenticated user, failing if there is none
+     */
+    public User getCurrentUser() {
+        return findCurrentUser()
+                .orElseThrow(() -> new EntityNotFoundException("No authenticated user found"));
+    }
+
+    /**
+     * Get the current authenticated user, if the request is authenticated
+     */
+    public Optional<User> findCurrentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated() ||
+            authentication instanceof AnonymousAuthenticationToken) {
+            return Optional.empty();
+        }
+
+        String email = authentication.getName();
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+
+        if (attributes != null) {
+            Object resolved = attributes.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+            if (resolved instanceof User user && email.equals(user.getEmail())) {
+                return Optional.of(user);
+            }
+        }
+
+        User user = userProjectionCache.findByEmail(email)
+                .orElseThrow(() -> new EntityNotFoundException("User not found with email: " + email));
+
+        if (attributes != null) {
+            attributes.setAttribute(REQUEST_ATTRIBUTE, user, RequestAttributes.SCOPE_REQUEST);
+        }
+        return Optional.of(user);
+    }
+}
@@ -5,6 +5,7 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -22,6 +23,11 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
     private final UserDetailsService userDetailsService;
+    private final TokenVersionRegistry tokenVersionRegistry;
+
+    // When enabled, the principal is built from the verified claims instead of loading the user
+    @Value("${jwt.stateless-auth.enabled:false}")
+    private boolean statelessAuthEnabled;
 
     @Override
     protected boolean shouldNotFilter(HttpServletRequest request) {
@@ -65,6 +71,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     ) throws ServletException, IOException {
         final String authHeader = request.getHeader("Authorization");
         final String jwt;
+        final ParsedToken token;
         final String userEmail;
 
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
@@ -74,17 +81,28 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         try {
             jwt = authHeader.substring(7);
-            userEmail = jwtService.extractUsername(jwt);
+            // Verified once per request; repeat requests with the same token hit the cache
+            token = jwtService.parseToken(jwt);
+            userEmail = token.getSubject();
 
             if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
+                UserDetails userDetails;
+                if (statelessAuthEnabled && token.hasIdentityClaims()) {
+                    if (!tokenVersionRegistry.isCurrent(token.getUserId(), token.getTokenVersion())) {
+                        handleError(response, "Token has been revoked");
+                        return;
+                    }
+                    userDetails = JwtPrincipal.fromToken(token);
+                } else {
+                    userDetails = this.userDetailsService.loadUserByUsername(userEmail);
+                }
 
                 try {
                     System.out.println("==== JWT Authentication Filter ====");
                     System.out.println("Processing request for path: " + request.getRequestURI());
                     System.out.println("Checking token validity for user: " + userDetails.getUsername());
 
-                    boolean isValid = jwtService.isTokenValid(jwt, userDetails);
+                    boolean isValid = jwtService.isTokenValid(token, userDetails);
                     System.out.println("Token validity result: " + isValid);
 
                     if (isValid) {
@@ -146,7 +164,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         // Set CORS headers to ensure the error response can be read by the frontend
         response.setHeader("Access-Control-Allow-Origin", "http://localhost:5173");
         response.setHeader("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
-        response.setHeader("Access-Control-Allow-Headers", "Authorization, Content-Type, X-Requested-With");
+        response.setHeader("Access-Control-Allow-Headers", "Authorization, Content-Type, X-Requested-With, Idempotency-Key");
         response.setHeader("Access-Control-Allow-Credentials", "true");
 
         // Set response status and write error message
@@ -0,0 +1,63 @@
+package com.healthrecords.security;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Authenticated principal built straight from verified token claims.
+ * Used in claims-only mode so a request can be authenticated without loading the user row.
+ */
+@Getter
+@RequiredArgsConstructor
+public class JwtPrincipal implements UserDetails {
+
+    private final Long id;
+    private final String email;
+    private final String role;
+
+    public static JwtPrincipal fromToken(ParsedToken token) {
+        String role = token.getRole().startsWith("ROLE_") ? token.getRole() : "ROLE_" + token.getRole();
+        return new JwtPrincipal(token.getUserId(), token.getSubject(), role);
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return Set.of(new SimpleGrantedAuthority(role));
+    }
+
+    @Override
+    public String getPassword() {
+        return null;
+    }
+
+    @Override
+    public String getUsername() {
+        return email;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+}
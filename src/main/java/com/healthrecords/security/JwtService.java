@@ -1,39 +1,97 @@
 package com.healthrecords.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.healthrecords.model.User;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 @Service
 public class JwtService {
 
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_TOKEN_VERSION = "ver";
+
     @Value("${jwt.secret}")
     private String secretKey;
 
     @Value("${jwt.expiration}")
     private long jwtExpiration;
 
+    @Value("${jwt.cache.max-size:10000}")
+    private long tokenCacheMaxSize;
+
+    private Key signingKey;
+    private JwtParser jwtParser;
+
+    // Verified tokens keyed by a digest of the raw token, each entry expiring at the token's own exp
+    private Cache<String, ParsedToken> verifiedTokens;
+
+    @PostConstruct
+    void init() {
+        signingKey = Keys.hmacShaKeyFor(secretKey.getBytes());
+        jwtParser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+        verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(tokenCacheMaxSize)
+                .expireAfter(new Expiry<String, ParsedToken>() {
+                    @Override
+                    public long expireAfterCreate(String key, ParsedToken token, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(token.millisUntilExpiry());
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, ParsedToken token, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, ParsedToken token, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Verify the token signature and expiry once and return its claims.
+     * Repeat calls with the same token are served from the verified-token cache
+     * until the token expires.
+     */
+    public ParsedToken parseToken(String token) {
+        return verifiedTokens.get(digest(token), key -> verify(token));
+    }
+
     public String extractUsername(String token) {
-        return extractClaim(token, Claims::getSubject);
+        return parseToken(token).getSubject();
     }
 
     public String extractRole(String token) {
-        return extractClaim(token, claims -> claims.get("role", String.class));
+        return parseToken(token).getRole();
     }
 
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
+        return claimsResolver.apply(parseToken(token).getClaims());
     }
 
     public String generateToken(UserDetails userDetails) {
@@ -54,6 +112,12 @@ public class JwtService {
         }
 
         claims.put("role", role);
+
+        // Carry the identity needed for claims-only authentication
+        if (userDetails instanceof User user) {
+            claims.put(CLAIM_USER_ID, user.getId());
+            claims.put(CLAIM_TOKEN_VERSION, user.getTokenVersion() != null ? user.getTokenVersion() : 0);
+        }
         return generateToken(claims, userDetails);
     }
 
@@ -63,13 +127,17 @@ public class JwtService {
                 .setSubject(userDetails.getUsername())
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + jwtExpiration))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
     public boolean isTokenValid(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        final String role = extractRole(token);
+        return isTokenValid(parseToken(token), userDetails);
+    }
+
+    public boolean isTokenValid(ParsedToken token, UserDetails userDetails) {
+        final String username = token.getSubject();
+        final String role = token.getRole();
 
         // Get the user's authority from UserDetails
         String userRole = null;
@@ -85,7 +153,7 @@ public class JwtService {
         System.out.println("UserDetails role: " + userRole);
 
         // Check if the username matches and the token is not expired
-        boolean isValid = username.equals(userDetails.getUsername()) && !isTokenExpired(token);
+        boolean isValid = username.equals(userDetails.getUsername()) && !token.isExpired();
         System.out.println("Username match and not expired: " + isValid);
 
         // For security, we only need to verify that the token belongs to the user
@@ -106,24 +174,21 @@ public class JwtService {
         return isValid;
     }
 
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
-    }
-
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+    /**
+     * Parse and HMAC-verify the token without consulting the cache.
+     * Throws a {@link io.jsonwebtoken.JwtException} when the token is invalid or expired.
+     */
+    ParsedToken verify(String token) {
+        return ParsedToken.fromClaims(jwtParser.parseClaimsJws(token).getBody());
     }
 
-    private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-    }
-
-    private Key getSigningKey() {
-        byte[] keyBytes = secretKey.getBytes();
-        return Keys.hmacShaKeyFor(keyBytes);
+    private static String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            byte[] hash = sha256.digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
     }
 }
\ No newline at end of file
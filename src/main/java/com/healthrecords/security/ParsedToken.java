@@ -0,0 +1,60 @@
+package com.healthrecords.security;
+
+import io.jsonwebtoken.Claims;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * A JWT whose signature has already been verified.
+ * Instances are immutable and shared between requests through the
+ * verified-token cache in {@link JwtService}, so callers must not hold on to
+ * them beyond the current request.
+ */
+@Getter
+@RequiredArgsConstructor
+public class ParsedToken {
+
+    private final String subject;
+    private final String role;
+    private final Long userId;
+    private final Integer tokenVersion;
+    private final Date issuedAt;
+    private final Date expiration;
+    private final Claims claims;
+
+    public static ParsedToken fromClaims(Claims claims) {
+        return new ParsedToken(
+                claims.getSubject(),
+                claims.get("role", String.class),
+                claims.get(JwtService.CLAIM_USER_ID, Long.class),
+                claims.get(JwtService.CLAIM_TOKEN_VERSION, Integer.class),
+                claims.getIssuedAt(),
+                claims.getExpiration(),
+                claims
+        );
+    }
+
+    /**
+     * Whether the token carries everything needed to authenticate without a user lookup.
+     * Tokens issued before the user id and version claims existed return false.
+     */
+    public boolean hasIdentityClaims() {
+        return subject != null && role != null && userId != null && tokenVersion != null;
+    }
+
+    public boolean isExpired() {
+        return expiration != null && expiration.before(new Date());
+    }
+
+    /**
+     * Milliseconds until this token expires, or zero when it already has.
+     */
+    public long millisUntilExpiry() {
+        if (expiration == null) {
+            return 0;
+        }
+        return Math.max(0, expiration.getTime() - System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,104 @@
+package com.healthrecords.security;
+
+import com.healthrecords.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory copy of every user's token version, used by claims-only authentication
+ * to reject revoked tokens without a database round trip.
+ *
+ * The map is reloaded in the background so that revocations made on other replicas
+ * are picked up within one refresh interval. Changes made on this replica apply
+ * immediately after their transaction commits.
+ */
+@Component
+@RequiredArgsConstructor
+public class TokenVersionRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenVersionRegistry.class);
+
+    // Version given to deleted users so every token they hold is rejected
+    private static final int REVOKED = Integer.MAX_VALUE;
+
+    private final UserRepository userRepository;
+
+    @Value("${jwt.stateless-auth.enabled:false}")
+    private boolean statelessAuthEnabled;
+
+    private volatile Map<Long, Integer> versions = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    /**
+     * Whether a token carrying the given version is still accepted for the user.
+     */
+    public boolean isCurrent(Long userId, Integer tokenVersion) {
+        if (!loaded) {
+            refresh();
+        }
+
+        Integer current = versions.get(userId);
+        if (current == null) {
+            // User created after the last refresh, or deleted
+            current = userRepository.findTokenVersionById(userId).orElse(REVOKED);
+            versions.put(userId, current);
+        }
+        return tokenVersion >= current;
+    }
+
+    /**
+     * Record a new version for the user once the surrounding transaction commits.
+     */
+    public void updateAfterCommit(Long userId, Integer tokenVersion) {
+        runAfterCommit(() -> versions.put(userId, tokenVersion));
+    }
+
+    /**
+     * Reject every token of a deleted user once the surrounding transaction commits.
+     */
+    public void revokeAfterCommit(Long userId) {
+        runAfterCommit(() -> versions.put(userId, REVOKED));
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.token-version.refresh-ms:30000}")
+    public void scheduledRefresh() {
+        if (statelessAuthEnabled) {
+            refresh();
+        }
+    }
+
+    synchronized void refresh() {
+        Map<Long, Integer> previous = versions;
+        Map<Long, Integer> reloaded = new ConcurrentHashMap<>();
+        for (UserRepository.TokenVersionView view : userRepository.findAllTokenVersions()) {
+            int version = view.getTokenVersion() != null ? view.getTokenVersion() : 0;
+            // Versions only grow, so never let a snapshot taken mid-commit roll one back
+            reloaded.put(view.getId(), Math.max(version, previous.getOrDefault(view.getId(), 0)));
+        }
+        versions = reloaded;
+        loaded = true;
+        log.debug("Refreshed token versions for {} users", reloaded.size());
+    }
+
+    private void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.healthrecords.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.healthrecords.model.User;
+import com.healthrecords.model.UserRole;
+import com.healthrecords.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Cross-request cache of user rows keyed by email, used to resolve the authenticated user.
+ *
+ * Only an immutable snapshot of the scalar columns is cached (never the password or the
+ * lazy collections); every lookup hands out a fresh detached {@link User} built from it.
+ * Entries are evicted by {@link com.healthrecords.service.UserService} when a user is
+ * updated or deleted, and expire after a short TTL so other replicas converge.
+ */
+@Component
+@RequiredArgsConstructor
+public class UserProjectionCache {
+
+    private final UserRepository userRepository;
+
+    @Value("${users.cache.max-size:10000}")
+    private long maxSize;
+
+    @Value("${users.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private Cache<String, CachedUser> usersByEmail;
+
+    @PostConstruct
+    void init() {
+        usersByEmail = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    /**
+     * A detached copy of the user, whether it was cached or just loaded, so callers never get
+     * the managed entity on a miss and a snapshot on a hit
+     */
+    public Optional<User> findByEmail(String email) {
+        CachedUser cached = usersByEmail.getIfPresent(email);
+        if (cached == null) {
+            Optional<User> user = userRepository.findByEmail(email);
+            if (user.isEmpty()) {
+                return Optional.empty();
+            }
+            cached = CachedUser.of(user.get());
+            usersByEmail.put(email, cached);
+        }
+        return Optional.of(cached.toUser());
+    }
+
+    /**
+     * Drop the user now and again after the surrounding transaction commits,
+     * so a concurrent request cannot re-populate the entry with pre-commit data.
+     */
+    public void evict(Long userId) {
+        evictNow(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictNow(userId);
+                }
+            });
+        }
+    }
+
+    private void evictNow(Long userId) {
+        usersByEmail.asMap().values().removeIf(cached -> cached.id().equals(userId));
+    }
+
+    private record CachedUser(Long id, String firstName, String lastName, String email, UserRole role,
+                              String phoneNumber, String address, String specialization, Integer tokenVersion,
+                              LocalDateTime createdAt, LocalDateTime updatedAt) {
+
+        static CachedUser of(User user) {
+            return new CachedUser(user.getId(), user.getFirstName(), user.getLastName(), user.getEmail(),
+                    user.getRole(), user.getPhoneNumber(), user.getAddress(), user.getSpecialization(),
+                    user.getTokenVersion(), user.getCreatedAt(), user.getUpdatedAt());
+        }
+
+        User toUser() {
+            return User.builder()
+                    .id(id)
+                    .firstName(firstName)
+                    .lastName(lastName)
+                    .email(email)
+                    .role(role)
+                    .phoneNumber(phoneNumber)
+                    .address(address)
+                    .specialization(specialization)
+                    .tokenVersion(tokenVersion)
+                    .createdAt(createdAt)
+                    .updatedAt(updatedAt)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.healthrecords.service;
+
+import com.healthrecords.dto.AppointmentDetail;
+import com.healthrecords.model.Appointment;
+import com.healthrecords.model.Notification;
+import com.healthrecords.repository.AppointmentRepository;
+import com.healthrecords.repository.ReminderLeaseRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Sends reminder notifications for approved appointments at fixed offsets before they start.
+ *
+ * Reminder fire times are grouped into buckets of {@code appointments.reminders.bucket-minutes}.
+ * Shortly before a bucket starts, each replica tries to lease it in {@code reminder_bucket_leases};
+ * the one that gets the lease loads that bucket's appointments (one windowed query per offset)
+ * into a {@link HashedTimingWheel} and fires them in batches as they come due. Leases are renewed
+ * while the bucket is open, and a replica that stops renewing loses the bucket to another one,
+ * which skips the reminders already recorded as fired.
+ *
+ * Every renewal also reloads the held buckets, so appointments approved, rescheduled or moved with
+ * their series after a bucket was loaded are added to it, by whichever replica changed them. When
+ * reminders fire, their appointments are read again: those no longer approved, or no longer starting
+ * at the time the reminder was scheduled for, are skipped, and the rest are built from current details.
+ */
+@Service
+@RequiredArgsConstructor
+public class AppointmentReminderService {
+
+    private static final Logger log = LoggerFactory.getLogger(AppointmentReminderService.class);
+
+    private static final int WHEEL_SLOTS = 512;
+
+    private final AppointmentRepository appointmentRepository;
+    private final NotificationService notificationService;
+    private final ReminderLeaseRepository reminderLeaseRepository;
+
+    @Value("${appointments.reminders.enabled:true}")
+    private boolean enabled;
+
+    @Value("${appointments.reminders.offset-minutes:1440,60}")
+    private String offsetMinutesProperty;
+
+    @Value("${appointments.reminders.bucket-minutes:5}")
+    private long bucketMinutes;
+
+    @Value("${appointments.reminders.lease-seconds:120}")
+    private long leaseSeconds;
+
+    @Value("${appointments.reminders.catch-up-minutes:15}")
+    private long catchUpMinutes;
+
+    @Value("${appointments.reminders.tick-ms:1000}")
+    private long tickMillis;
+
+    @Value("${appointments.reminders.instance-id:}")
+    private String instanceId;
+
+    private List<Duration> offsets;
+    private String owner;
+    private HashedTimingWheel<Reminder> wheel;
+
+    // Buckets this replica holds the lease on, with their reminders still to fire
+    private final Map<LocalDateTime, HeldBucket> heldBuckets = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        offsets = new ArrayList<>();
+        for (String minutes : offsetMinutesProperty.split(",")) {
+            if (!minutes.isBlank()) {
+                offsets.add(Duration.ofMinutes(Long.parseLong(minutes.trim())));
+            }
+        }
+        owner = instanceId != null && !instanceId.isBlank() ? instanceId : UUID.randomUUID().toString();
+        wheel = new HashedTimingWheel<>(tickMillis, WHEEL_SLOTS, System.currentTimeMillis());
+    }
+
+    /**
+     * Lease the current and next bucket, plus recent ones nobody completed, and renew and reload the
+     * buckets already held. Synchronized with {@link #tick}, as the two can run on different scheduler threads.
+     */
+    @Scheduled(fixedDelayString = "${appointments.reminders.claim-interval-ms:30000}")
+    public synchronized void claimBuckets() {
+        if (!enabled) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        Duration bucketLength = Duration.ofMinutes(bucketMinutes);
+        LocalDateTime leaseUntil = now.plusSeconds(leaseSeconds);
+        LocalDateTime last = bucketStart(now.plus(bucketLength));
+
+        for (LocalDateTime bucket = bucketStart(now.minusMinutes(catchUpMinutes)); !bucket.isAfter(last);
+             bucket = bucket.plus(bucketLength)) {
+            boolean claimed = reminderLeaseRepository.claim(bucket, owner, leaseUntil, now);
+            if (!claimed) {
+                drop(bucket);
+            } else {
+                load(bucket, now);
+            }
+        }
+
+        completeFinishedBuckets(now);
+        reminderLeaseRepository.purgeCompletedBefore(now.minusDays(2));
+    }
+
+    /**
+     * Fire the reminders that are due, as one batch of notifications.
+     */
+    @Scheduled(fixedRateString = "${appointments.reminders.tick-ms:1000}")
+    public synchronized void tick() {
+        if (!enabled) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Reminder> due = wheel.advance(toMillis(now));
+        if (!due.isEmpty()) {
+            fire(due);
+        }
+    }
+
+    /**
+     * Schedule the bucket's reminders that are not scheduled or fired yet; loads it the first time
+     */
+    private void load(LocalDateTime bucket, LocalDateTime now) {
+        HeldBucket held = heldBuckets.get(bucket);
+        boolean first = held == null;
+        if (first) {
+            held = new HeldBucket(reminderLeaseRepository.findFiredUntil(bucket));
+            heldBuckets.put(bucket, held);
+        }
+
+        LocalDateTime bucketEnd = bucket.plusMinutes(bucketMinutes);
+        LocalDateTime oldest = now.minusMinutes(catchUpMinutes);
+        int scheduled = 0;
+        for (Duration offset : offsets) {
+            for (AppointmentDetail appointment : appointmentRepository.findDetailsStartingBetween(
+                    bucket.plus(offset), bucketEnd.plus(offset), Appointment.AppointmentStatus.APPROVED)) {
+                LocalDateTime start = appointment.getAppointmentDateTime();
+                LocalDateTime fireAt = start.minus(offset);
+                // Already sent, by us or a previous lease holder, or too late to be useful
+                if ((held.firedUntil != null && !fireAt.isAfter(held.firedUntil)) || fireAt.isBefore(oldest)) {
+                    continue;
+                }
+                Reminder reminder = new Reminder(bucket, fireAt, appointment.getId(), start);
+                if (held.pending.add(reminder.key())) {
+                    wheel.schedule(reminder, toMillis(fireAt));
+                    scheduled++;
+                }
+            }
+        }
+
+        if (first) {
+            log.debug("Leased reminder bucket {} with {} reminders", bucket, scheduled);
+        } else if (scheduled > 0) {
+            log.debug("Added {} reminders to reminder bucket {}", scheduled, bucket);
+        }
+    }
+
+    private void fire(List<Reminder> due) {
+        // Current details, to skip appointments cancelled or moved since their reminder was scheduled
+        Map<Long, AppointmentDetail> current = appointmentRepository.findDetailsByIds(
+                        due.stream().map(reminder -> reminder.appointmentId).collect(Collectors.toSet())).stream()
+                .collect(Collectors.toMap(AppointmentDetail::getId, Function.identity()));
+
+        List<Notification> notifications = new ArrayList<>();
+        Map<LocalDateTime, LocalDateTime> firedUntil = new HashMap<>();
+        for (Reminder reminder : due) {
+            AppointmentDetail appointment = current.get(reminder.appointmentId);
+            // A moved appointment is scheduled again at its new time when its bucket is reloaded
+            if (appointment != null && appointment.getStatus() == Appointment.AppointmentStatus.APPROVED
+                    && reminder.start.equals(appointment.getAppointmentDateTime())) {
+                notifications.add(notificationService.buildAppointmentReminderNotification(appointment));
+            }
+            firedUntil.merge(reminder.bucket, reminder.fireAt, (a, b) -> a.isAfter(b) ? a : b);
+        }
+
+        notificationService.createNotificationsInBatch(notifications);
+
+        firedUntil.forEach((bucket, fireAt) -> reminderLeaseRepository.markFired(bucket, owner, fireAt));
+        for (Reminder reminder : due) {
+            HeldBucket held = heldBuckets.get(reminder.bucket);
+            if (held != null) {
+                held.pending.remove(reminder.key());
+                if (held.firedUntil == null || reminder.fireAt.isAfter(held.firedUntil)) {
+                    held.firedUntil = reminder.fireAt;
+                }
+            }
+        }
+        log.debug("Sent {} appointment reminders", notifications.size());
+    }
+
+    /**
+     * Mark buckets that are over and have nothing left to fire as completed, so no replica claims them again.
+     */
+    private void completeFinishedBuckets(LocalDateTime now) {
+        for (Map.Entry<LocalDateTime, HeldBucket> entry : heldBuckets.entrySet()) {
+            LocalDateTime bucket = entry.getKey();
+            if (entry.getValue().pending.isEmpty() && !bucket.plusMinutes(bucketMinutes).isAfter(now)) {
+                reminderLeaseRepository.complete(bucket, owner, now);
+                heldBuckets.remove(bucket);
+            }
+        }
+    }
+
+    /**
+     * Forget a bucket whose lease went to another replica
+     */
+    private void drop(LocalDateTime bucket) {
+        if (heldBuckets.remove(bucket) != null) {
+            int removed = wheel.removeIf(reminder -> reminder.bucket.equals(bucket));
+            log.warn("Lost the lease on reminder bucket {}, dropped {} pending reminders", bucket, removed);
+        }
+    }
+
+    private LocalDateTime bucketStart(LocalDateTime time) {
+        LocalDateTime hour = time.truncatedTo(ChronoUnit.HOURS);
+        long minutes = ChronoUnit.MINUTES.between(hour, time);
+        return hour.plusMinutes(minutes - minutes % bucketMinutes);
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static class HeldBucket {
+        // Appointment and fire time of the reminders scheduled and not fired yet
+        private final Set<ReminderKey> pending = new HashSet<>();
+        // Latest fire time sent for the bucket
+        private LocalDateTime firedUntil;
+
+        HeldBucket(LocalDateTime firedUntil) {
+            this.firedUntil = firedUntil;
+        }
+    }
+
+    private record ReminderKey(Long appointmentId, LocalDateTime fireAt) {
+    }
+
+    private static class Reminder {
+        private final LocalDateTime bucket;
+        private final LocalDateTime fireAt;
+        private final Long appointmentId;
+        // Start time of the appointment when the reminder was scheduled
+        private final LocalDateTime start;
+
+        Reminder(LocalDateTime bucket, LocalDateTime fireAt, Long appointmentId, LocalDateTime start) {
+            this.bucket = bucket;
+            this.fireAt = fireAt;
+            this.appointmentId = appointmentId;
+            this.start = start;
+        }
+
+        ReminderKey key() {
+            return new ReminderKey(appointmentId, fireAt);
+        }
+    }
+}
@@ -1,62 +1,250 @@
 package com.healthrecords.service;
 
+import com.healthrecords.dto.AppointmentCursor;
+import com.healthrecords.dto.AppointmentDetail;
+import com.healthrecords.dto.AppointmentSeriesRequest;
+import com.healthrecords.dto.AppointmentSeriesResponse;
+import com.healthrecords.dto.AppointmentSeriesUpdateRequest;
+import com.healthrecords.dto.AppointmentSummary;
+import com.healthrecords.dto.BulkAppointmentAction;
+import com.healthrecords.dto.BulkAppointmentResult;
+import com.healthrecords.dto.CursorPage;
+import com.healthrecords.dto.DoctorCalendarResponse;
 import com.healthrecords.dto.SimpleAppointmentRequest;
+import com.healthrecords.exception.AppointmentStateConflictException;
+import com.healthrecords.exception.SlotUnavailableException;
 import com.healthrecords.model.Appointment;
+import com.healthrecords.model.AppointmentSeries;
 import com.healthrecords.model.User;
 import com.healthrecords.model.UserRole;
 import com.healthrecords.repository.AppointmentRepository;
+import com.healthrecords.repository.AppointmentSeriesRepository;
+import com.healthrecords.repository.DirectAppointmentRepository;
+import com.healthrecords.repository.NotificationOutboxRepository;
 import com.healthrecords.repository.UserRepository;
+import com.healthrecords.security.CurrentUserContext;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.security.access.AccessDeniedException;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class AppointmentService {
 
+    private static final Logger log = LoggerFactory.getLogger(AppointmentService.class);
+
     private final AppointmentRepository appointmentRepository;
+    private final DirectAppointmentRepository directAppointmentRepository;
     private final UserRepository userRepository;
     private final NotificationService notificationService;
+    private final CurrentUserContext currentUserContext;
+    private final DoctorScheduleIndex doctorScheduleIndex;
+    private final AppointmentSeriesRepository appointmentSeriesRepository;
+    private final DoctorCalendarService doctorCalendarService;
+    private final NotificationOutboxRepository notificationOutboxRepository;
+
+    @Value("${appointments.page.default-size:50}")
+    private int defaultPageSize;
+
+    @Value("${appointments.page.max-size:200}")
+    private int maxPageSize;
+
+    @Value("${appointments.bulk.max-actions:100}")
+    private int maxBulkActions;
+
+    @Value("${appointments.series.max-occurrences:52}")
+    private int maxSeriesOccurrences;
+
+    @Value("${appointments.list.max-size:1000}")
+    private int maxListSize;
+
+    private static final List<Appointment.AppointmentStatus> SERIES_EDITABLE_STATUSES =
+            List.of(Appointment.AppointmentStatus.PENDING, Appointment.AppointmentStatus.APPROVED);
+
+    private static final List<Appointment.AppointmentStatus> CANCELLABLE_STATUSES =
+            List.of(Appointment.AppointmentStatus.PENDING, Appointment.AppointmentStatus.APPROVED);
 
     /**
-     * Get all appointments - accessible only to admins
+     * Get the first appointments, at most appointments.list.max-size of them - accessible only to admins.
+     * Superseded by {@link #getAllAppointmentsPage}, which pages through all of them.
      */
-    public List<Appointment> getAllAppointments() {
+    @Deprecated
+    public List<AppointmentDetail> getAllAppointments() {
         User currentUser = getCurrentUser();
         if (currentUser.getRole() != UserRole.ROLE_ADMIN) {
             throw new AccessDeniedException("Only administrators can access all appointments");
         }
-        return appointmentRepository.findAll();
+        return appointmentRepository.findAllDetails(PageRequest.of(0, maxListSize));
     }
 
     /**
      * Get appointments by date range - accessible to admins for all appointments,
      * doctors for their appointments, patients for their own appointments
      */
-    public List<Appointment> getAppointmentsByDateRange(LocalDateTime start, LocalDateTime end) {
+    public List<AppointmentDetail> getAppointmentsByDateRange(LocalDateTime start, LocalDateTime end) {
         User currentUser = getCurrentUser();
-        List<Appointment> appointments;
+        List<AppointmentDetail> appointments;
 
         if (currentUser.getRole() == UserRole.ROLE_ADMIN) {
-            appointments = appointmentRepository.findByDateRange(start, end);
+            appointments = appointmentRepository.findDetailsByDateRange(start, end);
         } else if (currentUser.getRole() == UserRole.ROLE_DOCTOR) {
-            appointments = appointmentRepository.findByDoctorAndDateRange(currentUser, start, end);
+            appointments = appointmentRepository.findDetailsByDoctorAndDateRange(currentUser.getId(), start, end);
         } else {
-            appointments = appointmentRepository.findByPatientAndDateRange(currentUser, start, end);
+            appointments = appointmentRepository.findDetailsByPatientAndDateRange(currentUser.getId(), start, end);
         }
 
         // Ensure we're not returning null
         return appointments != null ? appointments : new ArrayList<>();
     }
 
+    /**
+     * Get one page of all appointments - accessible only to admins
+     */
+    public CursorPage<AppointmentSummary> getAllAppointmentsPage(String cursor, Integer size) {
+        User currentUser = getCurrentUser();
+        if (currentUser.getRole() != UserRole.ROLE_ADMIN) {
+            throw new AccessDeniedException("Only administrators can access all appointments");
+        }
+        AppointmentCursor after = AppointmentCursor.decode(cursor);
+        int limit = resolvePageSize(size);
+        return toPage(appointmentRepository.findPageAfter(after.getAppointmentDateTime(), after.getId(),
+                PageRequest.of(0, limit + 1)), limit, AppointmentSummary::getAppointmentDateTime, AppointmentSummary::getId);
+    }
+
+    /**
+     * Get one page of appointments in a date range, with the same access rules as
+     * {@link #getAppointmentsByDateRange(LocalDateTime, LocalDateTime)}
+     */
+    public CursorPage<AppointmentSummary> getAppointmentsByDateRangePage(LocalDateTime start, LocalDateTime end,
+                                                                   String cursor, Integer size) {
+        User currentUser = getCurrentUser();
+        AppointmentCursor after = AppointmentCursor.decode(cursor);
+        int limit = resolvePageSize(size);
+        PageRequest pageRequest = PageRequest.of(0, limit + 1);
+        List<AppointmentSummary> rows;
+
+        if (currentUser.getRole() == UserRole.ROLE_ADMIN) {
+            rows = appointmentRepository.findPageByDateRangeAfter(start, end,
+                    after.getAppointmentDateTime(), after.getId(), pageRequest);
+        } else if (currentUser.getRole() == UserRole.ROLE_DOCTOR) {
+            rows = appointmentRepository.findPageByDoctorAndDateRangeAfter(currentUser.getId(), start, end,
+                    after.getAppointmentDateTime(), after.getId(), pageRequest);
+        } else if (currentUser.getRole() == UserRole.ROLE_PATIENT) {
+            rows = appointmentRepository.findPageByPatientAndDateRangeAfter(currentUser.getId(), start, end,
+                    after.getAppointmentDateTime(), after.getId(), pageRequest);
+        } else {
+            throw new AccessDeniedException("Invalid role for this operation");
+        }
+        return toPage(rows, limit, AppointmentSummary::getAppointmentDateTime, AppointmentSummary::getId);
+    }
+
+    /**
+     * Get one page of the current user's appointments
+     */
+    public CursorPage<AppointmentSummary> getMyAppointmentsPage(String cursor, Integer size) {
+        User currentUser = getCurrentUser();
+        AppointmentCursor after = AppointmentCursor.decode(cursor);
+        int limit = resolvePageSize(size);
+        PageRequest pageRequest = PageRequest.of(0, limit + 1);
+        List<AppointmentSummary> rows;
+
+        if (currentUser.getRole() == UserRole.ROLE_DOCTOR) {
+            rows = appointmentRepository.findPageByDoctorAfter(currentUser.getId(),
+                    after.getAppointmentDateTime(), after.getId(), pageRequest);
+        } else if (currentUser.getRole() == UserRole.ROLE_PATIENT) {
+            rows = appointmentRepository.findPageByPatientAfter(currentUser.getId(),
+                    after.getAppointmentDateTime(), after.getId(), pageRequest);
+        } else {
+            throw new AccessDeniedException("Invalid role for this operation");
+        }
+        return toPage(rows, limit, AppointmentSummary::getAppointmentDateTime, AppointmentSummary::getId);
+    }
+
+    /**
+     * Get one page of a doctor's appointments - admins can list any doctor, doctors only themselves
+     */
+    public CursorPage<AppointmentSummary> getDoctorAppointmentsPage(Long doctorId, String cursor, Integer size) {
+        User currentUser = getCurrentUser();
+        if (currentUser.getRole() != UserRole.ROLE_ADMIN &&
+            !(currentUser.getRole() == UserRole.ROLE_DOCTOR && currentUser.getId().equals(doctorId))) {
+            throw new AccessDeniedException("You don't have permission to access these appointments");
+        }
+        AppointmentCursor after = AppointmentCursor.decode(cursor);
+        int limit = resolvePageSize(size);
+        return toPage(appointmentRepository.findPageByDoctorAfter(doctorId, after.getAppointmentDateTime(), after.getId(),
+                PageRequest.of(0, limit + 1)), limit, AppointmentSummary::getAppointmentDateTime, AppointmentSummary::getId);
+    }
+
+    private int resolvePageSize(Integer size) {
+        if (size == null) {
+            return defaultPageSize;
+        }
+        if (size < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1");
+        }
+        return Math.min(size, maxPageSize);
+    }
+
+    /**
+     * Turn up to limit + 1 rows into a page; the extra row only tells whether there is a next page
+     */
+    private <T> CursorPage<T> toPage(List<T> rows, int limit,
+                                     Function<T, LocalDateTime> dateTimeOf, Function<T, Long> idOf) {
+        boolean hasMore = rows.size() > limit;
+        List<T> items = hasMore ? new ArrayList<>(rows.subList(0, limit)) : rows;
+        String nextCursor = null;
+        if (hasMore) {
+            T last = items.get(items.size() - 1);
+            nextCursor = new AppointmentCursor(dateTimeOf.apply(last), idOf.apply(last)).encode();
+        }
+        return CursorPage.<T>builder()
+                .items(items)
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .size(items.size())
+                .build();
+    }
+
+    /**
+     * Get the detail projection of an appointment - with the same access rules as {@link #getAppointmentById(Long)}
+     */
+    public AppointmentDetail getAppointmentDetail(Long id) {
+        AppointmentDetail appointment = appointmentRepository.findDetailById(id)
+                .orElseThrow(() -> new EntityNotFoundException("Appointment not found with id: " + id));
+
+        User currentUser = getCurrentUser();
+        boolean allowed = currentUser.getRole() == UserRole.ROLE_ADMIN ||
+                (currentUser.getRole() == UserRole.ROLE_DOCTOR && appointment.getDoctor().getId().equals(currentUser.getId())) ||
+                (currentUser.getRole() == UserRole.ROLE_PATIENT && appointment.getPatient().getId().equals(currentUser.getId()));
+
+        if (!allowed) {
+            throw new AccessDeniedException("You don't have permission to access this appointment");
+        }
+        return appointment;
+    }
+
     /**
      * Get appointment by ID - with role-based access control
      */
@@ -206,6 +394,9 @@ public class AppointmentService {
             throw new IllegalArgumentException("Status is required");
         }
 
+        // Take the slot before saving so concurrent bookings of the same doctor cannot both succeed
+        doctorScheduleIndex.reserve(appointment.getDoctor().getId(), appointment.getAppointmentDateTime(), null);
+
         System.out.println("Saving appointment to database");
         System.out.println("Final appointment data: " + appointment);
 
@@ -228,6 +419,10 @@ public class AppointmentService {
 
             // Try to save the appointment
             savedAppointment = appointmentRepository.save(appointment);
+            doctorScheduleIndex.assign(savedAppointment.getDoctor().getId(),
+                    savedAppointment.getAppointmentDateTime(), savedAppointment.getId());
+            doctorCalendarService.recordAdded(savedAppointment.getDoctor().getId(),
+                    savedAppointment.getAppointmentDateTime(), savedAppointment.getStatus());
             System.out.println("Appointment saved with ID: " + savedAppointment.getId());
         } catch (Exception e) {
             System.out.println("Error saving appointment: " + e.getMessage());
@@ -239,8 +434,9 @@ public class AppointmentService {
         // Create notification if appointment is requested by a patient
         if (currentUser.getRole() == UserRole.ROLE_PATIENT &&
             savedAppointment.getStatus() == Appointment.AppointmentStatus.PENDING) { // Was REQUESTED
-            System.out.println("Creating notification for doctor about appointment request");
-            notificationService.createAppointmentRequestNotification(savedAppointment);
+            System.out.println("Queueing notification for doctor about appointment request");
+            notificationOutboxRepository.append(List.of(new NotificationOutboxRepository.Entry(
+                    NotificationOutboxRepository.EventType.APPOINTMENT_REQUESTED, savedAppointment.getId(), null)), LocalDateTime.now());
         }
 
         System.out.println("Appointment creation completed successfully");
@@ -255,6 +451,16 @@ public class AppointmentService {
         Appointment appointment = getAppointmentById(id); // This checks permissions
         User currentUser = getCurrentUser();
 
+        // Reject edits based on a stale copy when the client sends the version it loaded
+        if (appointmentDetails.getVersion() != null && !appointmentDetails.getVersion().equals(appointment.getVersion())) {
+            throw new ObjectOptimisticLockingFailureException(Appointment.class, id);
+        }
+
+        Long previousDoctorId = appointment.getDoctor().getId();
+        LocalDateTime previousDateTime = appointment.getAppointmentDateTime();
+        Appointment.AppointmentStatus previousStatus = appointment.getStatus();
+        boolean wasCancelled = previousStatus == Appointment.AppointmentStatus.CANCELLED;
+
         // Update fields based on role
         if (currentUser.getRole() == UserRole.ROLE_PATIENT) {
             // Patients can only update certain fields
@@ -287,9 +493,60 @@ public class AppointmentService {
             }
         }
 
+        updateScheduleIndex(appointment, previousDoctorId, previousDateTime, wasCancelled);
+        doctorCalendarService.recordChanged(previousDoctorId, previousDateTime, previousStatus,
+                appointment.getDoctor().getId(), appointment.getAppointmentDateTime(), appointment.getStatus());
         return appointmentRepository.save(appointment);
     }
 
+    /**
+     * Keep the doctor schedule index in line with a changed appointment:
+     * take the new slot if it moved or was reopened, and free the old one if it moved or was cancelled.
+     */
+    private void updateScheduleIndex(Appointment appointment, Long previousDoctorId,
+                                     LocalDateTime previousDateTime, boolean wasCancelled) {
+        boolean cancelled = appointment.getStatus() == Appointment.AppointmentStatus.CANCELLED;
+        boolean moved = !appointment.getDoctor().getId().equals(previousDoctorId) ||
+                !Objects.equals(appointment.getAppointmentDateTime(), previousDateTime);
+
+        if (!cancelled && (moved || wasCancelled)) {
+            doctorScheduleIndex.reserve(appointment.getDoctor().getId(), appointment.getAppointmentDateTime(), appointment.getId());
+        }
+        if (!wasCancelled && (moved || cancelled)) {
+            doctorScheduleIndex.release(previousDoctorId, previousDateTime, appointment.getId());
+        }
+    }
+
+    /**
+     * Whether the doctor can take an appointment starting at the given time
+     */
+    public boolean isSlotAvailable(Long doctorId, LocalDateTime dateTime) {
+        return doctorScheduleIndex.isAvailable(doctorId, dateTime);
+    }
+
+    /**
+     * Free appointment slots of a doctor on the given day
+     */
+    public List<LocalDateTime> getFreeSlots(Long doctorId, LocalDate date) {
+        return doctorScheduleIndex.getFreeSlots(doctorId, date);
+    }
+
+    /**
+     * Appointment counts per day and status of a doctor for a month - doctors only see their own
+     */
+    public DoctorCalendarResponse getDoctorCalendar(Long doctorId, YearMonth month) {
+        User currentUser = getCurrentUser();
+
+        if (currentUser.getRole() == UserRole.ROLE_DOCTOR && !currentUser.getId().equals(doctorId)) {
+            throw new AccessDeniedException("You can only view your own calendar");
+        }
+        if (currentUser.getRole() == UserRole.ROLE_PATIENT) {
+            throw new AccessDeniedException("Patients cannot view doctor calendars");
+        }
+
+        return doctorCalendarService.getMonth(doctorId, month);
+    }
+
     /**
      * Delete an appointment - only admins and doctors can delete appointments
      */
@@ -310,6 +567,11 @@ public class AppointmentService {
             
             // Then delete the appointment
             appointmentRepository.delete(appointment);
+            doctorCalendarService.recordRemoved(appointment.getDoctor().getId(),
+                    appointment.getAppointmentDateTime(), appointment.getStatus());
+            if (appointment.getStatus() != Appointment.AppointmentStatus.CANCELLED) {
+                doctorScheduleIndex.release(appointment.getDoctor().getId(), appointment.getAppointmentDateTime(), id);
+            }
             
             System.out.println("Successfully deleted appointment with ID: " + id);
         } catch (Exception e) {
@@ -322,13 +584,13 @@ public class AppointmentService {
     /**
      * Get appointments for the current user
      */
-    public List<Appointment> getMyAppointments() {
+    public List<AppointmentDetail> getMyAppointments() {
         User currentUser = getCurrentUser();
 
         if (currentUser.getRole() == UserRole.ROLE_DOCTOR) {
-            return appointmentRepository.findByDoctor(currentUser);
+            return appointmentRepository.findDetailsByDoctor(currentUser.getId());
         } else if (currentUser.getRole() == UserRole.ROLE_PATIENT) {
-            return appointmentRepository.findByPatient(currentUser);
+            return appointmentRepository.findDetailsByPatient(currentUser.getId());
         } else {
             throw new AccessDeniedException("Invalid role for this operation");
         }
@@ -337,18 +599,18 @@ public class AppointmentService {
     /**
      * Get upcoming appointments for the current user
      */
-    public List<Appointment> getMyUpcomingAppointments() {
+    public List<AppointmentDetail> getMyUpcomingAppointments() {
         User currentUser = getCurrentUser();
         LocalDateTime now = LocalDateTime.now();
-        List<Appointment> appointments;
+        List<AppointmentDetail> appointments;
 
         if (currentUser.getRole() == UserRole.ROLE_DOCTOR) {
-            appointments = appointmentRepository.findByDoctorAndDateRange(currentUser, now, now.plusMonths(1));
+            appointments = appointmentRepository.findDetailsByDoctorAndDateRange(currentUser.getId(), now, now.plusMonths(1));
         } else if (currentUser.getRole() == UserRole.ROLE_PATIENT) {
-            appointments = appointmentRepository.findByPatientAndDateRange(currentUser, now, now.plusMonths(1));
+            appointments = appointmentRepository.findDetailsByPatientAndDateRange(currentUser.getId(), now, now.plusMonths(1));
         } else if (currentUser.getRole() == UserRole.ROLE_ADMIN) {
             // Allow admins to see all upcoming appointments
-            appointments = appointmentRepository.findByDateRange(now, now.plusMonths(1));
+            appointments = appointmentRepository.findDetailsByDateRange(now, now.plusMonths(1));
         } else {
             throw new AccessDeniedException("Invalid role for this operation");
         }
@@ -359,75 +621,501 @@ public class AppointmentService {
 
     /**
      * Confirm an appointment - only doctors and admins can confirm appointments
+     * The status check and the change are a single conditional update, so of two concurrent
+     * confirmations only one succeeds and the other gets a conflict.
      */
     @Transactional
-    public Appointment confirmAppointment(Long id) {
-        Appointment appointment = getAppointmentById(id); // This checks permissions
+    public AppointmentDetail confirmAppointment(Long id) {
         User currentUser = getCurrentUser();
 
         if (currentUser.getRole() == UserRole.ROLE_PATIENT) {
             throw new AccessDeniedException("Patients cannot confirm appointments");
         }
 
-        System.out.println("Confirming appointment with ID: " + appointment.getId() + " and status: " + appointment.getStatus());
+        System.out.println("Confirming appointment with ID: " + id);
 
         // Only pending appointments can be confirmed
-        if (appointment.getStatus() != Appointment.AppointmentStatus.PENDING) { // Was REQUESTED
-            System.out.println("Cannot confirm appointment with status: " + appointment.getStatus());
-            System.out.println("Only PENDING appointments can be confirmed");
-            throw new IllegalStateException("Only pending appointments can be confirmed");
+        int updated = appointmentRepository.transitionStatus(id, List.of(Appointment.AppointmentStatus.PENDING),
+                Appointment.AppointmentStatus.APPROVED, doctorFilter(currentUser), null, LocalDateTime.now());
+        if (updated == 0) {
+            throw transitionFailure(id, "Only pending appointments can be confirmed");
         }
 
-        appointment.setStatus(Appointment.AppointmentStatus.APPROVED); // Was CONFIRMED
-        Appointment savedAppointment = appointmentRepository.save(appointment);
+        AppointmentDetail appointment = findDetail(id);
+        doctorCalendarService.recordChanged(appointment.getDoctor().getId(), appointment.getAppointmentDateTime(),
+                Appointment.AppointmentStatus.PENDING, appointment.getDoctor().getId(),
+                appointment.getAppointmentDateTime(), Appointment.AppointmentStatus.APPROVED);
 
-        // Create notification for the patient
-        notificationService.createAppointmentConfirmationNotification(savedAppointment);
+        // Notify the patient once this commits
+        notificationOutboxRepository.append(List.of(new NotificationOutboxRepository.Entry(
+                NotificationOutboxRepository.EventType.APPOINTMENT_CONFIRMED, id, null)), LocalDateTime.now());
 
-        return savedAppointment;
+        return appointment;
     }
 
     /**
      * Reject an appointment - only doctors and admins can reject appointments
      */
     @Transactional
-    public Appointment rejectAppointment(Long id, String reason) {
-        Appointment appointment = getAppointmentById(id); // This checks permissions
+    public AppointmentDetail rejectAppointment(Long id, String reason) {
         User currentUser = getCurrentUser();
 
         if (currentUser.getRole() == UserRole.ROLE_PATIENT) {
             throw new AccessDeniedException("Patients cannot reject appointments");
         }
 
+        System.out.println("Rejecting appointment with ID: " + id);
+
         // Only pending appointments can be rejected
-        if (appointment.getStatus() != Appointment.AppointmentStatus.PENDING) { // Was REQUESTED
-            System.out.println("Cannot reject appointment with status: " + appointment.getStatus());
-            System.out.println("Only PENDING appointments can be rejected");
-            throw new IllegalStateException("Only pending appointments can be rejected");
+        int updated = appointmentRepository.transitionStatusWithNote(id, Appointment.AppointmentStatus.PENDING,
+                Appointment.AppointmentStatus.CANCELLED, doctorFilter(currentUser), "Rejection reason: " + reason,
+                "\n\n", LocalDateTime.now());
+        if (updated == 0) {
+            throw transitionFailure(id, "Only pending appointments can be rejected");
         }
 
-        System.out.println("Rejecting appointment with ID: " + appointment.getId() + " and status: " + appointment.getStatus());
+        AppointmentDetail appointment = findDetail(id);
+        doctorScheduleIndex.release(appointment.getDoctor().getId(), appointment.getAppointmentDateTime(), id);
+        doctorCalendarService.recordChanged(appointment.getDoctor().getId(), appointment.getAppointmentDateTime(),
+                Appointment.AppointmentStatus.PENDING, appointment.getDoctor().getId(),
+                appointment.getAppointmentDateTime(), Appointment.AppointmentStatus.CANCELLED);
 
-        appointment.setStatus(Appointment.AppointmentStatus.CANCELLED);
-        appointment.setNotes(appointment.getNotes() != null ?
-                            appointment.getNotes() + "\n\nRejection reason: " + reason :
-                            "Rejection reason: " + reason);
+        // Notify the patient once this commits
+        notificationOutboxRepository.append(List.of(new NotificationOutboxRepository.Entry(
+                NotificationOutboxRepository.EventType.APPOINTMENT_REJECTED, id, reason)), LocalDateTime.now());
 
-        Appointment savedAppointment = appointmentRepository.save(appointment);
+        return appointment;
+    }
 
-        // Create notification for the patient
-        notificationService.createAppointmentRejectionNotification(savedAppointment, reason);
+    /**
+     * Cancel a pending or approved appointment - patients can cancel their own appointments,
+     * doctors the ones they are assigned to, admins any of them
+     */
+    @Transactional
+    public AppointmentDetail cancelAppointment(Long id) {
+        User currentUser = getCurrentUser();
+        Long patientFilter = currentUser.getRole() == UserRole.ROLE_PATIENT ? currentUser.getId() : null;
 
-        return savedAppointment;
+        System.out.println("Cancelling appointment with ID: " + id);
+
+        // One conditional update per starting status, so the calendar counters know which one it left
+        Appointment.AppointmentStatus previousStatus = null;
+        for (Appointment.AppointmentStatus expected : CANCELLABLE_STATUSES) {
+            if (appointmentRepository.transitionStatus(id, List.of(expected), Appointment.AppointmentStatus.CANCELLED,
+                    doctorFilter(currentUser), patientFilter, LocalDateTime.now()) > 0) {
+                previousStatus = expected;
+                break;
+            }
+        }
+        if (previousStatus == null) {
+            throw transitionFailure(id, "Only pending or approved appointments can be cancelled");
+        }
+
+        AppointmentDetail appointment = findDetail(id);
+        doctorScheduleIndex.release(appointment.getDoctor().getId(), appointment.getAppointmentDateTime(), id);
+        doctorCalendarService.recordChanged(appointment.getDoctor().getId(), appointment.getAppointmentDateTime(),
+                previousStatus, appointment.getDoctor().getId(), appointment.getAppointmentDateTime(),
+                Appointment.AppointmentStatus.CANCELLED);
+
+        // Let the other side know once this commits
+        notificationOutboxRepository.append(List.of(new NotificationOutboxRepository.Entry(
+                currentUser.getRole() == UserRole.ROLE_PATIENT
+                        ? NotificationOutboxRepository.EventType.APPOINTMENT_CANCELLED_BY_PATIENT
+                        : NotificationOutboxRepository.EventType.APPOINTMENT_CANCELLED, id, null)), LocalDateTime.now());
+
+        return appointment;
+    }
+
+    /**
+     * Confirm, reject or reschedule several appointments in one transaction - only doctors and admins.
+     * Every action is checked against a single read of all affected appointments, the valid ones are
+     * applied as one batch of conditional updates and their notifications queued as one batched outbox insert.
+     * Actions that fail do not affect the others; each gets its own outcome, in request order.
+     */
+    @Transactional
+    public List<BulkAppointmentResult> applyBulkActions(List<BulkAppointmentAction> actions) {
+        User currentUser = getCurrentUser();
+
+        if (currentUser.getRole() == UserRole.ROLE_PATIENT) {
+            throw new AccessDeniedException("Patients cannot change appointments in bulk");
+        }
+        if (actions == null || actions.isEmpty()) {
+            throw new IllegalArgumentException("At least one action is required");
+        }
+        if (actions.size() > maxBulkActions) {
+            throw new IllegalArgumentException("At most " + maxBulkActions + " actions can be applied at once");
+        }
+
+        System.out.println("Applying " + actions.size() + " bulk appointment actions for user: " + currentUser.getEmail());
+
+        Map<Long, AppointmentDetail> appointments = new HashMap<>();
+        for (AppointmentDetail detail : appointmentRepository.findDetailsByIds(actions.stream()
+                .map(BulkAppointmentAction::getAppointmentId).filter(Objects::nonNull).collect(Collectors.toSet()))) {
+            appointments.put(detail.getId(), detail);
+        }
+
+        BulkAppointmentResult[] results = new BulkAppointmentResult[actions.size()];
+        List<Integer> pending = new ArrayList<>();
+        List<DirectAppointmentRepository.StatusTransition> transitions = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+
+        for (int i = 0; i < actions.size(); i++) {
+            BulkAppointmentAction action = actions.get(i);
+            AppointmentDetail appointment = appointments.get(action.getAppointmentId());
+            String error = validateBulkAction(action, appointment, currentUser, seen);
+            if (error != null) {
+                results[i] = bulkResult(action, appointment, false, error);
+                continue;
+            }
+
+            LocalDateTime newDateTime = null;
+            if (action.getAction() == BulkAppointmentAction.Type.RESCHEDULE) {
+                newDateTime = action.getAppointmentDateTime();
+                try {
+                    doctorScheduleIndex.reserve(appointment.getDoctor().getId(), newDateTime, appointment.getId());
+                } catch (SlotUnavailableException e) {
+                    results[i] = bulkResult(action, appointment, false, e.getMessage());
+                    continue;
+                }
+            }
+
+            // Expect exactly the status that was read, so the calendar counters move from the right one
+            transitions.add(new DirectAppointmentRepository.StatusTransition(appointment.getId(),
+                    List.of(appointment.getStatus()), bulkNewStatus(action.getAction(), appointment),
+                    newDateTime, action.getAction() == BulkAppointmentAction.Type.REJECT ?
+                            "Rejection reason: " + bulkReason(action) : null));
+            pending.add(i);
+        }
+
+        int[] counts = directAppointmentRepository.batchTransitionStatus(transitions, LocalDateTime.now());
+
+        List<NotificationOutboxRepository.Entry> notifications = new ArrayList<>();
+        DoctorCalendarService.Changes calendarChanges = new DoctorCalendarService.Changes();
+        for (int t = 0; t < transitions.size(); t++) {
+            int i = pending.get(t);
+            BulkAppointmentAction action = actions.get(i);
+            AppointmentDetail appointment = appointments.get(action.getAppointmentId());
+            Long doctorId = appointment.getDoctor().getId();
+
+            if (counts[t] == 0) {
+                // Changed by a concurrent request after it was read
+                if (action.getAction() == BulkAppointmentAction.Type.RESCHEDULE) {
+                    doctorScheduleIndex.release(doctorId, action.getAppointmentDateTime(), appointment.getId());
+                }
+                results[i] = bulkResult(action, appointment, false, "The appointment was changed by another request");
+                continue;
+            }
+
+            Appointment.AppointmentStatus previousStatus = appointment.getStatus();
+            LocalDateTime previousDateTime = appointment.getAppointmentDateTime();
+            switch (action.getAction()) {
+                case CONFIRM -> {
+                    appointment.setStatus(Appointment.AppointmentStatus.APPROVED);
+                    notifications.add(new NotificationOutboxRepository.Entry(
+                            NotificationOutboxRepository.EventType.APPOINTMENT_CONFIRMED, appointment.getId(), null));
+                }
+                case REJECT -> {
+                    appointment.setStatus(Appointment.AppointmentStatus.CANCELLED);
+                    doctorScheduleIndex.release(doctorId, appointment.getAppointmentDateTime(), appointment.getId());
+                    notifications.add(new NotificationOutboxRepository.Entry(
+                            NotificationOutboxRepository.EventType.APPOINTMENT_REJECTED, appointment.getId(), bulkReason(action)));
+                }
+                case RESCHEDULE -> {
+                    doctorScheduleIndex.release(doctorId, appointment.getAppointmentDateTime(), appointment.getId());
+                    appointment.setAppointmentDateTime(action.getAppointmentDateTime());
+                    notifications.add(new NotificationOutboxRepository.Entry(
+                            NotificationOutboxRepository.EventType.APPOINTMENT_RESCHEDULED, appointment.getId(), null));
+                }
+            }
+            calendarChanges.changed(doctorId, previousDateTime, previousStatus,
+                    doctorId, appointment.getAppointmentDateTime(), appointment.getStatus());
+            results[i] = bulkResult(action, appointment, true, null);
+        }
+
+        doctorCalendarService.apply(calendarChanges);
+        notificationOutboxRepository.append(notifications, LocalDateTime.now());
+
+        System.out.println("Applied " + notifications.size() + " of " + actions.size() + " bulk appointment actions");
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Why a bulk action cannot be applied, or null if it can
+     */
+    private String validateBulkAction(BulkAppointmentAction action, AppointmentDetail appointment,
+                                      User currentUser, Set<Long> seen) {
+        if (action.getAppointmentId() == null || action.getAction() == null) {
+            return "Appointment id and action are required";
+        }
+        if (appointment == null) {
+            return "Appointment not found with id: " + action.getAppointmentId();
+        }
+        if (currentUser.getRole() == UserRole.ROLE_DOCTOR && !appointment.getDoctor().getId().equals(currentUser.getId())) {
+            return "You don't have permission to access this appointment";
+        }
+        if (!seen.add(appointment.getId())) {
+            return "Only one action per appointment can be applied at once";
+        }
+        if (!bulkExpectedStatuses(action.getAction()).contains(appointment.getStatus())) {
+            return action.getAction() == BulkAppointmentAction.Type.RESCHEDULE ?
+                    "Only pending or approved appointments can be rescheduled" :
+                    "Only pending appointments can be " + (action.getAction() == BulkAppointmentAction.Type.CONFIRM ? "confirmed" : "rejected");
+        }
+        if (action.getAction() == BulkAppointmentAction.Type.RESCHEDULE) {
+            if (action.getAppointmentDateTime() == null) {
+                return "A new appointment date/time is required";
+            }
+            if (!action.getAppointmentDateTime().isAfter(LocalDateTime.now())) {
+                return "Appointments can only be moved to a future date/time";
+            }
+        }
+        return null;
+    }
+
+    private static List<Appointment.AppointmentStatus> bulkExpectedStatuses(BulkAppointmentAction.Type type) {
+        return type == BulkAppointmentAction.Type.RESCHEDULE ?
+                List.of(Appointment.AppointmentStatus.PENDING, Appointment.AppointmentStatus.APPROVED) :
+                List.of(Appointment.AppointmentStatus.PENDING);
+    }
+
+    private static Appointment.AppointmentStatus bulkNewStatus(BulkAppointmentAction.Type type, AppointmentDetail appointment) {
+        return switch (type) {
+            case CONFIRM -> Appointment.AppointmentStatus.APPROVED;
+            case REJECT -> Appointment.AppointmentStatus.CANCELLED;
+            // Rescheduling keeps the status
+            case RESCHEDULE -> appointment.getStatus();
+        };
+    }
+
+    private static String bulkReason(BulkAppointmentAction action) {
+        return action.getReason() != null ? action.getReason() : "No reason provided";
+    }
+
+    private static BulkAppointmentResult bulkResult(BulkAppointmentAction action, AppointmentDetail appointment,
+                                                    boolean success, String message) {
+        return BulkAppointmentResult.builder()
+                .appointmentId(action.getAppointmentId())
+                .action(action.getAction())
+                .success(success)
+                .status(appointment != null ? appointment.getStatus() : null)
+                .appointmentDateTime(appointment != null ? appointment.getAppointmentDateTime() : null)
+                .message(message)
+                .build();
     }
 
     /**
-     * Get the current authenticated user
+     * Create a recurring series of appointments - with the same role rules as {@link #createAppointment}.
+     * The occurrences are expanded here, checked against the doctor's bookings in one range query and
+     * inserted as one batch; the doctor's request notifications are queued as one batched outbox insert as well.
+     */
+    @Transactional
+    public AppointmentSeriesResponse createAppointmentSeries(AppointmentSeriesRequest request) {
+        User currentUser = getCurrentUser();
+        log.debug("Creating appointment series for user: {}", currentUser.getEmail());
+
+        if (request.getFirstAppointmentDateTime() == null || !request.getFirstAppointmentDateTime().isAfter(LocalDateTime.now())) {
+            throw new IllegalArgumentException("A future date/time for the first appointment is required");
+        }
+        if (request.getTitle() == null || request.getTitle().trim().isEmpty()) {
+            throw new IllegalArgumentException("Appointment title is required");
+        }
+        if (request.getFrequency() == null) {
+            throw new IllegalArgumentException("Frequency is required");
+        }
+        if ((request.getOccurrences() == null && request.getUntil() == null) ||
+            (request.getOccurrences() != null && request.getOccurrences() < 1)) {
+            throw new IllegalArgumentException("Either a positive number of occurrences or an end date is required");
+        }
+        if (request.getDoctorId() == null) {
+            throw new IllegalArgumentException("Doctor is required");
+        }
+
+        User doctor = userRepository.findById(request.getDoctorId())
+                .orElseThrow(() -> new EntityNotFoundException("Doctor not found"));
+        if (doctor.getRole() != UserRole.ROLE_DOCTOR) {
+            throw new IllegalArgumentException("Selected user is not a doctor");
+        }
+
+        User patient;
+        Appointment.AppointmentStatus status;
+        if (currentUser.getRole() == UserRole.ROLE_PATIENT) {
+            // Patients can only book for themselves, and the doctor has to approve
+            patient = currentUser;
+            status = Appointment.AppointmentStatus.PENDING;
+        } else {
+            if (request.getPatientId() == null) {
+                throw new IllegalArgumentException("Patient is required");
+            }
+            patient = userRepository.findById(request.getPatientId())
+                    .orElseThrow(() -> new EntityNotFoundException("Patient not found"));
+            if (patient.getRole() != UserRole.ROLE_PATIENT) {
+                throw new IllegalArgumentException("Selected user is not a patient");
+            }
+            status = Appointment.AppointmentStatus.APPROVED;
+        }
+
+        AppointmentSeries series = AppointmentSeries.builder()
+                .doctor(doctor)
+                .patient(patient)
+                .frequency(request.getFrequency())
+                .firstAppointmentDateTime(request.getFirstAppointmentDateTime())
+                .occurrences(request.getOccurrences())
+                .until(request.getUntil())
+                .build();
+
+        List<LocalDateTime> starts = series.expand(maxSeriesOccurrences + 1);
+        if (starts.size() > maxSeriesOccurrences) {
+            throw new IllegalArgumentException("A series can have at most " + maxSeriesOccurrences + " appointments");
+        }
+
+        // Take every slot before saving, so a conflict anywhere in the series rejects all of it
+        doctorScheduleIndex.reserveAll(doctor.getId(), starts, null);
+        AppointmentSeries savedSeries = appointmentSeriesRepository.save(series);
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Appointment> occurrences = new ArrayList<>();
+        for (LocalDateTime start : starts) {
+            occurrences.add(Appointment.builder()
+                    .title(request.getTitle())
+                    .description(request.getDescription())
+                    .appointmentDateTime(start)
+                    .doctor(doctor)
+                    .patient(patient)
+                    .isVideoConsultation(request.getIsVideoConsultation())
+                    .meetingLink(request.getMeetingLink())
+                    .notes(request.getNotes())
+                    .status(status)
+                    .seriesId(savedSeries.getId())
+                    .createdAt(now)
+                    .updatedAt(now)
+                    .build());
+        }
+        directAppointmentRepository.insertAppointments(occurrences);
+        DoctorCalendarService.Changes calendarChanges = new DoctorCalendarService.Changes();
+        for (Appointment occurrence : occurrences) {
+            doctorScheduleIndex.assign(doctor.getId(), occurrence.getAppointmentDateTime(), occurrence.getId());
+            calendarChanges.added(doctor.getId(), occurrence.getAppointmentDateTime(), status);
+        }
+        doctorCalendarService.apply(calendarChanges);
+
+        if (status == Appointment.AppointmentStatus.PENDING) {
+            notificationOutboxRepository.append(occurrences.stream()
+                    .map(occurrence -> new NotificationOutboxRepository.Entry(
+                            NotificationOutboxRepository.EventType.APPOINTMENT_REQUESTED, occurrence.getId(), null))
+                    .collect(Collectors.toList()), LocalDateTime.now());
+        }
+
+        log.debug("Created appointment series {} with {} appointments", savedSeries.getId(), occurrences.size());
+        return AppointmentSeriesResponse.builder()
+                .seriesId(savedSeries.getId())
+                .frequency(savedSeries.getFrequency())
+                .appointments(occurrences.stream().map(AppointmentService::toSummary).collect(Collectors.toList()))
+                .build();
+    }
+
+    /**
+     * Apply changes to an occurrence of a series and all later pending or approved ones - only doctors and admins.
+     * Moving the occurrence moves every later one by the same amount, checked against the doctor's bookings
+     * in one range query; the rows are changed with a single UPDATE, and each moved appointment is
+     * announced as rescheduled through the outbox, in one batch.
+     */
+    @Transactional
+    public AppointmentSeriesResponse updateSeriesFrom(Long id, AppointmentSeriesUpdateRequest request) {
+        AppointmentDetail appointment = getAppointmentDetail(id); // This checks permissions
+        User currentUser = getCurrentUser();
+
+        if (currentUser.getRole() == UserRole.ROLE_PATIENT) {
+            throw new AccessDeniedException("Patients cannot change a series of appointments");
+        }
+        if (appointment.getSeriesId() == null) {
+            throw new IllegalArgumentException("Appointment " + id + " is not part of a series");
+        }
+        if (!SERIES_EDITABLE_STATUSES.contains(appointment.getStatus())) {
+            throw new AppointmentStateConflictException("Only pending or approved appointments can be changed");
+        }
+
+        Long doctorId = appointment.getDoctor().getId();
+        LocalDateTime from = appointment.getAppointmentDateTime();
+        long shiftMinutes = request.getAppointmentDateTime() != null ?
+                ChronoUnit.MINUTES.between(from, request.getAppointmentDateTime()) : 0;
+
+        List<AppointmentRepository.SeriesSlotView> moved = List.of();
+        if (shiftMinutes != 0) {
+            if (!request.getAppointmentDateTime().isAfter(LocalDateTime.now())) {
+                throw new IllegalArgumentException("Appointments can only be moved to a future date/time");
+            }
+            moved = appointmentRepository.findSeriesSlotsFrom(appointment.getSeriesId(), from, SERIES_EDITABLE_STATUSES);
+            List<LocalDateTime> newStarts = new ArrayList<>();
+            List<Long> ids = new ArrayList<>();
+            for (AppointmentRepository.SeriesSlotView slot : moved) {
+                newStarts.add(slot.getAppointmentDateTime().plusMinutes(shiftMinutes));
+                ids.add(slot.getId());
+            }
+            doctorScheduleIndex.reserveAll(doctorId, newStarts, ids);
+        }
+
+        int updated = directAppointmentRepository.updateSeriesFrom(appointment.getSeriesId(), from, request.getTitle(),
+                request.getDescription(), request.getNotes(), request.getIsVideoConsultation(), request.getMeetingLink(),
+                shiftMinutes);
+
+        DoctorCalendarService.Changes calendarChanges = new DoctorCalendarService.Changes();
+        List<NotificationOutboxRepository.Entry> notifications = new ArrayList<>();
+        for (AppointmentRepository.SeriesSlotView slot : moved) {
+            doctorScheduleIndex.release(doctorId, slot.getAppointmentDateTime(), slot.getId());
+            calendarChanges.changed(doctorId, slot.getAppointmentDateTime(), slot.getStatus(),
+                    doctorId, slot.getAppointmentDateTime().plusMinutes(shiftMinutes), slot.getStatus());
+            notifications.add(new NotificationOutboxRepository.Entry(
+                    NotificationOutboxRepository.EventType.APPOINTMENT_RESCHEDULED, slot.getId(), null));
+        }
+        doctorCalendarService.apply(calendarChanges);
+        if (!moved.isEmpty()) {
+            appointmentSeriesRepository.moveFirstAppointment(appointment.getSeriesId(), from, from.plusMinutes(shiftMinutes));
+            notificationOutboxRepository.append(notifications, LocalDateTime.now());
+        }
+
+        log.debug("Updated {} appointments of series {} from {}", updated, appointment.getSeriesId(), from);
+        return AppointmentSeriesResponse.builder()
+                .seriesId(appointment.getSeriesId())
+                .appointments(appointmentRepository.findSeriesSummariesFrom(appointment.getSeriesId(),
+                        from.plusMinutes(shiftMinutes)))
+                .build();
+    }
+
+    private static AppointmentSummary toSummary(Appointment a) {
+        return new AppointmentSummary(a.getId(), a.getAppointmentDateTime(), a.getTitle(), a.getStatus(),
+                a.getIsVideoConsultation(), a.getPaymentStatus(),
+                a.getDoctor().getId(), a.getDoctor().getFirstName(), a.getDoctor().getLastName(),
+                a.getDoctor().getSpecialization(),
+                a.getPatient().getId(), a.getPatient().getFirstName(), a.getPatient().getLastName());
+    }
+
+    /**
+     * Doctors may only change the status of their own appointments; admins are not restricted
+     */
+    private Long doctorFilter(User currentUser) {
+        return currentUser.getRole() == UserRole.ROLE_DOCTOR ? currentUser.getId() : null;
+    }
+
+    /**
+     * Work out why a conditional status update matched no row: a missing appointment or one the
+     * user may not access keeps its usual error, anything else lost on its current status.
+     */
+    private RuntimeException transitionFailure(Long id, String message) {
+        getAppointmentById(id); // Throws for missing appointments and permission problems
+        System.out.println("Status transition rejected for appointment " + id + ": " + message);
+        return new AppointmentStateConflictException(message);
+    }
+
+    private AppointmentDetail findDetail(Long id) {
+        return appointmentRepository.findDetailById(id)
+                .orElseThrow(() -> new EntityNotFoundException("Appointment not found with id: " + id));
+    }
+
+    /**
+     * Get the current authenticated user, resolved once per request
      */
     private User getCurrentUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        return userRepository.findByEmail(authentication.getName())
-                .orElseThrow(() -> new EntityNotFoundException("User not found"));
+        return currentUserContext.getCurrentUser();
     }
 
     /**
@@ -508,21 +1196,21 @@ public class AppointmentService {
                 .updatedAt(now)
                 .build();
 
-            // Save appointment
+            // Save appointment with a single INSERT, reusing the doctor and patient loaded above
+            doctorScheduleIndex.reserve(doctor.getId(), appointment.getAppointmentDateTime(), null);
             System.out.println("Saving simple appointment to database");
-            Appointment savedAppointment = appointmentRepository.save(appointment);
+            Appointment savedAppointment = directAppointmentRepository.insertAppointment(appointment);
+            doctorScheduleIndex.assign(doctor.getId(), savedAppointment.getAppointmentDateTime(), savedAppointment.getId());
+            doctorCalendarService.recordAdded(doctor.getId(), savedAppointment.getAppointmentDateTime(), savedAppointment.getStatus());
             System.out.println("Simple appointment saved with ID: " + savedAppointment.getId());
 
             // Create notification if needed
             if ((currentUser != null && currentUser.getRole() == UserRole.ROLE_PATIENT) ||
                 savedAppointment.getStatus() == Appointment.AppointmentStatus.PENDING) { // Was REQUESTED
-                try {
-                    notificationService.createAppointmentRequestNotification(savedAppointment);
-                    System.out.println("Created notification for appointment request");
-                } catch (Exception e) {
-                    System.out.println("Error creating notification: " + e.getMessage());
-                    // Don't fail the appointment creation if notification fails
-                }
+                // Part of the booking transaction, so the notification can neither fail it nor be lost
+                notificationOutboxRepository.append(List.of(new NotificationOutboxRepository.Entry(
+                        NotificationOutboxRepository.EventType.APPOINTMENT_REQUESTED, savedAppointment.getId(), null)), LocalDateTime.now());
+                System.out.println("Queued notification for appointment request");
             }
 
             return savedAppointment;
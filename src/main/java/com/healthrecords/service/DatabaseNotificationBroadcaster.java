@@ -0,0 +1,134 @@
+package com.healthrecords.service;
+
+import com.healthrecords.repository.NotificationEventRepository;
+import com.healthrecords.repository.NotificationEventRepository.Event;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Fans out through the {@code notification_events} table, which needs nothing beyond the database.
+ *
+ * The event rows are written in the transaction that makes the change, so they commit with it and
+ * are never seen for a change that rolled back. Clients on this replica are pushed to as soon as it
+ * commits; the event rows tell the other replicas, which poll the table forward by id every {@code notifications.broadcast.poll-ms}. Ids are taken
+ * at insert but become visible at commit, so an event can show up after higher ids were read; every
+ * poll therefore re-reads the last {@code notifications.broadcast.overlap-ids} ids and skips the
+ * events it already saw. Rows are purged after {@code notifications.broadcast.retention-seconds};
+ * a replica that falls further behind than that only misses pushes, since clients read the actual
+ * state on every event.
+ */
+@Component
+@ConditionalOnProperty(name = "notifications.broadcast.type", havingValue = "database", matchIfMissing = true)
+@RequiredArgsConstructor
+public class DatabaseNotificationBroadcaster implements NotificationBroadcaster {
+
+    private static final Logger log = LoggerFactory.getLogger(DatabaseNotificationBroadcaster.class);
+
+    private final NotificationEventRepository notificationEventRepository;
+    private final NotificationStreamRegistry notificationStreamRegistry;
+
+    @Value("${notifications.broadcast.batch-size:500}")
+    private int batchSize;
+
+    @Value("${notifications.broadcast.retention-seconds:300}")
+    private long retentionSeconds;
+
+    @Value("${notifications.broadcast.overlap-ids:1000}")
+    private long overlapIds;
+
+    @Value("${notifications.broadcast.instance-id:}")
+    private String instanceId;
+
+    private String origin;
+
+    // Highest id seen, null until the first poll skips past the existing events
+    private Long lastId;
+
+    // Ids seen within the overlap below lastId, so events read again are not pushed twice
+    private final Set<Long> seenIds = new HashSet<>();
+
+    @PostConstruct
+    void init() {
+        origin = instanceId != null && !instanceId.isBlank() ? instanceId : UUID.randomUUID().toString();
+    }
+
+    @Override
+    public void publish(Collection<Long> userIds) {
+        try {
+            notificationEventRepository.append(userIds, origin, LocalDateTime.now());
+        } catch (Exception e) {
+            // The change itself goes ahead; other replicas' clients catch up on their next event
+            log.warn("Could not record notification events for {} users", userIds.size(), e);
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    notificationStreamRegistry.push(userIds);
+                }
+            });
+        } else {
+            notificationStreamRegistry.push(userIds);
+        }
+    }
+
+    /**
+     * Push the changes recorded by other replicas to the clients connected here
+     */
+    @Scheduled(fixedDelayString = "${notifications.broadcast.poll-ms:1000}")
+    public void poll() {
+        if (lastId == null) {
+            // Events in the overlap below it that are read again on the next poll are pushed once more,
+            // which only makes their clients re-read their state
+            lastId = notificationEventRepository.findLatestId();
+            return;
+        }
+
+        long after = Math.max(0, lastId - overlapIds);
+        seenIds.removeIf(id -> id <= after);
+
+        List<Event> events;
+        long pageAfter = after;
+        do {
+            events = notificationEventRepository.findAfter(pageAfter, batchSize);
+            Set<Long> changed = new HashSet<>();
+            for (Event event : events) {
+                pageAfter = event.getId();
+                if (!seenIds.add(event.getId())) {
+                    continue;
+                }
+                lastId = Math.max(lastId, event.getId());
+                if (!origin.equals(event.getOrigin()) && notificationStreamRegistry.isConnected(event.getUserId())) {
+                    changed.add(event.getUserId());
+                }
+            }
+            if (!changed.isEmpty()) {
+                notificationStreamRegistry.push(changed);
+            }
+        } while (events.size() == batchSize);
+    }
+
+    @Scheduled(fixedDelayString = "${notifications.broadcast.purge-interval-ms:60000}")
+    public void purge() {
+        int purged = notificationEventRepository.purgeBefore(LocalDateTime.now().minusSeconds(retentionSeconds));
+        if (purged > 0) {
+            log.debug("Purged {} notification events", purged);
+        }
+    }
+}
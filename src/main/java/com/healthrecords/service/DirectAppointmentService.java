@@ -4,11 +4,13 @@ import com.healthrecords.dto.DirectAppointmentRequest;
 import com.healthrecords.model.Appointment;
 import com.healthrecords.model.User;
 import com.healthrecords.repository.DirectAppointmentRepository;
+import com.healthrecords.repository.NotificationOutboxRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * Service for direct appointment creation
@@ -20,7 +22,9 @@ public class DirectAppointmentService {
 
     private final DirectAppointmentRepository directAppointmentRepository;
     private final UserService userService;
-    private final NotificationService notificationService;
+    private final NotificationOutboxRepository notificationOutboxRepository;
+    private final DoctorScheduleIndex doctorScheduleIndex;
+    private final DoctorCalendarService doctorCalendarService;
 
     /**
      * Create a new appointment directly
@@ -56,17 +60,22 @@ public class DirectAppointmentService {
             System.out.println("- Date/Time: " + appointmentDateTime);
             System.out.println("- Status: PENDING (hardcoded)");
 
+            // Take the slot first; it is given back if the transaction rolls back
+            doctorScheduleIndex.reserve(doctor.getId(), appointmentDateTime, null);
+
             // Create appointment directly using JDBC to avoid any potential enum conversion issues
             Appointment savedAppointment = directAppointmentRepository.createAppointmentDirectly(
                 request.getTitle(),
                 request.getDescription(),
                 appointmentDateTime,
-                doctor.getId(),
-                patient.getId(),
+                doctor,
+                patient,
                 request.getIsVideoConsultation() != null ? request.getIsVideoConsultation() : false,
                 request.getMeetingLink(),
                 request.getNotes()
             );
+            doctorScheduleIndex.assign(doctor.getId(), appointmentDateTime, savedAppointment.getId());
+            doctorCalendarService.recordAdded(doctor.getId(), appointmentDateTime, statusValue);
             System.out.println("DirectAppointmentService: Appointment saved with ID: " + savedAppointment.getId());
 
             // Create notification for the doctor
@@ -81,16 +90,26 @@ public class DirectAppointmentService {
     }
 
     /**
-     * Create a notification for the doctor about a new appointment request
+     * Insert a fully built appointment as is, taking its slot in the same transaction so the
+     * doctor row lock and the slot check hold until the insert commits
+     */
+    @Transactional
+    public Appointment insertAppointment(Appointment appointment) {
+        Long doctorId = appointment.getDoctor().getId();
+        // Given back if the transaction rolls back
+        doctorScheduleIndex.reserve(doctorId, appointment.getAppointmentDateTime(), null);
+        Appointment savedAppointment = directAppointmentRepository.insertAppointment(appointment);
+        doctorScheduleIndex.assign(doctorId, savedAppointment.getAppointmentDateTime(), savedAppointment.getId());
+        doctorCalendarService.recordAdded(doctorId, savedAppointment.getAppointmentDateTime(), savedAppointment.getStatus());
+        return savedAppointment;
+    }
+
+    /**
+     * Queue a notification for the doctor about a new appointment request, sent once the booking commits
      */
     private void createDoctorNotification(Appointment appointment) {
-        try {
-            // Create and save notification using the service
-            notificationService.createAppointmentRequestNotification(appointment);
-            System.out.println("DirectAppointmentService: Notification created for doctor: " + appointment.getDoctor().getEmail());
-        } catch (Exception e) {
-            System.out.println("DirectAppointmentService: Error creating notification: " + e.getMessage());
-            e.printStackTrace();
-        }
+        notificationOutboxRepository.append(List.of(new NotificationOutboxRepository.Entry(
+                NotificationOutboxRepository.EventType.APPOINTMENT_REQUESTED, appointment.getId(), null)), LocalDateTime.now());
+        System.out.println("DirectAppointmentService: Notification queued for doctor: " + appointment.getDoctor().getEmail());
     }
 }
@@ -0,0 +1,202 @@
+package com.healthrecords.service;
+
+import com.healthrecords.dto.DoctorCalendarDay;
+import com.healthrecords.dto.DoctorCalendarResponse;
+import com.healthrecords.model.Appointment;
+import com.healthrecords.repository.DoctorDayStatsRepository;
+import com.healthrecords.repository.JobLeaseRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Per-day appointment counts of each doctor for calendar views, read from {@code doctor_day_stats}.
+ *
+ * The counters are adjusted in the same transaction as every appointment change made through
+ * {@link AppointmentService}. Writes that bypass it, or anything that lets the counters drift,
+ * are corrected by {@link #rebuild}, which recounts a date range from the appointments one day per
+ * transaction, so appointments are only share-locked a day at a time. It runs nightly over a window
+ * around today on the one replica that leases the day's run in {@code job_leases}.
+ */
+@Service
+@RequiredArgsConstructor
+public class DoctorCalendarService {
+
+    private static final Logger log = LoggerFactory.getLogger(DoctorCalendarService.class);
+
+    private static final String REBUILD_JOB = "doctor-calendar-rebuild";
+
+    private final DoctorDayStatsRepository doctorDayStatsRepository;
+    private final JobLeaseRepository jobLeaseRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${appointments.calendar.rebuild-past-days:31}")
+    private long rebuildPastDays;
+
+    @Value("${appointments.calendar.rebuild-future-days:366}")
+    private long rebuildFutureDays;
+
+    @Value("${appointments.calendar.lease-seconds:300}")
+    private long leaseSeconds;
+
+    @Value("${jobs.instance-id:}")
+    private String instanceId;
+
+    private String owner;
+
+    @PostConstruct
+    void init() {
+        owner = instanceId != null && !instanceId.isBlank() ? instanceId : UUID.randomUUID().toString();
+    }
+
+    /**
+     * Appointment counts of a doctor for each day of the month that has any
+     */
+    public DoctorCalendarResponse getMonth(Long doctorId, YearMonth month) {
+        LocalDate from = month.atDay(1);
+        LocalDate to = month.plusMonths(1).atDay(1);
+
+        Map<LocalDate, DoctorCalendarDay> days = new LinkedHashMap<>();
+        for (DoctorDayStatsRepository.DayCount count : doctorDayStatsRepository.findByDoctor(doctorId, from, to)) {
+            DoctorCalendarDay day = days.computeIfAbsent(count.getDate(), date -> DoctorCalendarDay.builder()
+                    .date(date)
+                    .counts(new EnumMap<>(Appointment.AppointmentStatus.class))
+                    .build());
+            day.getCounts().put(count.getStatus(), count.getCount());
+            day.setTotal(day.getTotal() + count.getCount());
+        }
+
+        return DoctorCalendarResponse.builder()
+                .doctorId(doctorId)
+                .from(from)
+                .to(to)
+                .days(new ArrayList<>(days.values()))
+                .build();
+    }
+
+    public void recordAdded(Long doctorId, LocalDateTime start, Appointment.AppointmentStatus status) {
+        apply(new Changes().added(doctorId, start, status));
+    }
+
+    public void recordRemoved(Long doctorId, LocalDateTime start, Appointment.AppointmentStatus status) {
+        apply(new Changes().removed(doctorId, start, status));
+    }
+
+    public void recordChanged(Long previousDoctorId, LocalDateTime previousStart, Appointment.AppointmentStatus previousStatus,
+                              Long doctorId, LocalDateTime start, Appointment.AppointmentStatus status) {
+        apply(new Changes().changed(previousDoctorId, previousStart, previousStatus, doctorId, start, status));
+    }
+
+    /**
+     * Adjust the counters for a set of changes in one batch; must run in the transaction that made them
+     */
+    public void apply(Changes changes) {
+        doctorDayStatsRepository.applyChanges(changes.toList());
+    }
+
+    /**
+     * Recount every doctor's days from {@code from} (inclusive) to {@code to} (exclusive), one day per transaction
+     */
+    public int rebuild(LocalDate from, LocalDate to) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("The start date must be before the end date");
+        }
+        return rebuildDays(from, to, () -> true);
+    }
+
+    /**
+     * Recount the window around today, on the replica that leases today's run; the lease is renewed
+     * before each day and the run stops if another replica took it over
+     */
+    @Scheduled(cron = "${appointments.calendar.rebuild-cron:0 30 3 * * *}")
+    public void rebuildRecent() {
+        LocalDate today = LocalDate.now();
+        if (!claimRun(today)) {
+            log.debug("Calendar rebuild of {} is leased by another replica or done", today);
+            return;
+        }
+
+        rebuildDays(today.minusDays(rebuildPastDays), today.plusDays(rebuildFutureDays), () -> claimRun(today));
+        // A no-op if the lease was lost on the way
+        LocalDateTime now = LocalDateTime.now();
+        jobLeaseRepository.complete(REBUILD_JOB, today, owner, now);
+        jobLeaseRepository.purgeCompletedBefore(REBUILD_JOB, today.minusDays(30));
+    }
+
+    private boolean claimRun(LocalDate runDate) {
+        LocalDateTime now = LocalDateTime.now();
+        return jobLeaseRepository.claim(REBUILD_JOB, runDate, owner, now.plusSeconds(leaseSeconds), now);
+    }
+
+    private int rebuildDays(LocalDate from, LocalDate to, BooleanSupplier keepGoing) {
+        int rows = 0;
+        for (LocalDate day = from; day.isBefore(to); day = day.plusDays(1)) {
+            if (!keepGoing.getAsBoolean()) {
+                log.warn("Lost the calendar rebuild lease, stopping at {}", day);
+                break;
+            }
+            LocalDate start = day;
+            Integer count = transactionTemplate.execute(status -> doctorDayStatsRepository.rebuild(start, start.plusDays(1)));
+            rows += count != null ? count : 0;
+        }
+        log.info("Rebuilt {} doctor day counters from {} to {}", rows, from, to);
+        return rows;
+    }
+
+    /**
+     * Counter adjustments collected over a write, merged per doctor, day and status
+     */
+    public static class Changes {
+        private final Map<DayKey, Integer> deltas = new LinkedHashMap<>();
+
+        public Changes added(Long doctorId, LocalDateTime start, Appointment.AppointmentStatus status) {
+            return adjust(doctorId, start, status, 1);
+        }
+
+        public Changes removed(Long doctorId, LocalDateTime start, Appointment.AppointmentStatus status) {
+            return adjust(doctorId, start, status, -1);
+        }
+
+        public Changes changed(Long previousDoctorId, LocalDateTime previousStart, Appointment.AppointmentStatus previousStatus,
+                               Long doctorId, LocalDateTime start, Appointment.AppointmentStatus status) {
+            return removed(previousDoctorId, previousStart, previousStatus).added(doctorId, start, status);
+        }
+
+        private Changes adjust(Long doctorId, LocalDateTime start, Appointment.AppointmentStatus status, int delta) {
+            if (doctorId != null && start != null && status != null) {
+                deltas.merge(new DayKey(doctorId, start.toLocalDate(), status), delta, Integer::sum);
+            }
+            return this;
+        }
+
+        List<DoctorDayStatsRepository.Change> toList() {
+            List<DoctorDayStatsRepository.Change> changes = new ArrayList<>();
+            deltas.forEach((key, delta) -> {
+                // A change within the same day and status cancels out
+                if (delta != 0) {
+                    changes.add(new DoctorDayStatsRepository.Change(key.doctorId(), key.date(), key.status(), delta));
+                }
+            });
+            return changes;
+        }
+
+        private record DayKey(Long doctorId, LocalDate date, Appointment.AppointmentStatus status) {
+        }
+    }
+}
@@ -0,0 +1,432 @@
+package com.healthrecords.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.healthrecords.exception.SlotUnavailableException;
+import com.healthrecords.model.Appointment;
+import com.healthrecords.repository.AppointmentRepository;
+import com.healthrecords.repository.DirectAppointmentRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index of booked slots per doctor, used to check availability and to
+ * reject overlapping bookings without querying the appointments table.
+ *
+ * Every appointment occupies one slot of {@code appointments.schedule.slot-minutes}
+ * starting at its date/time. A doctor's bookings are kept in a map sorted by start
+ * time, loaded one month at a time on first use. Reservations made inside a
+ * transaction are dropped again if it rolls back; releases only apply once it commits.
+ *
+ * The index only sees bookings made through this instance, so reservations are also
+ * checked against the database: the doctor's row is locked for the rest of the transaction
+ * and the overlapping appointments are read with a locking read, which sees rows committed
+ * by other instances. Each doctor's schedule is refreshed in place after
+ * {@code appointments.schedule.ttl-minutes} to pick up changes from other instances.
+ *
+ * A refresh only drops committed bookings; reservations of transactions still running are
+ * not in the database yet and are kept. For the same reason a schedule holding such
+ * reservations is pinned: it stays the one every caller sees until those transactions
+ * complete, even if the cache evicts it in the meantime.
+ */
+@Component
+@RequiredArgsConstructor
+public class DoctorScheduleIndex {
+
+    private final AppointmentRepository appointmentRepository;
+    private final DirectAppointmentRepository directAppointmentRepository;
+
+    @Value("${appointments.schedule.slot-minutes:30}")
+    private int slotMinutes;
+
+    @Value("${appointments.schedule.day-start:09:00}")
+    private String dayStartProperty;
+
+    @Value("${appointments.schedule.day-end:17:00}")
+    private String dayEndProperty;
+
+    @Value("${appointments.schedule.max-doctors:5000}")
+    private long maxDoctors;
+
+    @Value("${appointments.schedule.ttl-minutes:10}")
+    private long ttlMinutes;
+
+    private LocalTime dayStart;
+    private LocalTime dayEnd;
+    private Cache<Long, DoctorSchedule> schedules;
+    private final Map<Long, DoctorSchedule> pinned = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        dayStart = LocalTime.parse(dayStartProperty);
+        dayEnd = LocalTime.parse(dayEndProperty);
+        schedules = Caffeine.newBuilder()
+                .maximumSize(maxDoctors)
+                .build();
+    }
+
+    /**
+     * Whether a booking starting at the given time would not overlap any other booking of the doctor.
+     */
+    public boolean isAvailable(Long doctorId, LocalDateTime start) {
+        DoctorSchedule schedule = scheduleFor(doctorId);
+        synchronized (schedule) {
+            load(doctorId, schedule, start);
+            return !schedule.overlaps(start, slotLength(), null);
+        }
+    }
+
+    /**
+     * Free slots of the working day that start after now, in order.
+     */
+    public List<LocalDateTime> getFreeSlots(Long doctorId, LocalDate date) {
+        LocalDateTime now = LocalDateTime.now();
+        Duration slot = slotLength();
+        DoctorSchedule schedule = scheduleFor(doctorId);
+        List<LocalDateTime> free = new ArrayList<>();
+
+        synchronized (schedule) {
+            load(doctorId, schedule, date.atStartOfDay());
+            for (LocalDateTime start = date.atTime(dayStart);
+                 !start.plus(slot).isAfter(date.atTime(dayEnd));
+                 start = start.plus(slot)) {
+                if (start.isAfter(now) && !schedule.overlaps(start, slot, null)) {
+                    free.add(start);
+                }
+            }
+        }
+        return free;
+    }
+
+    /**
+     * Take the slot for an appointment, failing if it overlaps another booking of the doctor.
+     * The appointment id is null for bookings that have not been saved yet; bind it with
+     * {@link #assign} once it is known. Inside a transaction the slot is given back on rollback,
+     * outside of one the caller has to {@link #release} it if the booking fails.
+     */
+    public void reserve(Long doctorId, LocalDateTime start, Long appointmentId) {
+        if (start == null) {
+            throw new IllegalArgumentException("Appointment date/time is required");
+        }
+        Duration slot = slotLength();
+        boolean inTransaction = TransactionSynchronizationManager.isSynchronizationActive();
+        DoctorSchedule schedule = inTransaction ? pin(doctorId) : scheduleFor(doctorId);
+        Map<LocalDateTime, Booking> taken = Map.of(start, new Booking(appointmentId, inTransaction));
+
+        try {
+            synchronized (schedule) {
+                load(doctorId, schedule, start);
+                if (schedule.overlaps(start, slot, appointmentId)) {
+                    throw new SlotUnavailableException("The doctor already has an appointment at " + start);
+                }
+                schedule.bookings.putAll(taken);
+            }
+
+            // Bookings committed by other instances are not in the index yet
+            boolean conflict = lockBookedSlots(doctorId, start.minus(slot), start.plus(slot)).stream()
+                    .anyMatch(booked -> !booked.getId().equals(appointmentId));
+            if (conflict) {
+                refresh(schedule, taken);
+                throw new SlotUnavailableException("The doctor already has an appointment at " + start);
+            }
+        } catch (RuntimeException e) {
+            giveBack(doctorId, schedule, taken, inTransaction);
+            throw e;
+        }
+
+        if (inTransaction) {
+            completeWithTransaction(doctorId, schedule, taken);
+        }
+    }
+
+    /**
+     * Take the slots of several appointments of a doctor at once, such as the occurrences of a series.
+     * Fails without taking any slot if one of them overlaps another booking or another of the given slots.
+     * {@code appointmentIds} holds the ids of appointments being moved, in the same order as the start
+     * times, or is null for new ones; the slots those appointments currently hold do not count as conflicts.
+     * The database is checked with one range query over the whole span. Rollback behaves as for {@link #reserve}.
+     */
+    public void reserveAll(Long doctorId, List<LocalDateTime> starts, List<Long> appointmentIds) {
+        if (starts.isEmpty()) {
+            return;
+        }
+        Duration slot = slotLength();
+        Set<Long> moving = new HashSet<>();
+        if (appointmentIds != null) {
+            appointmentIds.stream().filter(Objects::nonNull).forEach(moving::add);
+        }
+
+        List<LocalDateTime> sorted = new ArrayList<>(starts);
+        Collections.sort(sorted);
+        for (int i = 1; i < sorted.size(); i++) {
+            if (sorted.get(i).isBefore(sorted.get(i - 1).plus(slot))) {
+                throw new SlotUnavailableException("Appointments at " + sorted.get(i - 1) + " and " + sorted.get(i) + " overlap");
+            }
+        }
+
+        boolean inTransaction = TransactionSynchronizationManager.isSynchronizationActive();
+        DoctorSchedule schedule = inTransaction ? pin(doctorId) : scheduleFor(doctorId);
+        Map<LocalDateTime, Booking> taken = new LinkedHashMap<>();
+        for (int i = 0; i < starts.size(); i++) {
+            taken.put(starts.get(i), new Booking(appointmentIds != null ? appointmentIds.get(i) : null, inTransaction));
+        }
+
+        try {
+            synchronized (schedule) {
+                // Only months already loaded are checked here, the database check below covers the rest
+                for (LocalDateTime start : starts) {
+                    if (schedule.overlapsOtherThan(start, slot, moving)) {
+                        throw new SlotUnavailableException("The doctor already has an appointment at " + start);
+                    }
+                }
+                schedule.bookings.putAll(taken);
+            }
+
+            TreeMap<LocalDateTime, Long> booked = new TreeMap<>();
+            for (DirectAppointmentRepository.BookedSlot bookedSlot : lockBookedSlots(doctorId,
+                    sorted.get(0).minus(slot), sorted.get(sorted.size() - 1).plus(slot))) {
+                booked.put(bookedSlot.getAppointmentDateTime(), bookedSlot.getId());
+            }
+            List<LocalDateTime> conflicts = new ArrayList<>();
+            for (LocalDateTime start : sorted) {
+                for (Long bookedId : booked.subMap(start.minus(slot), false, start.plus(slot), false).values()) {
+                    if (!moving.contains(bookedId)) {
+                        conflicts.add(start);
+                        break;
+                    }
+                }
+            }
+            if (!conflicts.isEmpty()) {
+                refresh(schedule, taken);
+                throw new SlotUnavailableException("The doctor already has appointments at " + conflicts);
+            }
+        } catch (RuntimeException e) {
+            giveBack(doctorId, schedule, taken, inTransaction);
+            throw e;
+        }
+
+        if (inTransaction) {
+            completeWithTransaction(doctorId, schedule, taken);
+        }
+    }
+
+    /**
+     * Record the id of a newly saved appointment on the slot reserved for it.
+     */
+    public void assign(Long doctorId, LocalDateTime start, Long appointmentId) {
+        DoctorSchedule schedule = scheduleFor(doctorId);
+        synchronized (schedule) {
+            Booking booking = schedule.bookings.get(start);
+            if (booking != null && booking.appointmentId == null) {
+                booking.appointmentId = appointmentId;
+            }
+        }
+    }
+
+    /**
+     * Free the slot of a cancelled, moved or deleted appointment once the surrounding transaction commits.
+     */
+    public void release(Long doctorId, LocalDateTime start, Long appointmentId) {
+        if (doctorId == null || start == null) {
+            return;
+        }
+        DoctorSchedule schedule = scheduleFor(doctorId);
+        Runnable action = () -> {
+            synchronized (schedule) {
+                Booking booking = schedule.bookings.get(start);
+                if (booking != null && Objects.equals(booking.appointmentId, appointmentId)) {
+                    schedule.bookings.remove(start);
+                }
+            }
+        };
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private DoctorSchedule scheduleFor(Long doctorId) {
+        DoctorSchedule schedule = pinned.get(doctorId);
+        return schedule != null ? schedule : schedules.get(doctorId, id -> new DoctorSchedule());
+    }
+
+    /**
+     * Keep the doctor's schedule as the one every caller sees until as many {@link #unpin} calls.
+     */
+    private DoctorSchedule pin(Long doctorId) {
+        return pinned.compute(doctorId, (id, schedule) -> {
+            DoctorSchedule pinnedSchedule = schedule != null ? schedule : schedules.get(id, key -> new DoctorSchedule());
+            pinnedSchedule.pins++;
+            return pinnedSchedule;
+        });
+    }
+
+    private void unpin(Long doctorId) {
+        pinned.computeIfPresent(doctorId, (id, schedule) -> {
+            if (--schedule.pins > 0) {
+                return schedule;
+            }
+            // Put it back in case the cache evicted it or loaded another copy while it was pinned
+            schedules.put(id, schedule);
+            return null;
+        });
+    }
+
+    /**
+     * Lock the doctor's bookings in the database and read the slots starting strictly between the two times.
+     */
+    private List<DirectAppointmentRepository.BookedSlot> lockBookedSlots(Long doctorId, LocalDateTime after, LocalDateTime before) {
+        directAppointmentRepository.lockDoctorSchedule(doctorId);
+        return directAppointmentRepository.findBookedSlotsForShare(doctorId, after, before);
+    }
+
+    /**
+     * Drop the given bookings, then reload the schedule in place after the database reported a conflict.
+     */
+    private void refresh(DoctorSchedule schedule, Map<LocalDateTime, Booking> taken) {
+        synchronized (schedule) {
+            taken.forEach(schedule.bookings::remove);
+            schedule.refresh();
+        }
+    }
+
+    /**
+     * Undo a failed reservation.
+     */
+    private void giveBack(Long doctorId, DoctorSchedule schedule, Map<LocalDateTime, Booking> taken, boolean pinnedByCaller) {
+        synchronized (schedule) {
+            taken.forEach(schedule.bookings::remove);
+        }
+        if (pinnedByCaller) {
+            unpin(doctorId);
+        }
+    }
+
+    /**
+     * Settle the reserved bookings once the transaction ends: kept as committed ones, or dropped on rollback.
+     */
+    private void completeWithTransaction(Long doctorId, DoctorSchedule schedule, Map<LocalDateTime, Booking> taken) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                synchronized (schedule) {
+                    taken.forEach((start, booking) -> {
+                        if (status == STATUS_COMMITTED) {
+                            booking.pending = false;
+                        } else {
+                            schedule.bookings.remove(start, booking);
+                        }
+                    });
+                }
+                unpin(doctorId);
+            }
+        });
+    }
+
+    /**
+     * Make sure the months around the given time are loaded. Caller holds the schedule lock.
+     */
+    private void load(Long doctorId, DoctorSchedule schedule, LocalDateTime around) {
+        if (schedule.loadedAt != null && schedule.loadedAt.plusMinutes(ttlMinutes).isBefore(LocalDateTime.now())) {
+            schedule.refresh();
+        }
+        if (schedule.loadedAt == null) {
+            schedule.loadedAt = LocalDateTime.now();
+        }
+        Duration slot = slotLength();
+        YearMonth first = YearMonth.from(around.minus(slot));
+        YearMonth last = YearMonth.from(around.plus(slot).plusDays(1));
+
+        for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+            if (schedule.loadedMonths.add(month)) {
+                for (AppointmentRepository.BookedSlotView view : appointmentRepository.findBookedSlots(doctorId,
+                        month.atDay(1).atStartOfDay(), month.plusMonths(1).atDay(1).atStartOfDay(),
+                        Appointment.AppointmentStatus.CANCELLED)) {
+                    // Keep reservations made before this month was loaded
+                    schedule.bookings.putIfAbsent(view.getAppointmentDateTime(), new Booking(view.getId(), false));
+                }
+            }
+        }
+    }
+
+    private Duration slotLength() {
+        return Duration.ofMinutes(slotMinutes);
+    }
+
+    private static class DoctorSchedule {
+        private final TreeMap<LocalDateTime, Booking> bookings = new TreeMap<>();
+        private final Set<YearMonth> loadedMonths = new HashSet<>();
+        private LocalDateTime loadedAt;
+        // Transactions with reservations in this schedule that have not completed yet
+        private int pins;
+
+        /**
+         * Forget the loaded months and the committed bookings so they are read again on next use.
+         * Pending reservations are not in the database yet and are kept.
+         */
+        void refresh() {
+            bookings.values().removeIf(booking -> !booking.pending);
+            loadedMonths.clear();
+            loadedAt = null;
+        }
+
+        /**
+         * Whether a slot starting at {@code start} overlaps a booking other than the given appointment's.
+         */
+        boolean overlaps(LocalDateTime start, Duration slot, Long appointmentId) {
+            return overlapsOtherThan(start, slot, appointmentId != null ? Set.of(appointmentId) : Set.of());
+        }
+
+        /**
+         * Whether a slot starting at {@code start} overlaps a booking of an appointment not in {@code appointmentIds}.
+         */
+        boolean overlapsOtherThan(LocalDateTime start, Duration slot, Set<Long> appointmentIds) {
+            for (Map.Entry<LocalDateTime, Booking> entry :
+                    bookings.subMap(start.minus(slot), false, start.plus(slot), false).entrySet()) {
+                Long bookedId = entry.getValue().appointmentId;
+                if (bookedId == null || !appointmentIds.contains(bookedId)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static class Booking {
+        private Long appointmentId;
+        // Reserved by a transaction that has not completed yet
+        private boolean pending;
+
+        Booking(Long appointmentId, boolean pending) {
+            this.appointmentId = appointmentId;
+            this.pending = pending;
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package com.healthrecords.service;
+
+import com.healthrecords.dto.EmailChannelStats;
+import com.healthrecords.model.Notification;
+import com.healthrecords.repository.EmailDeadLetterRepository;
+import com.healthrecords.repository.EmailDeadLetterRepository.DeadLetter;
+import com.healthrecords.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Emails copies of notifications, off the request threads.
+ *
+ * Committed notifications of the types in {@code notifications.email.types} are offered to a
+ * bounded queue, which never blocks the caller. A small pool of workers drains it in batches,
+ * resolves the recipients' addresses with one query per batch and sends each batch over a
+ * single SMTP connection. Messages that fail are retried with exponential backoff; after
+ * {@code notifications.email.max-attempts}, or when the queue is full, they are written to
+ * {@code email_dead_letters} instead. Off unless {@code notifications.email.enabled} is set.
+ */
+@Component
+@RequiredArgsConstructor
+public class EmailNotificationChannel {
+
+    private static final Logger log = LoggerFactory.getLogger(EmailNotificationChannel.class);
+
+    private final JavaMailSender mailSender;
+    private final UserRepository userRepository;
+    private final EmailDeadLetterRepository emailDeadLetterRepository;
+
+    @Value("${notifications.email.enabled:false}")
+    private boolean enabled;
+
+    @Value("${notifications.email.from:no-reply@healthrecords.local}")
+    private String from;
+
+    @Value("${notifications.email.types:APPOINTMENT_CONFIRMED,APPOINTMENT_REJECTED,APPOINTMENT_CANCELLED,APPOINTMENT_REMINDER}")
+    private String typesProperty;
+
+    @Value("${notifications.email.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${notifications.email.workers:2}")
+    private int workers;
+
+    @Value("${notifications.email.batch-size:50}")
+    private int batchSize;
+
+    @Value("${notifications.email.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${notifications.email.retry-base-ms:2000}")
+    private long retryBaseMillis;
+
+    @Value("${notifications.email.retry-max-ms:300000}")
+    private long retryMaxMillis;
+
+    private Set<Notification.NotificationType> types;
+    private BlockingQueue<Email> queue;
+    private ExecutorService workerPool;
+    private ScheduledExecutorService retryScheduler;
+    private volatile boolean running;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failedAttempts = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger awaitingRetry = new AtomicInteger();
+    // Emails with a scheduled retry; whoever removes one, the retry task or shutdown, owns it
+    private final Set<Email> scheduledRetries = ConcurrentHashMap.newKeySet();
+
+    private long lastStatsSent;
+    private long lastStatsAt = System.nanoTime();
+    private volatile double sentPerMinute;
+
+    @PostConstruct
+    void init() {
+        types = EnumSet.noneOf(Notification.NotificationType.class);
+        for (String type : typesProperty.split(",")) {
+            if (!type.isBlank()) {
+                types.add(Notification.NotificationType.valueOf(type.trim()));
+            }
+        }
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        if (!enabled) {
+            return;
+        }
+
+        running = true;
+        AtomicInteger threads = new AtomicInteger();
+        workerPool = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "notification-email-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workers; i++) {
+            workerPool.execute(this::work);
+        }
+        retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "notification-email-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Stop the workers and keep whatever was not sent, queued or waiting for a retry, as dead letters
+     */
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+
+        running = false;
+        // The retry tasks not run yet are dropped here; their emails are still in scheduledRetries
+        List<Runnable> droppedRetries = retryScheduler.shutdownNow();
+        retryScheduler.awaitTermination(10, TimeUnit.SECONDS);
+        workerPool.shutdownNow();
+        workerPool.awaitTermination(10, TimeUnit.SECONDS);
+
+        List<Email> unsent = new ArrayList<>();
+        queue.drainTo(unsent);
+        for (Email email : scheduledRetries) {
+            if (scheduledRetries.remove(email)) {
+                awaitingRetry.decrementAndGet();
+                unsent.add(email);
+            }
+        }
+        if (!unsent.isEmpty()) {
+            log.warn("Dead-lettering {} notification emails at shutdown, {} of them waiting for a retry",
+                    unsent.size(), droppedRetries.size());
+            deadLetter(unsent, "Not sent before shutdown");
+        }
+    }
+
+    /**
+     * Queue emails for the notifications of the configured types, called after they committed.
+     * Never blocks; when the queue is full the emails are dead-lettered from the retry thread.
+     */
+    public void enqueue(List<Notification> notifications) {
+        if (!running) {
+            return;
+        }
+
+        List<Email> overflow = new ArrayList<>();
+        for (Notification notification : notifications) {
+            if (!types.contains(notification.getType())) {
+                continue;
+            }
+            Email email = new Email(notification.getUser().getId(), notification.getTitle(), notification.getMessage());
+            if (queue.offer(email)) {
+                enqueued.incrementAndGet();
+            } else {
+                overflow.add(email);
+            }
+        }
+
+        if (!overflow.isEmpty()) {
+            log.warn("Email queue is full, dead-lettering {} notification emails", overflow.size());
+            // Not on the caller's thread: after commit its connection no longer commits what it writes
+            try {
+                retryScheduler.execute(() -> deadLetter(overflow, "Email queue full"));
+            } catch (RejectedExecutionException e) {
+                log.error("Shutting down, dropped {} notification emails that did not fit the queue", overflow.size());
+            }
+        }
+    }
+
+    public EmailChannelStats getStats() {
+        return EmailChannelStats.builder()
+                .enabled(running)
+                .queueDepth(queue.size())
+                .queueCapacity(queueCapacity)
+                .inFlight(inFlight.get())
+                .awaitingRetry(awaitingRetry.get())
+                .enqueued(enqueued.get())
+                .sent(sent.get())
+                .failedAttempts(failedAttempts.get())
+                .deadLettered(deadLettered.get())
+                .sentPerMinute(sentPerMinute)
+                .build();
+    }
+
+    @Scheduled(fixedRateString = "${notifications.email.stats-interval-ms:60000}")
+    public void logStats() {
+        long now = System.nanoTime();
+        long total = sent.get();
+        double minutes = (now - lastStatsAt) / 60_000_000_000.0;
+        sentPerMinute = minutes > 0 ? (total - lastStatsSent) / minutes : 0;
+        lastStatsSent = total;
+        lastStatsAt = now;
+
+        if (running) {
+            log.info("Notification email: {} sent/min, queue {}/{}, {} in flight, {} awaiting retry, {} dead-lettered",
+                    String.format("%.1f", sentPerMinute), queue.size(), queueCapacity, inFlight.get(),
+                    awaitingRetry.get(), deadLettered.get());
+        }
+    }
+
+    private void work() {
+        List<Email> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, batchSize - 1);
+                inFlight.addAndGet(batch.size());
+                send(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Sending {} notification emails failed", batch.size(), e);
+                batch.forEach(email -> retry(email, e));
+            } finally {
+                inFlight.addAndGet(-batch.size());
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Send the batch over one connection, retrying the messages that failed
+     */
+    void send(List<Email> batch) {
+        Map<Long, String> addresses = new HashMap<>();
+        for (UserRepository.EmailView user : userRepository.findEmailsByIdIn(batch.stream()
+                .map(email -> email.userId).collect(Collectors.toSet()))) {
+            addresses.put(user.getId(), user.getEmail());
+        }
+
+        Map<SimpleMailMessage, Email> messages = new IdentityHashMap<>();
+        List<Email> unknown = new ArrayList<>();
+        for (Email email : batch) {
+            email.recipient = addresses.get(email.userId);
+            if (email.recipient == null) {
+                unknown.add(email);
+                continue;
+            }
+            SimpleMailMessage message = new SimpleMailMessage();
+            message.setFrom(from);
+            message.setTo(email.recipient);
+            message.setSubject(email.subject);
+            message.setText(email.body);
+            messages.put(message, email);
+        }
+        if (!unknown.isEmpty()) {
+            deadLetter(unknown, "User has no email address");
+        }
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        try {
+            mailSender.send(messages.keySet().toArray(new SimpleMailMessage[0]));
+            sent.addAndGet(messages.size());
+        } catch (MailSendException e) {
+            Map<Object, Exception> failed = e.getFailedMessages();
+            if (failed.isEmpty()) {
+                messages.values().forEach(email -> retry(email, e));
+                return;
+            }
+            sent.addAndGet(messages.size() - failed.size());
+            failed.forEach((message, error) -> retry(messages.get(message), error));
+        } catch (MailException e) {
+            messages.values().forEach(email -> retry(email, e));
+        }
+    }
+
+    private void retry(Email email, Exception error) {
+        failedAttempts.incrementAndGet();
+        email.attempts++;
+        email.lastError = error.toString();
+        if (email.attempts >= maxAttempts || !running) {
+            deadLetter(List.of(email), email.lastError);
+            return;
+        }
+
+        long delay = Math.min(retryMaxMillis, retryBaseMillis << Math.min(email.attempts - 1, 20));
+        awaitingRetry.incrementAndGet();
+        scheduledRetries.add(email);
+        try {
+            retryScheduler.schedule(() -> {
+                if (!scheduledRetries.remove(email)) {
+                    return;
+                }
+                awaitingRetry.decrementAndGet();
+                if (!queue.offer(email)) {
+                    deadLetter(List.of(email), "Email queue full");
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            if (scheduledRetries.remove(email)) {
+                awaitingRetry.decrementAndGet();
+                deadLetter(List.of(email), email.lastError);
+            }
+        }
+    }
+
+    private void deadLetter(List<Email> emails, String reason) {
+        List<DeadLetter> deadLetters = new ArrayList<>();
+        for (Email email : emails) {
+            deadLetters.add(new DeadLetter(email.userId, email.recipient, email.subject, email.body, email.attempts,
+                    email.lastError != null ? email.lastError : reason));
+        }
+        try {
+            emailDeadLetterRepository.insertAll(deadLetters, LocalDateTime.now());
+            deadLettered.addAndGet(deadLetters.size());
+        } catch (Exception e) {
+            log.error("Could not store {} dead-lettered notification emails ({})", deadLetters.size(), reason, e);
+        }
+    }
+
+    static class Email {
+        private final Long userId;
+        private final String subject;
+        private final String body;
+        private String recipient;
+        private int attempts;
+        private String lastError;
+
+        Email(Long userId, String subject, String body) {
+            this.userId = userId;
+            this.subject = subject;
+            this.body = body;
+        }
+    }
+}
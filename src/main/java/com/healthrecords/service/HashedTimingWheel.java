@@ -0,0 +1,109 @@
+package com.healthrecords.service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Hashed timing wheel: items are placed in one of a fixed number of slots by their deadline tick,
+ * so scheduling is O(1) and advancing the clock only visits the slots of the elapsed ticks.
+ * Items more than one turn ahead share a slot with nearer ones and stay there until their own tick.
+ *
+ * The wheel has no thread of its own; the owner calls {@link #advance} periodically, typically
+ * from a scheduled job running at the tick length.
+ */
+public class HashedTimingWheel<T> {
+
+    private final long tickMillis;
+    private final long originMillis;
+    private final List<Entry<T>>[] slots;
+    private final int mask;
+
+    private long processedTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    public HashedTimingWheel(long tickMillis, int slotCount, long originMillis) {
+        if (tickMillis <= 0 || slotCount <= 0 || Integer.bitCount(slotCount) != 1) {
+            throw new IllegalArgumentException("Tick length must be positive and slot count a power of two");
+        }
+        this.tickMillis = tickMillis;
+        this.originMillis = originMillis;
+        this.slots = new List[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new ArrayList<>();
+        }
+        this.mask = slotCount - 1;
+        this.processedTick = tickOf(originMillis);
+    }
+
+    /**
+     * Add an item that becomes due at the given time. Deadlines already passed are due on the next advance.
+     */
+    public synchronized void schedule(T item, long deadlineMillis) {
+        // Round up so an item never fires before its deadline
+        long tick = Math.max(Math.floorDiv(deadlineMillis - originMillis + tickMillis - 1, tickMillis), processedTick + 1);
+        slots[(int) (tick & mask)].add(new Entry<>(item, tick));
+        size++;
+    }
+
+    /**
+     * Move the clock to the given time and remove and return every item that is due by then.
+     */
+    public synchronized List<T> advance(long nowMillis) {
+        long target = tickOf(nowMillis);
+        List<T> due = new ArrayList<>();
+        if (target <= processedTick) {
+            return due;
+        }
+
+        // After more than a full turn every slot is visited once
+        long from = target - processedTick > slots.length ? target - slots.length + 1 : processedTick + 1;
+        for (long tick = from; tick <= target; tick++) {
+            Iterator<Entry<T>> iterator = slots[(int) (tick & mask)].iterator();
+            while (iterator.hasNext()) {
+                Entry<T> entry = iterator.next();
+                if (entry.deadlineTick <= target) {
+                    due.add(entry.item);
+                    iterator.remove();
+                    size--;
+                }
+            }
+        }
+        processedTick = target;
+        return due;
+    }
+
+    /**
+     * Remove every scheduled item matching the predicate, returning how many were removed.
+     */
+    public synchronized int removeIf(Predicate<T> predicate) {
+        int removed = 0;
+        for (List<Entry<T>> slot : slots) {
+            int before = slot.size();
+            slot.removeIf(entry -> predicate.test(entry.item));
+            removed += before - slot.size();
+        }
+        size -= removed;
+        return removed;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private long tickOf(long millis) {
+        return Math.floorDiv(millis - originMillis, tickMillis);
+    }
+
+    private static class Entry<T> {
+        private final T item;
+        private final long deadlineTick;
+
+        Entry(T item, long deadlineTick) {
+            this.item = item;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.healthrecords.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.healthrecords.repository.IdempotencyKeyRepository;
+import com.healthrecords.repository.IdempotencyKeyRepository.StoredResponse;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Responses of requests made with an Idempotency-Key. The {@code idempotency_keys} table is the
+ * source of truth, shared by all replicas; completed responses are also kept in a bounded local
+ * cache so a retry landing on the same replica does not reach the database.
+ */
+@Component
+@RequiredArgsConstructor
+public class IdempotencyKeyStore {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyKeyStore.class);
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Value("${idempotency.ttl-hours:24}")
+    private long ttlHours;
+
+    @Value("${idempotency.in-progress-timeout-seconds:60}")
+    private long inProgressTimeoutSeconds;
+
+    @Value("${idempotency.cache.max-size:10000}")
+    private long cacheMaxSize;
+
+    @Value("${idempotency.cache.ttl-minutes:10}")
+    private long cacheTtlMinutes;
+
+    private Cache<String, StoredResponse> recent;
+
+    @PostConstruct
+    void init() {
+        recent = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(Duration.ofMinutes(Math.min(cacheTtlMinutes, ttlHours * 60)))
+                .build();
+    }
+
+    /**
+     * A completed response for the key seen recently by this replica
+     */
+    public StoredResponse findRecent(String scope, String key) {
+        return recent.getIfPresent(cacheKey(scope, key));
+    }
+
+    /**
+     * Claim the key for a new request. Returns false if another request already holds it.
+     */
+    public boolean start(String scope, String key, String fingerprint) {
+        LocalDateTime now = LocalDateTime.now();
+        return idempotencyKeyRepository.start(scope, key, fingerprint, now, now.plusHours(ttlHours),
+                now.minusSeconds(inProgressTimeoutSeconds));
+    }
+
+    /**
+     * The state of a key claimed by another request, with its response once that request completed
+     */
+    public Optional<StoredResponse> find(String scope, String key) {
+        Optional<StoredResponse> stored = idempotencyKeyRepository.find(scope, key, LocalDateTime.now());
+        stored.filter(StoredResponse::isCompleted).ifPresent(response -> recent.put(cacheKey(scope, key), response));
+        return stored;
+    }
+
+    public void complete(String scope, String key, StoredResponse response) {
+        idempotencyKeyRepository.complete(scope, key, response);
+        recent.put(cacheKey(scope, key), response);
+    }
+
+    public void release(String scope, String key) {
+        idempotencyKeyRepository.release(scope, key);
+    }
+
+    @Scheduled(fixedDelayString = "${idempotency.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        int purged = idempotencyKeyRepository.purgeExpired(LocalDateTime.now());
+        if (purged > 0) {
+            log.debug("Purged {} expired idempotency keys", purged);
+        }
+    }
+
+    private static String cacheKey(String scope, String key) {
+        return scope + '\n' + key;
+    }
+}
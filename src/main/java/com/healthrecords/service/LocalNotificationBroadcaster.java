@@ -0,0 +1,34 @@
+package com.healthrecords.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+
+/**
+ * Pushes to the clients connected to this replica only, for single-instance deployments
+ */
+@Component
+@ConditionalOnProperty(name = "notifications.broadcast.type", havingValue = "local")
+@RequiredArgsConstructor
+public class LocalNotificationBroadcaster implements NotificationBroadcaster {
+
+    private final NotificationStreamRegistry notificationStreamRegistry;
+
+    @Override
+    public void publish(Collection<Long> userIds) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    notificationStreamRegistry.push(userIds);
+                }
+            });
+        } else {
+            notificationStreamRegistry.push(userIds);
+        }
+    }
+}
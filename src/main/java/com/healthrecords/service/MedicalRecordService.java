@@ -7,6 +7,7 @@ import com.healthrecords.repository.UserRepository;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Map;
@@ -19,48 +20,27 @@ public class MedicalRecordService {
     private final MedicalRecordRepository medicalRecordRepository;
     private final UserRepository userRepository;
 
+    /**
+     * Get all medical records with their patient, doctor, prescriptions and lab reports,
+     * in three queries whatever the number of records
+     */
+    @Transactional(readOnly = true)
     public List<MedicalRecord> getAllMedicalRecords() {
-        List<MedicalRecord> records = medicalRecordRepository.findAll();
+        List<MedicalRecord> records = medicalRecordRepository.findAllWithUsers();
         System.out.println("Retrieved " + records.size() + " medical records");
-
-        // Ensure we have the full User entities for doctor and patient in each record
-        for (MedicalRecord record : records) {
-            if (record.getPatient() != null && record.getPatient().getId() != null) {
-                User patient = userRepository.findById(record.getPatient().getId())
-                        .orElseThrow(() -> new EntityNotFoundException("Patient not found with ID: " + record.getPatient().getId()));
-                record.setPatient(patient);
-            }
-
-            if (record.getDoctor() != null && record.getDoctor().getId() != null) {
-                User doctor = userRepository.findById(record.getDoctor().getId())
-                        .orElseThrow(() -> new EntityNotFoundException("Doctor not found with ID: " + record.getDoctor().getId()));
-                record.setDoctor(doctor);
-            }
-        }
-
+        fetchCollections(records);
         return records;
     }
 
+    @Transactional(readOnly = true)
     public MedicalRecord getMedicalRecordById(Long id) {
         System.out.println("Getting medical record by ID: " + id);
-        MedicalRecord record = medicalRecordRepository.findById(id)
+        MedicalRecord record = medicalRecordRepository.findWithUsersById(id)
                 .orElseThrow(() -> new EntityNotFoundException("Medical record not found with id: " + id));
-
-        // Ensure we have the full User entities for doctor and patient
-        if (record.getPatient() != null && record.getPatient().getId() != null) {
-            User patient = userRepository.findById(record.getPatient().getId())
-                    .orElseThrow(() -> new EntityNotFoundException("Patient not found with ID: " + record.getPatient().getId()));
-            record.setPatient(patient);
-        }
-
-        if (record.getDoctor() != null && record.getDoctor().getId() != null) {
-            User doctor = userRepository.findById(record.getDoctor().getId())
-                    .orElseThrow(() -> new EntityNotFoundException("Doctor not found with ID: " + record.getDoctor().getId()));
-            record.setDoctor(doctor);
-        }
+        fetchCollections(List.of(record));
 
         // Log the retrieved record details
-        System.out.println("Retrieved medical record: " + record);
+        System.out.println("Retrieved medical record: " + record.getId() + " - " + record.getDiagnosis());
         System.out.println("Patient: " + (record.getPatient() != null ?
             record.getPatient().getId() + " - " + record.getPatient().getFirstName() + " " + record.getPatient().getLastName() : "null"));
         System.out.println("Doctor: " + (record.getDoctor() != null ?
@@ -92,6 +72,19 @@ public class MedicalRecordService {
 
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    /**
+     * Initialize the prescriptions and lab reports of the records with one query each,
+     * instead of one per record when they are first read
+     */
+    private void fetchCollections(List<MedicalRecord> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        List<Long> ids = records.stream().map(MedicalRecord::getId).toList();
+        medicalRecordRepository.fetchPrescriptions(ids);
+        medicalRecordRepository.fetchLabReports(ids);
+    }
+
     private void validateUserReferences(MedicalRecord medicalRecord) {
         System.out.println("Validating user references for medical record: " + medicalRecord);
 
@@ -0,0 +1,171 @@
+package com.healthrecords.service;
+
+import com.healthrecords.repository.JobLeaseRepository;
+import com.healthrecords.repository.NotificationArchiveRepository;
+import com.healthrecords.repository.NotificationPartitionRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Keeps the notifications table small and its monthly partitions ahead of time.
+ *
+ * Read notifications older than {@code notifications.archive.retention-days} are moved to the
+ * compressed {@code notifications_archive} table in chunks of {@code notifications.archive.chunk-size},
+ * each chunk in its own short transaction that skips rows other transactions hold, with a pause
+ * between chunks so replication and regular traffic keep up. Unread notifications are never archived.
+ * Each night's run is leased in {@code job_leases}, so one replica archives while the others skip it,
+ * and it runs on the scheduling pool ({@code spring.task.scheduling.pool.size}) next to the frequent jobs.
+ */
+@Component
+@RequiredArgsConstructor
+public class NotificationArchiver {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationArchiver.class);
+
+    private static final String ARCHIVE_JOB = "notification-archive";
+
+    private final JobLeaseRepository jobLeaseRepository;
+    private final NotificationArchiveRepository notificationArchiveRepository;
+    private final NotificationPartitionRepository notificationPartitionRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${notifications.archive.enabled:true}")
+    private boolean enabled;
+
+    @Value("${notifications.archive.retention-days:180}")
+    private long retentionDays;
+
+    @Value("${notifications.archive.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${notifications.archive.pause-ms:200}")
+    private long pauseMillis;
+
+    // Bounds one run; whatever is left is archived by the next one
+    @Value("${notifications.archive.max-chunks:2000}")
+    private int maxChunks;
+
+    @Value("${notifications.archive.lease-seconds:300}")
+    private long leaseSeconds;
+
+    @Value("${notifications.partitions.months-ahead:2}")
+    private int monthsAhead;
+
+    @Value("${jobs.instance-id:}")
+    private String instanceId;
+
+    private String owner;
+
+    @PostConstruct
+    void init() {
+        owner = instanceId != null && !instanceId.isBlank() ? instanceId : UUID.randomUUID().toString();
+    }
+
+    @Scheduled(cron = "${notifications.archive.cron:0 15 4 * * *}")
+    public void archive() {
+        if (!enabled) {
+            return;
+        }
+
+        LocalDate today = LocalDate.now();
+        if (!claimRun(today)) {
+            log.debug("Notification archiving of {} is leased by another replica or done", today);
+            return;
+        }
+
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(retentionDays);
+        long moved = 0;
+        for (int chunk = 0; chunk < maxChunks; chunk++) {
+            // Renew the lease before each chunk; stop if another replica took it over
+            if (chunk > 0 && !claimRun(today)) {
+                log.warn("Lost the notification archive lease after {} chunks", chunk);
+                break;
+            }
+            int count = archiveChunk(cutoff);
+            moved += count;
+            if (count < chunkSize) {
+                break;
+            }
+            try {
+                Thread.sleep(pauseMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        if (moved > 0) {
+            log.info("Archived {} read notifications created before {}", moved, cutoff);
+        }
+        jobLeaseRepository.complete(ARCHIVE_JOB, today, owner, LocalDateTime.now());
+        jobLeaseRepository.purgeCompletedBefore(ARCHIVE_JOB, today.minusDays(30));
+    }
+
+    private boolean claimRun(LocalDate runDate) {
+        LocalDateTime now = LocalDateTime.now();
+        return jobLeaseRepository.claim(ARCHIVE_JOB, runDate, owner, now.plusSeconds(leaseSeconds), now);
+    }
+
+    /**
+     * Move one chunk to the archive in its own transaction, returning how many rows were picked
+     */
+    int archiveChunk(LocalDateTime cutoff) {
+        Integer count = transactionTemplate.execute(status -> {
+            List<Long> ids = notificationArchiveRepository.lockArchivable(cutoff, chunkSize);
+            notificationArchiveRepository.moveToArchive(ids, LocalDateTime.now());
+            return ids.size();
+        });
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Add the monthly partitions of the coming months, before any row lands in them
+     */
+    @Scheduled(cron = "${notifications.partitions.cron:0 0 4 * * *}")
+    public void addPartitions() {
+        if (!enabled) {
+            return;
+        }
+
+        try {
+            List<String> names = notificationPartitionRepository.findPartitionNames();
+            if (!names.contains(NotificationPartitionRepository.FUTURE_PARTITION)) {
+                log.debug("notifications is not partitioned by month, nothing to add");
+                return;
+            }
+
+            List<YearMonth> missing = new ArrayList<>();
+            YearMonth current = YearMonth.now();
+            for (YearMonth month = current; !month.isAfter(current.plusMonths(monthsAhead)); month = month.plusMonths(1)) {
+                if (!names.contains(NotificationPartitionRepository.partitionName(month))) {
+                    missing.add(month);
+                }
+            }
+            // Partitions can only be added after the last monthly one
+            String last = names.size() > 1 ? names.get(names.size() - 2) : null;
+            missing.removeIf(month -> last != null && NotificationPartitionRepository.partitionName(month).compareTo(last) <= 0);
+
+            notificationPartitionRepository.addMonths(missing);
+            if (!missing.isEmpty()) {
+                log.info("Added notification partitions for {}", missing);
+            }
+        } catch (DataAccessException e) {
+            // Another replica may have added them at the same time
+            log.warn("Could not add notification partitions: {}", e.getMessage());
+        }
+    }
+}
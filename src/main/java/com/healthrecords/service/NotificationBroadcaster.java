@@ -0,0 +1,16 @@
+package com.healthrecords.service;
+
+import java.util.Collection;
+
+/**
+ * Fans out "these users' notifications changed" to every replica, each of which pushes the
+ * new state to the SSE clients connected to it. Selected with {@code notifications.broadcast.type}.
+ */
+public interface NotificationBroadcaster {
+
+    /**
+     * Called in the transaction that makes the change, or right after a change made outside of one.
+     * Whatever the fan-out writes commits or rolls back with the change; pushes happen once it commits.
+     */
+    void publish(Collection<Long> userIds);
+}
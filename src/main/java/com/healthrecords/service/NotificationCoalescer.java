@@ -0,0 +1,265 @@
+package com.healthrecords.service;
+
+import com.healthrecords.dto.NotificationDigestSettings;
+import com.healthrecords.model.Notification;
+import com.healthrecords.repository.AppointmentRepository;
+import com.healthrecords.repository.NotificationDigestPreferenceRepository;
+import com.healthrecords.repository.NotificationRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Merges same-type notifications for a user into one digest row.
+ *
+ * An unread notification of a type in {@code notifications.digest.types} opens a digest for
+ * its recipient; further notifications of that type within the user's window (their own from
+ * {@code notification_digest_preferences}, else {@code notifications.digest.window-minutes})
+ * bump the digest's count, replace its message with the latest one and add their appointment
+ * to its {@code related_appointment_ids}, instead of adding rows. Reading the digest closes it.
+ *
+ * A digest points at its first appointment through {@code related_entity_id}. When one of its
+ * appointments is deleted, it is taken out of the digest first (see {@link #removeAppointment}),
+ * so deleting that appointment's notifications does not take the others' with it.
+ */
+@Component
+@RequiredArgsConstructor
+public class NotificationCoalescer {
+
+    private static final Pattern MORE_SUFFIX = Pattern.compile(" \\(and \\d+ more\\)$");
+
+    private final NotificationRepository notificationRepository;
+    private final NotificationDigestPreferenceRepository notificationDigestPreferenceRepository;
+    private final AppointmentRepository appointmentRepository;
+
+    @Value("${notifications.digest.types:APPOINTMENT_REQUESTED}")
+    private String typesProperty;
+
+    @Value("${notifications.digest.window-minutes:60}")
+    private int defaultWindowMinutes;
+
+    @Value("${notifications.digest.max-window-minutes:1440}")
+    private int maxWindowMinutes;
+
+    @Value("${notifications.digest.max-ids:100}")
+    private int maxIds;
+
+    private Set<Notification.NotificationType> types;
+
+    @PostConstruct
+    void init() {
+        types = EnumSet.noneOf(Notification.NotificationType.class);
+        for (String type : typesProperty.split(",")) {
+            if (!type.isBlank()) {
+                types.add(Notification.NotificationType.valueOf(type.trim()));
+            }
+        }
+    }
+
+    /**
+     * Merge the notifications into their recipients' open digests where possible, within the
+     * caller's transaction, and return those that still need to be inserted. A returned
+     * notification may stand for several of the given ones.
+     */
+    public List<Notification> coalesce(List<Notification> notifications) {
+        Map<DigestKey, List<Notification>> groups = new LinkedHashMap<>();
+        List<Notification> toInsert = new ArrayList<>();
+        for (Notification notification : notifications) {
+            if (types.contains(notification.getType()) && !Boolean.TRUE.equals(notification.getIsRead())) {
+                groups.computeIfAbsent(new DigestKey(notification.getUser().getId(), notification.getType()),
+                        key -> new ArrayList<>()).add(notification);
+            } else {
+                toInsert.add(notification);
+            }
+        }
+        if (groups.isEmpty()) {
+            return notifications;
+        }
+
+        Set<Long> userIds = groups.keySet().stream().map(key -> key.userId).collect(Collectors.toSet());
+        Map<Long, Integer> windows = notificationDigestPreferenceRepository.findWindowMinutes(userIds);
+        groups.keySet().removeIf(key -> {
+            if (windowMinutes(windows, key.userId) > 0) {
+                return false;
+            }
+            toInsert.addAll(groups.get(key));
+            return true;
+        });
+        if (groups.isEmpty()) {
+            return toInsert;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        int longestWindow = groups.keySet().stream().mapToInt(key -> windowMinutes(windows, key.userId)).max().orElse(0);
+        Map<DigestKey, NotificationRepository.DigestView> openDigests = new HashMap<>();
+        for (NotificationRepository.DigestView digest : notificationRepository.findOpenDigests(userIds,
+                groups.keySet().stream().map(key -> key.type).collect(Collectors.toSet()), now.minusMinutes(longestWindow))) {
+            DigestKey key = new DigestKey(digest.getUserId(), digest.getType());
+            if (!groups.containsKey(key)
+                    || digest.getCreatedAt().isBefore(now.minusMinutes(windowMinutes(windows, key.userId)))) {
+                continue;
+            }
+            openDigests.merge(key, digest, (a, b) -> a.getCreatedAt().isAfter(b.getCreatedAt()) ? a : b);
+        }
+
+        // Extend digests in id order so concurrent batches cannot deadlock on each other's rows
+        List<DigestKey> keys = new ArrayList<>(groups.keySet());
+        keys.sort(Comparator.comparing((DigestKey key) -> openDigests.containsKey(key) ? openDigests.get(key).getId() : Long.MAX_VALUE));
+        for (DigestKey key : keys) {
+            List<Notification> group = groups.get(key);
+            Notification latest = group.get(group.size() - 1);
+            NotificationRepository.DigestView digest = openDigests.get(key);
+            if (digest != null) {
+                int count = digest.getDigestCount() + group.size();
+                if (notificationRepository.extendDigest(digest.getId(), digest.getDigestCount(), count,
+                        appendIds(digest.getRelatedAppointmentIds(), group), digestMessage(latest.getMessage(), count), now) == 1) {
+                    continue;
+                }
+            }
+
+            // No open digest, or it was read meanwhile: the first notification opens a new one
+            Notification head = group.get(0);
+            head.setDigestCount(group.size());
+            head.setRelatedAppointmentIds(appendIds(null, group));
+            head.setMessage(digestMessage(latest.getMessage(), group.size()));
+            toInsert.add(head);
+        }
+        return toInsert;
+    }
+
+    /**
+     * Take a deleted appointment out of the given users' digests, within the caller's transaction:
+     * drop its id, count one notification less and, if the digest pointed at it, point it at the
+     * next appointment. If its message was the deleted appointment's, it is replaced by the title and
+     * count. Call before deleting the appointment's notifications, which then leaves these digests
+     * alone; a digest left without appointments keeps its count and points at none.
+     */
+    public void removeAppointment(Long appointmentId, Collection<Long> userIds) {
+        String removedId = appointmentId.toString();
+        LocalDateTime now = LocalDateTime.now();
+        for (NotificationRepository.DigestContentView digest : notificationRepository.findDigestsWithAppointment(
+                userIds, appointmentId, "%," + removedId + ",%")) {
+            List<String> ids = digest.getRelatedAppointmentIds() != null
+                    ? new ArrayList<>(Arrays.asList(digest.getRelatedAppointmentIds().split(",")))
+                    : new ArrayList<>();
+            boolean pointsAtIt = appointmentId.equals(digest.getRelatedAppointmentId());
+            // The message is the latest appointment's, so it goes with that appointment
+            boolean wasLatest = !ids.isEmpty() && ids.get(ids.size() - 1).equals(removedId);
+            if (!ids.remove(removedId) && !pointsAtIt) {
+                continue;
+            }
+
+            Long relatedId = digest.getRelatedAppointmentId();
+            if (pointsAtIt) {
+                relatedId = ids.isEmpty() ? null : Long.valueOf(ids.get(0));
+            }
+            int count = digest.getDigestCount() - 1;
+            String message = wasLatest
+                    ? neutralDigestMessage(digest.getTitle(), count)
+                    : digestMessage(MORE_SUFFIX.matcher(digest.getMessage() != null ? digest.getMessage() : "").replaceFirst(""), count);
+            // A digest extended meanwhile is left as it is
+            notificationRepository.shrinkDigest(digest.getId(), digest.getDigestCount(), count,
+                    ids.isEmpty() ? null : String.join(",", ids),
+                    relatedId != null ? appointmentRepository.getReferenceById(relatedId) : null,
+                    message, now);
+        }
+    }
+
+    /**
+     * The user's digest window, and whether it is their own rather than the default
+     */
+    public NotificationDigestSettings getSettings(Long userId) {
+        Integer own = notificationDigestPreferenceRepository.findWindowMinutes(userId);
+        return NotificationDigestSettings.builder()
+                .windowMinutes(own != null ? own : defaultWindowMinutes)
+                .custom(own != null)
+                .build();
+    }
+
+    /**
+     * Set the user's digest window; null goes back to the default, 0 stops merging their notifications
+     */
+    public void setWindowMinutes(Long userId, Integer windowMinutes) {
+        if (windowMinutes == null) {
+            notificationDigestPreferenceRepository.delete(userId);
+            return;
+        }
+        if (windowMinutes < 0 || windowMinutes > maxWindowMinutes) {
+            throw new IllegalArgumentException("Digest window must be between 0 and " + maxWindowMinutes + " minutes");
+        }
+        notificationDigestPreferenceRepository.save(userId, windowMinutes, LocalDateTime.now());
+    }
+
+    private int windowMinutes(Map<Long, Integer> windows, Long userId) {
+        return windows.getOrDefault(userId, defaultWindowMinutes);
+    }
+
+    /**
+     * Add the group's appointment ids to a comma-separated list, keeping at most notifications.digest.max-ids
+     */
+    private String appendIds(String ids, List<Notification> group) {
+        StringBuilder builder = new StringBuilder(ids != null ? ids : "");
+        int count = ids == null || ids.isEmpty() ? 0 : ids.split(",").length;
+        for (Notification notification : group) {
+            if (notification.getRelatedAppointment() == null || count >= maxIds) {
+                continue;
+            }
+            if (count > 0) {
+                builder.append(',');
+            }
+            builder.append(notification.getRelatedAppointment().getId());
+            count++;
+        }
+        return builder.length() > 0 ? builder.toString() : null;
+    }
+
+    private static String digestMessage(String latestMessage, int count) {
+        return count > 1 ? latestMessage + " (and " + (count - 1) + " more)" : latestMessage;
+    }
+
+    /**
+     * Message of a digest whose latest appointment was taken out; the remaining ones' texts are not kept
+     */
+    private static String neutralDigestMessage(String title, int count) {
+        return count > 1 ? title + " (" + count + " notifications)" : title;
+    }
+
+    private static class DigestKey {
+        private final Long userId;
+        private final Notification.NotificationType type;
+
+        DigestKey(Long userId, Notification.NotificationType type) {
+            this.userId = userId;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof DigestKey other)) {
+                return false;
+            }
+            return userId.equals(other.userId) && type == other.type;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, type);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.healthrecords.service;
+
+import com.healthrecords.dto.AppointmentDetail;
+import com.healthrecords.model.Notification;
+import com.healthrecords.repository.AppointmentRepository;
+import com.healthrecords.repository.NotificationOutboxRepository;
+import com.healthrecords.repository.NotificationOutboxRepository.Entry;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Turns {@code notification_outbox} entries into notifications.
+ *
+ * Each batch is claimed, turned into notifications with one read of the appointments and one
+ * batched insert, and deleted in a single transaction, so an entry is notified exactly once even
+ * if the replica dies halfway. Pushes go out after that transaction commits. When a batch fails,
+ * its entries are retried one at a time so a single bad entry cannot hold up the others; an entry
+ * that keeps failing is retried with exponential backoff and parked after
+ * {@code notifications.outbox.max-attempts}.
+ */
+@Service
+@RequiredArgsConstructor
+public class NotificationOutboxDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationOutboxDispatcher.class);
+
+    private final NotificationOutboxRepository notificationOutboxRepository;
+    private final AppointmentRepository appointmentRepository;
+    private final NotificationService notificationService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${notifications.outbox.enabled:true}")
+    private boolean enabled;
+
+    @Value("${notifications.outbox.batch-size:100}")
+    private int batchSize;
+
+    @Value("${notifications.outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${notifications.outbox.retry-base-seconds:5}")
+    private long retryBaseSeconds;
+
+    @Value("${notifications.outbox.retry-max-seconds:3600}")
+    private long retryMaxSeconds;
+
+    @Scheduled(fixedDelayString = "${notifications.outbox.poll-ms:500}")
+    public void dispatch() {
+        if (!enabled) {
+            return;
+        }
+
+        int claimed;
+        do {
+            claimed = dispatchBatch();
+        } while (claimed == batchSize);
+    }
+
+    /**
+     * Dispatch one batch of due entries, returning how many were claimed
+     */
+    int dispatchBatch() {
+        List<Entry> claimed = new ArrayList<>();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                claimed.addAll(notificationOutboxRepository.claimDue(LocalDateTime.now(), batchSize));
+                deliver(claimed);
+            });
+        } catch (Exception e) {
+            log.warn("Dispatching {} outbox entries failed, retrying them one by one", claimed.size(), e);
+            claimed.forEach(this::dispatchOne);
+        }
+        return claimed.size();
+    }
+
+    private void dispatchOne(Entry entry) {
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    deliver(notificationOutboxRepository.claimById(entry.getId(), LocalDateTime.now())));
+        } catch (Exception e) {
+            LocalDateTime now = LocalDateTime.now();
+            boolean giveUp = entry.getAttempts() + 1 >= maxAttempts;
+            notificationOutboxRepository.recordFailure(entry, giveUp ? null : now.plusSeconds(retryDelaySeconds(entry)),
+                    now, e.toString());
+            if (giveUp) {
+                log.error("Giving up on outbox entry {} ({} for appointment {}) after {} attempts",
+                        entry.getId(), entry.getType(), entry.getAppointmentId(), entry.getAttempts() + 1, e);
+            }
+        }
+    }
+
+    /**
+     * Insert the notifications for the claimed entries and delete them, in the caller's transaction
+     */
+    private void deliver(List<Entry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        Map<Long, AppointmentDetail> appointments = new HashMap<>();
+        for (AppointmentDetail detail : appointmentRepository.findDetailsByIds(entries.stream()
+                .map(Entry::getAppointmentId).collect(Collectors.toSet()))) {
+            appointments.put(detail.getId(), detail);
+        }
+
+        List<Notification> notifications = new ArrayList<>();
+        for (Entry entry : entries) {
+            AppointmentDetail appointment = appointments.get(entry.getAppointmentId());
+            // Deleted since; there is nothing left to tell anyone about
+            if (appointment != null) {
+                // Stamped with the delivery time, so feed positions taken meanwhile do not skip it
+                notifications.add(build(entry, appointment));
+            }
+        }
+
+        notificationService.createNotificationsInBatch(notifications);
+        notificationOutboxRepository.deleteAll(entries);
+    }
+
+    private Notification build(Entry entry, AppointmentDetail appointment) {
+        return switch (entry.getType()) {
+            case APPOINTMENT_REQUESTED -> notificationService.buildAppointmentRequestNotification(appointment);
+            case APPOINTMENT_CONFIRMED -> notificationService.buildAppointmentConfirmationNotification(appointment);
+            case APPOINTMENT_REJECTED -> notificationService.buildAppointmentRejectionNotification(appointment, entry.getDetail());
+            case APPOINTMENT_RESCHEDULED -> notificationService.buildAppointmentRescheduleNotification(appointment);
+            case APPOINTMENT_CANCELLED_BY_PATIENT -> notificationService.buildAppointmentCancellationNotification(appointment, true);
+            case APPOINTMENT_CANCELLED -> notificationService.buildAppointmentCancellationNotification(appointment, false);
+        };
+    }
+
+    private long retryDelaySeconds(Entry entry) {
+        return Math.min(retryMaxSeconds, retryBaseSeconds << Math.min(entry.getAttempts(), 20));
+    }
+}
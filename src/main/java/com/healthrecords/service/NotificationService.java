@@ -1,35 +1,79 @@
 package com.healthrecords.service;
 
+import com.healthrecords.dto.AppointmentDetail;
+import com.healthrecords.dto.ArchivedNotification;
+import com.healthrecords.dto.CursorPage;
+import com.healthrecords.dto.EmailChannelStats;
+import com.healthrecords.dto.NotificationCursor;
+import com.healthrecords.dto.NotificationDigestSettings;
+import com.healthrecords.dto.NotificationFeedPage;
+import com.healthrecords.dto.NotificationSummary;
 import com.healthrecords.model.Appointment;
 import com.healthrecords.model.Notification;
 import com.healthrecords.model.User;
+import com.healthrecords.model.UserRole;
+import com.healthrecords.repository.AppointmentRepository;
+import com.healthrecords.repository.NotificationArchiveRepository;
+import com.healthrecords.repository.NotificationJdbcRepository;
 import com.healthrecords.repository.NotificationRepository;
 import com.healthrecords.repository.UserRepository;
+import com.healthrecords.security.CurrentUserContext;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.access.AccessDeniedException;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.time.Instant;
-import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
 
 @Service
 @RequiredArgsConstructor
 public class NotificationService {
 
+    private static final Logger log = LoggerFactory.getLogger(NotificationService.class);
+
     private final NotificationRepository notificationRepository;
+    private final NotificationJdbcRepository notificationJdbcRepository;
     private final UserRepository userRepository;
+    private final AppointmentRepository appointmentRepository;
+    private final CurrentUserContext currentUserContext;
+    private final UnreadNotificationCounter unreadNotificationCounter;
+    private final NotificationStreamRegistry notificationStreamRegistry;
+    private final NotificationBroadcaster notificationBroadcaster;
+    private final EmailNotificationChannel emailNotificationChannel;
+    private final NotificationCoalescer notificationCoalescer;
+    private final NotificationArchiveRepository notificationArchiveRepository;
+
+    // Share of count-unread requests that also log diagnostics; 0 turns them off
+    @Value("${notifications.diagnostics.sample-rate:0}")
+    private double diagnosticsSampleRate;
+
+    @Value("${notifications.diagnostics.max-listed:5}")
+    private int diagnosticsMaxListed;
+
+    @Value("${notifications.bulk.max-ids:500}")
+    private int maxBulkIds;
+
+    @Value("${notifications.page.default-size:20}")
+    private int defaultPageSize;
 
-    // Simple cache for unread notification counts
-    private final Map<Long, Long> unreadCountCache = new HashMap<>();
-    private final Map<Long, Instant> cacheTimestamps = new HashMap<>();
-    private static final Duration CACHE_DURATION = Duration.ofMinutes(2); // Cache for 2 minutes
+    @Value("${notifications.page.max-size:100}")
+    private int maxPageSize;
 
     /**
      * Get all notifications for the current user
@@ -70,14 +114,14 @@ public class NotificationService {
     @Transactional
     public Notification markAsRead(Long id) {
         Notification notification = getNotificationById(id);
-        notification.setIsRead(true);
 
-        // Invalidate cache for this user
-        Long userId = notification.getUser().getId();
-        unreadCountCache.remove(userId);
-        cacheTimestamps.remove(userId);
+        // Only the request that actually flips the flag decrements the counter
+        if (notificationRepository.markReadIfUnread(id) > 0) {
+            changeUnread(Map.of(notification.getUser().getId(), -1));
+        }
 
-        return notificationRepository.save(notification);
+        notification.setIsRead(true);
+        return notification;
     }
 
     /**
@@ -85,16 +129,28 @@ public class NotificationService {
      */
     @Transactional
     public void markAllAsRead() {
-        User currentUser = getCurrentUser();
-        List<Notification> unreadNotifications = notificationRepository.findByUserAndIsRead(currentUser, false);
+        Long userId = getCurrentUser().getId();
+        int read = notificationRepository.markAllReadByUserId(userId);
+        changeUnread(Map.of(userId, -read));
+    }
 
-        unreadNotifications.forEach(notification -> notification.setIsRead(true));
-        notificationRepository.saveAll(unreadNotifications);
+    /**
+     * Mark several of the current user's notifications as read with one UPDATE
+     * Ids of other users' notifications are ignored; returns how many were actually unread
+     */
+    @Transactional
+    public int markAsRead(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            throw new IllegalArgumentException("At least one notification id is required");
+        }
+        if (ids.size() > maxBulkIds) {
+            throw new IllegalArgumentException("At most " + maxBulkIds + " notifications can be marked read at once");
+        }
 
-        // Invalidate cache for this user
-        Long userId = currentUser.getId();
-        unreadCountCache.remove(userId);
-        cacheTimestamps.remove(userId);
+        Long userId = getCurrentUser().getId();
+        int read = notificationRepository.markReadByUserIdAndIds(userId, new HashSet<>(ids));
+        changeUnread(Map.of(userId, -read));
+        return read;
     }
 
     /**
@@ -102,10 +158,18 @@ public class NotificationService {
      */
     @Transactional
     public Notification createAppointmentRequestNotification(Appointment appointment) {
-        User doctor = appointment.getDoctor();
+        Notification notification = buildAppointmentRequestNotification(appointment);
+        List<Notification> toInsert = notificationCoalescer.coalesce(List.of(notification));
+        // Merged into the doctor's open digest, so there is no row of its own
+        return toInsert.isEmpty() ? notification : saveNotification(toInsert.get(0));
+    }
 
-        Notification notification = Notification.builder()
-                .user(doctor)
+    /**
+     * Build, without saving, the doctor's notification for a requested appointment
+     */
+    public Notification buildAppointmentRequestNotification(Appointment appointment) {
+        return Notification.builder()
+                .user(appointment.getDoctor())
                 .title("New Appointment Request")
                 .message("Patient " + appointment.getPatient().getFirstName() + " " +
                          appointment.getPatient().getLastName() + " has requested an appointment on " +
@@ -114,118 +178,153 @@ public class NotificationService {
                 .isRead(false)
                 .relatedAppointment(appointment)
                 .build();
+    }
 
-        // Invalidate cache for the doctor
-        Long userId = doctor.getId();
-        unreadCountCache.remove(userId);
-        cacheTimestamps.remove(userId);
+    /**
+     * Build, without saving, the doctor's notification for a requested appointment, from the appointment projection
+     */
+    public Notification buildAppointmentRequestNotification(AppointmentDetail appointment) {
+        return buildAppointmentNotification(appointment, appointment.getDoctor().getId(),
+                "New Appointment Request",
+                "Patient " + appointment.getPatient().getFirstName() + " " +
+                appointment.getPatient().getLastName() + " has requested an appointment on " +
+                appointment.getAppointmentDateTime().toLocalDate(),
+                Notification.NotificationType.APPOINTMENT_REQUESTED);
+    }
 
-        return notificationRepository.save(notification);
+    /**
+     * Build, without saving, the patient's notification for a confirmed appointment
+     */
+    public Notification buildAppointmentConfirmationNotification(AppointmentDetail appointment) {
+        return buildAppointmentNotification(appointment, appointment.getPatient().getId(),
+                "Appointment Confirmed",
+                "Your appointment with Dr. " + appointment.getDoctor().getFirstName() + " " +
+                appointment.getDoctor().getLastName() + " on " +
+                appointment.getAppointmentDateTime().toLocalDate() + " has been confirmed",
+                Notification.NotificationType.APPOINTMENT_CONFIRMED);
     }
 
     /**
-     * Create a notification for appointment confirmation
+     * Build, without saving, the patient's notification for a rejected appointment
      */
-    @Transactional
-    public Notification createAppointmentConfirmationNotification(Appointment appointment) {
-        User patient = appointment.getPatient();
-
-        Notification notification = Notification.builder()
-                .user(patient)
-                .title("Appointment Confirmed")
-                .message("Your appointment with Dr. " + appointment.getDoctor().getFirstName() + " " +
-                         appointment.getDoctor().getLastName() + " on " +
-                         appointment.getAppointmentDateTime().toLocalDate() + " has been confirmed")
-                .type(Notification.NotificationType.APPOINTMENT_CONFIRMED)
-                .isRead(false)
-                .relatedAppointment(appointment)
-                .build();
+    public Notification buildAppointmentRejectionNotification(AppointmentDetail appointment, String reason) {
+        return buildAppointmentNotification(appointment, appointment.getPatient().getId(),
+                "Appointment Rejected",
+                "Your appointment with Dr. " + appointment.getDoctor().getFirstName() + " " +
+                appointment.getDoctor().getLastName() + " on " +
+                appointment.getAppointmentDateTime().toLocalDate() + " has been rejected. " +
+                "Reason: " + reason,
+                Notification.NotificationType.APPOINTMENT_REJECTED);
+    }
 
-        // Invalidate cache for the patient
-        Long userId = patient.getId();
-        unreadCountCache.remove(userId);
-        cacheTimestamps.remove(userId);
+    /**
+     * Build, without saving, the patient's notification for an appointment moved to a new date/time
+     * Sent as a system notification, the notification types have no separate value for it
+     */
+    public Notification buildAppointmentRescheduleNotification(AppointmentDetail appointment) {
+        return buildAppointmentNotification(appointment, appointment.getPatient().getId(),
+                "Appointment Rescheduled",
+                "Your appointment with Dr. " + appointment.getDoctor().getFirstName() + " " +
+                appointment.getDoctor().getLastName() + " has been moved to " +
+                appointment.getAppointmentDateTime().toLocalDate() + " at " +
+                appointment.getAppointmentDateTime().toLocalTime(),
+                Notification.NotificationType.SYSTEM);
+    }
 
-        return notificationRepository.save(notification);
+    /**
+     * Build, without saving, the patient's reminder for an upcoming appointment
+     */
+    public Notification buildAppointmentReminderNotification(AppointmentDetail appointment) {
+        return buildAppointmentNotification(appointment, appointment.getPatient().getId(),
+                "Appointment Reminder",
+                "Reminder: your appointment with Dr. " + appointment.getDoctor().getFirstName() + " " +
+                appointment.getDoctor().getLastName() + " is on " +
+                appointment.getAppointmentDateTime().toLocalDate() + " at " +
+                appointment.getAppointmentDateTime().toLocalTime(),
+                Notification.NotificationType.APPOINTMENT_REMINDER);
     }
 
     /**
-     * Create a notification for appointment rejection
+     * Insert notifications built by the build* methods in one JDBC batch, after merging
+     * those that can be into their recipients' open digests
      */
     @Transactional
-    public Notification createAppointmentRejectionNotification(Appointment appointment, String reason) {
-        User patient = appointment.getPatient();
-
-        Notification notification = Notification.builder()
-                .user(patient)
-                .title("Appointment Rejected")
-                .message("Your appointment with Dr. " + appointment.getDoctor().getFirstName() + " " +
-                         appointment.getDoctor().getLastName() + " on " +
-                         appointment.getAppointmentDateTime().toLocalDate() + " has been rejected. " +
-                         "Reason: " + reason)
-                .type(Notification.NotificationType.APPOINTMENT_REJECTED)
+    public void createNotificationsInBatch(List<Notification> built) {
+        List<Notification> notifications = notificationCoalescer.coalesce(built);
+        notificationJdbcRepository.insertAll(notifications);
+
+        Map<Long, Integer> unread = new HashMap<>();
+        for (Notification notification : notifications) {
+            if (!Boolean.TRUE.equals(notification.getIsRead())) {
+                unread.merge(notification.getUser().getId(), 1, Integer::sum);
+            }
+        }
+        changeUnread(unread);
+        runAfterCommit(() -> emailNotificationChannel.enqueue(notifications));
+    }
+
+    /**
+     * Save a notification built elsewhere, counting it towards its recipient's unread notifications
+     */
+    @Transactional
+    public Notification createNotification(Notification notification) {
+        return saveNotification(notification);
+    }
+
+    /**
+     * Build, without saving, the notification for a cancelled appointment, sent to whichever side did not cancel
+     */
+    public Notification buildAppointmentCancellationNotification(AppointmentDetail appointment, boolean cancelledByPatient) {
+        if (cancelledByPatient) {
+            return buildAppointmentNotification(appointment, appointment.getDoctor().getId(),
+                    "Appointment Cancelled",
+                    "Patient " + appointment.getPatient().getFirstName() + " " +
+                    appointment.getPatient().getLastName() + " has cancelled the appointment on " +
+                    appointment.getAppointmentDateTime().toLocalDate(),
+                    Notification.NotificationType.APPOINTMENT_CANCELLED);
+        }
+        return buildAppointmentNotification(appointment, appointment.getPatient().getId(),
+                "Appointment Cancelled",
+                "Your appointment with Dr. " + appointment.getDoctor().getFirstName() + " " +
+                appointment.getDoctor().getLastName() + " on " +
+                appointment.getAppointmentDateTime().toLocalDate() + " has been cancelled",
+                Notification.NotificationType.APPOINTMENT_CANCELLED);
+    }
+
+    private Notification buildAppointmentNotification(AppointmentDetail appointment, Long recipientId, String title,
+                                                      String message, Notification.NotificationType type) {
+        return Notification.builder()
+                .user(userRepository.getReferenceById(recipientId))
+                .title(title)
+                .message(message)
+                .type(type)
                 .isRead(false)
-                .relatedAppointment(appointment)
+                .relatedAppointment(appointmentRepository.getReferenceById(appointment.getId()))
                 .build();
+    }
 
-        // Invalidate cache for the patient
-        Long userId = patient.getId();
-        unreadCountCache.remove(userId);
-        cacheTimestamps.remove(userId);
-
-        return notificationRepository.save(notification);
+    private Notification saveNotification(Notification notification) {
+        Notification saved = notificationRepository.save(notification);
+        if (!Boolean.TRUE.equals(saved.getIsRead())) {
+            changeUnread(Map.of(saved.getUser().getId(), 1));
+        }
+        runAfterCommit(() -> emailNotificationChannel.enqueue(List.of(saved)));
+        return saved;
     }
 
     /**
      * Count unread notifications for the current user
-     * Uses a simple in-memory cache to reduce database queries
+     * One read of the per-user unread counter, cached for a few seconds
      */
     public Long countUnreadNotifications() {
-        try {
-            User currentUser = getCurrentUser();
-            Long userId = currentUser.getId();
-
-            // Check if we have a cached value that's still valid
-            if (unreadCountCache.containsKey(userId) && cacheTimestamps.containsKey(userId)) {
-                Instant cachedTime = cacheTimestamps.get(userId);
-                if (Duration.between(cachedTime, Instant.now()).compareTo(CACHE_DURATION) < 0) {
-                    // Cache is still valid
-                    System.out.println("Using cached unread notification count for user: " + currentUser.getEmail());
-                    return unreadCountCache.get(userId);
-                }
-            }
-
-            System.out.println("Counting unread notifications for user: " + currentUser.getEmail() +
-                              " with role: " + currentUser.getRole());
-
-            // Cache miss or expired cache, query the database
-            Long count = notificationRepository.countUnreadNotifications(currentUser);
-            System.out.println("Found " + count + " unread notifications");
-
-            // Update the cache
-            unreadCountCache.put(userId, count);
-            cacheTimestamps.put(userId, Instant.now());
-
-            // Only log detailed notification info if there are unread notifications
-            if (count > 0) {
-                // Debug: List all notifications for this user
-                List<Notification> allNotifications = notificationRepository.findByUser(currentUser);
-                System.out.println("Total notifications for user: " + allNotifications.size());
-                for (Notification notification : allNotifications) {
-                    if (!notification.getIsRead()) {
-                        System.out.println("Unread Notification ID: " + notification.getId() +
-                                          ", Title: " + notification.getTitle() +
-                                          ", Type: " + notification.getType());
-                    }
-                }
-            }
+        User currentUser = getCurrentUser();
+        Long count = unreadNotificationCounter.getUnreadCount(currentUser.getId());
 
-            return count;
-        } catch (Exception e) {
-            System.out.println("Error in countUnreadNotifications: " + e.getMessage());
-            e.printStackTrace();
-            throw e;
+        if (diagnosticsSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < diagnosticsSampleRate) {
+            logUnreadDiagnostics(currentUser, count, notificationRepository.countUnreadNotifications(currentUser));
         }
+
+        return count;
     }
 
     /**
@@ -236,25 +335,26 @@ public class NotificationService {
     public void deleteNotificationsByAppointment(Appointment appointment) {
         try {
             System.out.println("Deleting notifications for appointment ID: " + appointment.getId());
-            
-            // Find all notifications related to this appointment
-            List<Notification> relatedNotifications = notificationRepository.findByRelatedAppointment(appointment);
-            
-            System.out.println("Found " + relatedNotifications.size() + " notifications to delete");
-            
-            // Delete all related notifications
-            if (!relatedNotifications.isEmpty()) {
-                notificationRepository.deleteAll(relatedNotifications);
-                
-                // Clear cache for affected users
-                for (Notification notification : relatedNotifications) {
-                    Long userId = notification.getUser().getId();
-                    unreadCountCache.remove(userId);
-                    cacheTimestamps.remove(userId);
-                }
+
+            // Unread ones are deleted per recipient so each counter drops by exactly what was removed
+            Set<Long> recipients = new HashSet<>(notificationRepository.findUnreadRecipientIdsByAppointmentId(appointment.getId()));
+            recipients.add(appointment.getDoctor().getId());
+            recipients.add(appointment.getPatient().getId());
+
+            // Digests that also hold other appointments are shrunk rather than deleted
+            notificationCoalescer.removeAppointment(appointment.getId(), recipients);
+
+            Map<Long, Integer> unread = new HashMap<>();
+            int deleted = 0;
+            for (Long userId : recipients) {
+                int removed = notificationRepository.deleteUnreadByAppointmentIdAndUserId(appointment.getId(), userId);
+                unread.put(userId, -removed);
+                deleted += removed;
             }
-            
-            System.out.println("Successfully deleted notifications for appointment ID: " + appointment.getId());
+            deleted += notificationRepository.deleteByAppointmentId(appointment.getId());
+            changeUnread(unread);
+
+            System.out.println("Deleted " + deleted + " notifications for appointment ID: " + appointment.getId());
         } catch (Exception e) {
             System.out.println("Error deleting notifications for appointment: " + e.getMessage());
             e.printStackTrace();
@@ -264,65 +364,193 @@ public class NotificationService {
 
     /**
      * Count unread notifications for a specific user (for testing)
+     * Runs the indexed COUNT rather than reading the counter, and always logs the diagnostics
      */
     public Long countUnreadNotificationsForUser(Long userId) {
-        try {
-            User user = userRepository.findById(userId)
-                    .orElseThrow(() -> new EntityNotFoundException("User not found with id: " + userId));
-
-            System.out.println("Counting unread notifications for user ID: " + userId +
-                              ", Email: " + user.getEmail() +
-                              ", Role: " + user.getRole());
-
-            Long count = notificationRepository.countUnreadNotifications(user);
-            System.out.println("Found " + count + " unread notifications for user ID: " + userId);
-
-            // List all notifications for this user
-            List<Notification> allNotifications = notificationRepository.findByUser(user);
-            System.out.println("Total notifications for user ID " + userId + ": " + allNotifications.size());
-            for (Notification notification : allNotifications) {
-                System.out.println("Notification ID: " + notification.getId() +
-                                  ", Title: " + notification.getTitle() +
-                                  ", IsRead: " + notification.getIsRead() +
-                                  ", Type: " + notification.getType());
-            }
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new EntityNotFoundException("User not found with id: " + userId));
+        Long count = notificationRepository.countUnreadNotifications(user);
 
-            return count;
-        } catch (Exception e) {
-            System.out.println("Error in countUnreadNotificationsForUser: " + e.getMessage());
-            e.printStackTrace();
-            throw e;
+        logUnreadDiagnostics(user, unreadNotificationCounter.getUnreadCount(userId), count);
+        return count;
+    }
+
+    /**
+     * Compare the counter with the actual COUNT and log the most recent unread notifications,
+     * at most notifications.diagnostics.max-listed of them
+     */
+    private void logUnreadDiagnostics(User user, Long counted, Long actual) {
+        if (!actual.equals(counted)) {
+            log.warn("Unread counter drift for user ID {}: counter={}, actual={}", user.getId(), counted, actual);
+        } else {
+            log.info("Found {} unread notifications for user ID {}", actual, user.getId());
+        }
+
+        List<Notification> recent = notificationRepository.findByUserAndIsReadOrderByCreatedAtDesc(
+                user, false, PageRequest.of(0, diagnosticsMaxListed));
+        for (Notification notification : recent) {
+            log.info("Unread notification ID {}, title: {}, type: {}",
+                    notification.getId(), notification.getTitle(), notification.getType());
         }
     }
 
     /**
-     * Get the current authenticated user
+     * Open a server-sent event stream of the current user's unread count
      */
-    private User getCurrentUser() {
-        try {
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    public SseEmitter openStream() {
+        return notificationStreamRegistry.connect(getCurrentUser().getId());
+    }
+
+    /**
+     * Get one page of the current user's notifications, optionally of one type or read state.
+     * Without since, the page is newest first from the cursor; with it, the notifications created
+     * or extended after since, oldest change first.
+     */
+    public NotificationFeedPage getFeed(Notification.NotificationType type, Boolean isRead, String cursor,
+                                        String since, Integer size) {
+        Long userId = getCurrentUser().getId();
+        int limit = resolvePageSize(size);
+        PageRequest pageRequest = PageRequest.of(0, limit + 1);
+
+        if (since != null && !since.isBlank()) {
+            NotificationCursor after = NotificationCursor.decode(since);
+            CursorPage<NotificationSummary> page = toPage(notificationRepository.findFeedAfter(userId, type, isRead,
+                    after.getCreatedAt(), after.getId(), pageRequest), limit, NotificationSummary::getUpdatedAt, NotificationSummary::getId);
+            // Oldest change first, so the last item is the latest change seen; with hasMore, call again from there
+            String sinceCursor = page.getItems().isEmpty() ? since : sincePosition(page.getItems().get(page.getSize() - 1));
+            return toFeedPage(page, null, sinceCursor);
+        }
+
+        NotificationCursor before = NotificationCursor.decode(cursor);
+        CursorPage<NotificationSummary> page = toPage(notificationRepository.findFeedBefore(userId, type, isRead,
+                before.getCreatedAt(), before.getId(), pageRequest), limit, NotificationSummary::getCreatedAt, NotificationSummary::getId);
+        // Only the first page starts at the newest notification
+        String sinceCursor = null;
+        if (cursor == null || cursor.isBlank()) {
+            sinceCursor = page.getItems().isEmpty() ? NotificationCursor.BEGINNING.encode() : sincePosition(page.getItems().get(0));
+        }
+        return toFeedPage(page, page.getNextCursor(), sinceCursor);
+    }
+
+    /**
+     * Get one page of the current user's archived notifications, newest first
+     */
+    public CursorPage<ArchivedNotification> getArchivedNotifications(String cursor, Integer size) {
+        NotificationCursor after = NotificationCursor.decode(cursor);
+        int limit = resolvePageSize(size);
+        List<ArchivedNotification> rows = notificationArchiveRepository.findPageByUserBefore(getCurrentUser().getId(),
+                after.getCreatedAt(), after.getId(), limit + 1);
+        return toPage(rows, limit, ArchivedNotification::getCreatedAt, ArchivedNotification::getId);
+    }
+
+    /**
+     * The current user's notification digest window
+     */
+    public NotificationDigestSettings getDigestSettings() {
+        return notificationCoalescer.getSettings(getCurrentUser().getId());
+    }
+
+    /**
+     * Change the current user's notification digest window
+     */
+    public NotificationDigestSettings updateDigestSettings(Integer windowMinutes) {
+        Long userId = getCurrentUser().getId();
+        notificationCoalescer.setWindowMinutes(userId, windowMinutes);
+        return notificationCoalescer.getSettings(userId);
+    }
 
-            if (authentication == null) {
-                System.out.println("No authentication found in SecurityContext");
-                throw new EntityNotFoundException("No authenticated user found");
+    /**
+     * Delivery counters of the notification email channel
+     */
+    public EmailChannelStats getEmailStats() {
+        return emailNotificationChannel.getStats();
+    }
+
+    /**
+     * Apply unread count changes within the current transaction and record them for the users'
+     * open streams on every replica, which are pushed to once it commits
+     */
+    private void changeUnread(Map<Long, Integer> deltas) {
+        unreadNotificationCounter.add(deltas);
+
+        Set<Long> changed = new HashSet<>();
+        deltas.forEach((userId, delta) -> {
+            if (delta != 0) {
+                changed.add(userId);
             }
+        });
+        if (changed.isEmpty()) {
+            return;
+        }
 
-            System.out.println("Getting current user with email: " + authentication.getName());
-            // Print authorities in a safe way that doesn't cause serialization issues
-            System.out.println("Authentication authorities: " +
-                authentication.getAuthorities().stream()
-                    .map(auth -> auth.getAuthority())
-                    .collect(java.util.stream.Collectors.joining(", ")));
+        notificationBroadcaster.publish(changed);
+    }
 
-            User user = userRepository.findByEmail(authentication.getName())
-                    .orElseThrow(() -> new EntityNotFoundException("User not found with email: " + authentication.getName()));
+    /**
+     * Run the action once the current transaction commits, or right away outside of one
+     */
+    private void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
 
-            System.out.println("Found user: " + user.getEmail() + " with role: " + user.getRole());
-            return user;
-        } catch (Exception e) {
-            System.out.println("Error in getCurrentUser: " + e.getMessage());
-            e.printStackTrace();
-            throw e;
+    private int resolvePageSize(Integer size) {
+        if (size == null) {
+            return defaultPageSize;
+        }
+        if (size < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1");
         }
+        return Math.min(size, maxPageSize);
+    }
+
+    // Since tokens carry (updatedAt, id) in the cursor's date/time and id
+    private static String sincePosition(NotificationSummary notification) {
+        return new NotificationCursor(notification.getUpdatedAt(), notification.getId()).encode();
+    }
+
+    private static NotificationFeedPage toFeedPage(CursorPage<NotificationSummary> page, String nextCursor, String sinceCursor) {
+        return NotificationFeedPage.builder()
+                .items(page.getItems())
+                .nextCursor(nextCursor)
+                .sinceCursor(sinceCursor)
+                .hasMore(page.isHasMore())
+                .size(page.getSize())
+                .build();
+    }
+
+    /**
+     * Turn up to limit + 1 rows into a page; the extra row only tells whether there is a next page
+     */
+    private <T> CursorPage<T> toPage(List<T> rows, int limit,
+                                     Function<T, LocalDateTime> createdAtOf, Function<T, Long> idOf) {
+        boolean hasMore = rows.size() > limit;
+        List<T> items = hasMore ? new ArrayList<>(rows.subList(0, limit)) : rows;
+        String nextCursor = null;
+        if (hasMore) {
+            T last = items.get(items.size() - 1);
+            nextCursor = new NotificationCursor(createdAtOf.apply(last), idOf.apply(last)).encode();
+        }
+        return CursorPage.<T>builder()
+                .items(items)
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .size(items.size())
+                .build();
+    }
+
+    /**
+     * Get the current authenticated user, resolved once per request
+     */
+    private User getCurrentUser() {
+        return currentUserContext.getCurrentUser();
     }
 }
@@ -0,0 +1,157 @@
+package com.healthrecords.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Server-sent event streams of the users connected to this replica.
+ *
+ * Each stream gets an {@code unread-count} event when it opens and whenever the user's
+ * notifications change, carrying the current unread count; clients fetch the notifications
+ * themselves when they want them. Pushes run on a single sender thread, so a request that
+ * commits a change never writes to other users' sockets, and idle streams get a comment line
+ * every {@code notifications.stream.heartbeat-ms} to keep proxies from closing them.
+ */
+@Component
+@RequiredArgsConstructor
+public class NotificationStreamRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationStreamRegistry.class);
+
+    private static final String UNREAD_COUNT_EVENT = "unread-count";
+
+    private final UnreadNotificationCounter unreadNotificationCounter;
+
+    @Value("${notifications.stream.timeout-ms:1800000}")
+    private long timeoutMillis;
+
+    @Value("${notifications.stream.max-per-user:5}")
+    private int maxPerUser;
+
+    private final Map<Long, List<SseEmitter>> emitters = new ConcurrentHashMap<>();
+
+    private ExecutorService sender;
+
+    @PostConstruct
+    void init() {
+        sender = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "notification-stream");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        sender.shutdownNow();
+        emitters.values().forEach(userEmitters -> userEmitters.forEach(SseEmitter::complete));
+    }
+
+    /**
+     * Open a stream for the user, closing their oldest one beyond notifications.stream.max-per-user
+     */
+    public SseEmitter connect(Long userId) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        List<SseEmitter> closed = new ArrayList<>();
+        emitters.compute(userId, (id, userEmitters) -> {
+            List<SseEmitter> updated = userEmitters != null ? userEmitters : new CopyOnWriteArrayList<>();
+            updated.add(emitter);
+            while (updated.size() > maxPerUser) {
+                closed.add(updated.remove(0));
+            }
+            return updated;
+        });
+        closed.forEach(SseEmitter::complete);
+
+        emitter.onCompletion(() -> remove(userId, emitter));
+        emitter.onTimeout(() -> remove(userId, emitter));
+        emitter.onError(e -> remove(userId, emitter));
+
+        long count = unreadNotificationCounter.getUnreadCount(userId);
+        sender.execute(() -> send(userId, emitter, count));
+        return emitter;
+    }
+
+    public boolean isConnected(Long userId) {
+        return emitters.containsKey(userId);
+    }
+
+    /**
+     * Send the current unread count to every stream of the given users connected here
+     */
+    public void push(Collection<Long> userIds) {
+        List<Long> connected = new ArrayList<>();
+        for (Long userId : userIds) {
+            if (isConnected(userId)) {
+                connected.add(userId);
+            }
+        }
+        if (connected.isEmpty()) {
+            return;
+        }
+
+        sender.execute(() -> {
+            for (Long userId : connected) {
+                List<SseEmitter> userEmitters = emitters.get(userId);
+                if (userEmitters == null) {
+                    continue;
+                }
+                long count = unreadNotificationCounter.refresh(userId);
+                for (SseEmitter emitter : userEmitters) {
+                    send(userId, emitter, count);
+                }
+            }
+        });
+    }
+
+    @Scheduled(fixedRateString = "${notifications.stream.heartbeat-ms:15000}")
+    public void heartbeat() {
+        if (emitters.isEmpty()) {
+            return;
+        }
+
+        sender.execute(() -> emitters.forEach((userId, userEmitters) -> {
+            for (SseEmitter emitter : userEmitters) {
+                try {
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                } catch (IOException | IllegalStateException e) {
+                    remove(userId, emitter);
+                }
+            }
+        }));
+    }
+
+    private void send(Long userId, SseEmitter emitter, long count) {
+        try {
+            emitter.send(SseEmitter.event().name(UNREAD_COUNT_EVENT).data(Map.of("count", count)));
+        } catch (IOException | IllegalStateException e) {
+            // Client went away; the container completes the emitter
+            log.debug("Dropping notification stream of user {}: {}", userId, e.getMessage());
+            remove(userId, emitter);
+        }
+    }
+
+    private void remove(Long userId, SseEmitter emitter) {
+        emitters.computeIfPresent(userId, (id, userEmitters) -> {
+            userEmitters.remove(emitter);
+            return userEmitters.isEmpty() ? null : userEmitters;
+        });
+    }
+}
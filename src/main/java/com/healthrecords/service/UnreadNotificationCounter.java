@@ -0,0 +1,82 @@
+package com.healthrecords.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.healthrecords.repository.NotificationCounterRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Unread notification counts, read from {@code notification_counters} through a bounded local cache.
+ *
+ * The counters are changed by {@link NotificationService} in the same transaction as the
+ * notifications, so they are exact once committed. Entries are evicted on this replica when
+ * a counter changes, and expire after a few seconds so other replicas converge.
+ */
+@Component
+@RequiredArgsConstructor
+public class UnreadNotificationCounter {
+
+    private final NotificationCounterRepository notificationCounterRepository;
+
+    @Value("${notifications.unread-cache.max-size:50000}")
+    private long maxSize;
+
+    @Value("${notifications.unread-cache.ttl-seconds:5}")
+    private long ttlSeconds;
+
+    private Cache<Long, Long> unreadCounts;
+
+    @PostConstruct
+    void init() {
+        unreadCounts = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    public long getUnreadCount(Long userId) {
+        return unreadCounts.get(userId, notificationCounterRepository::findUnreadCount);
+    }
+
+    /**
+     * Read the counter again, for replicas told about a change made elsewhere
+     */
+    public long refresh(Long userId) {
+        unreadCounts.invalidate(userId);
+        return getUnreadCount(userId);
+    }
+
+    /**
+     * Apply the per-user deltas within the caller's transaction
+     */
+    public void add(Map<Long, Integer> deltas) {
+        notificationCounterRepository.applyDeltas(deltas);
+        evict(new HashSet<>(deltas.keySet()));
+    }
+
+    /**
+     * Drop the users now and again after the surrounding transaction commits,
+     * so a concurrent request cannot re-populate the entries with pre-commit counts.
+     */
+    private void evict(Set<Long> userIds) {
+        unreadCounts.invalidateAll(userIds);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    unreadCounts.invalidateAll(userIds);
+                }
+            });
+        }
+    }
+}
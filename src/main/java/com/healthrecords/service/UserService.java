@@ -3,6 +3,8 @@ package com.healthrecords.service;
 import com.healthrecords.model.User;
 import com.healthrecords.model.UserRole;
 import com.healthrecords.repository.UserRepository;
+import com.healthrecords.security.TokenVersionRegistry;
+import com.healthrecords.security.UserProjectionCache;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -16,6 +18,8 @@ public class UserService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final TokenVersionRegistry tokenVersionRegistry;
+    private final UserProjectionCache userProjectionCache;
 
     public List<User> getAllUsers() {
         try {
@@ -79,6 +83,11 @@ public class UserService {
             throw new RuntimeException("Email already registered");
         }
 
+        // Tokens carry the email and role, so changing either (or the password) revokes them
+        boolean revokeTokens = !user.getEmail().equals(userDetails.getEmail()) ||
+                user.getRole() != userDetails.getRole() ||
+                (userDetails.getPassword() != null && !userDetails.getPassword().isEmpty());
+
         user.setFirstName(userDetails.getFirstName());
         user.setLastName(userDetails.getLastName());
         user.setEmail(userDetails.getEmail());
@@ -92,6 +101,12 @@ public class UserService {
             user.setPassword(passwordEncoder.encode(userDetails.getPassword()));
         }
 
+        if (revokeTokens) {
+            user.setTokenVersion(user.getTokenVersion() + 1);
+            tokenVersionRegistry.updateAfterCommit(user.getId(), user.getTokenVersion());
+        }
+
+        userProjectionCache.evict(user.getId());
         return userRepository.save(user);
     }
 
@@ -101,5 +116,7 @@ public class UserService {
             throw new RuntimeException("User not found");
         }
         userRepository.deleteById(id);
+        tokenVersionRegistry.revokeAfterCommit(id);
+        userProjectionCache.evict(id);
     }
 }
\ No newline at end of file
@@ -0,0 +1,17 @@
+-- V10__create_doctor_day_stats.sql
+
+-- Appointments per doctor, day and status, kept up to date as appointments change
+CREATE TABLE IF NOT EXISTS doctor_day_stats (
+    doctor_id BIGINT NOT NULL,
+    stat_date DATE NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    appointment_count INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (doctor_id, stat_date, status)
+);
+
+-- Start from the existing appointments
+INSERT INTO doctor_day_stats (doctor_id, stat_date, status, appointment_count)
+SELECT doctor_id, CAST(appointment_date_time AS DATE), status, COUNT(*)
+FROM appointments
+WHERE doctor_id IS NOT NULL AND appointment_date_time IS NOT NULL AND status IS NOT NULL
+GROUP BY doctor_id, CAST(appointment_date_time AS DATE), status;
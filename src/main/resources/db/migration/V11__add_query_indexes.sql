@@ -0,0 +1,49 @@
+-- V11__add_query_indexes.sql
+
+-- Composite indexes for the queries in the repository package. Each table is altered once,
+-- online, so writes are not blocked while the index is built. Equality columns come first;
+-- InnoDB appends the primary key to every secondary index, so (x, appointment_date_time)
+-- also serves the keyset order (appointment_date_time, id) without a filesort.
+-- Naming an index on a foreign key column lets MySQL drop the index it created implicitly for it.
+
+-- Doctor and patient listings, calendars and slot checks; date-only ranges and keyset pages;
+-- reminder windows and upcoming appointments by status; paid/unpaid appointments of a patient
+ALTER TABLE appointments
+    ADD INDEX idx_appointments_doctor_date (doctor_id, appointment_date_time),
+    ADD INDEX idx_appointments_patient_date (patient_id, appointment_date_time),
+    ADD INDEX idx_appointments_date (appointment_date_time),
+    ADD INDEX idx_appointments_status_date (status, appointment_date_time),
+    ADD INDEX idx_appointments_patient_payment (patient_id, payment_status),
+    ALGORITHM=INPLACE, LOCK=NONE;
+
+-- Read/unread lists and unread counts (covered), the newest-first feed, and lookups by appointment
+ALTER TABLE notifications
+    ADD INDEX idx_notifications_user_read_created (user_id, is_read, created_at),
+    ADD INDEX idx_notifications_user_created (user_id, created_at),
+    ADD INDEX idx_notifications_related_appointment (related_entity_id),
+    ALGORITHM=INPLACE, LOCK=NONE;
+
+ALTER TABLE lab_reports
+    ADD INDEX idx_lab_reports_patient_doctor (patient_id, doctor_id),
+    ADD INDEX idx_lab_reports_doctor (doctor_id),
+    ADD INDEX idx_lab_reports_medical_record (medical_record_id),
+    ALGORITHM=INPLACE, LOCK=NONE;
+
+ALTER TABLE medical_records
+    ADD INDEX idx_medical_records_patient (patient_id),
+    ADD INDEX idx_medical_records_doctor (doctor_id),
+    ALGORITHM=INPLACE, LOCK=NONE;
+
+ALTER TABLE prescriptions
+    ADD INDEX idx_prescriptions_medical_record (medical_record_id),
+    ALGORITHM=INPLACE, LOCK=NONE;
+
+-- Doctor lists
+ALTER TABLE users
+    ADD INDEX idx_users_role (role),
+    ALGORITHM=INPLACE, LOCK=NONE;
+
+-- Calendar counter rebuilds delete a date range across all doctors
+ALTER TABLE doctor_day_stats
+    ADD INDEX idx_doctor_day_stats_date (stat_date),
+    ALGORITHM=INPLACE, LOCK=NONE;
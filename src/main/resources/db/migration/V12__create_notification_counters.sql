@@ -0,0 +1,14 @@
+-- V12__create_notification_counters.sql
+
+-- Unread notifications per user, updated in the same transaction as the notifications themselves
+CREATE TABLE IF NOT EXISTS notification_counters (
+    user_id BIGINT NOT NULL PRIMARY KEY,
+    unread_count INT NOT NULL DEFAULT 0
+);
+
+-- Start from the existing notifications
+INSERT INTO notification_counters (user_id, unread_count)
+SELECT user_id, COUNT(*)
+FROM notifications
+WHERE is_read = FALSE
+GROUP BY user_id;
@@ -0,0 +1,10 @@
+-- V13__create_notification_events.sql
+
+-- Short-lived feed of users whose notifications changed, polled by every replica to push to its own SSE clients
+CREATE TABLE IF NOT EXISTS notification_events (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    origin VARCHAR(100) NOT NULL,
+    created_at DATETIME NOT NULL,
+    INDEX idx_notification_events_created (created_at)
+);
@@ -0,0 +1,17 @@
+-- V14__create_notification_outbox.sql
+
+-- Notifications owed for appointment changes, written in the same transaction as the change
+-- and turned into notifications by a background dispatcher; dispatched rows are deleted
+CREATE TABLE IF NOT EXISTS notification_outbox (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    event_type VARCHAR(40) NOT NULL,
+    appointment_id BIGINT NOT NULL,
+    detail TEXT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    created_at DATETIME NOT NULL,
+    -- NULL once the entry has failed notifications.outbox.max-attempts times
+    next_attempt_at DATETIME NULL,
+    failed_at DATETIME NULL,
+    last_error VARCHAR(500) NULL,
+    INDEX idx_notification_outbox_due (next_attempt_at, id)
+);
@@ -0,0 +1,14 @@
+-- V15__create_email_dead_letters.sql
+
+-- Notification emails that could not be delivered after all retries, kept for inspection and resending
+CREATE TABLE IF NOT EXISTS email_dead_letters (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    recipient VARCHAR(255) NULL,
+    subject VARCHAR(255) NOT NULL,
+    body TEXT NULL,
+    attempts INT NOT NULL,
+    last_error VARCHAR(500) NULL,
+    created_at DATETIME NOT NULL,
+    INDEX idx_email_dead_letters_created (created_at)
+);
@@ -0,0 +1,14 @@
+-- V16__add_notification_digests.sql
+
+-- A notification row can stand for several same-type notifications merged within a digest window;
+-- digest_count is how many it stands for and related_appointment_ids lists their appointments
+ALTER TABLE notifications
+ADD COLUMN digest_count INT NOT NULL DEFAULT 1,
+ADD COLUMN related_appointment_ids VARCHAR(2000) NULL;
+
+-- Per-user digest window in minutes, overriding notifications.digest.window-minutes; 0 turns merging off
+CREATE TABLE IF NOT EXISTS notification_digest_preferences (
+    user_id BIGINT NOT NULL PRIMARY KEY,
+    window_minutes INT NOT NULL,
+    updated_at DATETIME NOT NULL
+);
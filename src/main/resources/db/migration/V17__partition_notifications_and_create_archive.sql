@@ -0,0 +1,62 @@
+-- V17__partition_notifications_and_create_archive.sql
+
+-- Range-partition notifications by created_at month. MySQL requires the partitioning column in
+-- every unique key and allows no foreign keys on partitioned tables, so the foreign keys Hibernate
+-- created are dropped (the entity no longer declares them) and the primary key becomes (id, created_at).
+-- Partitioning rebuilds the table with ALGORITHM=COPY, which blocks writes for the duration; on a
+-- large table run this migration in a maintenance window. Partitions for the coming months are added
+-- by NotificationArchiver.addPartitions, splitting them off the empty p_future partition.
+
+UPDATE notifications SET created_at = NOW() WHERE created_at IS NULL;
+
+SET @drop_foreign_keys = (
+    SELECT GROUP_CONCAT(CONCAT('DROP FOREIGN KEY `', constraint_name, '`') SEPARATOR ', ')
+    FROM information_schema.table_constraints
+    WHERE table_schema = DATABASE() AND table_name = 'notifications' AND constraint_type = 'FOREIGN KEY'
+);
+SET @sql = IF(@drop_foreign_keys IS NULL, 'DO 0', CONCAT('ALTER TABLE notifications ', @drop_foreign_keys));
+PREPARE statement FROM @sql;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
+
+-- Read notifications by age, for the archival job
+ALTER TABLE notifications
+    MODIFY created_at DATETIME(6) NOT NULL,
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (id, created_at),
+    ADD INDEX idx_notifications_read_created (is_read, created_at);
+
+-- One partition per month from the oldest notification up to two months ahead
+SET @partitions = (
+    WITH RECURSIVE months (month_start) AS (
+        SELECT CAST(DATE_FORMAT(COALESCE(MIN(created_at), NOW()), '%Y-%m-01') AS DATE) FROM notifications
+        UNION ALL
+        SELECT month_start + INTERVAL 1 MONTH FROM months
+        WHERE month_start < CAST(DATE_FORMAT(NOW(), '%Y-%m-01') AS DATE) + INTERVAL 2 MONTH
+    )
+    SELECT GROUP_CONCAT(CONCAT('PARTITION p', DATE_FORMAT(month_start, '%Y%m'),
+                               ' VALUES LESS THAN (''', month_start + INTERVAL 1 MONTH, ''')')
+                        ORDER BY month_start SEPARATOR ', ')
+    FROM months
+);
+SET @sql = CONCAT('ALTER TABLE notifications PARTITION BY RANGE COLUMNS (created_at) (', @partitions,
+                  ', PARTITION p_future VALUES LESS THAN (MAXVALUE))');
+PREPARE statement FROM @sql;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
+
+-- Read notifications older than notifications.archive.retention-days, moved here by NotificationArchiver.
+-- Rarely read, so stored compressed; listed per user newest first.
+CREATE TABLE IF NOT EXISTS notifications_archive (
+    id BIGINT NOT NULL PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    title VARCHAR(100) NOT NULL,
+    message TEXT NULL,
+    type VARCHAR(255) NOT NULL,
+    related_entity_id BIGINT NULL,
+    digest_count INT NOT NULL DEFAULT 1,
+    related_appointment_ids VARCHAR(2000) NULL,
+    created_at DATETIME(6) NOT NULL,
+    archived_at DATETIME NOT NULL,
+    INDEX idx_notifications_archive_user_created (user_id, created_at)
+) ROW_FORMAT=COMPRESSED KEY_BLOCK_SIZE=8;
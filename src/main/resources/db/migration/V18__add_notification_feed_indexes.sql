@@ -0,0 +1,9 @@
+-- V18__add_notification_feed_indexes.sql
+
+-- The notification feed filtered by type, with and without a read state. Unfiltered and
+-- read-state-only feeds use idx_notifications_user_created and idx_notifications_user_read_created;
+-- the primary key suffix (id, created_at) gives the keyset order (created_at, id) without a filesort.
+ALTER TABLE notifications
+    ADD INDEX idx_notifications_user_type_created (user_id, type, created_at),
+    ADD INDEX idx_notifications_user_type_read_created (user_id, type, is_read, created_at),
+    ALGORITHM=INPLACE, LOCK=NONE;
@@ -0,0 +1,11 @@
+-- V19__add_notification_updated_at.sql
+
+-- When a notification last changed: set on insert and moved when a digest is extended. The
+-- incremental feed (since token) is keyed on (updated_at, id), so extended digests come up again.
+-- Existing rows take the time of the migration from the column default, in the same online
+-- rebuild that adds the index, rather than an UPDATE of every row from created_at: the feed only
+-- needs updated_at to move forward from here on.
+ALTER TABLE notifications
+    ADD COLUMN updated_at DATETIME(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6),
+    ADD INDEX idx_notifications_user_updated (user_id, updated_at),
+    ALGORITHM=INPLACE, LOCK=NONE;
@@ -0,0 +1,11 @@
+-- V20__create_job_leases.sql
+
+-- One row per run of a nightly job; the replica holding the lease runs it, the others skip that day
+CREATE TABLE IF NOT EXISTS job_leases (
+    job_name VARCHAR(100) NOT NULL,
+    run_date DATE NOT NULL,
+    owner VARCHAR(100) NOT NULL,
+    lease_until DATETIME NOT NULL,
+    completed_at DATETIME NULL,
+    PRIMARY KEY (job_name, run_date)
+);
@@ -0,0 +1,6 @@
+-- V21__add_idempotency_response_headers.sql
+
+-- Headers of the stored response (e.g. Location), one "Name: value" per line, replayed with it
+ALTER TABLE idempotency_keys
+    ADD COLUMN response_headers TEXT NULL,
+    ALGORITHM=INSTANT;
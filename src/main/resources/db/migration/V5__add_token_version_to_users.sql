@@ -0,0 +1,5 @@
+-- V5__add_token_version_to_users.sql
+
+-- Per-user token version used to revoke stateless JWTs
+ALTER TABLE users
+ADD COLUMN token_version INT NOT NULL DEFAULT 0;
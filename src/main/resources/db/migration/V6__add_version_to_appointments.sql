@@ -0,0 +1,5 @@
+-- V6__add_version_to_appointments.sql
+
+-- Optimistic locking version for appointment updates
+ALTER TABLE appointments
+ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,10 @@
+-- V7__create_reminder_bucket_leases.sql
+
+-- One row per reminder time bucket; the replica holding the lease fires that bucket's reminders
+CREATE TABLE IF NOT EXISTS reminder_bucket_leases (
+    bucket_start DATETIME NOT NULL PRIMARY KEY,
+    owner VARCHAR(100) NOT NULL,
+    lease_until DATETIME NOT NULL,
+    fired_until DATETIME NULL,
+    completed_at DATETIME NULL
+);
@@ -0,0 +1,21 @@
+-- V8__create_appointment_series.sql
+
+-- Recurrence rules; each occurrence is a row in appointments
+CREATE TABLE IF NOT EXISTS appointment_series (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    patient_id BIGINT NOT NULL,
+    doctor_id BIGINT NOT NULL,
+    frequency VARCHAR(20) NOT NULL,
+    first_appointment_date_time DATETIME(6) NOT NULL,
+    occurrences INT NULL,
+    until_date_time DATETIME(6) NULL,
+    created_at DATETIME(6) NULL,
+    FOREIGN KEY (patient_id) REFERENCES users(id) ON DELETE CASCADE,
+    FOREIGN KEY (doctor_id) REFERENCES users(id) ON DELETE CASCADE
+);
+
+ALTER TABLE appointments
+ADD COLUMN series_id BIGINT NULL;
+
+-- "This and following" edits select a series from a date onwards
+CREATE INDEX idx_appointments_series_date ON appointments(series_id, appointment_date_time);
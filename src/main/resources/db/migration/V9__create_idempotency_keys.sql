@@ -0,0 +1,17 @@
+-- V9__create_idempotency_keys.sql
+
+-- Responses of requests sent with an Idempotency-Key, replayed when the same key is sent again
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    scope VARCHAR(255) NOT NULL,
+    idempotency_key VARCHAR(255) NOT NULL,
+    request_fingerprint VARCHAR(300) NOT NULL,
+    state VARCHAR(20) NOT NULL,
+    status_code INT NULL,
+    content_type VARCHAR(255) NULL,
+    response_body MEDIUMBLOB NULL,
+    created_at DATETIME NOT NULL,
+    expires_at DATETIME NOT NULL,
+    UNIQUE KEY uk_idempotency_keys_scope_key (scope, idempotency_key),
+    KEY idx_idempotency_keys_expires_at (expires_at)
+);
@@ -0,0 +1,206 @@
+package com.healthrecords.config;
+
+import com.healthrecords.repository.IdempotencyKeyRepository;
+import com.healthrecords.service.IdempotencyKeyStore;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the filter against an embedded database, with a fresh store per request to stand in for
+ * retries that land on another replica. Requests are sent as an authenticated user unless a test
+ * clears the security context.
+ */
+public class IdempotencyFilterTest {
+
+    private EmbeddedDatabase database;
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+    private AtomicInteger executions;
+    private FilterChain createAppointment;
+    private String lastBody;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+        jdbcTemplate.execute("CREATE TABLE idempotency_keys (id BIGINT AUTO_INCREMENT PRIMARY KEY, scope VARCHAR(255) NOT NULL, " +
+                "idempotency_key VARCHAR(255) NOT NULL, request_fingerprint VARCHAR(300) NOT NULL, state VARCHAR(20) NOT NULL, " +
+                "status_code INT, content_type VARCHAR(255), response_headers CLOB, response_body BLOB, created_at TIMESTAMP NOT NULL, " +
+                "expires_at TIMESTAMP NOT NULL, CONSTRAINT uk_idempotency_keys_scope_key UNIQUE (scope, idempotency_key))");
+        idempotencyKeyRepository = new IdempotencyKeyRepository(jdbcTemplate);
+
+        executions = new AtomicInteger();
+        createAppointment = (request, response) -> {
+            int id = executions.incrementAndGet();
+            lastBody = new String(request.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            HttpServletResponse httpResponse = (HttpServletResponse) response;
+            httpResponse.setStatus(201);
+            httpResponse.setHeader("Location", "/api/appointments/" + id);
+            httpResponse.setContentType("application/json");
+            httpResponse.getWriter().write("{\"id\":" + id + "}");
+        };
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("patient@example.com", null, List.of()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        database.shutdown();
+    }
+
+    @Test
+    void retryWithSameKey_ShouldReplayFirstResponseWithoutExecutingAgain() throws Exception {
+        // Act
+        MockHttpServletResponse first = send("/api/appointments", "key-1");
+        MockHttpServletResponse retry = send("/api/appointments", "key-1");
+        MockHttpServletResponse otherEndpoint = send("/api/appointments/series", "key-1");
+        MockHttpServletResponse otherKey = send("/api/appointments", "key-2");
+
+        // Assert
+        assertEquals(2, executions.get());
+        assertEquals(201, first.getStatus());
+        assertEquals("{\"id\":1}", first.getContentAsString());
+        assertEquals(201, retry.getStatus());
+        assertEquals("{\"id\":1}", retry.getContentAsString());
+        assertEquals("true", retry.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertEquals("/api/appointments/1", retry.getHeader("Location"));
+        assertEquals(422, otherEndpoint.getStatus());
+        assertEquals("{\"id\":2}", otherKey.getContentAsString());
+    }
+
+    @Test
+    void failedRequest_ShouldReleaseKeyForRetry() throws Exception {
+        // Arrange
+        FilterChain succeeding = createAppointment;
+        createAppointment = (request, response) -> {
+            executions.incrementAndGet();
+            ((HttpServletResponse) response).setStatus(503);
+        };
+        MockHttpServletResponse failed = send("/api/appointments", "key-1");
+        createAppointment = succeeding;
+
+        // Act
+        MockHttpServletResponse retry = send("/api/appointments", "key-1");
+
+        // Assert
+        assertEquals(503, failed.getStatus());
+        assertEquals(201, retry.getStatus());
+        assertNull(retry.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    void sameKeyWithDifferentBody_ShouldBeRejected() throws Exception {
+        // Act
+        MockHttpServletResponse first = send("/api/appointments", "key-1", "{\"title\":\"Checkup\"}");
+        MockHttpServletResponse changed = send("/api/appointments", "key-1", "{\"title\":\"Follow-up\"}");
+
+        // Assert
+        assertEquals(201, first.getStatus());
+        assertEquals("{\"title\":\"Checkup\"}", lastBody);
+        assertEquals(422, changed.getStatus());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void anonymousRequests_ShouldNotShareResponses() throws Exception {
+        // Arrange
+        SecurityContextHolder.clearContext();
+
+        // Act
+        MockHttpServletResponse first = send("/api/appointments", "key-1");
+        MockHttpServletResponse other = send("/api/appointments", "key-1");
+
+        // Assert
+        assertEquals("{\"id\":1}", first.getContentAsString());
+        assertEquals("{\"id\":2}", other.getContentAsString());
+        assertNull(other.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    void handlerReadingAsynchronously_ShouldGetTheWholeBody() throws Exception {
+        // Arrange
+        createAppointment = (request, response) -> {
+            executions.incrementAndGet();
+            ServletInputStream input = request.getInputStream();
+            ByteArrayOutputStream read = new ByteArrayOutputStream();
+            input.setReadListener(new ReadListener() {
+                @Override
+                public void onDataAvailable() throws IOException {
+                    while (input.isReady() && !input.isFinished()) {
+                        read.write(input.read());
+                    }
+                }
+
+                @Override
+                public void onAllDataRead() {
+                    lastBody = read.toString(StandardCharsets.UTF_8);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    fail(t);
+                }
+            });
+            ((HttpServletResponse) response).setStatus(201);
+        };
+
+        // Act
+        MockHttpServletResponse response = send("/api/appointments", "key-1", "{\"title\":\"Checkup\"}");
+
+        // Assert
+        assertEquals(201, response.getStatus());
+        assertEquals("{\"title\":\"Checkup\"}", lastBody);
+    }
+
+    private MockHttpServletResponse send(String path, String key) throws Exception {
+        return send(path, key, "{}");
+    }
+
+    private MockHttpServletResponse send(String path, String key, String body) throws Exception {
+        IdempotencyKeyStore store = new IdempotencyKeyStore(idempotencyKeyRepository);
+        ReflectionTestUtils.setField(store, "ttlHours", 24L);
+        ReflectionTestUtils.setField(store, "inProgressTimeoutSeconds", 60L);
+        ReflectionTestUtils.setField(store, "cacheMaxSize", 100L);
+        ReflectionTestUtils.setField(store, "cacheTtlMinutes", 10L);
+        ReflectionTestUtils.invokeMethod(store, "init");
+
+        IdempotencyFilter filter = new IdempotencyFilter(store);
+        ReflectionTestUtils.setField(filter, "pathsProperty", "/api/appointments,/api/appointments/series");
+        ReflectionTestUtils.invokeMethod(filter, "init");
+
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        request.addHeader(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, key);
+        request.setContentType("application/json");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, createAppointment);
+        return response;
+    }
+}
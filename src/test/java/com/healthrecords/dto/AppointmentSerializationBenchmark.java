@@ -0,0 +1,141 @@
+package com.healthrecords.dto;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.healthrecords.config.JacksonConfig;
+import com.healthrecords.model.Appointment;
+import com.healthrecords.model.User;
+import com.healthrecords.model.UserRole;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization cost of 1,000 appointments with the application's {@link ObjectMapper},
+ * returned as JPA entities (before) and as the {@link AppointmentDetail} and
+ * {@link AppointmentSummary} projections (after).
+ *
+ * The payload size of each variant is printed once during setup. Not picked up by
+ * surefire; run it after {@code mvn test-compile} with the {@link #main} method.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AppointmentSerializationBenchmark {
+
+    private static final int APPOINTMENTS = 1_000;
+
+    private ObjectMapper objectMapper;
+    private List<Appointment> entities;
+    private List<AppointmentDetail> details;
+    private List<AppointmentSummary> summaries;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        objectMapper = new JacksonConfig().objectMapper(Jackson2ObjectMapperBuilder.json());
+        entities = new ArrayList<>();
+        details = new ArrayList<>();
+        summaries = new ArrayList<>();
+
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 9, 0);
+        for (int i = 0; i < APPOINTMENTS; i++) {
+            User doctor = user(1_000L + i % 20, UserRole.ROLE_DOCTOR);
+            User patient = user(10_000L + i, UserRole.ROLE_PATIENT);
+            Appointment appointment = Appointment.builder()
+                    .id((long) i)
+                    .doctor(doctor)
+                    .patient(patient)
+                    .appointmentDateTime(start.plusMinutes(30L * i))
+                    .title("Follow-up consultation")
+                    .description("Review of test results and medication")
+                    .status(Appointment.AppointmentStatus.APPROVED)
+                    .notes("Bring previous prescriptions")
+                    .isVideoConsultation(i % 3 == 0)
+                    .meetingLink(i % 3 == 0 ? "https://meet.example.com/" + i : null)
+                    .paymentAmount(new BigDecimal("50.00"))
+                    .paymentStatus(Appointment.PaymentStatus.PAID)
+                    .paymentMethod("CARD")
+                    .paymentDate(start.plusMinutes(30L * i).minusDays(1))
+                    .paymentReference("PAY-" + i)
+                    .createdAt(start.minusDays(7))
+                    .updatedAt(start.minusDays(1))
+                    .build();
+            entities.add(appointment);
+            details.add(detail(appointment));
+            summaries.add(summary(appointment));
+        }
+
+        System.out.printf("Payload per %d appointments: entities=%d bytes, details=%d bytes, summaries=%d bytes%n",
+                APPOINTMENTS, serializeEntities().length, serializeDetails().length, serializeSummaries().length);
+    }
+
+    @Benchmark
+    public byte[] serializeEntities() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(entities);
+    }
+
+    @Benchmark
+    public byte[] serializeDetails() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(details);
+    }
+
+    @Benchmark
+    public byte[] serializeSummaries() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(summaries);
+    }
+
+    private static User user(Long id, UserRole role) {
+        return User.builder()
+                .id(id)
+                .firstName("First" + id)
+                .lastName("Last" + id)
+                .email("user" + id + "@example.com")
+                .password("$2a$10$abcdefghijklmnopqrstuvwxyzabcdefghijklmnopqrstuvwx")
+                .role(role)
+                .phoneNumber("+1 555 0100 " + id)
+                .address(id + " Main Street, Springfield")
+                .specialization(role == UserRole.ROLE_DOCTOR ? "Cardiology" : null)
+                .createdAt(LocalDateTime.of(2023, 1, 1, 0, 0))
+                .updatedAt(LocalDateTime.of(2023, 6, 1, 0, 0))
+                .build();
+    }
+
+    // Same column lists as the constructor expressions in AppointmentRepository
+    private static AppointmentDetail detail(Appointment a) {
+        return new AppointmentDetail(a.getId(), a.getAppointmentDateTime(), a.getTitle(), a.getDescription(),
+                a.getStatus(), a.getNotes(), a.getIsVideoConsultation(), a.getMeetingLink(), a.getPaymentAmount(),
+                a.getPaymentStatus(), a.getPaymentMethod(), a.getPaymentDate(), a.getPaymentReference(),
+                a.getPaymentNotes(), a.getCreatedAt(), a.getUpdatedAt(), a.getSeriesId(), a.getVersion(),
+                a.getDoctor().getId(), a.getDoctor().getFirstName(), a.getDoctor().getLastName(),
+                a.getDoctor().getEmail(), a.getDoctor().getSpecialization(),
+                a.getPatient().getId(), a.getPatient().getFirstName(), a.getPatient().getLastName(),
+                a.getPatient().getEmail());
+    }
+
+    private static AppointmentSummary summary(Appointment a) {
+        return new AppointmentSummary(a.getId(), a.getAppointmentDateTime(), a.getTitle(), a.getStatus(),
+                a.getIsVideoConsultation(), a.getPaymentStatus(),
+                a.getDoctor().getId(), a.getDoctor().getFirstName(), a.getDoctor().getLastName(),
+                a.getDoctor().getSpecialization(),
+                a.getPatient().getId(), a.getPatient().getFirstName(), a.getPatient().getLastName());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(AppointmentSerializationBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,196 @@
+package com.healthrecords.repository;
+
+import com.healthrecords.dto.AppointmentDetail;
+import com.healthrecords.model.Appointment;
+import com.healthrecords.model.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Guards the round trips of the JDBC appointment paths: listing a doctor's appointments,
+ * creating one or a batch of them and applying a batch of status transitions must each run
+ * exactly one statement.
+ */
+public class DirectAppointmentRepositoryTest {
+
+    private static final int APPOINTMENTS = 50;
+
+    private EmbeddedDatabase database;
+    private AtomicInteger statements;
+    private DirectAppointmentRepository directAppointmentRepository;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+
+        JdbcTemplate setup = new JdbcTemplate(database);
+        setup.execute("CREATE TABLE users (id BIGINT PRIMARY KEY, first_name VARCHAR(255), last_name VARCHAR(255), " +
+                "email VARCHAR(255), specialization VARCHAR(255))");
+        setup.execute("CREATE TABLE appointments (id BIGINT AUTO_INCREMENT PRIMARY KEY, doctor_id BIGINT, patient_id BIGINT, " +
+                "appointment_date_time TIMESTAMP, title VARCHAR(100), description TEXT, status VARCHAR(20), notes TEXT, " +
+                "is_video_consultation BOOLEAN, meeting_link VARCHAR(255), payment_amount DECIMAL(10,2), " +
+                "payment_status VARCHAR(20), payment_method VARCHAR(50), payment_date TIMESTAMP, " +
+                "payment_reference VARCHAR(255), payment_notes TEXT, created_at TIMESTAMP, updated_at TIMESTAMP, series_id BIGINT, version BIGINT DEFAULT 0)");
+        setup.update("INSERT INTO users VALUES (1, 'Jane', 'Smith', 'doctor@example.com', 'Cardiology')");
+        setup.update("INSERT INTO users VALUES (2, 'John', 'Doe', 'patient@example.com', NULL)");
+
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 9, 0);
+        for (int i = 0; i < APPOINTMENTS; i++) {
+            setup.update("INSERT INTO appointments (doctor_id, patient_id, appointment_date_time, title, status, " +
+                    "is_video_consultation, payment_status, created_at) VALUES (1, 2, ?, ?, 'APPROVED', FALSE, 'UNPAID', ?)",
+                    Timestamp.valueOf(start.plusMinutes(30L * i)), "Visit " + i, Timestamp.valueOf(start));
+        }
+
+        statements = new AtomicInteger();
+        directAppointmentRepository = new DirectAppointmentRepository(
+                new JdbcTemplate(new StatementCountingDataSource(database, statements)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void getAppointmentsForDoctor_ShouldUseSingleQuery() {
+        // Act
+        List<AppointmentDetail> appointments = directAppointmentRepository.getAppointmentsForDoctor(1L);
+
+        // Assert
+        assertEquals(APPOINTMENTS, appointments.size());
+        assertEquals(1, statements.get());
+
+        AppointmentDetail first = appointments.get(0);
+        assertEquals("Visit 0", first.getTitle());
+        assertEquals(Appointment.AppointmentStatus.APPROVED, first.getStatus());
+        assertEquals(Appointment.PaymentStatus.UNPAID, first.getPaymentStatus());
+        assertEquals("Jane", first.getDoctor().getFirstName());
+        assertEquals("patient@example.com", first.getPatient().getEmail());
+        assertTrue(first.getAppointmentDateTime().isBefore(appointments.get(1).getAppointmentDateTime()));
+    }
+
+    @Test
+    void insertAppointment_ShouldUseSingleStatementAndReturnGeneratedId() {
+        // Arrange
+        User doctor = User.builder().id(1L).firstName("Jane").lastName("Smith").build();
+        User patient = User.builder().id(2L).firstName("John").lastName("Doe").build();
+
+        // Act
+        Appointment appointment = directAppointmentRepository.createAppointmentDirectly("New visit", null,
+                LocalDateTime.of(2024, 6, 1, 10, 0), doctor, patient, null, null, null);
+
+        // Assert
+        assertEquals(1, statements.get());
+        assertEquals(APPOINTMENTS + 1L, appointment.getId());
+        assertEquals(Appointment.AppointmentStatus.PENDING, appointment.getStatus());
+        assertEquals(Appointment.PaymentStatus.UNPAID, appointment.getPaymentStatus());
+        assertSame(doctor, appointment.getDoctor());
+        assertEquals("New visit", new JdbcTemplate(database).queryForObject(
+                "SELECT title FROM appointments WHERE id = ?", String.class, appointment.getId()));
+    }
+
+    @Test
+    void insertAppointments_ShouldUseSingleBatchAndReturnGeneratedIds() {
+        // Arrange
+        User doctor = User.builder().id(1L).build();
+        User patient = User.builder().id(2L).build();
+        LocalDateTime first = LocalDateTime.of(2024, 7, 1, 10, 0);
+        List<Appointment> series = List.of(
+                Appointment.builder().title("Weekly").appointmentDateTime(first).doctor(doctor).patient(patient)
+                        .status(Appointment.AppointmentStatus.APPROVED).seriesId(7L).build(),
+                Appointment.builder().title("Weekly").appointmentDateTime(first.plusWeeks(1)).doctor(doctor).patient(patient)
+                        .status(Appointment.AppointmentStatus.APPROVED).seriesId(7L).build());
+
+        // Act
+        directAppointmentRepository.insertAppointments(series);
+
+        // Assert
+        assertEquals(1, statements.get());
+        assertEquals(APPOINTMENTS + 1L, series.get(0).getId());
+        assertEquals(APPOINTMENTS + 2L, series.get(1).getId());
+        assertEquals(2, new JdbcTemplate(database).queryForObject(
+                "SELECT COUNT(*) FROM appointments WHERE series_id = 7", Integer.class));
+    }
+
+    @Test
+    void batchTransitionStatus_ShouldApplyAllTransitionsInOneBatch() {
+        // Arrange
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+        jdbcTemplate.update("UPDATE appointments SET status = 'PENDING' WHERE id IN (1, 2)");
+        LocalDateTime moved = LocalDateTime.of(2024, 6, 3, 14, 0);
+        List<DirectAppointmentRepository.StatusTransition> transitions = List.of(
+                new DirectAppointmentRepository.StatusTransition(1L, List.of(Appointment.AppointmentStatus.PENDING),
+                        Appointment.AppointmentStatus.APPROVED, null, null),
+                new DirectAppointmentRepository.StatusTransition(2L, List.of(Appointment.AppointmentStatus.PENDING),
+                        Appointment.AppointmentStatus.CANCELLED, null, "Rejection reason: Away"),
+                // Still APPROVED, so a confirmation must not match
+                new DirectAppointmentRepository.StatusTransition(3L, List.of(Appointment.AppointmentStatus.PENDING),
+                        Appointment.AppointmentStatus.APPROVED, null, null),
+                new DirectAppointmentRepository.StatusTransition(4L,
+                        List.of(Appointment.AppointmentStatus.PENDING, Appointment.AppointmentStatus.APPROVED),
+                        Appointment.AppointmentStatus.APPROVED, moved, null));
+
+        // Act
+        int[] counts = directAppointmentRepository.batchTransitionStatus(transitions, LocalDateTime.now());
+
+        // Assert
+        assertEquals(1, statements.get());
+        assertArrayEquals(new int[]{1, 1, 0, 1}, counts);
+        assertEquals("APPROVED", jdbcTemplate.queryForObject("SELECT status FROM appointments WHERE id = 1", String.class));
+        assertEquals("Rejection reason: Away", jdbcTemplate.queryForObject("SELECT notes FROM appointments WHERE id = 2", String.class));
+        assertNull(jdbcTemplate.queryForObject("SELECT notes FROM appointments WHERE id = 1", String.class));
+        assertEquals(Timestamp.valueOf(moved), jdbcTemplate.queryForObject(
+                "SELECT appointment_date_time FROM appointments WHERE id = 4", Timestamp.class));
+        assertEquals(1L, jdbcTemplate.queryForObject("SELECT version FROM appointments WHERE id = 4", Long.class));
+    }
+
+    /**
+     * Counts every statement prepared or created on connections handed out by the wrapped data source.
+     */
+    private static class StatementCountingDataSource extends DelegatingDataSource {
+
+        private final AtomicInteger statements;
+
+        StatementCountingDataSource(EmbeddedDatabase target, AtomicInteger statements) {
+            super(target);
+            this.statements = statements;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection connection = super.getConnection();
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        String name = method.getName();
+                        if (name.equals("prepareStatement") || name.equals("prepareCall") || name.equals("createStatement")) {
+                            statements.incrementAndGet();
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getTargetException();
+                        }
+                    });
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.healthrecords.repository;
+
+import com.healthrecords.model.Appointment;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DoctorDayStatsRepositoryTest {
+
+    private static final LocalDate DAY = LocalDate.of(2024, 6, 3);
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private DoctorDayStatsRepository doctorDayStatsRepository;
+
+    @BeforeEach
+    void setUp() {
+        // The counters are upserted with ON DUPLICATE KEY UPDATE
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:doctor_day_stats;MODE=MySQL", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE doctor_day_stats (doctor_id BIGINT NOT NULL, stat_date DATE NOT NULL, " +
+                "status VARCHAR(20) NOT NULL, appointment_count INT NOT NULL DEFAULT 0, PRIMARY KEY (doctor_id, stat_date, status))");
+        jdbcTemplate.execute("CREATE TABLE appointments (id BIGINT AUTO_INCREMENT PRIMARY KEY, doctor_id BIGINT, " +
+                "appointment_date_time TIMESTAMP, status VARCHAR(20))");
+        doctorDayStatsRepository = new DoctorDayStatsRepository(jdbcTemplate);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.destroy();
+    }
+
+    @Test
+    void applyChanges_ShouldCreateAndIncrementCounters() {
+        // Act
+        doctorDayStatsRepository.applyChanges(List.of(
+                new DoctorDayStatsRepository.Change(1L, DAY, Appointment.AppointmentStatus.PENDING, 2),
+                new DoctorDayStatsRepository.Change(1L, DAY.plusDays(1), Appointment.AppointmentStatus.APPROVED, 1)));
+        doctorDayStatsRepository.applyChanges(List.of(
+                new DoctorDayStatsRepository.Change(1L, DAY, Appointment.AppointmentStatus.PENDING, -1),
+                new DoctorDayStatsRepository.Change(1L, DAY, Appointment.AppointmentStatus.APPROVED, 1),
+                new DoctorDayStatsRepository.Change(2L, DAY, Appointment.AppointmentStatus.APPROVED, 1)));
+
+        // Assert
+        List<DoctorDayStatsRepository.DayCount> counts = doctorDayStatsRepository.findByDoctor(1L, DAY, DAY.plusDays(2));
+        assertEquals(3, counts.size());
+        assertEquals(DAY, counts.get(0).getDate());
+        assertEquals(Appointment.AppointmentStatus.APPROVED, counts.get(0).getStatus());
+        assertEquals(1, counts.get(0).getCount());
+        assertEquals(Appointment.AppointmentStatus.PENDING, counts.get(1).getStatus());
+        assertEquals(1, counts.get(1).getCount());
+        assertEquals(DAY.plusDays(1), counts.get(2).getDate());
+    }
+
+    @Test
+    void rebuild_ShouldRecountOnlyTheRangeFromAppointments() {
+        // Arrange
+        LocalDateTime morning = DAY.atTime(9, 0);
+        for (String status : List.of("APPROVED", "APPROVED", "CANCELLED")) {
+            jdbcTemplate.update("INSERT INTO appointments (doctor_id, appointment_date_time, status) VALUES (1, ?, ?)",
+                    Timestamp.valueOf(morning), status);
+        }
+        doctorDayStatsRepository.applyChanges(List.of(
+                new DoctorDayStatsRepository.Change(1L, DAY, Appointment.AppointmentStatus.APPROVED, 7),
+                new DoctorDayStatsRepository.Change(1L, DAY.plusDays(1), Appointment.AppointmentStatus.PENDING, 4)));
+
+        // Act
+        doctorDayStatsRepository.rebuild(DAY, DAY.plusDays(1));
+
+        // Assert
+        List<DoctorDayStatsRepository.DayCount> counts = doctorDayStatsRepository.findByDoctor(1L, DAY, DAY.plusDays(2));
+        assertEquals(3, counts.size());
+        assertEquals(2, counts.get(0).getCount());
+        assertEquals(Appointment.AppointmentStatus.CANCELLED, counts.get(1).getStatus());
+        assertEquals(1, counts.get(1).getCount());
+        // Outside the rebuilt range
+        assertEquals(4, counts.get(2).getCount());
+    }
+}
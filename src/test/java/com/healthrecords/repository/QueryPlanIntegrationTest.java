@@ -0,0 +1,495 @@
+package com.healthrecords.repository;
+
+import com.healthrecords.model.Appointment;
+import com.healthrecords.model.MedicalRecord;
+import com.healthrecords.model.Notification;
+import com.healthrecords.model.User;
+import com.healthrecords.model.UserRole;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs every query of the repository package against a seeded MySQL schema and checks with EXPLAIN
+ * that none of them reads a whole table or index. Queries that list a whole table by design
+ * (findAll, findAllDetails, findAllTokenVersions) are left out.
+ *
+ * MySQL only, so it runs with failsafe ({@code mvn verify}) when QUERY_PLAN_TEST_DATASOURCE_URL
+ * points at a scratch database, e.g. {@code jdbc:mysql://localhost:3306/query_plans?createDatabaseIfNotExist=true}.
+ * The schema is created from the entities and brought up to date with the Flyway scripts.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=${QUERY_PLAN_TEST_DATASOURCE_URL:}",
+        "spring.datasource.username=${QUERY_PLAN_TEST_DATASOURCE_USERNAME:root}",
+        "spring.datasource.password=${QUERY_PLAN_TEST_DATASOURCE_PASSWORD:}",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.flyway.enabled=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@EnabledIfEnvironmentVariable(named = "QUERY_PLAN_TEST_DATASOURCE_URL", matches = ".+")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class QueryPlanIntegrationTest {
+
+    private static final int DOCTORS = 50;
+    private static final int PATIENTS = 950;
+    private static final int APPOINTMENTS = 20_000;
+    private static final int NOTIFICATIONS = 20_000;
+    private static final int RECORDS = 2_000;
+    private static final int SESSIONS = 500;
+
+    // Full table scans and full index scans
+    private static final List<String> SCAN_TYPES = List.of("ALL", "index");
+
+    @Autowired private DataSource dataSource;
+    @Autowired private PlatformTransactionManager transactionManager;
+    @Autowired private AppointmentRepository appointmentRepository;
+    @Autowired private AppointmentSeriesRepository appointmentSeriesRepository;
+    @Autowired private NotificationRepository notificationRepository;
+    @Autowired private LabReportRepository labReportRepository;
+    @Autowired private MedicalRecordRepository medicalRecordRepository;
+    @Autowired private PrescriptionRepository prescriptionRepository;
+    @Autowired private UserRepository userRepository;
+    @Autowired private ChatSessionRepository chatSessionRepository;
+    @Autowired private ChatMessageRepository chatMessageRepository;
+
+    private RecordingDataSource recorder;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private DirectAppointmentRepository directAppointmentRepository;
+    private DoctorDayStatsRepository doctorDayStatsRepository;
+    private NotificationCounterRepository notificationCounterRepository;
+    private NotificationDigestPreferenceRepository notificationDigestPreferenceRepository;
+    private NotificationArchiveRepository notificationArchiveRepository;
+    private NotificationEventRepository notificationEventRepository;
+    private NotificationOutboxRepository notificationOutboxRepository;
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+    private ReminderLeaseRepository reminderLeaseRepository;
+    private JobLeaseRepository jobLeaseRepository;
+    private LocalDateTime now;
+    private final List<String> violations = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        recorder = (RecordingDataSource) dataSource;
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        directAppointmentRepository = new DirectAppointmentRepository(jdbcTemplate);
+        doctorDayStatsRepository = new DoctorDayStatsRepository(jdbcTemplate);
+        notificationCounterRepository = new NotificationCounterRepository(jdbcTemplate);
+        notificationDigestPreferenceRepository = new NotificationDigestPreferenceRepository(jdbcTemplate);
+        notificationArchiveRepository = new NotificationArchiveRepository(jdbcTemplate);
+        notificationEventRepository = new NotificationEventRepository(jdbcTemplate);
+        notificationOutboxRepository = new NotificationOutboxRepository(jdbcTemplate);
+        idempotencyKeyRepository = new IdempotencyKeyRepository(jdbcTemplate);
+        reminderLeaseRepository = new ReminderLeaseRepository(jdbcTemplate);
+        jobLeaseRepository = new JobLeaseRepository(jdbcTemplate);
+        now = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+
+        migrate();
+        seed();
+    }
+
+    @Test
+    void repositoryQueries_ShouldNotScanWholeTables() {
+        Long doctorId = 1L;
+        Long patientId = DOCTORS + 1L;
+        User doctor = userRepository.getReferenceById(doctorId);
+        User patient = userRepository.getReferenceById(patientId);
+        MedicalRecord record = medicalRecordRepository.getReferenceById(1L);
+        LocalDateTime weekStart = now.minusDays(3);
+        LocalDateTime weekEnd = now.plusDays(4);
+        PageRequest page = PageRequest.of(0, 50);
+        List<Long> ids = List.of(10L, 20L, 30L);
+
+        // Appointments
+        check("findByPatient", () -> appointmentRepository.findByPatient(patient));
+        check("findByDoctor", () -> appointmentRepository.findByDoctor(doctor));
+        check("findByPatientAndStatus", () -> appointmentRepository.findByPatientAndStatus(patient, Appointment.AppointmentStatus.APPROVED));
+        check("findByDoctorAndStatus", () -> appointmentRepository.findByDoctorAndStatus(doctor, Appointment.AppointmentStatus.PENDING));
+        check("findByDoctorAndDateRange", () -> appointmentRepository.findByDoctorAndDateRange(doctor, weekStart, weekEnd));
+        check("findByPatientAndDateRange", () -> appointmentRepository.findByPatientAndDateRange(patient, weekStart, weekEnd));
+        check("findByDateRange", () -> appointmentRepository.findByDateRange(weekStart, weekEnd));
+        check("findUpcomingAppointmentsByStatus", () -> appointmentRepository.findUpcomingAppointmentsByStatus(now, Appointment.AppointmentStatus.APPROVED));
+        check("countAppointmentsByDoctorAndDateRange", () -> appointmentRepository.countAppointmentsByDoctorAndDateRange(doctor, weekStart, weekEnd));
+        check("findBookedSlots", () -> appointmentRepository.findBookedSlots(doctorId, weekStart, weekEnd, Appointment.AppointmentStatus.CANCELLED));
+        check("findById", () -> appointmentRepository.findById(1L));
+        check("findDetailById", () -> appointmentRepository.findDetailById(1L));
+        check("findDetailsByIds", () -> appointmentRepository.findDetailsByIds(ids));
+        check("findDetailsStartingBetween", () -> appointmentRepository.findDetailsStartingBetween(now, now.plusMinutes(5), Appointment.AppointmentStatus.APPROVED));
+        check("findSeriesSlotsFrom", () -> appointmentRepository.findSeriesSlotsFrom(1L, weekStart, List.of(Appointment.AppointmentStatus.PENDING, Appointment.AppointmentStatus.APPROVED)));
+        check("findSeriesSummariesFrom", () -> appointmentRepository.findSeriesSummariesFrom(1L, weekStart));
+        check("findDetailsByDoctor", () -> appointmentRepository.findDetailsByDoctor(doctorId));
+        check("findDetailsByPatient", () -> appointmentRepository.findDetailsByPatient(patientId));
+        check("findDetailsByDateRange", () -> appointmentRepository.findDetailsByDateRange(weekStart, weekEnd));
+        check("findDetailsByDoctorAndDateRange", () -> appointmentRepository.findDetailsByDoctorAndDateRange(doctorId, weekStart, weekEnd));
+        check("findDetailsByPatientAndDateRange", () -> appointmentRepository.findDetailsByPatientAndDateRange(patientId, weekStart, weekEnd));
+        check("findPageAfter", () -> appointmentRepository.findPageAfter(weekStart, 0L, page));
+        check("findPageByDoctorAfter", () -> appointmentRepository.findPageByDoctorAfter(doctorId, weekStart, 0L, page));
+        check("findPageByPatientAfter", () -> appointmentRepository.findPageByPatientAfter(patientId, weekStart, 0L, page));
+        check("findPageByDateRangeAfter", () -> appointmentRepository.findPageByDateRangeAfter(weekStart, weekEnd, weekStart, 0L, page));
+        check("findPageByDoctorAndDateRangeAfter", () -> appointmentRepository.findPageByDoctorAndDateRangeAfter(doctorId, weekStart, weekEnd, weekStart, 0L, page));
+        check("findPageByPatientAndDateRangeAfter", () -> appointmentRepository.findPageByPatientAndDateRangeAfter(patientId, weekStart, weekEnd, weekStart, 0L, page));
+        check("findByPatientIdAndPaymentStatus", () -> appointmentRepository.findByPatientIdAndPaymentStatus(patientId, Appointment.PaymentStatus.PAID));
+        check("transitionStatus", () -> appointmentRepository.transitionStatus(1L, List.of(Appointment.AppointmentStatus.PENDING),
+                Appointment.AppointmentStatus.APPROVED, doctorId, null, now));
+        check("transitionStatusWithNote", () -> appointmentRepository.transitionStatusWithNote(2L, Appointment.AppointmentStatus.PENDING,
+                Appointment.AppointmentStatus.CANCELLED, null, "Rejection reason: test", "\n\n", now));
+
+        // Direct SQL on appointments
+        check("getAppointmentsForDoctor", () -> directAppointmentRepository.getAppointmentsForDoctor(doctorId));
+        check("batchTransitionStatus", () -> directAppointmentRepository.batchTransitionStatus(List.of(
+                new DirectAppointmentRepository.StatusTransition(3L, List.of(Appointment.AppointmentStatus.PENDING),
+                        Appointment.AppointmentStatus.APPROVED, null, null)), now));
+        check("lockDoctorSchedule", () -> directAppointmentRepository.lockDoctorSchedule(doctorId));
+        check("findBookedSlotsForShare", () -> directAppointmentRepository.findBookedSlotsForShare(doctorId, now.minusMinutes(30), now.plusMinutes(30)));
+        check("updateSeriesFrom", () -> directAppointmentRepository.updateSeriesFrom(1L, now, "Title", null, null, null, null, 0));
+        check("moveFirstAppointment", () -> appointmentSeriesRepository.moveFirstAppointment(1L, now, now.plusDays(1)));
+
+        // Notifications
+        check("findByUser", () -> notificationRepository.findByUser(patient));
+        check("findByUserAndIsRead", () -> notificationRepository.findByUserAndIsRead(patient, false));
+        check("findByRelatedAppointment", () -> notificationRepository.findByRelatedAppointment(appointmentRepository.getReferenceById(1L)));
+        check("findByUserOrderByCreatedAtDesc", () -> notificationRepository.findByUserOrderByCreatedAtDesc(patient));
+        check("countUnreadNotifications", () -> notificationRepository.countUnreadNotifications(patient));
+        check("findByUserAndIsReadOrderByCreatedAtDesc", () -> notificationRepository.findByUserAndIsReadOrderByCreatedAtDesc(patient, false, PageRequest.of(0, 5)));
+        check("markReadIfUnread", () -> notificationRepository.markReadIfUnread(1L));
+        check("markAllReadByUserId", () -> notificationRepository.markAllReadByUserId(patientId));
+        check("markReadByUserIdAndIds", () -> notificationRepository.markReadByUserIdAndIds(patientId, ids));
+        check("findUnreadRecipientIdsByAppointmentId", () -> notificationRepository.findUnreadRecipientIdsByAppointmentId(1L));
+        check("deleteUnreadByAppointmentIdAndUserId", () -> notificationRepository.deleteUnreadByAppointmentIdAndUserId(1L, patientId));
+        check("deleteByAppointmentId", () -> notificationRepository.deleteByAppointmentId(1L));
+        check("findFeedBefore", () -> notificationRepository.findFeedBefore(patientId, null, null, now.plusYears(1), Long.MAX_VALUE, PageRequest.of(0, 21)));
+        check("findFeedBefore.read", () -> notificationRepository.findFeedBefore(patientId, null, false, now.plusYears(1), Long.MAX_VALUE, PageRequest.of(0, 21)));
+        check("findFeedBefore.type", () -> notificationRepository.findFeedBefore(patientId, Notification.NotificationType.APPOINTMENT_REMINDER, null, now.plusYears(1), Long.MAX_VALUE, PageRequest.of(0, 21)));
+        check("findFeedBefore.typeAndRead", () -> notificationRepository.findFeedBefore(patientId, Notification.NotificationType.APPOINTMENT_REMINDER, false, now.plusYears(1), Long.MAX_VALUE, PageRequest.of(0, 21)));
+        check("findFeedAfter", () -> notificationRepository.findFeedAfter(patientId, null, null, now.minusDays(1), 0L, PageRequest.of(0, 21)));
+        check("findOpenDigests", () -> notificationRepository.findOpenDigests(List.of(patientId, doctorId),
+                List.of(Notification.NotificationType.APPOINTMENT_REQUESTED), now.minusHours(1)));
+        check("extendDigest", () -> notificationRepository.extendDigest(1L, 1, 2, "1,2", "Digest", now));
+        check("findDigestsWithAppointment", () -> notificationRepository.findDigestsWithAppointment(List.of(patientId, doctorId), 1L, "%,1,%"));
+        check("shrinkDigest", () -> notificationRepository.shrinkDigest(1L, 2, 1, "2", null, "Digest", now));
+        check("digestPreferences.findWindowMinutes", () -> notificationDigestPreferenceRepository.findWindowMinutes(patientId));
+        check("digestPreferences.findWindowMinutesIn", () -> notificationDigestPreferenceRepository.findWindowMinutes(List.of(patientId, doctorId)));
+        check("notificationArchive.lockArchivable", () -> notificationArchiveRepository.lockArchivable(now.minusDays(180), 500));
+        check("notificationArchive.moveToArchive", () -> notificationArchiveRepository.moveToArchive(List.of(1L, 2L), now));
+        check("notificationArchive.findPageByUserBefore", () -> notificationArchiveRepository.findPageByUserBefore(patientId, now, 0L, 21));
+        check("notificationOutbox.claimDue", () -> notificationOutboxRepository.claimDue(now, 100));
+        check("notificationOutbox.claimById", () -> notificationOutboxRepository.claimById(1L, now));
+        check("notificationOutbox.deleteAll", () -> notificationOutboxRepository.deleteAll(List.of(
+                new NotificationOutboxRepository.Entry(1L, NotificationOutboxRepository.EventType.APPOINTMENT_CONFIRMED, 1L, null, 0, now))));
+        check("notificationEvents.findAfter", () -> notificationEventRepository.findAfter(0L, 500));
+        check("notificationEvents.findLatestId", () -> notificationEventRepository.findLatestId());
+        check("notificationEvents.purgeBefore", () -> notificationEventRepository.purgeBefore(now.minusMinutes(5)));
+        check("notificationCounters.findUnreadCount", () -> notificationCounterRepository.findUnreadCount(patientId));
+        check("notificationCounters.applyDeltas", () -> notificationCounterRepository.applyDeltas(Map.of(patientId, 1, doctorId, -1)));
+
+        // Records
+        check("labReports.findByMedicalRecord", () -> labReportRepository.findByMedicalRecord(record));
+        check("labReports.findByPatient", () -> labReportRepository.findByPatient(patient));
+        check("labReports.findByDoctor", () -> labReportRepository.findByDoctor(doctor));
+        check("labReports.findByPatientAndDoctor", () -> labReportRepository.findByPatientAndDoctor(patient, doctor));
+        check("medicalRecords.findByPatient", () -> medicalRecordRepository.findByPatient(patient));
+        check("medicalRecords.findByDoctor", () -> medicalRecordRepository.findByDoctor(doctor));
+        check("medicalRecords.findAllWithUsers", () -> medicalRecordRepository.findAllWithUsers());
+        check("medicalRecords.findWithUsersById", () -> medicalRecordRepository.findWithUsersById(1L));
+        check("medicalRecords.fetchPrescriptions", () -> medicalRecordRepository.fetchPrescriptions(ids));
+        check("medicalRecords.fetchLabReports", () -> medicalRecordRepository.fetchLabReports(ids));
+        check("prescriptions.findByMedicalRecord", () -> prescriptionRepository.findByMedicalRecord(record));
+
+        // Users and chat
+        check("findByEmail", () -> userRepository.findByEmail("patient" + patientId + "@example.com"));
+        check("existsByEmail", () -> userRepository.existsByEmail("doctor1@example.com"));
+        check("findByRole", () -> userRepository.findByRole(UserRole.ROLE_DOCTOR));
+        check("findTokenVersionById", () -> userRepository.findTokenVersionById(patientId));
+        check("findEmailsByIdIn", () -> userRepository.findEmailsByIdIn(List.of(patientId, doctorId)));
+        check("findByChatSessionIdOrderByTimestampAsc", () -> chatMessageRepository.findByChatSessionIdOrderByTimestampAsc(1L));
+        check("findByChatSessionIdAndSender", () -> chatMessageRepository.findByChatSessionIdAndSender(1L, "USER"));
+        check("findByUserId", () -> chatSessionRepository.findByUserId(patientId));
+        check("findByUserIdAndIsActiveTrue", () -> chatSessionRepository.findByUserIdAndIsActiveTrue(patientId));
+
+        // Counters, leases and idempotency keys
+        check("doctorDayStats.findByDoctor", () -> doctorDayStatsRepository.findByDoctor(doctorId, now.toLocalDate().withDayOfMonth(1),
+                now.toLocalDate().withDayOfMonth(1).plusMonths(1)));
+        check("doctorDayStats.rebuild", () -> doctorDayStatsRepository.rebuild(now.toLocalDate(), now.toLocalDate().plusDays(1)));
+        check("reminderLeases.claim", () -> reminderLeaseRepository.claim(now, "test", now.plusMinutes(2), now));
+        check("reminderLeases.findFiredUntil", () -> reminderLeaseRepository.findFiredUntil(now));
+        check("reminderLeases.purgeCompletedBefore", () -> reminderLeaseRepository.purgeCompletedBefore(now.minusDays(400)));
+        check("jobLeases.claim", () -> jobLeaseRepository.claim("test", now.toLocalDate(), "test", now.plusMinutes(5), now));
+        check("jobLeases.complete", () -> jobLeaseRepository.complete("test", now.toLocalDate(), "test", now));
+        check("jobLeases.purgeCompletedBefore", () -> jobLeaseRepository.purgeCompletedBefore("test", now.toLocalDate().minusDays(30)));
+        check("idempotencyKeys.find", () -> idempotencyKeyRepository.find("patient1@example.com", "key-1", now));
+        check("idempotencyKeys.purgeExpired", () -> idempotencyKeyRepository.purgeExpired(now.minusDays(400)));
+
+        assertTrue(violations.isEmpty(), "Queries reading a whole table or index:\n" + String.join("\n", violations));
+    }
+
+    /**
+     * Run a repository call and EXPLAIN every statement it sent, with the same parameters
+     */
+    private void check(String name, Runnable query) {
+        recorder.statements.clear();
+        transactionTemplate.executeWithoutResult(status -> query.run());
+        List<RecordedStatement> statements = new ArrayList<>(recorder.statements);
+        assertFalse(statements.isEmpty(), name + " did not run any statement");
+
+        for (RecordedStatement statement : statements) {
+            String sql = statement.sql.trim();
+            String upper = sql.toUpperCase(Locale.ROOT);
+            // A plain INSERT reads nothing
+            if (upper.startsWith("INSERT") && !upper.contains("SELECT")) {
+                continue;
+            }
+            for (String row : explain(statement)) {
+                violations.add(name + ": " + row + " in " + sql);
+            }
+        }
+    }
+
+    private List<String> explain(RecordedStatement statement) {
+        List<String> scans = new ArrayList<>();
+        try (Connection connection = recorder.getTargetDataSource().getConnection();
+             PreparedStatement explain = connection.prepareStatement("EXPLAIN " + statement.sql)) {
+            for (Object[] call : statement.parameters) {
+                ((Method) call[0]).invoke(explain, (Object[]) call[1]);
+            }
+            try (ResultSet rs = explain.executeQuery()) {
+                while (rs.next()) {
+                    // The target row of INSERT ... SELECT is not a read
+                    if (SCAN_TYPES.contains(rs.getString("type")) && !"INSERT".equals(rs.getString("select_type"))) {
+                        scans.add(rs.getString("table") + " type=" + rs.getString("type") + " key=" + rs.getString("key")
+                                + " rows=" + rs.getString("rows"));
+                    }
+                }
+            }
+        } catch (SQLException | ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not EXPLAIN " + statement.sql, e);
+        }
+        return scans;
+    }
+
+    /**
+     * Bring the entity-generated schema up to the migrated one; statements that only repeat
+     * what the entities already created fail and are skipped.
+     */
+    private void migrate() throws IOException {
+        Resource[] scripts = new PathMatchingResourcePatternResolver().getResources("classpath:db/migration/V*.sql");
+        Arrays.sort(scripts, Comparator.comparingInt(QueryPlanIntegrationTest::migrationVersion));
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(scripts);
+        populator.setContinueOnError(true);
+        populator.execute(recorder.getTargetDataSource());
+
+        // Tables that are not entities outlive the previous run
+        for (String table : List.of("reminder_bucket_leases", "job_leases", "idempotency_keys", "doctor_day_stats", "notification_counters", "notification_events", "notification_outbox", "email_dead_letters", "notification_digest_preferences", "notifications_archive")) {
+            jdbcTemplate.update("DELETE FROM " + table);
+        }
+    }
+
+    private static int migrationVersion(Resource script) {
+        String name = script.getFilename();
+        return Integer.parseInt(name.substring(1, name.indexOf("__")));
+    }
+
+    private void seed() {
+        Random random = new Random(42);
+        Timestamp created = Timestamp.valueOf(now.minusYears(2));
+        String[] statuses = {"PENDING", "APPROVED", "APPROVED", "APPROVED", "COMPLETED", "CANCELLED"};
+        String[] paymentStatuses = {"UNPAID", "PAID", "PAID", "REFUNDED"};
+
+        List<Object[]> users = new ArrayList<>();
+        for (long id = 1; id <= DOCTORS + PATIENTS; id++) {
+            boolean doctor = id <= DOCTORS;
+            users.add(new Object[]{id, "First" + id, "Last" + id, (doctor ? "doctor" : "patient") + id + "@example.com",
+                    "secret", doctor ? "ROLE_DOCTOR" : "ROLE_PATIENT", doctor ? "Cardiology" : null, created});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO users (id, first_name, last_name, email, password, role, specialization, " +
+                "token_version, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, 0, ?)", users);
+
+        // Two years of history and a month ahead, as in production
+        long minutesOfHistory = ChronoUnit.MINUTES.between(now.minusYears(2), now.plusMonths(1));
+        List<Object[]> appointments = new ArrayList<>();
+        for (long id = 1; id <= APPOINTMENTS; id++) {
+            LocalDateTime start = now.minusYears(2).plusMinutes(random.nextInt((int) minutesOfHistory));
+            appointments.add(new Object[]{id, 1 + random.nextInt(DOCTORS), DOCTORS + 1 + random.nextInt(PATIENTS),
+                    Timestamp.valueOf(start), "Visit " + id, statuses[random.nextInt(statuses.length)],
+                    paymentStatuses[random.nextInt(paymentStatuses.length)], id % 20 == 0 ? id / 200 + 1 : null, created});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO appointments (id, doctor_id, patient_id, appointment_date_time, title, status, " +
+                "payment_status, series_id, is_video_consultation, created_at, version) VALUES (?, ?, ?, ?, ?, ?, ?, ?, FALSE, ?, 0)",
+                appointments);
+
+        List<Object[]> notifications = new ArrayList<>();
+        for (long id = 1; id <= NOTIFICATIONS; id++) {
+            Timestamp createdAt = Timestamp.valueOf(now.minusMinutes(random.nextInt((int) minutesOfHistory)));
+            notifications.add(new Object[]{id, 1 + random.nextInt(DOCTORS + PATIENTS), "Notification " + id,
+                    random.nextInt(4) == 0, 1 + random.nextInt(APPOINTMENTS), createdAt, createdAt});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO notifications (id, user_id, title, type, is_read, related_entity_id, created_at, updated_at) " +
+                "VALUES (?, ?, ?, 'SYSTEM', ?, ?, ?, ?)", notifications);
+
+        List<Object[]> records = new ArrayList<>();
+        List<Object[]> children = new ArrayList<>();
+        for (long id = 1; id <= RECORDS; id++) {
+            int doctorId = 1 + random.nextInt(DOCTORS);
+            int patientId = DOCTORS + 1 + random.nextInt(PATIENTS);
+            records.add(new Object[]{id, patientId, doctorId, "Diagnosis " + id, created});
+            children.add(new Object[]{id, id, patientId, doctorId, "Test " + id, created, created, created});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO medical_records (id, patient_id, doctor_id, diagnosis, created_at) VALUES (?, ?, ?, ?, ?)", records);
+        jdbcTemplate.batchUpdate("INSERT INTO lab_reports (id, medical_record_id, patient_id, doctor_id, test_name, test_date, report_date, created_at) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?)", children);
+        jdbcTemplate.batchUpdate("INSERT INTO prescriptions (id, medical_record_id, medication_name, created_at) VALUES (?, ?, ?, ?)",
+                children.stream().map(row -> new Object[]{row[0], row[1], "Medication " + row[0], created}).toList());
+
+        List<Object[]> sessions = new ArrayList<>();
+        List<Object[]> messages = new ArrayList<>();
+        for (long id = 1; id <= SESSIONS; id++) {
+            sessions.add(new Object[]{id, DOCTORS + 1 + random.nextInt(PATIENTS), created, id % 5 == 0});
+            for (int m = 0; m < 10; m++) {
+                messages.add(new Object[]{id, "Message " + m, m % 2 == 0 ? "USER" : "BOT",
+                        Timestamp.valueOf(now.minusYears(2).plusMinutes(id * 10 + m))});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO chat_sessions (id, user_id, start_time, is_active) VALUES (?, ?, ?, ?)", sessions);
+        jdbcTemplate.batchUpdate("INSERT INTO chat_messages (chat_session_id, content, sender, timestamp) VALUES (?, ?, ?, ?)", messages);
+
+        List<Object[]> leases = new ArrayList<>();
+        List<Object[]> keys = new ArrayList<>();
+        for (int i = 1; i <= 2_000; i++) {
+            LocalDateTime bucket = now.minusMinutes(5L * i);
+            leases.add(new Object[]{Timestamp.valueOf(bucket), "replica", Timestamp.valueOf(bucket.plusMinutes(2)), Timestamp.valueOf(bucket)});
+            keys.add(new Object[]{"patient" + (DOCTORS + i % PATIENTS + 1) + "@example.com", "key-" + i, "POST /api/appointments",
+                    Timestamp.valueOf(bucket), Timestamp.valueOf(bucket.plusHours(24))});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO reminder_bucket_leases (bucket_start, owner, lease_until, completed_at) VALUES (?, ?, ?, ?)", leases);
+        jdbcTemplate.batchUpdate("INSERT INTO idempotency_keys (scope, idempotency_key, request_fingerprint, state, created_at, expires_at) " +
+                "VALUES (?, ?, ?, 'COMPLETED', ?, ?)", keys);
+
+        doctorDayStatsRepository.rebuild(LocalDate.now().minusYears(3), LocalDate.now().plusYears(1));
+        jdbcTemplate.update("INSERT INTO notification_counters (user_id, unread_count) " +
+                "SELECT user_id, COUNT(*) FROM notifications WHERE is_read = FALSE GROUP BY user_id");
+        List<Object[]> events = new ArrayList<>();
+        for (int i = 1; i <= 2_000; i++) {
+            events.add(new Object[]{(long) (i % (DOCTORS + PATIENTS) + 1), "replica", Timestamp.valueOf(now.minusSeconds(i))});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO notification_events (user_id, origin, created_at) VALUES (?, ?, ?)", events);
+        List<NotificationOutboxRepository.Entry> outbox = new ArrayList<>();
+        for (long i = 1; i <= 2_000; i++) {
+            outbox.add(new NotificationOutboxRepository.Entry(NotificationOutboxRepository.EventType.APPOINTMENT_REQUESTED, i, null));
+        }
+        new NotificationOutboxRepository(jdbcTemplate).append(outbox, now.minusHours(1));
+
+        jdbcTemplate.queryForList("ANALYZE TABLE users, appointments, notifications, medical_records, lab_reports, prescriptions, " +
+                "chat_sessions, chat_messages, reminder_bucket_leases, idempotency_keys, doctor_day_stats, notification_counters, notification_events, notification_outbox");
+    }
+
+    @TestConfiguration
+    static class RecordingConfig {
+        @Bean
+        static BeanPostProcessor recordingDataSourcePostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+                    return bean instanceof DataSource dataSource && !(bean instanceof RecordingDataSource) ?
+                            new RecordingDataSource(dataSource) : bean;
+                }
+            };
+        }
+    }
+
+    private static class RecordedStatement {
+        private final String sql;
+        // Parameter setter calls, replayed in order on the EXPLAIN statement
+        private final List<Object[]> parameters = new ArrayList<>();
+
+        RecordedStatement(String sql) {
+            this.sql = sql;
+        }
+    }
+
+    /**
+     * Records every prepared statement and its parameters on connections handed out by the wrapped data source.
+     */
+    private static class RecordingDataSource extends DelegatingDataSource {
+
+        private final List<RecordedStatement> statements = new CopyOnWriteArrayList<>();
+
+        RecordingDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection connection = super.getConnection();
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        Object result = invoke(method, connection, args);
+                        if (method.getName().equals("prepareStatement") && args[0] instanceof String sql) {
+                            RecordedStatement statement = new RecordedStatement(sql);
+                            statements.add(statement);
+                            return recording((PreparedStatement) result, statement);
+                        }
+                        return result;
+                    });
+        }
+
+        private static PreparedStatement recording(PreparedStatement target, RecordedStatement statement) {
+            return (PreparedStatement) Proxy.newProxyInstance(RecordingDataSource.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    (proxy, method, args) -> {
+                        if (method.getName().startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                            statement.parameters.add(new Object[]{method, args});
+                        }
+                        return invoke(method, target, args);
+                    });
+        }
+
+        private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+}
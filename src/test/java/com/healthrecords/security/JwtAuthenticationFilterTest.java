@@ -0,0 +1,103 @@
+package com.healthrecords.security;
+
+import com.healthrecords.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Claims-only authentication against a real {@link TokenVersionRegistry}, with the user's
+ * token version at 2 in the database.
+ */
+@ExtendWith(MockitoExtension.class)
+public class JwtAuthenticationFilterTest {
+
+    @Mock
+    private JwtService jwtService;
+
+    @Mock
+    private UserDetailsService userDetailsService;
+
+    @Mock
+    private UserRepository userRepository;
+
+    private JwtAuthenticationFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        when(userRepository.findAllTokenVersions()).thenReturn(List.of(TokenVersionRegistryTest.tokenVersion(1L, 2)));
+        filter = new JwtAuthenticationFilter(jwtService, userDetailsService, new TokenVersionRegistry(userRepository));
+        ReflectionTestUtils.setField(filter, "statelessAuthEnabled", true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void tokenWithOlderVersion_ShouldBeRejected() throws Exception {
+        // Arrange: issued before the password change that bumped the version to 2
+        when(jwtService.parseToken("old-token")).thenReturn(token(1));
+        MockFilterChain chain = new MockFilterChain();
+
+        // Act
+        MockHttpServletResponse response = send("old-token", chain);
+
+        // Assert
+        assertEquals(403, response.getStatus());
+        assertTrue(response.getContentAsString().contains("Token has been revoked"));
+        assertNull(chain.getRequest());
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        verifyNoInteractions(userDetailsService);
+    }
+
+    @Test
+    void tokenWithCurrentVersion_ShouldAuthenticateFromClaims() throws Exception {
+        // Arrange
+        ParsedToken token = token(2);
+        when(jwtService.parseToken("current-token")).thenReturn(token);
+        when(jwtService.isTokenValid(eq(token), any(JwtPrincipal.class))).thenReturn(true);
+        MockFilterChain chain = new MockFilterChain();
+
+        // Act
+        MockHttpServletResponse response = send("current-token", chain);
+
+        // Assert
+        assertEquals(200, response.getStatus());
+        assertNotNull(chain.getRequest());
+        assertEquals("patient@example.com", SecurityContextHolder.getContext().getAuthentication().getName());
+        verifyNoInteractions(userDetailsService);
+    }
+
+    private MockHttpServletResponse send(String jwt, MockFilterChain chain) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/appointments/page");
+        request.addHeader("Authorization", "Bearer " + jwt);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    private static ParsedToken token(int tokenVersion) {
+        Date now = new Date();
+        return new ParsedToken("patient@example.com", "ROLE_PATIENT", 1L, tokenVersion, now,
+                new Date(now.getTime() + 60_000), null);
+    }
+}
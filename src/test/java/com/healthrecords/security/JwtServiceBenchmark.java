@@ -0,0 +1,90 @@
+package com.healthrecords.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the per-request cost of JWT verification before and after the
+ * verified-token cache in {@link JwtService}.
+ *
+ * <ul>
+ *   <li>{@code legacyPath} replays what the filter used to do: four full parses
+ *       (username twice, role, expiration), each with a freshly built key.</li>
+ *   <li>{@code singleParse} verifies the token once with the shared parser.</li>
+ *   <li>{@code cachedParse} is the steady state for a session re-using its token.</li>
+ * </ul>
+ *
+ * Not picked up by surefire. Run it after {@code mvn test-compile} with the
+ * {@link #main} method, e.g. from the IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtServiceBenchmark {
+
+    private static final String SECRET = "benchmark-secret-key-that-is-long-enough-for-hs256";
+
+    private JwtService jwtService;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtService = new JwtService();
+        ReflectionTestUtils.setField(jwtService, "secretKey", SECRET);
+        ReflectionTestUtils.setField(jwtService, "jwtExpiration", 3_600_000L);
+        ReflectionTestUtils.setField(jwtService, "tokenCacheMaxSize", 10_000L);
+        jwtService.init();
+
+        token = jwtService.generateToken(User.withUsername("doctor@example.com")
+                .password("unused")
+                .authorities("ROLE_DOCTOR")
+                .build());
+    }
+
+    @Benchmark
+    public void legacyPath(Blackhole blackhole) {
+        blackhole.consume(legacyParse(token).getSubject());
+        blackhole.consume(legacyParse(token).getSubject());
+        blackhole.consume(legacyParse(token).get("role", String.class));
+        blackhole.consume(legacyParse(token).getExpiration());
+    }
+
+    @Benchmark
+    public ParsedToken singleParse() {
+        return jwtService.verify(token);
+    }
+
+    @Benchmark
+    public ParsedToken cachedParse() {
+        return jwtService.parseToken(token);
+    }
+
+    private static Claims legacyParse(String token) {
+        return Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(SECRET.getBytes()))
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(JwtServiceBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
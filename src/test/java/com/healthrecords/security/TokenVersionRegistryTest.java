@@ -0,0 +1,115 @@
+package com.healthrecords.security;
+
+import com.healthrecords.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TokenVersionRegistryTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @InjectMocks
+    private TokenVersionRegistry tokenVersionRegistry;
+
+    @Test
+    void isCurrent_AfterVersionBump_ShouldRejectOlderTokens() {
+        // Arrange
+        when(userRepository.findAllTokenVersions()).thenReturn(List.of(tokenVersion(1L, 2)));
+
+        // Act & Assert
+        assertTrue(tokenVersionRegistry.isCurrent(1L, 2));
+        assertFalse(tokenVersionRegistry.isCurrent(1L, 1));
+
+        // Outside a transaction the new version applies right away
+        tokenVersionRegistry.updateAfterCommit(1L, 3);
+        assertFalse(tokenVersionRegistry.isCurrent(1L, 2));
+        assertTrue(tokenVersionRegistry.isCurrent(1L, 3));
+        verify(userRepository, times(1)).findAllTokenVersions();
+    }
+
+    @Test
+    void refresh_WithOlderSnapshot_ShouldKeepTheNewerVersion() {
+        // Arrange: the reload read the row before the bump committed
+        when(userRepository.findAllTokenVersions()).thenReturn(List.of(tokenVersion(1L, 2)));
+        tokenVersionRegistry.refresh();
+        tokenVersionRegistry.updateAfterCommit(1L, 3);
+
+        // Act
+        tokenVersionRegistry.refresh();
+
+        // Assert
+        assertFalse(tokenVersionRegistry.isCurrent(1L, 2));
+        assertTrue(tokenVersionRegistry.isCurrent(1L, 3));
+    }
+
+    @Test
+    void refresh_ShouldPickUpBumpsMadeElsewhere() {
+        // Arrange
+        when(userRepository.findAllTokenVersions())
+                .thenReturn(List.of(tokenVersion(1L, 0)))
+                .thenReturn(List.of(tokenVersion(1L, 1)));
+        assertTrue(tokenVersionRegistry.isCurrent(1L, 0));
+
+        // Act
+        tokenVersionRegistry.refresh();
+
+        // Assert
+        assertFalse(tokenVersionRegistry.isCurrent(1L, 0));
+        assertTrue(tokenVersionRegistry.isCurrent(1L, 1));
+    }
+
+    @Test
+    void isCurrent_ForUnknownUser_ShouldLookItUpOnceAndRevokeIfMissing() {
+        // Arrange: neither user was there at the last refresh; 8 was created since, 7 does not exist
+        when(userRepository.findAllTokenVersions()).thenReturn(List.of());
+        when(userRepository.findTokenVersionById(7L)).thenReturn(Optional.empty());
+        when(userRepository.findTokenVersionById(8L)).thenReturn(Optional.of(0));
+
+        // Act & Assert
+        assertFalse(tokenVersionRegistry.isCurrent(7L, 0));
+        assertFalse(tokenVersionRegistry.isCurrent(7L, 5));
+        assertTrue(tokenVersionRegistry.isCurrent(8L, 0));
+        assertTrue(tokenVersionRegistry.isCurrent(8L, 0));
+        verify(userRepository, times(1)).findTokenVersionById(7L);
+        verify(userRepository, times(1)).findTokenVersionById(8L);
+    }
+
+    @Test
+    void revokeAfterCommit_ShouldRejectEveryToken() {
+        // Arrange
+        when(userRepository.findAllTokenVersions()).thenReturn(List.of(tokenVersion(1L, 4)));
+        assertTrue(tokenVersionRegistry.isCurrent(1L, 4));
+
+        // Act
+        tokenVersionRegistry.revokeAfterCommit(1L);
+
+        // Assert
+        assertFalse(tokenVersionRegistry.isCurrent(1L, 4));
+        assertFalse(tokenVersionRegistry.isCurrent(1L, 1000));
+    }
+
+    static UserRepository.TokenVersionView tokenVersion(Long id, Integer version) {
+        return new UserRepository.TokenVersionView() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Integer getTokenVersion() {
+                return version;
+            }
+        };
+    }
+}
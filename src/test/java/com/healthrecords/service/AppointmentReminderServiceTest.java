@@ -0,0 +1,112 @@
+package com.healthrecords.service;
+
+import com.healthrecords.dto.AppointmentDetail;
+import com.healthrecords.model.Appointment;
+import com.healthrecords.repository.AppointmentRepository;
+import com.healthrecords.repository.ReminderLeaseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class AppointmentReminderServiceTest {
+
+    @Mock
+    private AppointmentRepository appointmentRepository;
+
+    @Mock
+    private NotificationService notificationService;
+
+    @Mock
+    private ReminderLeaseRepository reminderLeaseRepository;
+
+    @InjectMocks
+    private AppointmentReminderService appointmentReminderService;
+
+    // Approved appointments as the database has them
+    private final List<AppointmentDetail> approved = new ArrayList<>();
+    private LocalDateTime start;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(appointmentReminderService, "enabled", true);
+        ReflectionTestUtils.setField(appointmentReminderService, "offsetMinutesProperty", "60");
+        ReflectionTestUtils.setField(appointmentReminderService, "bucketMinutes", 5L);
+        ReflectionTestUtils.setField(appointmentReminderService, "leaseSeconds", 120L);
+        ReflectionTestUtils.setField(appointmentReminderService, "catchUpMinutes", 15L);
+        // Reminders due in the past fire on the next tick, one millisecond later
+        ReflectionTestUtils.setField(appointmentReminderService, "tickMillis", 1L);
+        ReflectionTestUtils.setField(appointmentReminderService, "instanceId", "replica-a");
+        appointmentReminderService.init();
+
+        // The reminder was due a minute ago, within the catch-up window
+        start = LocalDateTime.now().plusMinutes(59).truncatedTo(ChronoUnit.SECONDS);
+        approved.add(detail(start, Appointment.AppointmentStatus.APPROVED));
+
+        when(reminderLeaseRepository.claim(any(), anyString(), any(), any())).thenReturn(true);
+        when(appointmentRepository.findDetailsStartingBetween(any(), any(), eq(Appointment.AppointmentStatus.APPROVED)))
+                .thenAnswer(invocation -> approved.stream()
+                        .filter(appointment -> !appointment.getAppointmentDateTime().isBefore(invocation.getArgument(0))
+                                && appointment.getAppointmentDateTime().isBefore(invocation.getArgument(1)))
+                        .toList());
+    }
+
+    @Test
+    void tick_WhenAppointmentMovedAfterLoading_ShouldOnlyRemindAtTheNewTime() throws InterruptedException {
+        // Arrange: loaded, then moved 30 seconds earlier; the reload picks up the new time
+        appointmentReminderService.claimBuckets();
+        AppointmentDetail moved = detail(start.minusSeconds(30), Appointment.AppointmentStatus.APPROVED);
+        approved.set(0, moved);
+        appointmentReminderService.claimBuckets();
+        when(appointmentRepository.findDetailsByIds(Set.of(1L))).thenReturn(List.of(moved));
+        Thread.sleep(5);
+
+        // Act
+        appointmentReminderService.tick();
+
+        // Assert
+        verify(notificationService, times(1)).buildAppointmentReminderNotification(any());
+        verify(notificationService).buildAppointmentReminderNotification(moved);
+    }
+
+    @Test
+    void tick_WhenAppointmentCancelledAfterLoading_ShouldSkipIt() throws InterruptedException {
+        // Arrange
+        appointmentReminderService.claimBuckets();
+        when(appointmentRepository.findDetailsByIds(Set.of(1L)))
+                .thenReturn(List.of(detail(start, Appointment.AppointmentStatus.CANCELLED)));
+        Thread.sleep(5);
+
+        // Act
+        appointmentReminderService.tick();
+
+        // Assert
+        verify(notificationService, never()).buildAppointmentReminderNotification(any());
+        verify(notificationService).createNotificationsInBatch(List.of());
+        verify(reminderLeaseRepository).markFired(any(), eq("replica-a"), eq(start.minusMinutes(60)));
+    }
+
+    private static AppointmentDetail detail(LocalDateTime start, Appointment.AppointmentStatus status) {
+        AppointmentDetail detail = new AppointmentDetail();
+        detail.setId(1L);
+        detail.setAppointmentDateTime(start);
+        detail.setStatus(status);
+        detail.setTitle("Checkup");
+        return detail;
+    }
+}
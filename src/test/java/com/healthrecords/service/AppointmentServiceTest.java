@@ -0,0 +1,136 @@
+package com.healthrecords.service;
+
+import com.healthrecords.dto.AppointmentDetail;
+import com.healthrecords.dto.UserSummary;
+import com.healthrecords.model.Appointment;
+import com.healthrecords.model.User;
+import com.healthrecords.model.UserRole;
+import com.healthrecords.repository.AppointmentRepository;
+import com.healthrecords.repository.AppointmentSeriesRepository;
+import com.healthrecords.repository.DirectAppointmentRepository;
+import com.healthrecords.repository.NotificationOutboxRepository;
+import com.healthrecords.repository.UserRepository;
+import com.healthrecords.security.CurrentUserContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class AppointmentServiceTest {
+
+    @Mock
+    private AppointmentRepository appointmentRepository;
+
+    @Mock
+    private DirectAppointmentRepository directAppointmentRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private NotificationService notificationService;
+
+    @Mock
+    private CurrentUserContext currentUserContext;
+
+    @Mock
+    private DoctorScheduleIndex doctorScheduleIndex;
+
+    @Mock
+    private AppointmentSeriesRepository appointmentSeriesRepository;
+
+    @Mock
+    private DoctorCalendarService doctorCalendarService;
+
+    @Mock
+    private NotificationOutboxRepository notificationOutboxRepository;
+
+    @InjectMocks
+    private AppointmentService appointmentService;
+
+    private Appointment appointment;
+
+    @BeforeEach
+    void setUp() {
+        User doctor = User.builder().id(2L).firstName("Jane").lastName("Smith").email("doctor@example.com")
+                .role(UserRole.ROLE_DOCTOR).build();
+        User patient = User.builder().id(3L).firstName("John").lastName("Doe").email("patient@example.com")
+                .role(UserRole.ROLE_PATIENT).build();
+        appointment = Appointment.builder()
+                .id(1L)
+                .doctor(doctor)
+                .patient(patient)
+                .appointmentDateTime(LocalDateTime.now().plusDays(3).withNano(0))
+                .title("Checkup")
+                .status(Appointment.AppointmentStatus.APPROVED)
+                .isVideoConsultation(false)
+                .version(4L)
+                .build();
+
+        AppointmentDetail detail = new AppointmentDetail();
+        detail.setId(1L);
+        detail.setAppointmentDateTime(appointment.getAppointmentDateTime());
+        detail.setTitle(appointment.getTitle());
+        detail.setStatus(appointment.getStatus());
+        detail.setIsVideoConsultation(false);
+        detail.setVersion(appointment.getVersion());
+        detail.setDoctor(new UserSummary(2L, "Jane", "Smith", "doctor@example.com", null));
+        detail.setPatient(new UserSummary(3L, "John", "Doe", "patient@example.com", null));
+
+        when(currentUserContext.getCurrentUser()).thenReturn(doctor);
+        when(appointmentRepository.findDetailById(1L)).thenReturn(Optional.of(detail));
+        when(appointmentRepository.findById(1L)).thenReturn(Optional.of(appointment));
+    }
+
+    @Test
+    void updateAppointment_WithVersionFromDetail_ShouldApplyEdit() {
+        // Arrange
+        when(appointmentRepository.save(any(Appointment.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        AppointmentDetail detail = appointmentService.getAppointmentDetail(1L);
+
+        // Act
+        Appointment updated = appointmentService.updateAppointment(1L, edit(detail, "Follow-up"));
+
+        // Assert
+        assertEquals(4L, detail.getVersion());
+        assertEquals("Follow-up", updated.getTitle());
+        verify(appointmentRepository).save(appointment);
+    }
+
+    @Test
+    void updateAppointment_WithStaleVersion_ShouldThrow() {
+        // Arrange: someone else updated the appointment after the detail was read
+        AppointmentDetail detail = appointmentService.getAppointmentDetail(1L);
+        appointment.setVersion(5L);
+
+        // Act & Assert
+        assertThrows(ObjectOptimisticLockingFailureException.class,
+                () -> appointmentService.updateAppointment(1L, edit(detail, "Follow-up")));
+        verify(appointmentRepository, never()).save(any());
+    }
+
+    // The request body a client builds from the detail it read, with the title changed
+    private static Appointment edit(AppointmentDetail detail, String title) {
+        return Appointment.builder()
+                .appointmentDateTime(detail.getAppointmentDateTime())
+                .title(title)
+                .description(detail.getDescription())
+                .status(detail.getStatus())
+                .notes(detail.getNotes())
+                .isVideoConsultation(detail.getIsVideoConsultation())
+                .meetingLink(detail.getMeetingLink())
+                .version(detail.getVersion())
+                .build();
+    }
+}
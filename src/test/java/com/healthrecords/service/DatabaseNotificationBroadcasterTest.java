@@ -0,0 +1,94 @@
+package com.healthrecords.service;
+
+import com.healthrecords.repository.NotificationEventRepository;
+import com.healthrecords.repository.NotificationEventRepository.Event;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class DatabaseNotificationBroadcasterTest {
+
+    @Mock
+    private NotificationEventRepository notificationEventRepository;
+
+    @Mock
+    private NotificationStreamRegistry notificationStreamRegistry;
+
+    @InjectMocks
+    private DatabaseNotificationBroadcaster broadcaster;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(broadcaster, "batchSize", 2);
+        ReflectionTestUtils.setField(broadcaster, "instanceId", "replica-a");
+        broadcaster.init();
+    }
+
+    @Test
+    void publish_ShouldPushLocallyAndRecordEvents() {
+        // Act
+        broadcaster.publish(Set.of(7L));
+
+        // Assert
+        verify(notificationStreamRegistry).push(Set.of(7L));
+        verify(notificationEventRepository).append(eq(Set.of(7L)), eq("replica-a"), any());
+    }
+
+    @Test
+    void poll_ShouldPushOtherReplicasEventsForConnectedUsersOnly() {
+        // Arrange
+        when(notificationEventRepository.findLatestId()).thenReturn(10L);
+        when(notificationEventRepository.findAfter(10L, 2)).thenReturn(List.of(
+                new Event(11L, 1L, "replica-b"),
+                new Event(12L, 2L, "replica-a")));
+        when(notificationEventRepository.findAfter(12L, 2)).thenReturn(List.of(
+                new Event(13L, 3L, "replica-b")));
+        when(notificationStreamRegistry.isConnected(anyLong())).thenAnswer(invocation -> !invocation.getArgument(0).equals(3L));
+
+        // Act
+        broadcaster.poll(); // Skips the events that existed before startup
+        broadcaster.poll();
+
+        // Assert
+        verify(notificationStreamRegistry).push(Set.of(1L));
+        verify(notificationStreamRegistry, times(1)).push(any());
+        verify(notificationEventRepository).findAfter(12L, 2);
+    }
+
+    @Test
+    void poll_ShouldPushEventsThatCommitAfterHigherIdsOnce() {
+        // Arrange: event 11 is inserted before 12 but only commits after 12 was read
+        ReflectionTestUtils.setField(broadcaster, "batchSize", 10);
+        ReflectionTestUtils.setField(broadcaster, "overlapIds", 5L);
+        when(notificationEventRepository.findLatestId()).thenReturn(10L);
+        when(notificationEventRepository.findAfter(5L, 10)).thenReturn(List.of(
+                new Event(12L, 1L, "replica-b")));
+        when(notificationEventRepository.findAfter(7L, 10)).thenReturn(List.of(
+                new Event(11L, 2L, "replica-b"),
+                new Event(12L, 1L, "replica-b")));
+        when(notificationStreamRegistry.isConnected(anyLong())).thenReturn(true);
+
+        // Act
+        broadcaster.poll(); // Skips the events that existed before startup
+        broadcaster.poll();
+        broadcaster.poll();
+
+        // Assert
+        verify(notificationStreamRegistry).push(Set.of(1L));
+        verify(notificationStreamRegistry).push(Set.of(2L));
+        verify(notificationStreamRegistry, times(2)).push(any());
+    }
+}
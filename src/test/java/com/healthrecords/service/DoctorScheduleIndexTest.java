@@ -0,0 +1,140 @@
+package com.healthrecords.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.healthrecords.exception.SlotUnavailableException;
+import com.healthrecords.model.Appointment;
+import com.healthrecords.repository.AppointmentRepository;
+import com.healthrecords.repository.DirectAppointmentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class DoctorScheduleIndexTest {
+
+    private static final Long DOCTOR_ID = 2L;
+
+    @Mock
+    private AppointmentRepository appointmentRepository;
+
+    @Mock
+    private DirectAppointmentRepository directAppointmentRepository;
+
+    @InjectMocks
+    private DoctorScheduleIndex doctorScheduleIndex;
+
+    private LocalDate day;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(doctorScheduleIndex, "slotMinutes", 30);
+        ReflectionTestUtils.setField(doctorScheduleIndex, "dayStartProperty", "09:00");
+        ReflectionTestUtils.setField(doctorScheduleIndex, "dayEndProperty", "11:00");
+        ReflectionTestUtils.setField(doctorScheduleIndex, "maxDoctors", 100L);
+        ReflectionTestUtils.setField(doctorScheduleIndex, "ttlMinutes", 10L);
+        doctorScheduleIndex.init();
+
+        day = LocalDate.now().plusDays(7);
+        when(appointmentRepository.findBookedSlots(eq(DOCTOR_ID), any(), any(), eq(Appointment.AppointmentStatus.CANCELLED)))
+                .thenReturn(List.of());
+    }
+
+    @Test
+    void reserve_WithOverlappingBooking_ShouldThrow() {
+        // Arrange
+        doctorScheduleIndex.reserve(DOCTOR_ID, day.atTime(9, 0), null);
+
+        // Act & Assert
+        assertThrows(SlotUnavailableException.class, () -> doctorScheduleIndex.reserve(DOCTOR_ID, day.atTime(9, 15), null));
+        assertFalse(doctorScheduleIndex.isAvailable(DOCTOR_ID, day.atTime(9, 0)));
+        assertTrue(doctorScheduleIndex.isAvailable(DOCTOR_ID, day.atTime(9, 30)));
+    }
+
+    @Test
+    void reserve_WhenDatabaseHasConflict_ShouldThrowAndKeepSlotFree() {
+        // Arrange
+        LocalDateTime start = day.atTime(10, 0);
+        when(directAppointmentRepository.findBookedSlotsForShare(DOCTOR_ID, start.minusMinutes(30), start.plusMinutes(30)))
+                .thenReturn(List.of(new DirectAppointmentRepository.BookedSlot(9L, start.plusMinutes(15))));
+
+        // Act & Assert
+        assertThrows(SlotUnavailableException.class, () -> doctorScheduleIndex.reserve(DOCTOR_ID, start, null));
+        verify(directAppointmentRepository).lockDoctorSchedule(DOCTOR_ID);
+        assertTrue(doctorScheduleIndex.isAvailable(DOCTOR_ID, start));
+    }
+
+    @Test
+    void reserve_InTransaction_ShouldKeepPendingSlotAcrossRefreshAndEviction() {
+        // Arrange: every use refreshes the schedule from the database, which does not have the booking yet
+        ReflectionTestUtils.setField(doctorScheduleIndex, "ttlMinutes", 0L);
+        LocalDateTime start = day.atTime(9, 0);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // Act
+            doctorScheduleIndex.reserve(DOCTOR_ID, start, null);
+            ((Cache<?, ?>) ReflectionTestUtils.getField(doctorScheduleIndex, "schedules")).invalidateAll();
+
+            // Assert
+            assertFalse(doctorScheduleIndex.isAvailable(DOCTOR_ID, start));
+            assertThrows(SlotUnavailableException.class, () -> doctorScheduleIndex.reserve(DOCTOR_ID, start, null));
+
+            // Once rolled back the slot is free again
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+            assertTrue(doctorScheduleIndex.isAvailable(DOCTOR_ID, start));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void getFreeSlots_ShouldSkipBookedSlotsUntilReleased() {
+        // Arrange
+        doctorScheduleIndex.reserve(DOCTOR_ID, day.atTime(9, 30), null);
+        doctorScheduleIndex.assign(DOCTOR_ID, day.atTime(9, 30), 5L);
+
+        // Act
+        List<LocalDateTime> free = doctorScheduleIndex.getFreeSlots(DOCTOR_ID, day);
+
+        // Assert
+        assertEquals(List.of(day.atTime(9, 0), day.atTime(10, 0), day.atTime(10, 30)), free);
+
+        // Moving the appointment itself onto an overlapping time is allowed
+        doctorScheduleIndex.reserve(DOCTOR_ID, day.atTime(9, 45), 5L);
+
+        doctorScheduleIndex.release(DOCTOR_ID, day.atTime(9, 30), 5L);
+        doctorScheduleIndex.release(DOCTOR_ID, day.atTime(9, 45), 5L);
+        assertEquals(4, doctorScheduleIndex.getFreeSlots(DOCTOR_ID, day).size());
+    }
+
+    @Test
+    void reserveAll_WithOneConflict_ShouldTakeNoSlot() {
+        // Arrange
+        List<LocalDateTime> weekly = List.of(day.atTime(9, 0), day.plusWeeks(1).atTime(9, 0), day.plusWeeks(2).atTime(9, 0));
+        when(directAppointmentRepository.findBookedSlotsForShare(DOCTOR_ID, weekly.get(0).minusMinutes(30), weekly.get(2).plusMinutes(30)))
+                .thenReturn(List.of(new DirectAppointmentRepository.BookedSlot(9L, day.plusWeeks(1).atTime(9, 15))));
+
+        // Act & Assert
+        assertThrows(SlotUnavailableException.class, () -> doctorScheduleIndex.reserveAll(DOCTOR_ID, weekly, null));
+        verify(directAppointmentRepository).lockDoctorSchedule(DOCTOR_ID);
+
+        // Moving the booked appointment itself is not a conflict
+        doctorScheduleIndex.reserveAll(DOCTOR_ID, weekly, List.of(1L, 9L, 2L));
+        assertFalse(doctorScheduleIndex.isAvailable(DOCTOR_ID, day.plusWeeks(2).atTime(9, 0)));
+    }
+}
@@ -0,0 +1,281 @@
+package com.healthrecords.service;
+
+import com.healthrecords.model.Notification;
+import com.healthrecords.model.User;
+import com.healthrecords.repository.EmailDeadLetterRepository;
+import com.healthrecords.repository.EmailDeadLetterRepository.DeadLetter;
+import com.healthrecords.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs the email channel against an in-process SMTP server that accepts every recipient
+ * except those at bounce.example.com.
+ */
+@ExtendWith(MockitoExtension.class)
+public class EmailNotificationChannelTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private EmailDeadLetterRepository emailDeadLetterRepository;
+
+    private FakeSmtpServer smtpServer;
+    private EmailNotificationChannel emailNotificationChannel;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        smtpServer = new FakeSmtpServer();
+
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(smtpServer.getPort());
+
+        emailNotificationChannel = new EmailNotificationChannel(mailSender, userRepository, emailDeadLetterRepository);
+        ReflectionTestUtils.setField(emailNotificationChannel, "enabled", true);
+        ReflectionTestUtils.setField(emailNotificationChannel, "from", "no-reply@healthrecords.local");
+        ReflectionTestUtils.setField(emailNotificationChannel, "typesProperty", "APPOINTMENT_CONFIRMED,APPOINTMENT_REMINDER");
+        ReflectionTestUtils.setField(emailNotificationChannel, "queueCapacity", 100);
+        ReflectionTestUtils.setField(emailNotificationChannel, "workers", 1);
+        ReflectionTestUtils.setField(emailNotificationChannel, "batchSize", 50);
+        ReflectionTestUtils.setField(emailNotificationChannel, "maxAttempts", 2);
+        ReflectionTestUtils.setField(emailNotificationChannel, "retryBaseMillis", 10L);
+        ReflectionTestUtils.setField(emailNotificationChannel, "retryMaxMillis", 10L);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        emailNotificationChannel.shutdown();
+        smtpServer.close();
+    }
+
+    @Test
+    void send_ShouldDeliverBatchOverOneConnection() {
+        // Arrange
+        emailNotificationChannel.init();
+        List<EmailNotificationChannel.Email> batch = new ArrayList<>();
+        List<UserRepository.EmailView> emails = new ArrayList<>();
+        for (long id = 1; id <= 3; id++) {
+            batch.add(new EmailNotificationChannel.Email(id, "Appointment Confirmed", "See you soon"));
+            emails.add(emailView(id, "user" + id + "@example.com"));
+        }
+        when(userRepository.findEmailsByIdIn(anyCollection())).thenReturn(emails);
+
+        // Act
+        emailNotificationChannel.send(batch);
+
+        // Assert
+        assertEquals(3, emailNotificationChannel.getStats().getSent());
+        assertEquals(3, smtpServer.delivered.get());
+        assertEquals(1, smtpServer.connections.get());
+        verify(userRepository, times(1)).findEmailsByIdIn(anyCollection());
+        verify(emailDeadLetterRepository, never()).insertAll(any(), any());
+    }
+
+    @Test
+    void enqueue_WhenRecipientKeepsFailing_ShouldRetryThenDeadLetter() throws Exception {
+        // Arrange
+        emailNotificationChannel.init();
+        when(userRepository.findEmailsByIdIn(anyCollection())).thenReturn(List.of(emailView(1L, "gone@bounce.example.com")));
+
+        // Act
+        emailNotificationChannel.enqueue(List.of(
+                notification(1L, Notification.NotificationType.APPOINTMENT_REMINDER),
+                // Not an emailed type
+                notification(2L, Notification.NotificationType.APPOINTMENT_REQUESTED)));
+
+        // Assert
+        awaitTrue(() -> emailNotificationChannel.getStats().getDeadLettered() == 1);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<DeadLetter>> captor = ArgumentCaptor.forClass(List.class);
+        verify(emailDeadLetterRepository).insertAll(captor.capture(), any());
+        DeadLetter deadLetter = captor.getValue().get(0);
+        assertEquals("gone@bounce.example.com", deadLetter.getRecipient());
+        assertEquals(2, deadLetter.getAttempts());
+        assertEquals(2, emailNotificationChannel.getStats().getFailedAttempts());
+        assertEquals(1, emailNotificationChannel.getStats().getEnqueued());
+        assertEquals(0, emailNotificationChannel.getStats().getSent());
+    }
+
+    @Test
+    void shutdown_WithEmailWaitingForRetry_ShouldDeadLetterIt() throws Exception {
+        // Arrange: the retry is due long after the shutdown
+        ReflectionTestUtils.setField(emailNotificationChannel, "maxAttempts", 5);
+        ReflectionTestUtils.setField(emailNotificationChannel, "retryBaseMillis", 60_000L);
+        ReflectionTestUtils.setField(emailNotificationChannel, "retryMaxMillis", 60_000L);
+        emailNotificationChannel.init();
+        when(userRepository.findEmailsByIdIn(anyCollection())).thenReturn(List.of(emailView(1L, "gone@bounce.example.com")));
+        emailNotificationChannel.enqueue(List.of(notification(1L, Notification.NotificationType.APPOINTMENT_REMINDER)));
+        awaitTrue(() -> emailNotificationChannel.getStats().getAwaitingRetry() == 1);
+
+        // Act
+        emailNotificationChannel.shutdown();
+
+        // Assert
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<DeadLetter>> captor = ArgumentCaptor.forClass(List.class);
+        verify(emailDeadLetterRepository).insertAll(captor.capture(), any());
+        assertEquals(1, captor.getValue().size());
+        assertEquals(1, captor.getValue().get(0).getAttempts());
+        assertEquals(0, emailNotificationChannel.getStats().getAwaitingRetry());
+        assertEquals(1, emailNotificationChannel.getStats().getDeadLettered());
+    }
+
+    @Test
+    void enqueue_WhenQueueIsFull_ShouldDeadLetterOffTheCallingThread() throws Exception {
+        // Arrange: the worker holds the first email until released, the second fills the queue
+        ReflectionTestUtils.setField(emailNotificationChannel, "queueCapacity", 1);
+        emailNotificationChannel.init();
+        CountDownLatch release = new CountDownLatch(1);
+        when(userRepository.findEmailsByIdIn(anyCollection())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return List.of(emailView(1L, "user1@example.com"));
+        });
+        AtomicReference<String> deadLetterThread = new AtomicReference<>();
+        doAnswer(invocation -> {
+            deadLetterThread.set(Thread.currentThread().getName());
+            return null;
+        }).when(emailDeadLetterRepository).insertAll(any(), any());
+        emailNotificationChannel.enqueue(List.of(notification(1L, Notification.NotificationType.APPOINTMENT_REMINDER)));
+        awaitTrue(() -> emailNotificationChannel.getStats().getInFlight() == 1);
+        emailNotificationChannel.enqueue(List.of(notification(1L, Notification.NotificationType.APPOINTMENT_REMINDER)));
+
+        // Act
+        emailNotificationChannel.enqueue(List.of(notification(1L, Notification.NotificationType.APPOINTMENT_REMINDER)));
+
+        // Assert
+        awaitTrue(() -> emailNotificationChannel.getStats().getDeadLettered() == 1);
+        assertEquals("notification-email-retry", deadLetterThread.get());
+        release.countDown();
+    }
+
+    private static Notification notification(Long userId, Notification.NotificationType type) {
+        return Notification.builder()
+                .user(User.builder().id(userId).build())
+                .title("Appointment")
+                .message("Your appointment has an update")
+                .type(type)
+                .isRead(false)
+                .build();
+    }
+
+    private static UserRepository.EmailView emailView(Long id, String email) {
+        return new UserRepository.EmailView() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getEmail() {
+                return email;
+            }
+        };
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for the email channel");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Just enough SMTP to accept messages, counting connections and delivered messages
+     */
+    private static class FakeSmtpServer implements AutoCloseable {
+
+        private final ServerSocket serverSocket = new ServerSocket(0);
+        private final AtomicInteger connections = new AtomicInteger();
+        private final AtomicInteger delivered = new AtomicInteger();
+
+        FakeSmtpServer() throws IOException {
+            Thread thread = new Thread(this::accept, "fake-smtp");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        private void accept() {
+            while (!serverSocket.isClosed()) {
+                try (Socket socket = serverSocket.accept()) {
+                    connections.incrementAndGet();
+                    converse(socket);
+                } catch (IOException e) {
+                    // Closed by the test
+                }
+            }
+        }
+
+        private void converse(Socket socket) throws IOException {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+            reply(out, "220 localhost ESMTP");
+
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.toUpperCase();
+                if (command.startsWith("EHLO")) {
+                    reply(out, "250-localhost");
+                    reply(out, "250 OK");
+                } else if (command.startsWith("RCPT") && command.contains("@BOUNCE.EXAMPLE.COM")) {
+                    reply(out, "550 No such user");
+                } else if (command.startsWith("DATA")) {
+                    reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                    while ((line = in.readLine()) != null && !line.equals(".")) {
+                        // Message content is not checked
+                    }
+                    delivered.incrementAndGet();
+                    reply(out, "250 OK");
+                } else if (command.startsWith("QUIT")) {
+                    reply(out, "221 Bye");
+                    return;
+                } else {
+                    reply(out, "250 OK");
+                }
+            }
+        }
+
+        private static void reply(PrintWriter out, String line) {
+            out.print(line + "\r\n");
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.healthrecords.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HashedTimingWheelTest {
+
+    private static final long TICK = 1_000L;
+
+    @Test
+    void advance_ShouldReturnItemsOnlyOnceTheirDeadlinePassed() {
+        // Arrange
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(TICK, 8, 0L);
+        wheel.schedule("a", 2_500L);
+        wheel.schedule("b", 3_000L);
+
+        // Act & Assert
+        assertTrue(wheel.advance(2_000L).isEmpty());
+        assertEquals(List.of("a", "b"), wheel.advance(3_000L));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void advance_ShouldKeepItemsScheduledMoreThanOneTurnAhead() {
+        // Arrange: 8 slots of one second, so 20 seconds is two and a half turns away
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(TICK, 8, 0L);
+        wheel.schedule("later", 20_000L);
+        wheel.schedule("soon", 4_000L);
+
+        // Act & Assert
+        assertEquals(List.of("soon"), wheel.advance(12_000L));
+        assertTrue(wheel.advance(19_000L).isEmpty());
+        assertEquals(List.of("later"), wheel.advance(60_000L));
+    }
+
+    @Test
+    void schedule_WithPastDeadline_ShouldBeDueOnNextAdvance() {
+        // Arrange
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(TICK, 8, 0L);
+        wheel.advance(5_000L);
+        wheel.schedule("late", 1_000L);
+        wheel.schedule("dropped", 7_000L);
+
+        // Act
+        int removed = wheel.removeIf("dropped"::equals);
+
+        // Assert
+        assertEquals(1, removed);
+        assertEquals(List.of("late"), wheel.advance(6_000L));
+        assertTrue(wheel.advance(10_000L).isEmpty());
+    }
+}
@@ -0,0 +1,129 @@
+package com.healthrecords.service;
+
+import com.healthrecords.dto.MedicalRecordDTO;
+import com.healthrecords.model.LabReport;
+import com.healthrecords.model.MedicalRecord;
+import com.healthrecords.model.Prescription;
+import com.healthrecords.model.User;
+import com.healthrecords.model.UserRole;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Guards the number of statements behind the medical record reads: listing the records and converting
+ * them to DTOs, with their users, prescriptions and lab reports, must not run more queries as records are added.
+ */
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import(MedicalRecordService.class)
+public class MedicalRecordQueryCountTest {
+
+    private static final int RECORDS = 20;
+
+    @Autowired
+    private MedicalRecordService medicalRecordService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Long firstRecordId;
+
+    @BeforeEach
+    void setUp() {
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < RECORDS; i++) {
+            // A different patient and doctor per record, so the users cannot come from the persistence context
+            User patient = user("patient" + i, UserRole.ROLE_PATIENT);
+            User doctor = user("doctor" + i, UserRole.ROLE_DOCTOR);
+
+            MedicalRecord record = new MedicalRecord();
+            record.setPatient(patient);
+            record.setDoctor(doctor);
+            record.setDiagnosis("Diagnosis " + i);
+            entityManager.persist(record);
+            if (firstRecordId == null) {
+                firstRecordId = record.getId();
+            }
+
+            for (int j = 0; j < 2; j++) {
+                Prescription prescription = new Prescription();
+                prescription.setMedicalRecord(record);
+                prescription.setMedicationName("Medication " + i + "-" + j);
+                entityManager.persist(prescription);
+
+                entityManager.persist(LabReport.builder()
+                        .medicalRecord(record)
+                        .patient(patient)
+                        .doctor(doctor)
+                        .testName("Test " + i + "-" + j)
+                        .testDate(now)
+                        .reportDate(now)
+                        .build());
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void getAllMedicalRecords_ShouldUseThreeQueries() {
+        // Act
+        List<MedicalRecordDTO> records = medicalRecordService.getAllMedicalRecords().stream()
+                .map(MedicalRecordDTO::fromMedicalRecord)
+                .toList();
+
+        // Assert
+        assertEquals(RECORDS, records.size());
+        assertEquals(3, statistics.getPrepareStatementCount());
+        MedicalRecordDTO first = records.get(0);
+        assertEquals("patient0@example.com", first.getPatient().getEmail());
+        assertEquals(2, first.getPrescriptions().size());
+        assertEquals(2, first.getLabReports().size());
+    }
+
+    @Test
+    void getMedicalRecordById_ShouldUseThreeQueries() {
+        // Act
+        MedicalRecordDTO record = MedicalRecordDTO.fromMedicalRecord(medicalRecordService.getMedicalRecordById(firstRecordId));
+
+        // Assert
+        assertEquals(3, statistics.getPrepareStatementCount());
+        assertEquals("doctor0@example.com", record.getDoctor().getEmail());
+        assertEquals(2, record.getPrescriptions().size());
+        assertEquals(2, record.getLabReports().size());
+    }
+
+    private User user(String name, UserRole role) {
+        User user = User.builder()
+                .firstName(name)
+                .lastName("Test")
+                .email(name + "@example.com")
+                .password("password")
+                .role(role)
+                .build();
+        entityManager.persist(user);
+        return user;
+    }
+}
@@ -71,7 +71,7 @@ public class MedicalRecordServiceTest {
     void getAllMedicalRecords_ShouldReturnAllRecords() {
         // Arrange
         List<MedicalRecord> expectedRecords = Arrays.asList(medicalRecord);
-        when(medicalRecordRepository.findAll()).thenReturn(expectedRecords);
+        when(medicalRecordRepository.findAllWithUsers()).thenReturn(expectedRecords);
 
         // Act
         List<MedicalRecord> actualRecords = medicalRecordService.getAllMedicalRecords();
@@ -79,13 +79,16 @@ public class MedicalRecordServiceTest {
         // Assert
         assertEquals(expectedRecords.size(), actualRecords.size());
         assertEquals(expectedRecords.get(0).getId(), actualRecords.get(0).getId());
-        verify(medicalRecordRepository, times(1)).findAll();
+        verify(medicalRecordRepository, times(1)).findAllWithUsers();
+        verify(medicalRecordRepository, times(1)).fetchPrescriptions(List.of(1L));
+        verify(medicalRecordRepository, times(1)).fetchLabReports(List.of(1L));
+        verifyNoInteractions(userRepository);
     }
 
     @Test
     void getMedicalRecordById_WithValidId_ShouldReturnRecord() {
         // Arrange
-        when(medicalRecordRepository.findById(1L)).thenReturn(Optional.of(medicalRecord));
+        when(medicalRecordRepository.findWithUsersById(1L)).thenReturn(Optional.of(medicalRecord));
 
         // Act
         MedicalRecord actualRecord = medicalRecordService.getMedicalRecordById(1L);
@@ -94,19 +97,20 @@ public class MedicalRecordServiceTest {
         assertNotNull(actualRecord);
         assertEquals(medicalRecord.getId(), actualRecord.getId());
         assertEquals(medicalRecord.getDiagnosis(), actualRecord.getDiagnosis());
-        verify(medicalRecordRepository, times(1)).findById(1L);
+        verify(medicalRecordRepository, times(1)).findWithUsersById(1L);
+        verifyNoInteractions(userRepository);
     }
 
     @Test
     void getMedicalRecordById_WithInvalidId_ShouldThrowException() {
         // Arrange
-        when(medicalRecordRepository.findById(999L)).thenReturn(Optional.empty());
+        when(medicalRecordRepository.findWithUsersById(999L)).thenReturn(Optional.empty());
 
         // Act & Assert
         assertThrows(EntityNotFoundException.class, () -> {
             medicalRecordService.getMedicalRecordById(999L);
         });
-        verify(medicalRecordRepository, times(1)).findById(999L);
+        verify(medicalRecordRepository, times(1)).findWithUsersById(999L);
     }
 
     @Test
@@ -137,7 +141,7 @@ public class MedicalRecordServiceTest {
         updatedRecord.setTreatment("Updated Treatment");
         updatedRecord.setNotes("Updated Notes");
 
-        when(medicalRecordRepository.findById(1L)).thenReturn(Optional.of(medicalRecord));
+        when(medicalRecordRepository.existsById(1L)).thenReturn(true);
         when(userRepository.findById(patient.getId())).thenReturn(Optional.of(patient));
         when(userRepository.findById(doctor.getId())).thenReturn(Optional.of(doctor));
         when(medicalRecordRepository.save(any(MedicalRecord.class))).thenReturn(updatedRecord);
@@ -149,7 +153,7 @@ public class MedicalRecordServiceTest {
         assertNotNull(actualRecord);
         assertEquals(updatedRecord.getDiagnosis(), actualRecord.getDiagnosis());
         assertEquals(updatedRecord.getTreatment(), actualRecord.getTreatment());
-        verify(medicalRecordRepository, times(1)).findById(1L);
+        verify(medicalRecordRepository, times(1)).existsById(1L);
         verify(medicalRecordRepository, times(1)).save(any(MedicalRecord.class));
     }
 
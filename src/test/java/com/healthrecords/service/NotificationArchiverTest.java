@@ -0,0 +1,120 @@
+package com.healthrecords.service;
+
+import com.healthrecords.repository.JobLeaseRepository;
+import com.healthrecords.repository.NotificationArchiveRepository;
+import com.healthrecords.repository.NotificationPartitionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class NotificationArchiverTest {
+
+    @Mock
+    private JobLeaseRepository jobLeaseRepository;
+
+    @Mock
+    private NotificationArchiveRepository notificationArchiveRepository;
+
+    @Mock
+    private NotificationPartitionRepository notificationPartitionRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @InjectMocks
+    private NotificationArchiver notificationArchiver;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(notificationArchiver, "enabled", true);
+        ReflectionTestUtils.setField(notificationArchiver, "retentionDays", 180L);
+        ReflectionTestUtils.setField(notificationArchiver, "chunkSize", 2);
+        ReflectionTestUtils.setField(notificationArchiver, "pauseMillis", 0L);
+        ReflectionTestUtils.setField(notificationArchiver, "maxChunks", 10);
+        ReflectionTestUtils.setField(notificationArchiver, "leaseSeconds", 300L);
+        ReflectionTestUtils.setField(notificationArchiver, "monthsAhead", 2);
+        notificationArchiver.init();
+    }
+
+    @Test
+    void archive_ShouldMoveChunksInSeparateTransactionsUntilOneComesBackShort() {
+        // Arrange
+        when(jobLeaseRepository.claim(eq("notification-archive"), any(), anyString(), any(), any())).thenReturn(true);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(notificationArchiveRepository.lockArchivable(any(), eq(2)))
+                .thenReturn(List.of(1L, 2L), List.of(3L, 4L), List.of(5L));
+
+        // Act
+        notificationArchiver.archive();
+
+        // Assert
+        verify(transactionTemplate, times(3)).execute(any());
+        verify(notificationArchiveRepository).moveToArchive(eq(List.of(1L, 2L)), any());
+        verify(notificationArchiveRepository).moveToArchive(eq(List.of(3L, 4L)), any());
+        verify(notificationArchiveRepository).moveToArchive(eq(List.of(5L)), any());
+        verify(notificationArchiveRepository, times(3)).lockArchivable(any(), anyInt());
+        verify(jobLeaseRepository).complete(eq("notification-archive"), any(), anyString(), any());
+    }
+
+    @Test
+    void archive_WhenLeasedByAnotherReplica_ShouldSkip() {
+        // Arrange
+        when(jobLeaseRepository.claim(eq("notification-archive"), any(), anyString(), any(), any())).thenReturn(false);
+
+        // Act
+        notificationArchiver.archive();
+
+        // Assert
+        verifyNoInteractions(transactionTemplate, notificationArchiveRepository);
+        verify(jobLeaseRepository, never()).complete(any(), any(), any(), any());
+    }
+
+    @Test
+    void archive_WhenLeaseIsLostBetweenChunks_ShouldStop() {
+        // Arrange
+        when(jobLeaseRepository.claim(eq("notification-archive"), any(), anyString(), any(), any())).thenReturn(true, false);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(notificationArchiveRepository.lockArchivable(any(), eq(2))).thenReturn(List.of(1L, 2L));
+
+        // Act
+        notificationArchiver.archive();
+
+        // Assert
+        verify(notificationArchiveRepository).moveToArchive(eq(List.of(1L, 2L)), any());
+        verify(transactionTemplate, times(1)).execute(any());
+    }
+
+    @Test
+    void addPartitions_ShouldSplitOnlyMonthsAfterTheLastPartition() {
+        // Arrange
+        YearMonth current = YearMonth.now();
+        when(notificationPartitionRepository.findPartitionNames()).thenReturn(List.of(
+                NotificationPartitionRepository.partitionName(current.minusMonths(1)),
+                NotificationPartitionRepository.partitionName(current),
+                NotificationPartitionRepository.FUTURE_PARTITION));
+
+        // Act
+        notificationArchiver.addPartitions();
+
+        // Assert
+        verify(notificationPartitionRepository).addMonths(List.of(current.plusMonths(1), current.plusMonths(2)));
+    }
+}
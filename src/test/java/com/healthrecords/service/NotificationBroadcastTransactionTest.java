@@ -0,0 +1,145 @@
+package com.healthrecords.service;
+
+import com.healthrecords.model.Notification;
+import com.healthrecords.model.User;
+import com.healthrecords.model.UserRole;
+import com.healthrecords.repository.NotificationArchiveRepository;
+import com.healthrecords.repository.NotificationEventRepository;
+import com.healthrecords.repository.NotificationJdbcRepository;
+import com.healthrecords.repository.NotificationRepository;
+import com.healthrecords.repository.UserRepository;
+import com.healthrecords.security.CurrentUserContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Goes through the transactional NotificationService with the database broadcaster, to check that
+ * the notification_events rows commit, or roll back, with the change that recorded them.
+ */
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "notifications.broadcast.instance-id=replica-a"
+})
+@Import({NotificationService.class, DatabaseNotificationBroadcaster.class, NotificationEventRepository.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class NotificationBroadcastTransactionTest {
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockBean
+    private NotificationJdbcRepository notificationJdbcRepository;
+
+    @MockBean
+    private NotificationArchiveRepository notificationArchiveRepository;
+
+    @MockBean
+    private CurrentUserContext currentUserContext;
+
+    @MockBean
+    private UnreadNotificationCounter unreadNotificationCounter;
+
+    @MockBean
+    private NotificationStreamRegistry notificationStreamRegistry;
+
+    @MockBean
+    private EmailNotificationChannel emailNotificationChannel;
+
+    @MockBean
+    private NotificationCoalescer notificationCoalescer;
+
+    private User patient;
+    private List<Long> ids;
+
+    @BeforeEach
+    void setUp() {
+        // Not an entity, so not created with the schema
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS notification_events (id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                "user_id BIGINT NOT NULL, origin VARCHAR(100) NOT NULL, created_at TIMESTAMP NOT NULL)");
+
+        patient = userRepository.save(User.builder()
+                .firstName("John")
+                .lastName("Doe")
+                .email("patient@example.com")
+                .password("password")
+                .role(UserRole.ROLE_PATIENT)
+                .build());
+        LocalDateTime now = LocalDateTime.now();
+        ids = List.of(unread(now).getId(), unread(now).getId());
+        when(currentUserContext.getCurrentUser()).thenReturn(patient);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM notification_events");
+        notificationRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void markAsRead_ShouldCommitEventsWithTheChangeAndPushAfterCommit() {
+        // Act
+        int read = notificationService.markAsRead(ids);
+
+        // Assert: visible on a connection of its own, as to another replica
+        assertEquals(2, read);
+        assertEquals(List.of(patient.getId()), jdbcTemplate.queryForList(
+                "SELECT user_id FROM notification_events WHERE origin = 'replica-a'", Long.class));
+        verify(notificationStreamRegistry).push(Set.of(patient.getId()));
+    }
+
+    @Test
+    void markAsRead_WhenTransactionRollsBack_ShouldLeaveNoEventsAndNotPush() {
+        // Act
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            notificationService.markAsRead(ids);
+            status.setRollbackOnly();
+        });
+
+        // Assert
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM notification_events", Integer.class));
+        verify(notificationStreamRegistry, never()).push(any());
+    }
+
+    private Notification unread(LocalDateTime now) {
+        return notificationRepository.save(Notification.builder()
+                .user(patient)
+                .title("Appointment confirmed")
+                .type(Notification.NotificationType.APPOINTMENT_CONFIRMED)
+                .isRead(false)
+                .createdAt(now)
+                .updatedAt(now)
+                .build());
+    }
+}
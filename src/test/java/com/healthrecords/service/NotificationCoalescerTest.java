@@ -0,0 +1,176 @@
+package com.healthrecords.service;
+
+import com.healthrecords.model.Appointment;
+import com.healthrecords.model.Notification;
+import com.healthrecords.model.User;
+import com.healthrecords.repository.AppointmentRepository;
+import com.healthrecords.repository.NotificationDigestPreferenceRepository;
+import com.healthrecords.repository.NotificationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class NotificationCoalescerTest {
+
+    private static final Long DOCTOR_ID = 2L;
+
+    @Mock
+    private NotificationRepository notificationRepository;
+
+    @Mock
+    private NotificationDigestPreferenceRepository notificationDigestPreferenceRepository;
+
+    @Mock
+    private AppointmentRepository appointmentRepository;
+
+    @InjectMocks
+    private NotificationCoalescer notificationCoalescer;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(notificationCoalescer, "typesProperty", "APPOINTMENT_REQUESTED");
+        ReflectionTestUtils.setField(notificationCoalescer, "defaultWindowMinutes", 60);
+        ReflectionTestUtils.setField(notificationCoalescer, "maxWindowMinutes", 1440);
+        ReflectionTestUtils.setField(notificationCoalescer, "maxIds", 100);
+        notificationCoalescer.init();
+    }
+
+    @Test
+    void coalesce_WithoutOpenDigest_ShouldInsertOneDigestPerUserAndType() {
+        // Arrange
+        when(notificationDigestPreferenceRepository.findWindowMinutes(anyCollection())).thenReturn(Map.of());
+        Notification reminder = notification(5L, Notification.NotificationType.APPOINTMENT_REMINDER);
+        List<Notification> notifications = List.of(
+                notification(10L, Notification.NotificationType.APPOINTMENT_REQUESTED),
+                reminder,
+                notification(11L, Notification.NotificationType.APPOINTMENT_REQUESTED),
+                notification(12L, Notification.NotificationType.APPOINTMENT_REQUESTED));
+
+        // Act
+        List<Notification> toInsert = notificationCoalescer.coalesce(notifications);
+
+        // Assert
+        assertEquals(2, toInsert.size());
+        assertSame(reminder, toInsert.get(0));
+        Notification digest = toInsert.get(1);
+        assertEquals(3, digest.getDigestCount());
+        assertEquals("10,11,12", digest.getRelatedAppointmentIds());
+        assertEquals(10L, digest.getRelatedAppointment().getId());
+        assertEquals("Request for appointment 12 (and 2 more)", digest.getMessage());
+        verify(notificationRepository, never()).extendDigest(any(), anyInt(), anyInt(), any(), any(), any());
+    }
+
+    @Test
+    void coalesce_WithOpenDigest_ShouldExtendItInsteadOfInserting() {
+        // Arrange
+        when(notificationDigestPreferenceRepository.findWindowMinutes(anyCollection())).thenReturn(Map.of());
+        NotificationRepository.DigestView stale = digest(7L, 1, "3", LocalDateTime.now().minusMinutes(90));
+        NotificationRepository.DigestView open = digest(8L, 2, "4,5", LocalDateTime.now().minusMinutes(20));
+        when(notificationRepository.findOpenDigests(anyCollection(), anyCollection(), any())).thenReturn(List.of(stale, open));
+        when(notificationRepository.extendDigest(eq(8L), eq(2), eq(4), eq("4,5,10,11"), eq("Request for appointment 11 (and 3 more)"),
+                any(LocalDateTime.class))).thenReturn(1);
+
+        // Act
+        List<Notification> toInsert = notificationCoalescer.coalesce(List.of(
+                notification(10L, Notification.NotificationType.APPOINTMENT_REQUESTED),
+                notification(11L, Notification.NotificationType.APPOINTMENT_REQUESTED)));
+
+        // Assert
+        assertTrue(toInsert.isEmpty());
+        verify(notificationRepository, never()).extendDigest(eq(7L), anyInt(), anyInt(), anyString(), anyString(), any());
+    }
+
+    @Test
+    void coalesce_WhenUserTurnedDigestsOff_ShouldInsertEveryNotification() {
+        // Arrange
+        when(notificationDigestPreferenceRepository.findWindowMinutes(anyCollection())).thenReturn(Map.of(DOCTOR_ID, 0));
+        List<Notification> notifications = List.of(
+                notification(10L, Notification.NotificationType.APPOINTMENT_REQUESTED),
+                notification(11L, Notification.NotificationType.APPOINTMENT_REQUESTED));
+
+        // Act
+        List<Notification> toInsert = notificationCoalescer.coalesce(notifications);
+
+        // Assert
+        assertEquals(notifications, toInsert);
+        verifyNoInteractions(notificationRepository);
+    }
+
+    @Test
+    void removeAppointment_ShouldShrinkDigestsHoldingItAndRepointThoseStartingWithIt() {
+        // Arrange
+        Appointment next = Appointment.builder().id(6L).build();
+        Appointment first = Appointment.builder().id(3L).build();
+        when(appointmentRepository.getReferenceById(6L)).thenReturn(next);
+        when(appointmentRepository.getReferenceById(3L)).thenReturn(first);
+        // Starts with the deleted appointment, holds it later on, does not hold it
+        NotificationRepository.DigestContentView startsWithIt = digestContent(8L, 3, "5,6,7", 5L, "Request for appointment 7 (and 2 more)");
+        NotificationRepository.DigestContentView holdsIt = digestContent(9L, 2, "3,5", 3L, "Request for appointment 5 (and 1 more)");
+        NotificationRepository.DigestContentView other = digestContent(10L, 2, "1,2", 1L, "Request for appointment 2 (and 1 more)");
+        when(notificationRepository.findDigestsWithAppointment(List.of(DOCTOR_ID), 5L, "%,5,%"))
+                .thenReturn(List.of(startsWithIt, holdsIt, other));
+
+        // Act
+        notificationCoalescer.removeAppointment(5L, List.of(DOCTOR_ID));
+
+        // Assert
+        verify(notificationRepository).shrinkDigest(eq(8L), eq(3), eq(2), eq("6,7"), eq(next),
+                eq("Request for appointment 7 (and 1 more)"), any(LocalDateTime.class));
+        // Its message was the deleted appointment's
+        verify(notificationRepository).shrinkDigest(eq(9L), eq(2), eq(1), eq("3"), eq(first),
+                eq("New Appointment Request"), any(LocalDateTime.class));
+        verify(notificationRepository, never()).shrinkDigest(eq(10L), anyInt(), anyInt(), any(), any(), any(), any());
+        verify(notificationRepository, never()).deleteByAppointmentId(any());
+    }
+
+    private static Notification notification(Long appointmentId, Notification.NotificationType type) {
+        return Notification.builder()
+                .user(User.builder().id(DOCTOR_ID).build())
+                .title("New Appointment Request")
+                .message("Request for appointment " + appointmentId)
+                .type(type)
+                .isRead(false)
+                .relatedAppointment(Appointment.builder().id(appointmentId).build())
+                .build();
+    }
+
+    private static NotificationRepository.DigestView digest(Long id, int count, String ids, LocalDateTime createdAt) {
+        NotificationRepository.DigestView digest = mock(NotificationRepository.DigestView.class);
+        lenient().when(digest.getId()).thenReturn(id);
+        when(digest.getUserId()).thenReturn(DOCTOR_ID);
+        when(digest.getType()).thenReturn(Notification.NotificationType.APPOINTMENT_REQUESTED);
+        lenient().when(digest.getDigestCount()).thenReturn(count);
+        lenient().when(digest.getRelatedAppointmentIds()).thenReturn(ids);
+        when(digest.getCreatedAt()).thenReturn(createdAt);
+        return digest;
+    }
+
+    private static NotificationRepository.DigestContentView digestContent(Long id, int count, String ids,
+                                                                          Long relatedAppointmentId, String message) {
+        NotificationRepository.DigestContentView digest = mock(NotificationRepository.DigestContentView.class);
+        lenient().when(digest.getId()).thenReturn(id);
+        lenient().when(digest.getDigestCount()).thenReturn(count);
+        when(digest.getRelatedAppointmentIds()).thenReturn(ids);
+        when(digest.getRelatedAppointmentId()).thenReturn(relatedAppointmentId);
+        lenient().when(digest.getTitle()).thenReturn("New Appointment Request");
+        lenient().when(digest.getMessage()).thenReturn(message);
+        return digest;
+    }
+}
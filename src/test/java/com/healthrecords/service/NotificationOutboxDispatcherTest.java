@@ -0,0 +1,124 @@
+package com.healthrecords.service;
+
+import com.healthrecords.dto.AppointmentDetail;
+import com.healthrecords.model.Notification;
+import com.healthrecords.repository.AppointmentRepository;
+import com.healthrecords.repository.NotificationOutboxRepository;
+import com.healthrecords.repository.NotificationOutboxRepository.Entry;
+import com.healthrecords.repository.NotificationOutboxRepository.EventType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class NotificationOutboxDispatcherTest {
+
+    @Mock
+    private NotificationOutboxRepository notificationOutboxRepository;
+
+    @Mock
+    private AppointmentRepository appointmentRepository;
+
+    @Mock
+    private NotificationService notificationService;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @InjectMocks
+    private NotificationOutboxDispatcher dispatcher;
+
+    private final LocalDateTime created = LocalDateTime.of(2024, 5, 1, 9, 0);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(dispatcher, "batchSize", 100);
+        ReflectionTestUtils.setField(dispatcher, "maxAttempts", 3);
+        ReflectionTestUtils.setField(dispatcher, "retryBaseSeconds", 5L);
+        ReflectionTestUtils.setField(dispatcher, "retryMaxSeconds", 3600L);
+        doAnswer(invocation -> {
+            invocation.<Consumer<Object>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    @Test
+    void dispatchBatch_ShouldInsertNotificationsAndDeleteEntriesTogether() {
+        // Arrange
+        Entry confirmed = new Entry(1L, EventType.APPOINTMENT_CONFIRMED, 10L, null, 0, created);
+        Entry deleted = new Entry(2L, EventType.APPOINTMENT_REQUESTED, 11L, null, 0, created);
+        AppointmentDetail appointment = mock(AppointmentDetail.class);
+        when(appointment.getId()).thenReturn(10L);
+        Notification notification = Notification.builder().build();
+        when(notificationOutboxRepository.claimDue(any(), eq(100))).thenReturn(List.of(confirmed, deleted));
+        when(appointmentRepository.findDetailsByIds(any())).thenReturn(List.of(appointment));
+        when(notificationService.buildAppointmentConfirmationNotification(appointment)).thenReturn(notification);
+
+        // Act
+        int claimed = dispatcher.dispatchBatch();
+
+        // Assert
+        assertEquals(2, claimed);
+        // Not backdated to the outbox entry; the insert stamps the delivery time
+        assertNull(notification.getCreatedAt());
+        verify(notificationService).createNotificationsInBatch(List.of(notification));
+        verify(notificationOutboxRepository).deleteAll(List.of(confirmed, deleted));
+    }
+
+    @Test
+    void dispatchBatch_WhenOneEntryFails_ShouldDeliverTheOthersAndRetryItLater() {
+        // Arrange
+        Entry good = new Entry(1L, EventType.APPOINTMENT_CONFIRMED, 10L, null, 0, created);
+        Entry bad = new Entry(2L, EventType.APPOINTMENT_REJECTED, 20L, "Away", 1, created);
+        AppointmentDetail goodAppointment = mock(AppointmentDetail.class);
+        when(goodAppointment.getId()).thenReturn(10L);
+        AppointmentDetail badAppointment = mock(AppointmentDetail.class);
+        when(badAppointment.getId()).thenReturn(20L);
+        when(notificationOutboxRepository.claimDue(any(), anyInt())).thenReturn(List.of(good, bad));
+        when(notificationOutboxRepository.claimById(eq(1L), any())).thenReturn(List.of(good));
+        when(notificationOutboxRepository.claimById(eq(2L), any())).thenReturn(List.of(bad));
+        when(appointmentRepository.findDetailsByIds(any())).thenAnswer(invocation -> {
+            List<AppointmentDetail> found = new ArrayList<>();
+            if (invocation.<Collection<Long>>getArgument(0).contains(10L)) {
+                found.add(goodAppointment);
+            }
+            if (invocation.<Collection<Long>>getArgument(0).contains(20L)) {
+                found.add(badAppointment);
+            }
+            return found;
+        });
+        when(notificationService.buildAppointmentConfirmationNotification(goodAppointment)).thenReturn(Notification.builder().build());
+        when(notificationService.buildAppointmentRejectionNotification(badAppointment, "Away"))
+                .thenThrow(new IllegalStateException("broken"));
+
+        // Act
+        dispatcher.dispatchBatch();
+
+        // Assert
+        verify(notificationOutboxRepository).deleteAll(List.of(good));
+        verify(notificationOutboxRepository, never()).deleteAll(List.of(bad));
+        // Second failure: retried after 5s << 1
+        verify(notificationOutboxRepository).recordFailure(eq(bad),
+                argThat(next -> next != null && !next.isBefore(LocalDateTime.now().plusSeconds(9))), any(), anyString());
+        verify(notificationOutboxRepository, never()).recordFailure(eq(good), any(), any(), any());
+        verify(notificationOutboxRepository, never()).recordFailure(eq(bad), isNull(), any(), any());
+    }
+}
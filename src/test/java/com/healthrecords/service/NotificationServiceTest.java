@@ -0,0 +1,215 @@
+package com.healthrecords.service;
+
+import com.healthrecords.dto.NotificationCursor;
+import com.healthrecords.dto.NotificationFeedPage;
+import com.healthrecords.dto.NotificationSummary;
+import com.healthrecords.model.Notification;
+import com.healthrecords.model.User;
+import com.healthrecords.repository.AppointmentRepository;
+import com.healthrecords.repository.NotificationArchiveRepository;
+import com.healthrecords.repository.NotificationJdbcRepository;
+import com.healthrecords.repository.NotificationRepository;
+import com.healthrecords.repository.UserRepository;
+import com.healthrecords.security.CurrentUserContext;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class NotificationServiceTest {
+
+    @Mock
+    private NotificationRepository notificationRepository;
+
+    @Mock
+    private NotificationJdbcRepository notificationJdbcRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private AppointmentRepository appointmentRepository;
+
+    @Mock
+    private CurrentUserContext currentUserContext;
+
+    @Mock
+    private UnreadNotificationCounter unreadNotificationCounter;
+
+    @Mock
+    private NotificationStreamRegistry notificationStreamRegistry;
+
+    @Mock
+    private NotificationBroadcaster notificationBroadcaster;
+
+    @Mock
+    private EmailNotificationChannel emailNotificationChannel;
+
+    @Mock
+    private NotificationCoalescer notificationCoalescer;
+
+    @Mock
+    private NotificationArchiveRepository notificationArchiveRepository;
+
+    @InjectMocks
+    private NotificationService notificationService;
+
+    private User patient;
+    private User doctor;
+
+    @BeforeEach
+    void setUp() {
+        patient = User.builder().id(1L).email("patient@example.com").build();
+        doctor = User.builder().id(2L).email("doctor@example.com").build();
+        ReflectionTestUtils.setField(notificationService, "maxBulkIds", 500);
+        ReflectionTestUtils.setField(notificationService, "defaultPageSize", 2);
+        ReflectionTestUtils.setField(notificationService, "maxPageSize", 100);
+    }
+
+    @Test
+    void markAsRead_WhenAlreadyRead_ShouldNotDecrementCounter() {
+        // Arrange
+        Notification notification = Notification.builder().id(10L).user(patient).isRead(true).build();
+        when(currentUserContext.getCurrentUser()).thenReturn(patient);
+        when(notificationRepository.findById(10L)).thenReturn(Optional.of(notification));
+        when(notificationRepository.markReadIfUnread(10L)).thenReturn(0);
+
+        // Act
+        Notification result = notificationService.markAsRead(10L);
+
+        // Assert
+        assertTrue(result.getIsRead());
+        verify(unreadNotificationCounter, never()).add(any());
+    }
+
+    @Test
+    void markAsRead_WithIds_ShouldUseOneUpdateAndDecrementByUpdatedCount() {
+        // Arrange
+        when(currentUserContext.getCurrentUser()).thenReturn(doctor);
+        when(notificationRepository.markReadByUserIdAndIds(2L, Set.of(5L, 6L, 7L))).thenReturn(2);
+
+        // Act
+        int read = notificationService.markAsRead(List.of(5L, 6L, 7L, 5L));
+
+        // Assert
+        assertEquals(2, read);
+        verify(unreadNotificationCounter).add(Map.of(2L, -2));
+        verify(notificationBroadcaster).publish(Set.of(2L));
+        verify(notificationRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void countUnreadNotifications_WithoutDiagnostics_ShouldOnlyReadCounter() {
+        // Arrange
+        when(currentUserContext.getCurrentUser()).thenReturn(doctor);
+        when(unreadNotificationCounter.getUnreadCount(2L)).thenReturn(40L);
+
+        // Act
+        Long count = notificationService.countUnreadNotifications();
+
+        // Assert
+        assertEquals(40L, count);
+        verifyNoInteractions(notificationRepository);
+    }
+
+    @Test
+    void countUnreadNotificationsForUser_ShouldCountOnceAndCompareWithCounter() {
+        // Arrange
+        ReflectionTestUtils.setField(notificationService, "diagnosticsMaxListed", 5);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(patient));
+        when(notificationRepository.countUnreadNotifications(patient)).thenReturn(3L);
+        when(unreadNotificationCounter.getUnreadCount(1L)).thenReturn(4L);
+
+        // Act
+        Long count = notificationService.countUnreadNotificationsForUser(1L);
+
+        // Assert
+        assertEquals(3L, count);
+        verify(notificationRepository, times(1)).countUnreadNotifications(patient);
+    }
+
+    @Test
+    void countUnreadNotificationsForUser_WithUnknownUser_ShouldThrow() {
+        // Arrange
+        when(userRepository.findById(99L)).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertThrows(EntityNotFoundException.class, () -> notificationService.countUnreadNotificationsForUser(99L));
+        verifyNoInteractions(notificationRepository);
+    }
+
+    @Test
+    void createNotificationsInBatch_ShouldCountUnreadPerRecipient() {
+        // Arrange
+        List<Notification> notifications = List.of(
+                Notification.builder().user(patient).isRead(false).build(),
+                Notification.builder().user(patient).isRead(false).build(),
+                Notification.builder().user(doctor).isRead(false).build(),
+                Notification.builder().user(doctor).isRead(true).build());
+        when(notificationCoalescer.coalesce(notifications)).thenReturn(notifications);
+
+        // Act
+        notificationService.createNotificationsInBatch(notifications);
+
+        // Assert
+        verify(notificationJdbcRepository).insertAll(notifications);
+        verify(unreadNotificationCounter).add(Map.of(1L, 2, 2L, 1));
+    }
+
+    @Test
+    void getFeed_ShouldPageOlderNotificationsAndPollNewerOnes() {
+        // Arrange
+        when(currentUserContext.getCurrentUser()).thenReturn(patient);
+        LocalDateTime now = LocalDateTime.of(2026, 10, 1, 12, 0);
+        when(notificationRepository.findFeedBefore(eq(1L), eq(Notification.NotificationType.APPOINTMENT_REMINDER), eq(false),
+                eq(NotificationCursor.START.getCreatedAt()), eq(Long.MAX_VALUE), any()))
+                .thenReturn(List.of(summary(9L, now), summary(7L, now.minusMinutes(1)), summary(4L, now.minusMinutes(2))));
+        // A new notification, then an older digest that was extended since
+        NotificationSummary extended = summary(4L, now.minusMinutes(2));
+        extended.setUpdatedAt(now.plusMinutes(2));
+        when(notificationRepository.findFeedAfter(eq(1L), eq(Notification.NotificationType.APPOINTMENT_REMINDER), eq(false),
+                eq(now), eq(9L), any()))
+                .thenReturn(List.of(summary(12L, now.plusMinutes(1)), extended));
+
+        // Act
+        NotificationFeedPage first = notificationService.getFeed(Notification.NotificationType.APPOINTMENT_REMINDER, false, null, null, null);
+        NotificationFeedPage newer = notificationService.getFeed(Notification.NotificationType.APPOINTMENT_REMINDER, false, null,
+                first.getSinceCursor(), null);
+
+        // Assert
+        assertEquals(2, first.getSize());
+        assertTrue(first.isHasMore());
+        assertEquals(new NotificationCursor(now.minusMinutes(1), 7L), NotificationCursor.decode(first.getNextCursor()));
+        assertEquals(List.of(12L, 4L), newer.getItems().stream().map(NotificationSummary::getId).toList());
+        assertFalse(newer.isHasMore());
+        assertNull(newer.getNextCursor());
+        assertEquals(new NotificationCursor(now.plusMinutes(2), 4L), NotificationCursor.decode(newer.getSinceCursor()));
+    }
+
+    private static NotificationSummary summary(Long id, LocalDateTime createdAt) {
+        return NotificationSummary.builder()
+                .id(id)
+                .type(Notification.NotificationType.APPOINTMENT_REMINDER)
+                .isRead(false)
+                .createdAt(createdAt)
+                .updatedAt(createdAt)
+                .build();
+    }
+}